@@ -25,6 +25,8 @@
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.EnumSet;
+import java.util.List;
+import java.util.function.IntFunction;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
@@ -38,7 +40,7 @@
 public class FSDataInputStream extends DataInputStream
     implements Seekable, PositionedReadable, 
       ByteBufferReadable, HasFileDescriptor, CanSetDropBehind, CanSetReadahead,
-      HasEnhancedByteBufferAccess, CanUnbuffer {
+      HasEnhancedByteBufferAccess, CanUnbuffer, VectoredReadable {
   /**
    * Map ByteBuffers that we have handed out to readers to ByteBufferPool 
    * objects
@@ -120,6 +122,25 @@ public void readFully(long position, byte[] buffer)
     ((PositionedReadable)in).readFully(position, buffer, 0, buffer.length);
   }
   
+  /**
+   * Read several ranges of the stream. If the wrapped stream is not
+   * {@link VectoredReadable}, each range is read with a positional read, in
+   * the calling thread.
+   *
+   * @param ranges the ranges to read
+   * @param allocate allocates a buffer of the given size for the data
+   * @see VectoredReadable#readVectored(List, IntFunction)
+   */
+  @Override
+  public void readVectored(List<? extends FileRange> ranges,
+      IntFunction<ByteBuffer> allocate) throws IOException {
+    if (in instanceof VectoredReadable) {
+      ((VectoredReadable) in).readVectored(ranges, allocate);
+    } else {
+      VectoredReadUtils.readVectored(this, ranges, allocate);
+    }
+  }
+
   /**
    * Seek to the given position on an alternate copy of the data.
    *
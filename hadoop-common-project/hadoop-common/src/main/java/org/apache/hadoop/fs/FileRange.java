@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.fs;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A range of a file to read with {@link VectoredReadable#readVectored}.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Unstable
+public class FileRange {
+  private final long offset;
+  private final int length;
+  private CompletableFuture<ByteBuffer> data;
+
+  /**
+   * @param offset the position of the range in the file
+   * @param length the number of bytes in the range
+   */
+  public FileRange(long offset, int length) {
+    Preconditions.checkArgument(length >= 0, "Negative length %s", length);
+    this.offset = offset;
+    this.length = length;
+  }
+
+  public long getOffset() {
+    return offset;
+  }
+
+  public int getLength() {
+    return length;
+  }
+
+  /** @return the end of the range, exclusive. */
+  public long getEnd() {
+    return offset + length;
+  }
+
+  /** @return the data of the range, once the read was started. */
+  public CompletableFuture<ByteBuffer> getData() {
+    return data;
+  }
+
+  public void setData(CompletableFuture<ByteBuffer> data) {
+    this.data = data;
+  }
+
+  @Override
+  public String toString() {
+    return "range[" + offset + "," + getEnd() + ")";
+  }
+}
@@ -325,4 +325,21 @@ public static ChecksumOpt processChecksumOpt(ChecksumOpt defaultOpt,
       return processChecksumOpt(defaultOpt, userOpt, -1);
     }
   }
+
+  /**
+   * How the checksums of the chunks of a file are combined into the checksum
+   * of the file.
+   */
+  public enum ChecksumCombineMode {
+    /**
+     * The MD5 of the MD5s of the CRCs of each block. Depends on the block
+     * size and the bytes per checksum of the file.
+     */
+    MD5MD5CRC,
+    /**
+     * The CRC of the whole file, composed from the CRCs of the chunks.
+     * Independent of the block size and the bytes per checksum.
+     */
+    COMPOSITE_CRC
+  }
 }
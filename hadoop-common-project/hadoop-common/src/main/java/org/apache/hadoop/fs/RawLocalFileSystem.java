@@ -33,18 +33,24 @@
 import java.io.FileDescriptor;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.BasicFileAttributeView;
 import java.nio.file.attribute.FileTime;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.StringTokenizer;
+import java.util.function.IntFunction;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.VectoredReadUtils.CombinedFileRange;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.nativeio.NativeIO;
@@ -102,12 +108,17 @@ public void initialize(URI uri, Configuration conf) throws IOException {
   /*******************************************************
    * For open()'s FSInputStream.
    *******************************************************/
-  class LocalFSFileInputStream extends FSInputStream implements HasFileDescriptor {
+  class LocalFSFileInputStream extends FSInputStream
+      implements HasFileDescriptor, VectoredReadable {
+    private final File file;
     private FileInputStream fis;
     private long position;
+    /** Opened by the first vectored read. */
+    private AsynchronousFileChannel asyncChannel;
 
     public LocalFSFileInputStream(Path f) throws IOException {
-      fis = new FileInputStream(pathToFile(f));
+      file = pathToFile(f);
+      fis = new FileInputStream(file);
     }
     
     @Override
@@ -136,7 +147,12 @@ public boolean seekToNewSource(long targetPos) throws IOException {
     @Override
     public int available() throws IOException { return fis.available(); }
     @Override
-    public void close() throws IOException { fis.close(); }
+    public void close() throws IOException {
+      fis.close();
+      synchronized (this) {
+        IOUtils.cleanup(LOG, asyncChannel);
+      }
+    }
     @Override
     public boolean markSupported() { return false; }
     
@@ -204,6 +220,83 @@ public long skip(long n) throws IOException {
     public FileDescriptor getFileDescriptor() throws IOException {
       return fis.getFD();
     }
+
+    /**
+     * Read the ranges with asynchronous reads of the file, which run
+     * concurrently without any threads of our own.
+     */
+    @Override
+    public void readVectored(List<? extends FileRange> ranges,
+        IntFunction<ByteBuffer> allocate) throws IOException {
+      List<CombinedFileRange> combined = VectoredReadUtils.prepareRanges(
+          ranges, VectoredReadUtils.DEFAULT_MIN_SEEK,
+          VectoredReadUtils.DEFAULT_MAX_READ_SIZE);
+      AsynchronousFileChannel channel = getAsyncChannel();
+      for (CombinedFileRange range : combined) {
+        try {
+          ByteBuffer buffer = allocate.apply(range.getLength()).slice();
+          buffer.limit(range.getLength());
+          new AsyncRangeRead(channel, range, buffer).read();
+        } catch (RuntimeException e) {
+          range.fail(e);
+        }
+      }
+    }
+
+    private synchronized AsynchronousFileChannel getAsyncChannel()
+        throws IOException {
+      if (!fis.getChannel().isOpen()) {
+        throw new IOException(FSExceptionMessages.STREAM_IS_CLOSED);
+      }
+      if (asyncChannel == null) {
+        asyncChannel = AsynchronousFileChannel.open(file.toPath(),
+            StandardOpenOption.READ);
+      }
+      return asyncChannel;
+    }
+  }
+
+  /**
+   * Reads a combined range, issuing another read until its buffer is full
+   * or the end of the file is reached.
+   */
+  private class AsyncRangeRead implements CompletionHandler<Integer, Void> {
+    private final AsynchronousFileChannel channel;
+    private final CombinedFileRange range;
+    private final ByteBuffer buffer;
+
+    AsyncRangeRead(AsynchronousFileChannel channel, CombinedFileRange range,
+        ByteBuffer buffer) {
+      this.channel = channel;
+      this.range = range;
+      this.buffer = buffer;
+    }
+
+    void read() {
+      channel.read(buffer, range.getOffset() + buffer.position(), null, this);
+    }
+
+    @Override
+    public void completed(Integer result, Void attachment) {
+      if (result >= 0) {
+        statistics.incrementBytesRead(result);
+      }
+      if (result >= 0 && buffer.hasRemaining()) {
+        try {
+          read();
+        } catch (RuntimeException e) {
+          range.fail(e);
+        }
+        return;
+      }
+      buffer.flip();
+      range.complete(buffer);
+    }
+
+    @Override
+    public void failed(Throwable t, Void attachment) {
+      range.fail(t);
+    }
   }
   
   @Override
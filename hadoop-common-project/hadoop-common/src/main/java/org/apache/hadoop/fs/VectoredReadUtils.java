@@ -0,0 +1,313 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.fs;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.IntFunction;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * Utility methods for implementing {@link VectoredReadable}.
+ *
+ * A vectored read sorts its ranges, merges ranges that are close to each
+ * other into a {@link CombinedFileRange}, and reads each combined range
+ * with a single request. The data of a combined range is then handed to
+ * each of its ranges as a slice of the same buffer.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Unstable
+public final class VectoredReadUtils {
+  /** Gaps of up to this many bytes between ranges are read, not skipped. */
+  public static final int DEFAULT_MIN_SEEK = 4 * 1024;
+  /** Ranges are not merged into reads larger than this. */
+  public static final int DEFAULT_MAX_READ_SIZE = 1024 * 1024;
+
+  /** The size of the temporary array used to fill direct buffers. */
+  private static final int TMP_BUFFER_SIZE = 64 * 1024;
+
+  private static final Comparator<FileRange> OFFSET_ORDER =
+      new Comparator<FileRange>() {
+        @Override
+        public int compare(FileRange a, FileRange b) {
+          return Long.compare(a.getOffset(), b.getOffset());
+        }
+      };
+
+  private static final Executor CALLER_RUNS = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      command.run();
+    }
+  };
+
+  private VectoredReadUtils() {
+  }
+
+  /**
+   * A contiguous range of a file covering one or more requested ranges.
+   */
+  public static class CombinedFileRange {
+    private final long offset;
+    private long end;
+    private final List<FileRange> ranges = new ArrayList<>();
+
+    CombinedFileRange(FileRange first) {
+      this.offset = first.getOffset();
+      this.end = first.getEnd();
+      ranges.add(first);
+    }
+
+    public long getOffset() {
+      return offset;
+    }
+
+    public int getLength() {
+      return (int) (end - offset);
+    }
+
+    /** @return the requested ranges, in order of their offsets. */
+    public List<FileRange> getRanges() {
+      return ranges;
+    }
+
+    /**
+     * Add a range if it starts at most minSeek bytes after this range,
+     * and the combined range is no longer than maxSize.
+     * @return whether the range was added
+     */
+    boolean merge(FileRange range, int minSeek, int maxSize) {
+      final long newEnd = Math.max(end, range.getEnd());
+      if (range.getOffset() - end > minSeek || newEnd - offset > maxSize) {
+        return false;
+      }
+      end = newEnd;
+      ranges.add(range);
+      return true;
+    }
+
+    /**
+     * Complete the requested ranges with slices of the data read. The data
+     * is shorter than this range if the read reached the end of the file;
+     * the ranges that end after the data fail with an EOFException.
+     * @param data the data of this range, from position 0 to its limit
+     */
+    public void complete(ByteBuffer data) {
+      final long dataEnd = offset + data.limit();
+      for (FileRange range : ranges) {
+        if (range.getEnd() > dataEnd) {
+          range.getData().completeExceptionally(new EOFException(
+              FSExceptionMessages.EOF_IN_READ_FULLY + ": " + range));
+        } else {
+          range.getData().complete(sliceTo(data, offset, range));
+        }
+      }
+    }
+
+    /** Fail all the requested ranges. */
+    public void fail(Throwable t) {
+      for (FileRange range : ranges) {
+        range.getData().completeExceptionally(t);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "range[" + offset + "," + end + ") of " + ranges.size();
+    }
+  }
+
+  /**
+   * Check the ranges and sort them by offset.
+   * @return a sorted copy of the ranges
+   * @throws EOFException if a range has a negative offset
+   */
+  public static List<FileRange> sortRanges(List<? extends FileRange> ranges)
+      throws EOFException {
+    List<FileRange> sorted = new ArrayList<>(ranges);
+    for (FileRange range : sorted) {
+      if (range.getOffset() < 0) {
+        throw new EOFException(FSExceptionMessages.NEGATIVE_SEEK + ": "
+            + range);
+      }
+    }
+    Collections.sort(sorted, OFFSET_ORDER);
+    return sorted;
+  }
+
+  /**
+   * Merge sorted ranges that are close to each other. A range longer than
+   * maxSize is read on its own.
+   *
+   * @param sortedRanges the ranges, sorted by offset
+   * @param minSeek the largest gap between two ranges that is read
+   * @param maxSize the largest combined range
+   * @return the combined ranges
+   */
+  public static List<CombinedFileRange> mergeSortedRanges(
+      List<FileRange> sortedRanges, int minSeek, int maxSize) {
+    List<CombinedFileRange> result = new ArrayList<>();
+    CombinedFileRange current = null;
+    for (FileRange range : sortedRanges) {
+      if (current == null || !current.merge(range, minSeek, maxSize)) {
+        current = new CombinedFileRange(range);
+        result.add(current);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Sort and merge the ranges of a vectored read, and give each range a new
+   * data future.
+   * @return the combined ranges to read
+   */
+  public static List<CombinedFileRange> prepareRanges(
+      List<? extends FileRange> ranges, int minSeek, int maxSize)
+      throws EOFException {
+    List<CombinedFileRange> combined =
+        mergeSortedRanges(sortRanges(ranges), minSeek, maxSize);
+    for (CombinedFileRange c : combined) {
+      for (FileRange range : c.getRanges()) {
+        range.setData(new CompletableFuture<ByteBuffer>());
+      }
+    }
+    return combined;
+  }
+
+  /**
+   * @return the part of the data read at dataOffset that holds the range,
+   *         as a buffer of its own
+   */
+  public static ByteBuffer sliceTo(ByteBuffer data, long dataOffset,
+      FileRange range) {
+    final int start = (int) (range.getOffset() - dataOffset);
+    ByteBuffer slice = data.duplicate();
+    slice.limit(start + range.getLength());
+    slice.position(start);
+    return slice.slice();
+  }
+
+  /**
+   * Read the ranges with positional reads of the stream, in the calling
+   * thread. This is the fallback for streams that are not
+   * {@link VectoredReadable}.
+   */
+  public static void readVectored(PositionedReadable stream,
+      List<? extends FileRange> ranges, IntFunction<ByteBuffer> allocate)
+      throws IOException {
+    readVectored(stream, ranges, allocate, DEFAULT_MIN_SEEK,
+        DEFAULT_MAX_READ_SIZE, CALLER_RUNS);
+  }
+
+  /**
+   * Read the ranges with positional reads of the stream, one combined range
+   * per task of the executor. The positional reads of the stream must be
+   * thread-safe.
+   */
+  public static void readVectored(final PositionedReadable stream,
+      List<? extends FileRange> ranges, final IntFunction<ByteBuffer> allocate,
+      int minSeek, int maxSize, Executor executor) throws IOException {
+    for (final CombinedFileRange range :
+        prepareRanges(ranges, minSeek, maxSize)) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          readCombinedRange(stream, range, allocate);
+        }
+      });
+    }
+  }
+
+  private static void readCombinedRange(PositionedReadable stream,
+      CombinedFileRange range, IntFunction<ByteBuffer> allocate) {
+    try {
+      ByteBuffer buffer = allocate.apply(range.getLength()).slice();
+      readUpTo(stream, range.getOffset(), buffer, range.getLength());
+      range.complete(buffer);
+    } catch (Throwable t) {
+      range.fail(t);
+    }
+  }
+
+  /**
+   * Read up to length bytes at the position into an empty buffer, stopping
+   * early only at the end of the stream, and flip it.
+   * @return the number of bytes read
+   */
+  static int readUpTo(PositionedReadable stream, long position,
+      ByteBuffer buffer, int length) throws IOException {
+    byte[] tmp = buffer.hasArray() ? buffer.array()
+        : new byte[Math.min(length, TMP_BUFFER_SIZE)];
+    final int base = buffer.hasArray()
+        ? buffer.arrayOffset() + buffer.position() : 0;
+    int done = 0;
+    while (done < length) {
+      final int n;
+      if (buffer.hasArray()) {
+        n = stream.read(position + done, tmp, base + done, length - done);
+      } else {
+        n = stream.read(position + done, tmp, 0,
+            Math.min(tmp.length, length - done));
+        if (n > 0) {
+          buffer.put(tmp, 0, n);
+        }
+      }
+      if (n < 0) {
+        break;
+      }
+      done += n;
+    }
+    if (buffer.hasArray()) {
+      buffer.position(buffer.position() + done);
+    }
+    buffer.flip();
+    return done;
+  }
+
+  /**
+   * Read length bytes at the position into an empty buffer, and flip it.
+   */
+  public static void readFully(PositionedReadable stream, long position,
+      ByteBuffer buffer, int length) throws IOException {
+    if (buffer.hasArray()) {
+      stream.readFully(position, buffer.array(),
+          buffer.arrayOffset() + buffer.position(), length);
+      buffer.position(buffer.position() + length);
+    } else {
+      byte[] tmp = new byte[Math.min(length, TMP_BUFFER_SIZE)];
+      int done = 0;
+      while (done < length) {
+        final int n = Math.min(tmp.length, length - done);
+        stream.readFully(position + done, tmp, 0, n);
+        buffer.put(tmp, 0, n);
+        done += n;
+      }
+    }
+    buffer.flip();
+  }
+}
@@ -0,0 +1,57 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.fs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * Implementers of this interface can read several ranges of a file in one
+ * call, merging nearby ranges and fetching them in parallel.
+ *
+ * Streams that do not implement it still support
+ * {@link FSDataInputStream#readVectored(List, IntFunction)}, which then
+ * falls back to a positional read of each range in turn.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Unstable
+public interface VectoredReadable {
+  /**
+   * Read the given ranges of the file. This does not change the current
+   * offset of the stream, and is thread-safe.
+   * <p/>
+   * Before returning, each range has its data future set with
+   * {@link FileRange#setData}. The future completes with a buffer holding
+   * the bytes of the range, from position 0 to its length, or completes
+   * exceptionally, e.g. with an {@link java.io.EOFException} if the range
+   * extends past the end of the file. The ranges may be given in any order,
+   * and the buffers may be slices of a larger buffer shared by nearby
+   * ranges.
+   *
+   * @param ranges the ranges to read
+   * @param allocate allocates a buffer of the given size for the data
+   * @throws IOException if the read could not be started
+   */
+  void readVectored(List<? extends FileRange> ranges,
+      IntFunction<ByteBuffer> allocate) throws IOException;
+}
@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.erasurecode.rawcoder;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.io.erasurecode.ErasureCoderOptions;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.RSUtil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A raw erasure decoder in RS code scheme in pure Java, which codes the units
+ * a segment at a time with {@link RSUtil#encodeDataInSegments}. It is
+ * compatible with {@link RSRawEncoder} and {@link SegmentedRSRawEncoder}.
+ */
+@InterfaceAudience.Private
+public class SegmentedRSRawDecoder extends RSRawDecoder {
+  private final byte[][] buffers;
+
+  public SegmentedRSRawDecoder(ErasureCoderOptions coderOptions) {
+    super(coderOptions);
+    buffers = new byte[getNumAllUnits()][RSUtil.SEGMENT_SIZE];
+  }
+
+  @Override
+  protected void decodeData(byte[] tables, ByteBuffer[] inputs,
+      ByteBuffer[] outputs) {
+    RSUtil.encodeDataInSegments(tables, inputs, outputs, buffers);
+  }
+
+  @Override
+  protected void decodeData(byte[] tables, int dataLen, byte[][] inputs,
+      int[] inputOffsets, byte[][] outputs, int[] outputOffsets) {
+    RSUtil.encodeDataInSegments(tables, dataLen, inputs, inputOffsets,
+        outputs, outputOffsets, buffers);
+  }
+}
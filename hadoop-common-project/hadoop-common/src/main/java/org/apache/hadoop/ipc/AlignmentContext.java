@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.ipc;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.ipc.protobuf.RpcHeaderProtos.RpcRequestHeaderProto;
+import org.apache.hadoop.ipc.protobuf.RpcHeaderProtos.RpcResponseHeaderProto;
+
+/**
+ * Carries a monotonically increasing state id, such as a transaction id, in
+ * the RPC headers so that the client and the servers it talks to can be
+ * aligned on the state of the service.
+ *
+ * A server sends its current state id with every response, see
+ * {@link Server#setAlignmentContext}. A client remembers the highest state id
+ * it has seen and sends it with the calls it makes, see
+ * {@link Client#setAlignmentContext}. A server that is behind the client can
+ * then refuse to serve the call rather than serve older state.
+ */
+@InterfaceAudience.LimitedPrivate({"HDFS"})
+@InterfaceStability.Evolving
+public interface AlignmentContext {
+
+  /**
+   * Server side: set the state id of the server in the response header.
+   */
+  void updateResponseState(RpcResponseHeaderProto.Builder header);
+
+  /**
+   * Client side: remember the state id sent by the server.
+   */
+  void receiveResponseState(RpcResponseHeaderProto header);
+
+  /**
+   * Client side: set the last state id seen by the client in the request
+   * header.
+   */
+  void updateRequestState(RpcRequestHeaderProto.Builder header);
+
+  /**
+   * Server side: read the client state id from the request header.
+   * @return the last state id seen by the client, or
+   *         {@link Long#MIN_VALUE} if the client did not send one.
+   */
+  long receiveRequestState(RpcRequestHeaderProto header);
+
+  /**
+   * @return the last state id seen by the client, or the current state id of
+   *         the server.
+   */
+  long getLastSeenStateId();
+}
@@ -93,6 +93,8 @@ public class Client implements AutoCloseable {
   private static final ThreadLocal<Integer> retryCount = new ThreadLocal<Integer>();
   private static final ThreadLocal<Object> EXTERNAL_CALL_HANDLER
       = new ThreadLocal<>();
+  private static final ThreadLocal<AlignmentContext> ALIGNMENT_CONTEXT
+      = new ThreadLocal<>();
   private static final ThreadLocal<AsyncGet<? extends Writable, IOException>>
       ASYNC_RPC_RESPONSE = new ThreadLocal<>();
   private static final ThreadLocal<Boolean> asynchronousMode =
@@ -122,6 +124,16 @@ public static void setCallIdAndRetryCount(int cid, int rc,
     EXTERNAL_CALL_HANDLER.set(externalHandler);
   }
 
+  /**
+   * Set the alignment context for the next call made by this thread. The
+   * call sends the state id of the context and updates the context with the
+   * state id of the response.
+   */
+  @Unstable
+  public static void setAlignmentContext(AlignmentContext alignmentContext) {
+    ALIGNMENT_CONTEXT.set(alignmentContext);
+  }
+
   private ConcurrentMap<ConnectionId, Connection> connections =
       new ConcurrentHashMap<>();
 
@@ -336,6 +348,7 @@ static class Call {
     final RPC.RpcKind rpcKind;      // Rpc EngineKind
     boolean done;               // true when call is done
     private final Object externalHandler;
+    private final AlignmentContext alignmentContext;
 
     private Call(RPC.RpcKind rpcKind, Writable param) {
       this.rpcKind = rpcKind;
@@ -357,6 +370,10 @@ private Call(RPC.RpcKind rpcKind, Writable param) {
       }
 
       this.externalHandler = EXTERNAL_CALL_HANDLER.get();
+      this.alignmentContext = ALIGNMENT_CONTEXT.get();
+      if (alignmentContext != null) {
+        ALIGNMENT_CONTEXT.remove();
+      }
     }
 
     @Override
@@ -1092,6 +1109,11 @@ public void sendRpcRequest(final Call call)
       RpcRequestHeaderProto header = ProtoUtil.makeRpcRequestHeader(
           call.rpcKind, OperationProto.RPC_FINAL_PACKET, call.id, call.retry,
           clientId);
+      if (call.alignmentContext != null) {
+        RpcRequestHeaderProto.Builder builder = header.toBuilder();
+        call.alignmentContext.updateRequestState(builder);
+        header = builder.build();
+      }
 
       final ResponseBuffer buf = new ResponseBuffer();
       header.writeDelimitedTo(buf);
@@ -1166,6 +1188,9 @@ private void receiveRpcResponse() {
         if (status == RpcStatusProto.SUCCESS) {
           Writable value = packet.newInstance(valueClass, conf);
           final Call call = calls.remove(callId);
+          if (call.alignmentContext != null) {
+            call.alignmentContext.receiveResponseState(header);
+          }
           call.setRpcResponse(value);
         }
         // verify that packet length was correct
@@ -1186,6 +1211,9 @@ private void receiveRpcResponse() {
           RemoteException re = new RemoteException(exceptionClassName, errorMsg, erCode);
           if (status == RpcStatusProto.ERROR) {
             final Call call = calls.remove(callId);
+            if (call.alignmentContext != null) {
+              call.alignmentContext.receiveResponseState(header);
+            }
             call.setException(re);
           } else if (status == RpcStatusProto.FATAL) {
             // Close the connection
@@ -509,7 +509,7 @@ public Writable call(RPC.Server server, String connectionProtocolName,
           throw new RpcNoSuchMethodException(msg);
         }
         Message prototype = service.getRequestPrototype(methodDescriptor);
-        Message param = request.getValue(prototype);
+        Message param = request.getPayload(prototype);
 
         Message result;
         long startTime = Time.now();
@@ -528,6 +528,13 @@ public Writable call(RPC.Server server, String connectionProtocolName,
             currentCallback.set(null);
             return null;
           }
+          if (Server.getCurCall().get().isResponseDeferred()) {
+            // the call was parked and runs again once resumed, keep the
+            // request as it cannot be read from the buffer again
+            request.setPayload(param);
+            isDeferred = true;
+            return null;
+          }
         } catch (ServiceException e) {
           exception = (Exception) e.getCause();
           throw (Exception) e.getCause();
@@ -573,6 +580,18 @@ public RpcProtobufRequest() {
       this.payload = payload;
     }
 
+    /**
+     * @return the request payload, read from the buffer unless it was kept
+     *         by {@link #setPayload} when the call was parked.
+     */
+    Message getPayload(Message prototype) throws IOException {
+      return payload != null ? payload : getValue(prototype);
+    }
+
+    void setPayload(Message payload) {
+      this.payload = payload;
+    }
+
     RequestHeaderProto getRequestHeader() throws IOException {
       if (getByteBuffer() != null && requestHeader == null) {
         requestHeader = getValue(RequestHeaderProto.getDefaultInstance());
@@ -435,6 +435,7 @@ protected ResponseBuffer initialValue() {
 
   volatile private boolean running = true;         // true while server runs
   private CallQueueManager<Call> callQueue;
+  private volatile AlignmentContext alignmentContext;
 
   // maintains the set of client connections and handles idle timeouts
   private ConnectionManager connectionManager;
@@ -685,6 +686,15 @@ public static class Call implements Schedulable,
     private boolean deferredResponse = false;
     private int priorityLevel;
     // the priority level assigned by scheduler, 0 by default
+    // the park state of the call, see park() and resume()
+    private final AtomicInteger parkState = new AtomicInteger(NOT_PARKED);
+    private int parkCount = 0;
+    private long clientStateId = Long.MIN_VALUE;
+
+    private static final int NOT_PARKED = 0;
+    private static final int PARKING = 1;  // parked, handler not yet returned
+    private static final int PARKED = 2;
+    private static final int RESUMING = 3; // resumed, handler not yet returned
 
     Call() {
       this(RpcConstants.INVALID_CALL_ID, RpcConstants.INVALID_RETRY_COUNT,
@@ -807,6 +817,95 @@ public void setDeferredResponse(Writable response) {
 
     public void setDeferredError(Throwable t) {
     }
+
+    /**
+     * Park the call instead of blocking the handler thread, e.g. while a
+     * lock the call needs is contended. The handler returns without sending
+     * a response, and once {@link #resume()} is invoked the call is queued
+     * again and run from the start by any handler. Hence a call may only be
+     * parked before it has had any side effects.
+     * @return true if the call was parked; calls not received from a client
+     *         connection cannot be parked.
+     */
+    @InterfaceStability.Unstable
+    @InterfaceAudience.LimitedPrivate({"HDFS"})
+    public boolean park() {
+      if (!isParkable() || !parkState.compareAndSet(NOT_PARKED, PARKING)) {
+        return false;
+      }
+      deferResponse();
+      parkCount++;
+      return true;
+    }
+
+    /**
+     * Queue a parked call to be run again. May be invoked from any thread,
+     * including before the handler that parked the call has returned. Never
+     * blocks: if the call queue is full, the call fails with a
+     * {@link RetriableException} instead.
+     */
+    @InterfaceStability.Unstable
+    @InterfaceAudience.LimitedPrivate({"HDFS"})
+    public void resume() {
+      if (parkState.compareAndSet(PARKING, RESUMING)) {
+        return; // requeued by the handler once it returns, see parkComplete
+      }
+      if (parkState.compareAndSet(PARKED, NOT_PARKED)) {
+        requeue();
+      }
+    }
+
+    /**
+     * @return the last state id seen by the client, or {@link Long#MIN_VALUE}
+     *         if the client did not send one.
+     * @see AlignmentContext
+     */
+    @InterfaceStability.Unstable
+    @InterfaceAudience.LimitedPrivate({"HDFS"})
+    public long getClientStateId() {
+      return clientStateId;
+    }
+
+    void setClientStateId(long clientStateId) {
+      this.clientStateId = clientStateId;
+    }
+
+    /**
+     * @return the number of times the call has been parked.
+     */
+    @InterfaceStability.Unstable
+    @InterfaceAudience.LimitedPrivate({"HDFS"})
+    public int getParkCount() {
+      return parkCount;
+    }
+
+    /**
+     * @return true if the call was parked by the handler running it.
+     */
+    boolean isParking() {
+      final int state = parkState.get();
+      return state == PARKING || state == RESUMING;
+    }
+
+    /**
+     * Called once the handler that parked the call has returned from it,
+     * requeueing the call if it was resumed in the meantime.
+     */
+    void parkComplete() {
+      if (!parkState.compareAndSet(PARKING, PARKED) &&
+          parkState.compareAndSet(RESUMING, NOT_PARKED)) {
+        requeue();
+      }
+    }
+
+    boolean isParkable() {
+      return false;
+    }
+
+    /** Queue the call to be run again after it was parked. */
+    void requeue() {
+      deferredResponse = false;
+    }
   }
 
   /** A RPC extended call queued for handling. */
@@ -854,6 +953,32 @@ public InetAddress getHostInetAddress() {
       return connection.getHostInetAddress();
     }
 
+    @Override
+    boolean isParkable() {
+      return true;
+    }
+
+    @Override
+    void requeue() {
+      super.requeue();
+      if (!running) {
+        return;
+      }
+      // the resuming thread may be releasing a lock other handlers wait for,
+      // so never block it on a full queue. The call keeps its priority level.
+      boolean queued = false;
+      try {
+        queued = callQueue.offer(this);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if (!queued) {
+        rpcMetrics.incrClientBackoff();
+        setDeferredError(new RetriableException(
+            "Server is too busy to resume " + this));
+      }
+    }
+
     @Override
     public Void run() throws Exception {
       if (!connection.channel.isOpen()) {
@@ -874,6 +999,11 @@ public Void run() throws Exception {
             responseParams.detailedErr,
             value, responseParams.errorClass, responseParams.error);
         sendResponse();
+      } else if (isParking()) {
+        rpcMetrics.incrParkedCalls();
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Parked callId: " + this.callId);
+        }
       } else {
         if (LOG.isDebugEnabled()) {
           LOG.debug("Deferring response for callId: " + this.callId);
@@ -2470,6 +2600,11 @@ private void processRpcRequest(RpcRequestHeaderProto header,
           ProtoUtil.convert(header.getRpcKind()),
           header.getClientId().toByteArray(), traceScope, callerContext);
 
+      final AlignmentContext alignment = alignmentContext;
+      if (alignment != null) {
+        call.setClientStateId(alignment.receiveRequestState(header));
+      }
+
       // Save the priority level assignment by the scheduler
       call.setPriorityLevel(callQueue.getPriorityLevel(call));
 
@@ -2635,8 +2770,9 @@ public void run() {
       SERVER.set(Server.this);
       while (running) {
         TraceScope traceScope = null;
+        Call call = null;
         try {
-          final Call call = callQueue.take(); // pop the queue; maybe blocked here
+          call = callQueue.take(); // pop the queue; maybe blocked here
           if (LOG.isDebugEnabled()) {
             LOG.debug(Thread.currentThread().getName() + ": " + call + " for RpcKind " + call.rpcKind);
           }
@@ -2670,7 +2806,15 @@ public void run() {
           }
         } finally {
           CurCall.set(null);
-          IOUtils.cleanup(LOG, traceScope);
+          if (call != null && call.isParking()) {
+            // the call runs again once resumed, keep its trace scope open
+            if (traceScope != null) {
+              traceScope.detach();
+            }
+            call.parkComplete();
+          } else {
+            IOUtils.cleanup(LOG, traceScope);
+          }
         }
       }
       LOG.debug(Thread.currentThread().getName() + ": exiting");
@@ -2880,6 +3024,10 @@ private void setupResponse(
     headerBuilder.setRetryCount(call.retryCount);
     headerBuilder.setStatus(status);
     headerBuilder.setServerIpcVersionNum(CURRENT_VERSION);
+    final AlignmentContext alignment = alignmentContext;
+    if (alignment != null) {
+      alignment.updateResponseState(headerBuilder);
+    }
 
     if (status == RpcStatusProto.SUCCESS) {
       RpcResponseHeaderProto header = headerBuilder.build();
@@ -3031,6 +3179,16 @@ public void setTracer(Tracer t) {
     this.tracer = t;
   }
 
+  /**
+   * Set the alignment context exchanging state ids with the clients of this
+   * server, see {@link Call#getClientStateId()}.
+   */
+  @InterfaceStability.Unstable
+  @InterfaceAudience.LimitedPrivate({"HDFS"})
+  public void setAlignmentContext(AlignmentContext alignmentContext) {
+    this.alignmentContext = alignmentContext;
+  }
+
   /** Starts the service.  Must be called before any calls will be handled. */
   public synchronized void start() {
     responder.start();
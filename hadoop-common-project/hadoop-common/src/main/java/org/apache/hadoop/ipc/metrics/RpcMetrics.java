@@ -107,6 +107,8 @@ public static RpcMetrics create(Server server, Configuration conf) {
   MutableCounterLong rpcClientBackoff;
   @Metric("Number of Slow RPC calls")
   MutableCounterLong rpcSlowCalls;
+  @Metric("Number of times RPC calls were parked")
+  MutableCounterLong rpcParkedCalls;
 
   @Metric("Number of open connections") public int numOpenConnections() {
     return server.getNumOpenConnections();
@@ -233,6 +235,13 @@ public void incrClientBackoff() {
   public  void incrSlowRpc() {
     rpcSlowCalls.incr();
   }
+
+  /**
+   * Increments the parked RPC counter.
+   */
+  public void incrParkedCalls() {
+    rpcParkedCalls.incr();
+  }
   /**
    * Returns a MutableRate Counter.
    * @return Mutable Rate
@@ -273,6 +282,14 @@ public long getRpcSlowCalls() {
     return rpcSlowCalls.value();
   }
 
+  /**
+   * Returns the number of times calls were parked.
+   * @return long
+   */
+  public long getRpcParkedCalls() {
+    return rpcParkedCalls.value();
+  }
+
   public MutableRate getDeferredRpcProcessingTime() {
     return deferredRpcProcessingTime;
   }
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.util;
+
+import java.io.IOException;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * Arithmetic for combining the CRCs of consecutive pieces of data into the
+ * CRC of the concatenated data, without reading the data again.
+ *
+ * The CRCs are polynomials over GF(2) in the reflected ("little-endian")
+ * form used by {@link java.util.zip.CRC32} and {@link PureJavaCrc32C}: the
+ * most significant bit of an int is the coefficient of x^0. For CRC32 and
+ * CRC32C, whose initial value and final xor are both 0xFFFFFFFF,
+ * crc(A + B) = crc(A) * x^(8 * len(B)) mod P xor crc(B).
+ */
+@InterfaceAudience.LimitedPrivate({"Common", "HDFS", "MapReduce"})
+@InterfaceStability.Unstable
+public final class CrcUtil {
+  /** The polynomial 1, in the reflected form. */
+  public static final int MULTIPLICATIVE_IDENTITY = 0x80000000;
+  /** The reflected CRC32 polynomial, without the x^32 term. */
+  public static final int GZIP_POLYNOMIAL = 0xEDB88320;
+  /** The reflected CRC32C polynomial, without the x^32 term. */
+  public static final int CASTAGNOLI_POLYNOMIAL = 0x82F63B78;
+
+  private CrcUtil() {
+  }
+
+  /**
+   * @return the polynomial of the given checksum type.
+   * @throws IOException if the type is not a CRC.
+   */
+  public static int getCrcPolynomialForType(DataChecksum.Type type)
+      throws IOException {
+    switch (type) {
+    case CRC32:
+      return GZIP_POLYNOMIAL;
+    case CRC32C:
+      return CASTAGNOLI_POLYNOMIAL;
+    default:
+      throw new IOException(
+          "No CRC polynomial could be associated with type: " + type);
+    }
+  }
+
+  /**
+   * @return x^(8 * lengthBytes) mod the given polynomial, the monomial to
+   *     multiply the CRC of some data by before combining it with the CRC of
+   *     the lengthBytes bytes following the data.
+   */
+  public static int getMonomial(long lengthBytes, int mod) {
+    if (lengthBytes < 0) {
+      throw new IllegalArgumentException(
+          "lengthBytes must be non-negative, got " + lengthBytes);
+    }
+    // square-and-multiply, starting from x^8
+    int curSquare = MULTIPLICATIVE_IDENTITY >>> 8;
+    int product = MULTIPLICATIVE_IDENTITY;
+    while (lengthBytes > 0) {
+      if ((lengthBytes & 1) != 0) {
+        product = galoisFieldMultiply(product, curSquare, mod);
+      }
+      curSquare = galoisFieldMultiply(curSquare, curSquare, mod);
+      lengthBytes >>= 1;
+    }
+    return product;
+  }
+
+  /**
+   * @return the CRC of the concatenation of data A and data B, given their
+   *     CRCs and {@link #getMonomial} of the length of B.
+   */
+  public static int composeWithMonomial(int crcA, int crcB, int monomial,
+      int mod) {
+    return galoisFieldMultiply(crcA, monomial, mod) ^ crcB;
+  }
+
+  /**
+   * @return the CRC of the concatenation of data A and data B, given their
+   *     CRCs and the length of B.
+   */
+  public static int compose(int crcA, int crcB, long lengthB, int mod) {
+    return composeWithMonomial(crcA, crcB, getMonomial(lengthB, mod), mod);
+  }
+
+  /**
+   * @return p * q mod m, for polynomials in the reflected form.
+   */
+  public static int galoisFieldMultiply(int p, int q, int m) {
+    int summation = 0;
+    // the term of q being multiplied, from x^0 to x^31
+    int curTerm = MULTIPLICATIVE_IDENTITY;
+    // p * x^i mod m for the current term x^i
+    int px = p;
+    while (curTerm != 0) {
+      if ((q & curTerm) != 0) {
+        summation ^= px;
+      }
+      // multiply by x, reducing by m if the x^31 coefficient overflows
+      final boolean hasMaxDegree = (px & 1) != 0;
+      px >>>= 1;
+      if (hasMaxDegree) {
+        px ^= m;
+      }
+      curTerm >>>= 1;
+    }
+    return summation;
+  }
+
+  /** @return the 4 bytes of the value, most significant byte first. */
+  public static byte[] intToBytes(int value) {
+    final byte[] buf = new byte[4];
+    writeInt(buf, 0, value);
+    return buf;
+  }
+
+  /** Write the 4 bytes of the value at the offset, big-endian. */
+  public static void writeInt(byte[] buf, int offset, int value) {
+    if (offset < 0 || offset + 4 > buf.length) {
+      throw new ArrayIndexOutOfBoundsException("offset=" + offset
+          + ", buf.length=" + buf.length);
+    }
+    buf[offset] = (byte) (value >>> 24);
+    buf[offset + 1] = (byte) (value >>> 16);
+    buf[offset + 2] = (byte) (value >>> 8);
+    buf[offset + 3] = (byte) value;
+  }
+
+  /** @return the big-endian int at the offset. */
+  public static int readInt(byte[] buf, int offset) {
+    if (offset < 0 || offset + 4 > buf.length) {
+      throw new ArrayIndexOutOfBoundsException("offset=" + offset
+          + ", buf.length=" + buf.length);
+    }
+    return ((buf[offset] & 0xff) << 24)
+        | ((buf[offset + 1] & 0xff) << 16)
+        | ((buf[offset + 2] & 0xff) << 8)
+        | (buf[offset + 3] & 0xff);
+  }
+}
@@ -0,0 +1,236 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.fs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.VectoredReadUtils.CombinedFileRange;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests vectored reads and the utilities that implement them.
+ */
+public class TestVectoredReadUtils {
+  private static final File BASE =
+      GenericTestUtils.getTestDir("work-dir/vectored");
+  private static final int FILE_LEN = 300 * 1024;
+
+  private static final IntFunction<ByteBuffer> HEAP =
+      new IntFunction<ByteBuffer>() {
+        @Override
+        public ByteBuffer apply(int size) {
+          return ByteBuffer.allocate(size);
+        }
+      };
+  private static final IntFunction<ByteBuffer> DIRECT =
+      new IntFunction<ByteBuffer>() {
+        @Override
+        public ByteBuffer apply(int size) {
+          return ByteBuffer.allocateDirect(size);
+        }
+      };
+
+  private LocalFileSystem fs;
+  private Path file;
+  private byte[] data;
+
+  @Before
+  public void setUp() throws Exception {
+    fs = FileSystem.getLocal(new Configuration());
+    file = new Path(BASE.getAbsolutePath(), "file");
+    data = new byte[FILE_LEN];
+    for (int i = 0; i < FILE_LEN; i++) {
+      data[i] = (byte) (i * 31 + i / 1024);
+    }
+    try (FSDataOutputStream out = fs.create(file, true)) {
+      out.write(data);
+    }
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    fs.delete(new Path(BASE.getAbsolutePath()), true);
+  }
+
+  private static List<FileRange> ranges(long... offsetsAndLengths) {
+    FileRange[] ranges = new FileRange[offsetsAndLengths.length / 2];
+    for (int i = 0; i < ranges.length; i++) {
+      ranges[i] = new FileRange(offsetsAndLengths[2 * i],
+          (int) offsetsAndLengths[2 * i + 1]);
+    }
+    return Arrays.asList(ranges);
+  }
+
+  @Test
+  public void testMergeSortedRanges() throws Exception {
+    List<FileRange> sorted = VectoredReadUtils.sortRanges(
+        ranges(5000, 100, 0, 100, 200, 100, 20000, 10, 4300, 1000));
+    assertEquals(0, sorted.get(0).getOffset());
+    assertEquals(20000, sorted.get(4).getOffset());
+
+    List<CombinedFileRange> combined =
+        VectoredReadUtils.mergeSortedRanges(sorted, 4096, 100000);
+    // [0,100) and [200,300) are merged with the overlapping [4300,5300)
+    // and [5000,5100), as the gaps are within the one allowed
+    assertEquals(2, combined.size());
+    assertEquals(0, combined.get(0).getOffset());
+    assertEquals(5300, combined.get(0).getLength());
+    assertEquals(4, combined.get(0).getRanges().size());
+    assertEquals(20000, combined.get(1).getOffset());
+    assertEquals(10, combined.get(1).getLength());
+
+    // no gaps allowed, and at most 1000 bytes per read: only the overlapping
+    // ranges are merged
+    combined = VectoredReadUtils.mergeSortedRanges(sorted, 0, 1000);
+    assertEquals(4, combined.size());
+    combined = VectoredReadUtils.mergeSortedRanges(sorted, 100, 1000);
+    assertEquals(3, combined.size());
+    assertEquals(300, combined.get(0).getLength());
+  }
+
+  @Test
+  public void testNegativeOffset() throws Exception {
+    try {
+      VectoredReadUtils.sortRanges(ranges(0, 10, -1, 10));
+      fail("a negative offset should be rejected");
+    } catch (EOFException e) {
+      GenericTestUtils.assertExceptionContains("negative", e);
+    }
+  }
+
+  @Test
+  public void testSliceTo() {
+    ByteBuffer buffer = ByteBuffer.wrap(data, 0, 1000);
+    ByteBuffer slice = VectoredReadUtils.sliceTo(buffer, 500,
+        new FileRange(600, 50));
+    assertEquals(0, slice.position());
+    assertEquals(50, slice.remaining());
+    assertEquals(data[100], slice.get(0));
+    assertEquals(data[149], slice.get(49));
+  }
+
+  @Test
+  public void testCompleteShortData() throws Exception {
+    List<FileRange> ranges = ranges(0, 100, 100, 100, 200, 100);
+    CombinedFileRange combined = VectoredReadUtils.prepareRanges(
+        ranges, 0, 1000).get(0);
+    assertEquals(300, combined.getLength());
+    // the read reached the end of the file in the middle of the last range
+    combined.complete(ByteBuffer.wrap(data, 0, 250));
+    verify(ranges.subList(0, 2));
+    assertEOF(ranges.get(2));
+  }
+
+  private static void assertEOF(FileRange range) throws Exception {
+    try {
+      range.getData().get(10, TimeUnit.SECONDS);
+      fail("reading " + range + " past the end of the file should fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof EOFException);
+    }
+  }
+
+  private void verify(List<FileRange> ranges) throws Exception {
+    for (FileRange range : ranges) {
+      ByteBuffer buffer = range.getData().get(10, TimeUnit.SECONDS);
+      assertEquals(range.getLength(), buffer.remaining());
+      byte[] bytes = new byte[range.getLength()];
+      buffer.get(bytes);
+      assertArrayEquals("data of " + range,
+          Arrays.copyOfRange(data, (int) range.getOffset(),
+              (int) range.getEnd()), bytes);
+    }
+  }
+
+  private List<FileRange> testRanges() {
+    return ranges(100 * 1024, 4000, 0, 100, 200, 1000, 150 * 1024, 1,
+        2 * 1024 * 1024 / 8, 40 * 1024, FILE_LEN - 10, 10, 101 * 1024, 100);
+  }
+
+  private void testReadVectored(FileSystem fileSystem) throws Exception {
+    for (IntFunction<ByteBuffer> allocate : Arrays.asList(HEAP, DIRECT)) {
+      List<FileRange> ranges = testRanges();
+      try (FSDataInputStream in = fileSystem.open(file)) {
+        in.seek(1234);
+        in.readVectored(ranges, allocate);
+        verify(ranges);
+        // the position of the stream does not change
+        assertEquals(1234, in.getPos());
+      }
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testRawLocalFileSystem() throws Exception {
+    assertTrue(((FSDataInputStream) fs.getRawFileSystem().open(file))
+        .getWrappedStream() instanceof VectoredReadable);
+    testReadVectored(fs.getRawFileSystem());
+  }
+
+  @Test(timeout = 30000)
+  public void testChecksumFileSystem() throws Exception {
+    testReadVectored(fs);
+  }
+
+  @Test(timeout = 30000)
+  public void testReadPastEOF() throws Exception {
+    for (FileSystem fileSystem : Arrays.asList(fs, fs.getRawFileSystem())) {
+      List<FileRange> ranges = ranges(0, 100, FILE_LEN - 10, 100);
+      try (FSDataInputStream in = fileSystem.open(file)) {
+        in.readVectored(ranges, HEAP);
+        verify(ranges.subList(0, 1));
+        assertEOF(ranges.get(1));
+      }
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testReadAdjacentRangesPastEOF() throws Exception {
+    for (FileSystem fileSystem : Arrays.asList(fs, fs.getRawFileSystem())) {
+      for (IntFunction<ByteBuffer> allocate : Arrays.asList(HEAP, DIRECT)) {
+        // merged into one read, of which only the last two ranges are not
+        // within the file
+        List<FileRange> ranges = ranges(FILE_LEN - 300, 100,
+            FILE_LEN - 200, 100, FILE_LEN - 100, 100, FILE_LEN - 50, 100,
+            FILE_LEN + 10, 10);
+        try (FSDataInputStream in = fileSystem.open(file)) {
+          in.readVectored(ranges, allocate);
+          verify(ranges.subList(0, 3));
+          assertEOF(ranges.get(3));
+          assertEOF(ranges.get(4));
+        }
+      }
+    }
+  }
+}
@@ -62,13 +62,15 @@ private RawErasureCoderBenchmark() {
           Arrays.asList(new DummyRawErasureCoderFactory(),
               new RSRawErasureCoderFactoryLegacy(),
               new RSRawErasureCoderFactory(),
-              new NativeRSRawErasureCoderFactory()));
+              new NativeRSRawErasureCoderFactory(),
+              new SegmentedRSRawErasureCoderFactory()));
 
   enum CODER {
     DUMMY_CODER("Dummy coder"),
     LEGACY_RS_CODER("Legacy Reed-Solomon Java coder"),
     RS_CODER("Reed-Solomon Java coder"),
-    ISAL_CODER("ISA-L coder");
+    ISAL_CODER("ISA-L coder"),
+    SEGMENTED_RS_CODER("Segmented Reed-Solomon Java coder");
 
     private final String name;
 
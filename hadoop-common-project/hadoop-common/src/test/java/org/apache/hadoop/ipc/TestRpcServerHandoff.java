@@ -21,24 +21,32 @@
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.Random;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.net.NetUtils;
+import org.apache.hadoop.test.GenericTestUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.google.common.base.Supplier;
+
 public class TestRpcServerHandoff {
 
   public static final Log LOG =
@@ -97,6 +105,169 @@ void sendError() {
     }
   }
 
+  /**
+   * Parks every call the given number of times before answering it.
+   */
+  public static class ServerForParkTest extends Server {
+    private final int parkTimes;
+    private final boolean resumeWhileRunning;
+    private final BlockingQueue<Call> parked = new LinkedBlockingQueue<>();
+
+    protected ServerForParkTest(int handlerCount, int parkTimes,
+        boolean resumeWhileRunning) throws IOException {
+      super(BIND_ADDRESS, 0, BytesWritable.class, handlerCount, conf);
+      this.parkTimes = parkTimes;
+      this.resumeWhileRunning = resumeWhileRunning;
+    }
+
+    @Override
+    public Writable call(RPC.RpcKind rpcKind, String protocol, Writable param,
+                         long receiveTime) throws Exception {
+      Call call = Server.getCurCall().get();
+      if (call.getParkCount() < parkTimes) {
+        Assert.assertTrue(call.park());
+        if (resumeWhileRunning) {
+          // the handler has not returned yet, it requeues the call itself
+          call.resume();
+        } else {
+          parked.put(call);
+        }
+        return null;
+      }
+      return param;
+    }
+  }
+
+  /**
+   * Parks the first call, blocks the handler on the second and echoes the
+   * others, to fill the call queue behind a parked call.
+   */
+  public static class ServerForFullQueueTest extends Server {
+    private final BlockingQueue<Call> parked = new LinkedBlockingQueue<>();
+    private final CountDownLatch blocking = new CountDownLatch(1);
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private final AtomicInteger calls = new AtomicInteger();
+
+    protected ServerForFullQueueTest(Configuration conf) throws IOException {
+      super(BIND_ADDRESS, 0, BytesWritable.class, 1, conf);
+    }
+
+    @Override
+    public Writable call(RPC.RpcKind rpcKind, String protocol, Writable param,
+                         long receiveTime) throws Exception {
+      Call call = Server.getCurCall().get();
+      int n = calls.getAndIncrement();
+      if (n == 0) {
+        Assert.assertTrue(call.park());
+        parked.put(call);
+        return null;
+      } else if (n == 1) {
+        blocking.countDown();
+        unblock.await();
+      }
+      return param;
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testParkedCallsDoNotPinHandler() throws Exception {
+    ServerForParkTest server = new ServerForParkTest(1, 1, false);
+    server.start();
+    try {
+      InetSocketAddress serverAddress = NetUtils.getConnectAddress(server);
+      byte[] request1 = generateRandomBytes(1024);
+      byte[] request2 = generateRandomBytes(1024);
+      FutureTask<Writable> future1 = new FutureTask<Writable>(
+          new ClientCallable(serverAddress, conf, request1));
+      FutureTask<Writable> future2 = new FutureTask<Writable>(
+          new ClientCallable(serverAddress, conf, request2));
+      new Thread(future1).start();
+      new Thread(future2).start();
+
+      // the single handler runs both calls while the first one is parked
+      Server.Call parked1 = server.parked.take();
+      Server.Call parked2 = server.parked.take();
+      Assert.assertFalse(future1.isDone());
+      Assert.assertFalse(future2.isDone());
+
+      parked1.resume();
+      parked2.resume();
+      Assert.assertEquals(new BytesWritable(request1), future1.get());
+      Assert.assertEquals(new BytesWritable(request2), future2.get());
+      Assert.assertEquals(2, server.getRpcMetrics().getRpcParkedCalls());
+    } finally {
+      server.stop();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testResumeBeforeHandlerReturns() throws Exception {
+    ServerForParkTest server = new ServerForParkTest(2, 3, true);
+    server.start();
+    try {
+      InetSocketAddress serverAddress = NetUtils.getConnectAddress(server);
+      byte[] requestBytes = generateRandomBytes(1024);
+      Writable response =
+          new ClientCallable(serverAddress, conf, requestBytes).call();
+      Assert.assertEquals(new BytesWritable(requestBytes), response);
+      Assert.assertEquals(3, server.getRpcMetrics().getRpcParkedCalls());
+    } finally {
+      server.stop();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testResumeWithFullQueue() throws Exception {
+    Configuration queueConf = new Configuration(conf);
+    queueConf.setInt(
+        CommonConfigurationKeys.IPC_SERVER_HANDLER_QUEUE_SIZE_KEY, 1);
+    final ServerForFullQueueTest server =
+        new ServerForFullQueueTest(queueConf);
+    server.start();
+    try {
+      InetSocketAddress serverAddress = NetUtils.getConnectAddress(server);
+      byte[] request1 = generateRandomBytes(1024);
+      byte[] request2 = generateRandomBytes(1024);
+      byte[] request3 = generateRandomBytes(1024);
+      FutureTask<Writable> future1 = new FutureTask<Writable>(
+          new ClientCallable(serverAddress, conf, request1));
+      new Thread(future1).start();
+      Server.Call parked = server.parked.take();
+
+      // block the only handler and fill the queue behind it
+      FutureTask<Writable> future2 = new FutureTask<Writable>(
+          new ClientCallable(serverAddress, conf, request2));
+      new Thread(future2).start();
+      server.blocking.await();
+      FutureTask<Writable> future3 = new FutureTask<Writable>(
+          new ClientCallable(serverAddress, conf, request3));
+      new Thread(future3).start();
+      GenericTestUtils.waitFor(new Supplier<Boolean>() {
+        @Override
+        public Boolean get() {
+          return server.getCallQueueLen() == 1;
+        }
+      }, 10, 5000);
+
+      // resuming does not block, the parked call fails to be retried instead
+      parked.resume();
+      try {
+        future1.get();
+        Assert.fail("Call succeeded. Was expecting an exception");
+      } catch (ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof RemoteException);
+        Assert.assertEquals(RetriableException.class.getName(),
+            ((RemoteException) e.getCause()).getClassName());
+      }
+
+      server.unblock.countDown();
+      Assert.assertEquals(new BytesWritable(request2), future2.get());
+      Assert.assertEquals(new BytesWritable(request3), future3.get());
+    } finally {
+      server.stop();
+    }
+  }
+
   @Test(timeout = 10000)
   public void testDeferredResponse() throws IOException, InterruptedException,
       ExecutionException {
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import org.junit.Test;
+
+/**
+ * Unit test to verify that the CRCs composed by {@link CrcUtil} are the
+ * CRCs of the concatenated data.
+ */
+public class TestCrcUtil {
+  private final Random rand = new Random(1234);
+
+  private static int crcOf(Checksum sum, byte[] data, int off, int len) {
+    sum.reset();
+    sum.update(data, off, len);
+    return (int) sum.getValue();
+  }
+
+  private void checkCompose(Checksum sum, int mod, int length, int chunk) {
+    final byte[] data = new byte[length];
+    rand.nextBytes(data);
+    final int expected = crcOf(sum, data, 0, length);
+
+    // compose chunk by chunk, the last chunk possibly partial
+    int composed = crcOf(sum, data, 0, Math.min(chunk, length));
+    final int monomial = CrcUtil.getMonomial(chunk, mod);
+    for (int off = chunk; off < length; off += chunk) {
+      final int len = Math.min(chunk, length - off);
+      final int crc = crcOf(sum, data, off, len);
+      composed = len == chunk
+          ? CrcUtil.composeWithMonomial(composed, crc, monomial, mod)
+          : CrcUtil.compose(composed, crc, len, mod);
+    }
+    assertEquals("length=" + length + ", chunk=" + chunk,
+        expected, composed);
+  }
+
+  @Test
+  public void testComposeCrc32() {
+    for (int chunk : new int[] {1, 3, 512, 1000}) {
+      checkCompose(new CRC32(), CrcUtil.GZIP_POLYNOMIAL, 4096 + 17, chunk);
+    }
+  }
+
+  @Test
+  public void testComposeCrc32c() {
+    for (int chunk : new int[] {1, 3, 512, 1000}) {
+      checkCompose(new PureJavaCrc32C(), CrcUtil.CASTAGNOLI_POLYNOMIAL,
+          4096 + 17, chunk);
+    }
+  }
+
+  @Test
+  public void testComposeEmpty() {
+    final int mod = CrcUtil.CASTAGNOLI_POLYNOMIAL;
+    assertEquals(CrcUtil.MULTIPLICATIVE_IDENTITY, CrcUtil.getMonomial(0, mod));
+    final int crc = rand.nextInt();
+    // composing with the CRC of no data, which is 0, changes nothing
+    assertEquals(crc, CrcUtil.compose(crc, 0, 0, mod));
+    assertEquals(crc, CrcUtil.compose(0, crc, 100, mod));
+  }
+
+  @Test
+  public void testMultiply() {
+    final int mod = CrcUtil.GZIP_POLYNOMIAL;
+    final int p = rand.nextInt();
+    final int q = rand.nextInt();
+    assertEquals(p, CrcUtil.galoisFieldMultiply(p,
+        CrcUtil.MULTIPLICATIVE_IDENTITY, mod));
+    assertEquals(CrcUtil.galoisFieldMultiply(p, q, mod),
+        CrcUtil.galoisFieldMultiply(q, p, mod));
+    // x^8 * x^8 = x^16 = the monomial of two bytes
+    final int x8 = CrcUtil.getMonomial(1, mod);
+    assertEquals(CrcUtil.getMonomial(2, mod),
+        CrcUtil.galoisFieldMultiply(x8, x8, mod));
+  }
+
+  @Test
+  public void testIntToBytes() {
+    final int value = 0x12fe34dc;
+    final byte[] buf = CrcUtil.intToBytes(value);
+    assertEquals((byte) 0x12, buf[0]);
+    assertEquals((byte) 0xdc, buf[3]);
+    assertEquals(value, CrcUtil.readInt(buf, 0));
+  }
+}
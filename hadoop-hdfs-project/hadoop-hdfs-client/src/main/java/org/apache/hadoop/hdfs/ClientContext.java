@@ -34,6 +34,7 @@
 import org.apache.hadoop.hdfs.shortcircuit.DomainSocketFactory;
 import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitCache;
 import org.apache.hadoop.hdfs.util.ByteArrayManager;
+import org.apache.hadoop.hdfs.util.PacketBufferPool;
 import org.apache.hadoop.net.DNSToSwitchMapping;
 import org.apache.hadoop.net.NetUtils;
 import org.apache.hadoop.net.NetworkTopology;
@@ -108,6 +109,9 @@ public class ClientContext {
   /** Creating byte[] for {@link DFSOutputStream}. */
   private final ByteArrayManager byteArrayManager;
 
+  /** Latencies of reads from DataNodes, for adaptive hedged reads. */
+  private final DataNodeLatencyTracker dataNodeLatencyTracker;
+
   /**
    * Whether or not we complained about a DFSClient fetching a CacheContext that
    * didn't match its config values yet.
@@ -131,8 +135,17 @@ private ClientContext(String name, DfsClientConf conf,
     this.useLegacyBlockReaderLocal = scConf.isUseLegacyBlockReaderLocal();
     this.domainSocketFactory = new DomainSocketFactory(scConf);
 
-    this.byteArrayManager = ByteArrayManager.newInstance(
-        conf.getWriteByteArrayManagerConf());
+    if (conf.getWritePacketPoolMaxBytes() > 0) {
+      this.byteArrayManager = ByteArrayManager.newInstance(
+          new PacketBufferPool(conf.getWritePacketPoolMaxBytes()));
+    } else {
+      this.byteArrayManager = ByteArrayManager.newInstance(
+          conf.getWriteByteArrayManagerConf());
+    }
+    this.dataNodeLatencyTracker = new DataNodeLatencyTracker(
+        conf.getHedgedReadAdaptivePercentile(),
+        conf.getHedgedReadAdaptiveMinThresholdMillis(),
+        conf.getHedgedReadSlowNodeFactor());
     initTopologyResolution(config);
   }
 
@@ -238,6 +251,10 @@ public ByteArrayManager getByteArrayManager() {
     return byteArrayManager;
   }
 
+  public DataNodeLatencyTracker getDataNodeLatencyTracker() {
+    return dataNodeLatencyTracker;
+  }
+
   public int getNetworkDistance(DatanodeInfo datanodeInfo) {
     // If applications disable the feature or the client machine can't
     // resolve its network location, clientNode will be set to null.
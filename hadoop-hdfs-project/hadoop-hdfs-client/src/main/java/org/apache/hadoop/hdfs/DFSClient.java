@@ -70,6 +70,7 @@
 import org.apache.hadoop.fs.ContentSummary;
 import org.apache.hadoop.fs.CreateFlag;
 import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.FileChecksum;
 import org.apache.hadoop.fs.FileEncryptionInfo;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.FsServerDefaults;
@@ -79,6 +80,7 @@
 import org.apache.hadoop.fs.InvalidPathException;
 import org.apache.hadoop.fs.MD5MD5CRC32FileChecksum;
 import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Options.ChecksumCombineMode;
 import org.apache.hadoop.fs.Options.ChecksumOpt;
 import org.apache.hadoop.fs.ParentNotDirectoryException;
 import org.apache.hadoop.fs.Path;
@@ -130,6 +132,7 @@
 import org.apache.hadoop.hdfs.protocol.RollingUpgradeInfo;
 import org.apache.hadoop.hdfs.protocol.SnapshotAccessControlException;
 import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReportListing;
 import org.apache.hadoop.hdfs.protocol.SnapshottableDirectoryStatus;
 import org.apache.hadoop.hdfs.protocol.UnresolvedPathException;
 import org.apache.hadoop.hdfs.protocol.datatransfer.DataTransferProtoUtil;
@@ -227,6 +230,8 @@ public class DFSClient implements java.io.Closeable, RemotePeerFactory,
       new DFSHedgedReadMetrics();
   private static ThreadPoolExecutor HEDGED_READ_THREAD_POOL;
   private static volatile ThreadPoolExecutor STRIPED_READ_THREAD_POOL;
+  private static volatile ThreadPoolExecutor VECTORED_READ_THREAD_POOL;
+  private static volatile ThreadPoolExecutor FILE_CHECKSUM_THREAD_POOL;
   private final int smallBufferSize;
 
   public DfsClientConf getConf() {
@@ -367,6 +372,14 @@ public DFSClient(URI nameNodeUri, ClientProtocol rpcNamenode,
 
     this.initThreadsNumForStripedReads(dfsClientConf.
         getStripedReadThreadpoolSize());
+    if (dfsClientConf.getVectoredReadThreadpoolSize() > 0) {
+      this.initThreadsNumForVectoredReads(dfsClientConf.
+          getVectoredReadThreadpoolSize());
+    }
+    if (dfsClientConf.getFileChecksumThreadpoolSize() > 0) {
+      this.initThreadsNumForFileChecksums(dfsClientConf.
+          getFileChecksumThreadpoolSize());
+    }
     this.saslClient = new SaslDataTransferClient(
         conf, DataTransferSaslUtil.getSaslPropertiesResolver(conf),
         TrustedChannelResolver.getInstance(conf), nnFallbackToSimpleAuth);
@@ -1723,11 +1736,36 @@ public DataEncryptionKey getEncryptionKey() {
    * files of different block layout forms.
    * @param src The file path
    * @param length the length of the range, i.e., the range is [0, length]
+   * @return The MD5 of MD5 of CRC32 checksum
+   * @see #getFileChecksumWithCombineMode(String, long)
+   */
+  public MD5MD5CRC32FileChecksum getFileChecksum(String src, long length)
+      throws IOException {
+    return (MD5MD5CRC32FileChecksum) getFileChecksumInternal(src, length,
+        ChecksumCombineMode.MD5MD5CRC);
+  }
+
+  /**
+   * Get the checksum of the whole file or a range of the file, combining the
+   * block checksums in the mode configured by
+   * {@link HdfsClientConfigKeys#DFS_CHECKSUM_COMBINE_MODE_KEY}. In
+   * {@link ChecksumCombineMode#COMPOSITE_CRC} mode, the checksum only depends
+   * on the data and the checksum type of the file, so the checksums of files
+   * with different block sizes or bytes per checksum can be compared.
+   * Composite CRC checksums are not supported for striped files.
+   * @param src The file path
+   * @param length the length of the range, i.e., the range is [0, length]
    * @return The checksum
    * @see DistributedFileSystem#getFileChecksum(Path)
    */
-  public MD5MD5CRC32FileChecksum getFileChecksum(String src, long length)
+  public FileChecksum getFileChecksumWithCombineMode(String src, long length)
       throws IOException {
+    return getFileChecksumInternal(src, length,
+        dfsClientConf.getChecksumCombineMode());
+  }
+
+  private FileChecksum getFileChecksumInternal(String src, long length,
+      ChecksumCombineMode combineMode) throws IOException {
     checkOpen();
     Preconditions.checkArgument(length >= 0);
 
@@ -1737,9 +1775,9 @@ public MD5MD5CRC32FileChecksum getFileChecksum(String src, long length)
     ErasureCodingPolicy ecPolicy = blockLocations.getErasureCodingPolicy();
     maker = ecPolicy != null ?
         new FileChecksumHelper.StripedFileNonStripedChecksumComputer(src,
-            length, blockLocations, namenode, this, ecPolicy) :
+            length, blockLocations, namenode, this, ecPolicy, combineMode) :
         new FileChecksumHelper.ReplicatedFileChecksumComputer(src, length,
-            blockLocations, namenode, this);
+            blockLocations, namenode, this, combineMode);
 
     maker.compute();
 
@@ -2091,6 +2129,24 @@ public SnapshotDiffReport getSnapshotDiffReport(String snapshotDir,
     }
   }
 
+  /**
+   * Get a page of the difference between two snapshots, or between a
+   * snapshot and the current tree of a directory.
+   * @see ClientProtocol#getSnapshotDiffReportListing
+   */
+  public SnapshotDiffReportListing getSnapshotDiffReportListing(
+      String snapshotDir, String fromSnapshot, String toSnapshot,
+      byte[] startPath, int index) throws IOException {
+    checkOpen();
+    try (TraceScope ignored =
+        tracer.newScope("getSnapshotDiffReportListing")) {
+      return namenode.getSnapshotDiffReportListing(snapshotDir,
+          fromSnapshot, toSnapshot, startPath, index);
+    } catch (RemoteException re) {
+      throw re.unwrapRemoteException();
+    }
+  }
+
   public long addCacheDirective(
       CacheDirectiveInfo info, EnumSet<CacheFlag> flags) throws IOException {
     checkOpen();
@@ -2816,6 +2872,44 @@ private void initThreadsNumForStripedReads(int numThreads) {
     }
   }
 
+  /**
+   * Create thread pool for reading the ranges of vectored reads in parallel,
+   * VECTORED_READ_THREAD_POOL, if it does not already exist.
+   * @param numThreads Number of threads for vectored reads thread pool.
+   */
+  private void initThreadsNumForVectoredReads(int numThreads) {
+    assert numThreads > 0;
+    if (VECTORED_READ_THREAD_POOL != null) {
+      return;
+    }
+    synchronized (DFSClient.class) {
+      if (VECTORED_READ_THREAD_POOL == null) {
+        VECTORED_READ_THREAD_POOL = DFSUtilClient.getThreadPoolExecutor(1,
+            numThreads, 60, "VectoredRead-", true);
+        VECTORED_READ_THREAD_POOL.allowCoreThreadTimeOut(true);
+      }
+    }
+  }
+
+  /**
+   * Create thread pool for requesting the block checksums of a file in
+   * parallel, FILE_CHECKSUM_THREAD_POOL, if it does not already exist.
+   * @param numThreads Number of threads for file checksum thread pool.
+   */
+  private void initThreadsNumForFileChecksums(int numThreads) {
+    assert numThreads > 0;
+    if (FILE_CHECKSUM_THREAD_POOL != null) {
+      return;
+    }
+    synchronized (DFSClient.class) {
+      if (FILE_CHECKSUM_THREAD_POOL == null) {
+        FILE_CHECKSUM_THREAD_POOL = DFSUtilClient.getThreadPoolExecutor(1,
+            numThreads, 60, "FileChecksum-", true);
+        FILE_CHECKSUM_THREAD_POOL.allowCoreThreadTimeOut(true);
+      }
+    }
+  }
+
   ThreadPoolExecutor getHedgedReadsThreadPool() {
     return HEDGED_READ_THREAD_POOL;
   }
@@ -2824,6 +2918,24 @@ ThreadPoolExecutor getStripedReadsThreadPool() {
     return STRIPED_READ_THREAD_POOL;
   }
 
+  /**
+   * @return the vectored reads thread pool, or null if vectored reads
+   *         read their ranges in the calling thread
+   */
+  ThreadPoolExecutor getVectoredReadsThreadPool() {
+    return dfsClientConf.getVectoredReadThreadpoolSize() > 0 ?
+        VECTORED_READ_THREAD_POOL : null;
+  }
+
+  /**
+   * @return the file checksum thread pool, or null if the block checksums
+   *         of a file are requested in the calling thread
+   */
+  ThreadPoolExecutor getFileChecksumThreadPool() {
+    return dfsClientConf.getFileChecksumThreadpoolSize() > 0 ?
+        FILE_CHECKSUM_THREAD_POOL : null;
+  }
+
   boolean isHedgedReadsEnabled() {
     return (HEDGED_READ_THREAD_POOL != null) &&
         HEDGED_READ_THREAD_POOL.getMaximumPoolSize() > 0;
@@ -41,8 +41,10 @@
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.classification.InterfaceAudience;
@@ -54,9 +56,12 @@
 import org.apache.hadoop.fs.ChecksumException;
 import org.apache.hadoop.fs.FSInputStream;
 import org.apache.hadoop.fs.FileEncryptionInfo;
+import org.apache.hadoop.fs.FileRange;
 import org.apache.hadoop.fs.HasEnhancedByteBufferAccess;
 import org.apache.hadoop.fs.ReadOption;
 import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.fs.VectoredReadUtils;
+import org.apache.hadoop.fs.VectoredReadable;
 import org.apache.hadoop.hdfs.DFSUtilClient.CorruptedBlocks;
 import org.apache.hadoop.hdfs.client.impl.BlockReaderFactory;
 import org.apache.hadoop.hdfs.client.impl.DfsClientConf;
@@ -96,7 +101,7 @@
 @InterfaceAudience.Private
 public class DFSInputStream extends FSInputStream
     implements ByteBufferReadable, CanSetDropBehind, CanSetReadahead,
-    HasEnhancedByteBufferAccess, CanUnbuffer {
+    HasEnhancedByteBufferAccess, CanUnbuffer, VectoredReadable {
   @VisibleForTesting
   public static boolean tcpReadsDisabledForTesting = false;
   private long hedgedReadOpsLoopNumForTesting = 0;
@@ -166,6 +171,9 @@ public class DFSInputStream extends FSInputStream
 
   private byte[] oneByteBuf; // used for 'int read()'
 
+  /** Null unless adaptive hedged reads are enabled. */
+  private final DataNodeLatencyTracker latencyTracker;
+
   void addToDeadNodes(DatanodeInfo dnInfo) {
     deadNodes.put(dnInfo, dnInfo);
   }
@@ -175,6 +183,8 @@ void addToDeadNodes(DatanodeInfo dnInfo) {
     this.dfsClient = dfsClient;
     this.verifyChecksum = verifyChecksum;
     this.src = src;
+    this.latencyTracker = dfsClient.getConf().isHedgedReadAdaptive() ?
+        dfsClient.getClientContext().getDataNodeLatencyTracker() : null;
     synchronized (infoLock) {
       this.cachingStrategy = dfsClient.getDefaultReadCachingStrategy();
     }
@@ -893,6 +903,8 @@ private DNAddrPair chooseDataNode(LocatedBlock block,
 
   /**
    * Get the best node from which to stream the data.
+   * With adaptive hedged reads, nodes that are much slower than the others
+   * are only chosen if no other node is left.
    * @param block LocatedBlock, containing nodes in priority order.
    * @param ignoredNodes Do not choose nodes in this array (may be null)
    * @return The DNAddrPair of the best node. Null if no node can be chosen.
@@ -903,10 +915,17 @@ protected DNAddrPair getBestNodeDNAddrPair(LocatedBlock block,
     StorageType[] storageTypes = block.getStorageTypes();
     DatanodeInfo chosenNode = null;
     StorageType storageType = null;
+    int slowNode = -1;
     if (nodes != null) {
       for (int i = 0; i < nodes.length; i++) {
         if (!deadNodes.containsKey(nodes[i])
             && (ignoredNodes == null || !ignoredNodes.contains(nodes[i]))) {
+          if (latencyTracker != null && latencyTracker.isSlow(nodes[i])) {
+            if (slowNode < 0) {
+              slowNode = i;
+            }
+            continue;
+          }
           chosenNode = nodes[i];
           // Storage types are ordered to correspond with nodes, so use the same
           // index to get storage type.
@@ -916,6 +935,15 @@ protected DNAddrPair getBestNodeDNAddrPair(LocatedBlock block,
           break;
         }
       }
+      if (chosenNode == null && slowNode >= 0) {
+        chosenNode = nodes[slowNode];
+        if (storageTypes != null && slowNode < storageTypes.length) {
+          storageType = storageTypes[slowNode];
+        }
+      } else if (slowNode >= 0) {
+        DFSClient.LOG.debug("Skipping slow datanode {} for {}",
+            nodes[slowNode], block.getBlock());
+      }
     }
     if (chosenNode == null) {
       reportLostBlock(block, ignoredNodes);
@@ -1027,6 +1055,7 @@ void actualGetFromOneDataNode(final DNAddrPair datanode, LocatedBlock block,
       // start of the loop.
       block = refreshLocatedBlock(block);
       BlockReader reader = null;
+      final long startNanos = System.nanoTime();
       try {
         DFSClientFaultInjector.get().fetchFromDatanodeException();
         reader = getBlockReader(block, startInBlk, len, datanode.addr,
@@ -1055,6 +1084,10 @@ void actualGetFromOneDataNode(final DNAddrPair datanode, LocatedBlock block,
               "excpected " + len + ", got " + nread);
         }
         DFSClientFaultInjector.get().readFromDatanodeDelay();
+        if (latencyTracker != null) {
+          latencyTracker.addLatency(datanode.info,
+              (System.nanoTime() - startNanos) / 1000);
+        }
         return;
       } catch (ChecksumException e) {
         String msg = "fetchBlockByteRange(). Got a checksum exception for "
@@ -1140,9 +1173,13 @@ private void hedgedFetchBlockByteRange(LocatedBlock block, long start,
         Future<ByteBuffer> firstRequest = hedgedService
             .submit(getFromDataNodeCallable);
         futures.add(firstRequest);
+        final long thresholdMillis = latencyTracker == null ?
+            conf.getHedgedReadThresholdMillis() :
+            latencyTracker.getHedgeThresholdMillis(
+                conf.getHedgedReadThresholdMillis());
         try {
           Future<ByteBuffer> future = hedgedService.poll(
-              conf.getHedgedReadThresholdMillis(), TimeUnit.MILLISECONDS);
+              thresholdMillis, TimeUnit.MILLISECONDS);
           if (future != null) {
             ByteBuffer result = future.get();
             result.flip();
@@ -1150,7 +1187,7 @@ private void hedgedFetchBlockByteRange(LocatedBlock block, long start,
             return;
           }
           DFSClient.LOG.debug("Waited {}ms to read from {}; spawning hedged "
-              + "read", conf.getHedgedReadThresholdMillis(), chosenNode.info);
+              + "read", thresholdMillis, chosenNode.info);
           // Ignore this node on next go around.
           ignored.add(chosenNode.info);
           dfsClient.getHedgedReadMetrics().incHedgedReadOps();
@@ -1349,6 +1386,29 @@ private int pread(long position, ByteBuffer buffer)
     return realLen;
   }
 
+  /**
+   * Read several ranges of the file. Nearby ranges are merged, and each
+   * merged range is read with a pread on the vectored read thread pool, so
+   * the ranges are fetched in parallel from the DataNodes holding them.
+   * Without the thread pool, the ranges are read in the calling thread.
+   */
+  @Override
+  public void readVectored(List<? extends FileRange> ranges,
+      IntFunction<ByteBuffer> allocate) throws IOException {
+    dfsClient.checkOpen();
+    if (closed.get()) {
+      throw new IOException("Stream closed");
+    }
+    ThreadPoolExecutor pool = dfsClient.getVectoredReadsThreadPool();
+    if (pool == null) {
+      VectoredReadUtils.readVectored(this, ranges, allocate);
+    } else {
+      VectoredReadUtils.readVectored(this, ranges, allocate,
+          VectoredReadUtils.DEFAULT_MIN_SEEK,
+          VectoredReadUtils.DEFAULT_MAX_READ_SIZE, pool);
+    }
+  }
+
   /**
    * DFSInputStream reports checksum failure.
    * For replicated blocks, we have the following logic:
@@ -18,7 +18,9 @@
 package org.apache.hadoop.hdfs;
 
 import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.fs.FileRange;
 import org.apache.hadoop.fs.ReadOption;
+import org.apache.hadoop.fs.VectoredReadUtils;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
@@ -46,11 +48,14 @@
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Collection;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.IntFunction;
 
 /**
  * DFSStripedInputStream reads from striped block groups.
@@ -69,6 +74,16 @@ public class DFSStripedInputStream extends DFSInputStream {
   private ByteBuffer parityBuf;
   private final ErasureCodingPolicy ecPolicy;
   private final RawErasureDecoder decoder;
+  /** The number of stripes read at a time by a stateful read. */
+  private final int readAheadStripes;
+  /**
+   * The decoded stripes of the block groups in {@link #degradedBlockGroups},
+   * or null if disabled.
+   */
+  private final DecodedStripeCache decodedStripes;
+  /** The IDs of the block groups whose reads needed decoding. */
+  private final Set<Long> degradedBlockGroups =
+      Collections.newSetFromMap(new ConcurrentHashMap<>());
 
   /**
    * Indicate the start/end offset of the current buffered stripe in the
@@ -87,6 +102,55 @@ public class DFSStripedInputStream extends DFSInputStream {
   private final Set<String> warnedNodes =
       Collections.newSetFromMap(new ConcurrentHashMap<>());
 
+  /** A stripe of a block group. */
+  private static final class StripeKey {
+    private final long blockGroupId;
+    private final long stripeIndex;
+
+    StripeKey(long blockGroupId, long stripeIndex) {
+      this.blockGroupId = blockGroupId;
+      this.stripeIndex = stripeIndex;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof StripeKey)) {
+        return false;
+      }
+      final StripeKey that = (StripeKey) o;
+      return blockGroupId == that.blockGroupId
+          && stripeIndex == that.stripeIndex;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(blockGroupId) * 31 + Long.hashCode(stripeIndex);
+    }
+  }
+
+  /** The most recently used stripes read with decoding. */
+  private static final class DecodedStripeCache {
+    private final Map<StripeKey, ByteBuffer> stripes;
+
+    DecodedStripeCache(final int capacity) {
+      stripes = new LinkedHashMap<StripeKey, ByteBuffer>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(
+            Map.Entry<StripeKey, ByteBuffer> eldest) {
+          return size() > capacity;
+        }
+      };
+    }
+
+    synchronized ByteBuffer get(StripeKey key) {
+      return stripes.get(key);
+    }
+
+    synchronized void put(StripeKey key, ByteBuffer stripe) {
+      stripes.put(key, stripe);
+    }
+  }
+
   DFSStripedInputStream(DFSClient dfsClient, String src,
       boolean verifyChecksum, ErasureCodingPolicy ecPolicy,
       LocatedBlocks locatedBlocks) throws IOException {
@@ -104,6 +168,10 @@ public class DFSStripedInputStream extends DFSInputStream {
         dataBlkNum, parityBlkNum);
     decoder = CodecUtil.createRawDecoder(dfsClient.getConfiguration(),
         ecPolicy.getCodecName(), coderOptions);
+    readAheadStripes = dfsClient.getConf().getStripedReadAheadStripes();
+    final int cacheSize =
+        dfsClient.getConf().getStripedReadDecodedStripeCacheSize();
+    decodedStripes = cacheSize > 0 ? new DecodedStripeCache(cacheSize) : null;
     if (DFSClient.LOG.isDebugEnabled()) {
       DFSClient.LOG.debug("Creating an striped input stream for file " + src);
     }
@@ -116,7 +184,7 @@ private boolean useDirectBuffer() {
   void resetCurStripeBuffer() {
     if (curStripeBuf == null) {
       curStripeBuf = BUFFER_POOL.getBuffer(useDirectBuffer(),
-          cellSize * dataBlkNum);
+          cellSize * dataBlkNum * readAheadStripes);
     }
     curStripeBuf.clear();
     curStripeRange = new StripeRange(0, 0);
@@ -279,9 +347,18 @@ boolean createBlockReader(LocatedBlock block, long offsetInBlock,
     return false;
   }
 
+  /** @return the length of the stripes read at a time by a stateful read. */
+  private long getStripeBufLength() {
+    return (long) cellSize * dataBlkNum * readAheadStripes;
+  }
+
+  private void markDegraded(LocatedBlock blockGroup) {
+    degradedBlockGroups.add(blockGroup.getBlock().getBlockId());
+  }
+
   /**
-   * Read a new stripe covering the current position, and store the data in the
-   * {@link #curStripeBuf}.
+   * Read a new stripe, or as many as {@link #readAheadStripes}, covering the
+   * current position, and store the data in the {@link #curStripeBuf}.
    */
   private void readOneStripe(CorruptedBlocks corruptedBlocks)
       throws IOException {
@@ -289,7 +366,7 @@ private void readOneStripe(CorruptedBlocks corruptedBlocks)
 
     // compute stripe range based on pos
     final long offsetInBlockGroup = getOffsetInBlockGroup();
-    final long stripeLen = cellSize * dataBlkNum;
+    final long stripeLen = getStripeBufLength();
     final int stripeIndex = (int) (offsetInBlockGroup / stripeLen);
     final int stripeBufOffset = (int) (offsetInBlockGroup % stripeLen);
     final int stripeLimit = (int) Math.min(currentLocatedBlock.getBlockSize()
@@ -298,17 +375,41 @@ private void readOneStripe(CorruptedBlocks corruptedBlocks)
         new StripeRange(offsetInBlockGroup, stripeLimit - stripeBufOffset);
 
     LocatedStripedBlock blockGroup = (LocatedStripedBlock) currentLocatedBlock;
-    AlignedStripe[] stripes = StripedBlockUtil.divideOneStripe(ecPolicy,
-        cellSize, blockGroup, offsetInBlockGroup,
-        offsetInBlockGroup + stripeRange.getLength() - 1, curStripeBuf);
     final LocatedBlock[] blks = StripedBlockUtil.parseStripedBlockGroup(
         blockGroup, cellSize, dataBlkNum, parityBlkNum);
-    // read the whole stripe
-    for (AlignedStripe stripe : stripes) {
-      // Parse group to get chosen DN location
-      StripeReader sreader = new StatefulStripeReader(stripe, ecPolicy, blks,
-          blockReaders, corruptedBlocks, decoder, this);
-      sreader.readStripe();
+    if (readAheadStripes == 1) {
+      AlignedStripe[] stripes = StripedBlockUtil.divideOneStripe(ecPolicy,
+          cellSize, blockGroup, offsetInBlockGroup,
+          offsetInBlockGroup + stripeRange.getLength() - 1, curStripeBuf);
+      // read the whole stripe
+      for (AlignedStripe stripe : stripes) {
+        // Parse group to get chosen DN location
+        StripeReader sreader = new StatefulStripeReader(stripe, ecPolicy,
+            blks, blockReaders, corruptedBlocks, decoder, this);
+        sreader.readStripe();
+        if (stripe.missingChunksNum > 0) {
+          markDegraded(blockGroup);
+        }
+      }
+    } else {
+      // read the stripes like a pread, with the readers of the stream
+      final ByteBuffer buf = curStripeBuf.duplicate();
+      buf.position(stripeBufOffset);
+      AlignedStripe[] stripes = StripedBlockUtil.divideByteRangeIntoStripes(
+          ecPolicy, cellSize, blockGroup, offsetInBlockGroup,
+          offsetInBlockGroup + stripeRange.getLength() - 1, buf);
+      for (AlignedStripe stripe : stripes) {
+        StripeReader sreader = new PositionStripeReader(stripe, ecPolicy,
+            blks, blockReaders, corruptedBlocks, decoder, this);
+        try {
+          sreader.readStripe();
+        } finally {
+          sreader.close();
+        }
+        if (stripe.missingChunksNum > 0) {
+          markDegraded(blockGroup);
+        }
+      }
     }
     curStripeBuf.position(stripeBufOffset);
     curStripeBuf.limit(stripeLimit);
@@ -343,7 +444,7 @@ public synchronized void seek(long targetPos) throws IOException {
   }
 
   private int getStripedBufOffset(long offsetInBlockGroup) {
-    final long stripeLen = cellSize * dataBlkNum;
+    final long stripeLen = getStripeBufLength();
     // compute the position in the curStripeBuf based on "pos"
     return (int) (offsetInBlockGroup % stripeLen);
   }
@@ -448,6 +549,17 @@ private LocatedStripedBlock getBlockGroupAt(long offset) throws IOException {
     return (LocatedStripedBlock)lb;
   }
 
+  /**
+   * Read the ranges in the calling thread. Each pread of a striped file
+   * already reads the internal blocks in parallel, and preads share the
+   * decoder of the stream.
+   */
+  @Override
+  public void readVectored(List<? extends FileRange> ranges,
+      IntFunction<ByteBuffer> allocate) throws IOException {
+    VectoredReadUtils.readVectored(this, ranges, allocate);
+  }
+
   /**
    * Real implementation of pread.
    */
@@ -458,6 +570,22 @@ protected void fetchBlockByteRange(LocatedBlock block, long start,
     // Refresh the striped block group
     LocatedStripedBlock blockGroup = getBlockGroupAt(block.getStartOffset());
 
+    if (decodedStripes != null && degradedBlockGroups.contains(
+        blockGroup.getBlock().getBlockId())) {
+      readDecodedStripes(blockGroup, start, end, buf, corruptedBlocks);
+    } else {
+      readByteRange(blockGroup, start, end, buf, corruptedBlocks);
+    }
+    buf.position(buf.position() + (int)(end - start + 1));
+  }
+
+  /**
+   * Read a byte range of a block group into a buffer from its position,
+   * which is not changed.
+   */
+  private void readByteRange(LocatedStripedBlock blockGroup, long start,
+      long end, ByteBuffer buf, CorruptedBlocks corruptedBlocks)
+      throws IOException {
     AlignedStripe[] stripes = StripedBlockUtil.divideByteRangeIntoStripes(
         ecPolicy, cellSize, blockGroup, start, end, buf);
     final LocatedBlock[] blks = StripedBlockUtil.parseStripedBlockGroup(
@@ -473,8 +601,10 @@ protected void fetchBlockByteRange(LocatedBlock block, long start,
         } finally {
           preader.close();
         }
+        if (stripe.missingChunksNum > 0) {
+          markDegraded(blockGroup);
+        }
       }
-      buf.position(buf.position() + (int)(end - start + 1));
     } finally {
       for (BlockReaderInfo preaderInfo : preaderInfos) {
         closeReader(preaderInfo);
@@ -482,6 +612,38 @@ protected void fetchBlockByteRange(LocatedBlock block, long start,
     }
   }
 
+  /**
+   * Read a byte range of a degraded block group into a buffer from its
+   * position, which is not changed. The stripes of the range are read whole,
+   * so that a missing block is decoded once for all the preads of a stripe,
+   * and kept in {@link #decodedStripes}.
+   */
+  private void readDecodedStripes(LocatedStripedBlock blockGroup, long start,
+      long end, ByteBuffer buf, CorruptedBlocks corruptedBlocks)
+      throws IOException {
+    final long blockGroupId = blockGroup.getBlock().getBlockId();
+    final long stripeLen = (long) cellSize * dataBlkNum;
+    final ByteBuffer target = buf.duplicate();
+    for (long i = start / stripeLen; i <= end / stripeLen; i++) {
+      final StripeKey key = new StripeKey(blockGroupId, i);
+      final long stripeStart = i * stripeLen;
+      ByteBuffer stripe = decodedStripes.get(key);
+      if (stripe == null) {
+        final long stripeEnd =
+            Math.min(stripeStart + stripeLen, blockGroup.getBlockSize()) - 1;
+        stripe = ByteBuffer.allocate((int) (stripeEnd - stripeStart + 1));
+        readByteRange(blockGroup, stripeStart, stripeEnd, stripe,
+            corruptedBlocks);
+        decodedStripes.put(key, stripe);
+      }
+      final ByteBuffer src = stripe.duplicate();
+      src.position((int) (Math.max(start, stripeStart) - stripeStart));
+      src.limit((int) (Math.min(end, stripeStart + stripeLen - 1)
+          - stripeStart + 1));
+      target.put(src);
+    }
+  }
+
   @Override
   protected void reportLostBlock(LocatedBlock lostBlock,
       Collection<DatanodeInfo> ignoredNodes) {
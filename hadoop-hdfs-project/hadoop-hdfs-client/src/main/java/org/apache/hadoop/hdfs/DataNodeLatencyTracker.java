@@ -0,0 +1,210 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.protocol.DatanodeID;
+import org.apache.hadoop.util.Time;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+/**
+ * Tracks how long reads from each DataNode take, for adaptive hedged reads.
+ *
+ * The latencies of reads are kept in histograms with logarithmic buckets, one
+ * for each DataNode and one for all of them. Every decay interval, the counts
+ * of a histogram are halved, so that recent reads weigh the most, and a node
+ * that is no longer read from is eventually forgotten.
+ *
+ * A read is hedged once it takes longer than the given percentile of all
+ * reads. A node is slow if its median latency is more than a given factor
+ * above the median of all reads. Slow nodes are read from only if no other
+ * node has the block.
+ *
+ * The tracker is part of the {@link ClientContext}, so that DFSClient
+ * instances sharing the context learn from each other's reads.
+ */
+@InterfaceAudience.Private
+public class DataNodeLatencyTracker {
+  /** The fewest samples a histogram needs to be used. */
+  @VisibleForTesting
+  static final int MIN_SAMPLES = 20;
+  static final long DEFAULT_DECAY_INTERVAL_MS = 60 * 1000;
+
+  private final double percentile;
+  private final long minThresholdMillis;
+  private final double slowNodeFactor;
+  private final long decayIntervalMs;
+
+  private final LatencyHistogram all;
+  private final ConcurrentHashMap<DatanodeID, LatencyHistogram> nodes =
+      new ConcurrentHashMap<>();
+
+  /**
+   * A histogram of latencies in microseconds. Its buckets are four per power
+   * of two, so a percentile is accurate to within 19%.
+   */
+  static class LatencyHistogram {
+    static final int NUM_BUCKETS = 128;
+
+    private final long decayIntervalMs;
+    private final long[] counts = new long[NUM_BUCKETS];
+    private long total;
+    private long lastDecay;
+
+    LatencyHistogram(long decayIntervalMs) {
+      this.decayIntervalMs = decayIntervalMs;
+      this.lastDecay = Time.monotonicNow();
+    }
+
+    static int bucket(long micros) {
+      if (micros < 4) {
+        return (int) Math.max(micros, 0);
+      }
+      final int exp = 63 - Long.numberOfLeadingZeros(micros);
+      final int sub = (int) (micros >>> (exp - 2)) & 3;
+      return Math.min(4 * (exp - 1) + sub, NUM_BUCKETS - 1);
+    }
+
+    /** @return the smallest latency in the bucket. */
+    static long lowerBound(int bucket) {
+      if (bucket < 4) {
+        return bucket;
+      }
+      return (4L + (bucket & 3)) << (bucket / 4 - 1);
+    }
+
+    synchronized void add(long micros) {
+      decay();
+      counts[bucket(micros)]++;
+      total++;
+    }
+
+    synchronized long getTotal() {
+      decay();
+      return total;
+    }
+
+    /**
+     * @return the upper bound of the bucket holding the percentile, or -1 if
+     *         there are too few samples
+     */
+    synchronized long getPercentile(double p) {
+      decay();
+      if (total < MIN_SAMPLES) {
+        return -1;
+      }
+      final long rank = (long) Math.ceil(total * p / 100);
+      long seen = 0;
+      for (int i = 0; i < NUM_BUCKETS; i++) {
+        seen += counts[i];
+        if (seen >= rank && counts[i] > 0) {
+          return lowerBound(i + 1);
+        }
+      }
+      return lowerBound(NUM_BUCKETS);
+    }
+
+    private void decay() {
+      final long now = Time.monotonicNow();
+      final long intervals = (now - lastDecay) / decayIntervalMs;
+      if (intervals <= 0) {
+        return;
+      }
+      lastDecay += intervals * decayIntervalMs;
+      final int shift = (int) Math.min(intervals, 63);
+      total = 0;
+      for (int i = 0; i < NUM_BUCKETS; i++) {
+        counts[i] >>>= shift;
+        total += counts[i];
+      }
+    }
+  }
+
+  DataNodeLatencyTracker(double percentile, long minThresholdMillis,
+      double slowNodeFactor) {
+    this(percentile, minThresholdMillis, slowNodeFactor,
+        DEFAULT_DECAY_INTERVAL_MS);
+  }
+
+  @VisibleForTesting
+  DataNodeLatencyTracker(double percentile, long minThresholdMillis,
+      double slowNodeFactor, long decayIntervalMs) {
+    Preconditions.checkArgument(percentile > 0 && percentile <= 100,
+        "Invalid percentile %s", percentile);
+    Preconditions.checkArgument(slowNodeFactor > 1,
+        "The slow node factor %s must be greater than 1", slowNodeFactor);
+    this.percentile = percentile;
+    this.minThresholdMillis = minThresholdMillis;
+    this.slowNodeFactor = slowNodeFactor;
+    this.decayIntervalMs = decayIntervalMs;
+    this.all = new LatencyHistogram(decayIntervalMs);
+  }
+
+  /**
+   * Record a read from a DataNode.
+   * @param dn the DataNode read from
+   * @param micros how long the read took
+   */
+  public void addLatency(DatanodeID dn, long micros) {
+    LatencyHistogram h = nodes.get(dn);
+    if (h == null) {
+      h = new LatencyHistogram(decayIntervalMs);
+      LatencyHistogram old = nodes.putIfAbsent(dn, h);
+      if (old != null) {
+        h = old;
+      }
+    }
+    h.add(micros);
+    all.add(micros);
+  }
+
+  /**
+   * @param defaultMillis the threshold to use while there are too few
+   *                      samples
+   * @return how long to wait for a read before hedging it
+   */
+  public long getHedgeThresholdMillis(long defaultMillis) {
+    final long micros = all.getPercentile(percentile);
+    if (micros < 0) {
+      return defaultMillis;
+    }
+    return Math.max(minThresholdMillis, (micros + 999) / 1000);
+  }
+
+  /** @return whether reads from the DataNode are much slower than others. */
+  public boolean isSlow(DatanodeID dn) {
+    LatencyHistogram h = nodes.get(dn);
+    if (h == null) {
+      return false;
+    }
+    final long median = all.getPercentile(50);
+    final long nodeMedian = h.getPercentile(50);
+    return median >= 0 && nodeMedian >= 0
+        && nodeMedian > slowNodeFactor * median;
+  }
+
+  @VisibleForTesting
+  long getNumSamples(DatanodeID dn) {
+    LatencyHistogram h = nodes.get(dn);
+    return h == null ? 0 : h.getTotal();
+  }
+}
@@ -68,6 +68,7 @@
 import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.client.HdfsDataOutputStream;
 import org.apache.hadoop.hdfs.client.impl.CorruptFileBlockIterator;
+import org.apache.hadoop.hdfs.client.impl.SnapshotDiffReportGenerator;
 import org.apache.hadoop.hdfs.DFSOpsCountStatistics.OpType;
 import org.apache.hadoop.hdfs.protocol.BlockStoragePolicy;
 import org.apache.hadoop.hdfs.protocol.CacheDirectiveEntry;
@@ -86,9 +87,11 @@
 import org.apache.hadoop.hdfs.protocol.HdfsLocatedFileStatus;
 import org.apache.hadoop.hdfs.protocol.RollingUpgradeInfo;
 import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReportListing;
 import org.apache.hadoop.hdfs.protocol.SnapshottableDirectoryStatus;
 import org.apache.hadoop.hdfs.security.token.delegation.DelegationTokenIdentifier;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.ipc.RpcNoSuchMethodException;
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
 import org.apache.hadoop.net.NetUtils;
 import org.apache.hadoop.security.Credentials;
@@ -1479,7 +1482,8 @@ public FileChecksum getFileChecksum(Path f) throws IOException {
     return new FileSystemLinkResolver<FileChecksum>() {
       @Override
       public FileChecksum doCall(final Path p) throws IOException {
-        return dfs.getFileChecksum(getPathName(p), Long.MAX_VALUE);
+        return dfs.getFileChecksumWithCombineMode(getPathName(p),
+            Long.MAX_VALUE);
       }
 
       @Override
@@ -1499,7 +1503,8 @@ public FileChecksum getFileChecksum(Path f, final long length)
     return new FileSystemLinkResolver<FileChecksum>() {
       @Override
       public FileChecksum doCall(final Path p) throws IOException {
-        return dfs.getFileChecksum(getPathName(p), length);
+        return dfs.getFileChecksumWithCombineMode(getPathName(p),
+            length);
       }
 
       @Override
@@ -1793,11 +1798,35 @@ public Void next(final FileSystem fs, final Path p)
     }.resolve(this, absF);
   }
 
+  /**
+   * Get the difference between two snapshots a page at a time, and combine
+   * the pages into a report.
+   */
+  private SnapshotDiffReport getSnapshotDiffReportInternal(
+      final String snapshotDir, final String fromSnapshot,
+      final String toSnapshot) throws IOException {
+    SnapshotDiffReportGenerator generator = new SnapshotDiffReportGenerator(
+        snapshotDir, fromSnapshot, toSnapshot);
+    byte[] startPath = DFSUtilClient.EMPTY_BYTES;
+    int index = -1;
+    SnapshotDiffReportListing report;
+    do {
+      report = dfs.getSnapshotDiffReportListing(snapshotDir, fromSnapshot,
+          toSnapshot, startPath, index);
+      generator.addListing(report);
+      startPath = report.getLastPath();
+      index = report.getLastIndex();
+    } while (!report.isLast());
+    return generator.generateReport();
+  }
+
   /**
    * Get the difference between two snapshots, or between a snapshot and the
-   * current tree of a directory.
+   * current tree of a directory. The difference is listed a page at a time,
+   * so the NameNode does not hold its lock while listing all of it, unless
+   * the NameNode does not support listing it a page at a time.
    *
-   * @see DFSClient#getSnapshotDiffReport(String, String, String)
+   * @see DFSClient#getSnapshotDiffReportListing
    */
   public SnapshotDiffReport getSnapshotDiffReport(final Path snapshotDir,
       final String fromSnapshot, final String toSnapshot) throws IOException {
@@ -1805,8 +1834,16 @@ public SnapshotDiffReport getSnapshotDiffReport(final Path snapshotDir,
     return new FileSystemLinkResolver<SnapshotDiffReport>() {
       @Override
       public SnapshotDiffReport doCall(final Path p) throws IOException {
-        return dfs.getSnapshotDiffReport(getPathName(p), fromSnapshot,
-            toSnapshot);
+        try {
+          return getSnapshotDiffReportInternal(getPathName(p), fromSnapshot,
+              toSnapshot);
+        } catch (RpcNoSuchMethodException e) {
+          // the NameNode does not list the difference a page at a time yet
+          DFSClient.LOG.warn("Falling back to getSnapshotDiffReport: {}",
+              e.getMessage());
+          return dfs.getSnapshotDiffReport(getPathName(p), fromSnapshot,
+              toSnapshot);
+        }
       }
 
       @Override
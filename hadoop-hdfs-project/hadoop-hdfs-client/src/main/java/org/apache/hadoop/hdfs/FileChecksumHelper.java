@@ -17,9 +17,13 @@
  */
 package org.apache.hadoop.hdfs;
 
+import org.apache.hadoop.fs.CompositeCrcFileChecksum;
+import org.apache.hadoop.fs.FileChecksum;
 import org.apache.hadoop.fs.MD5MD5CRC32CastagnoliFileChecksum;
 import org.apache.hadoop.fs.MD5MD5CRC32FileChecksum;
 import org.apache.hadoop.fs.MD5MD5CRC32GzipFileChecksum;
+import org.apache.hadoop.fs.Options.ChecksumCombineMode;
+import org.apache.hadoop.hdfs.protocol.BlockChecksumType;
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
@@ -40,13 +44,20 @@
 import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.MD5Hash;
+import org.apache.hadoop.util.CrcUtil;
 import org.apache.hadoop.util.DataChecksum;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Utility classes to compute file checksum for both replicated and striped
@@ -66,9 +77,12 @@ static abstract class FileChecksumComputer {
     private final long length;
     private final DFSClient client;
     private final ClientProtocol namenode;
+    private final ChecksumCombineMode combineMode;
     private final DataOutputBuffer md5out = new DataOutputBuffer();
+    /** The CRC of the blocks so far, in composite CRC mode. */
+    private int compositeCrc = 0;
 
-    private MD5MD5CRC32FileChecksum fileChecksum;
+    private FileChecksum fileChecksum;
     private LocatedBlocks blockLocations;
 
     private int timeout;
@@ -87,12 +101,14 @@ static abstract class FileChecksumComputer {
     FileChecksumComputer(String src, long length,
                          LocatedBlocks blockLocations,
                          ClientProtocol namenode,
-                         DFSClient client) throws IOException {
+                         DFSClient client,
+                         ChecksumCombineMode combineMode) throws IOException {
       this.src = src;
       this.length = length;
       this.blockLocations = blockLocations;
       this.namenode = namenode;
       this.client = client;
+      this.combineMode = combineMode;
 
       this.remaining = length;
       if (src.contains(HdfsConstants.SEPARATOR_DOT_SNAPSHOT_DIR_SEPARATOR)) {
@@ -118,11 +134,29 @@ ClientProtocol getNamenode() {
       return namenode;
     }
 
+    ChecksumCombineMode getCombineMode() {
+      return combineMode;
+    }
+
+    /** @return the type of the block checksums to request. */
+    BlockChecksumType getBlockChecksumType() {
+      return combineMode == ChecksumCombineMode.COMPOSITE_CRC ?
+          BlockChecksumType.COMPOSITE_CRC : BlockChecksumType.MD5CRC;
+    }
+
     DataOutputBuffer getMd5out() {
       return md5out;
     }
 
-    MD5MD5CRC32FileChecksum getFileChecksum() {
+    int getCompositeCrc() {
+      return compositeCrc;
+    }
+
+    void setCompositeCrc(int compositeCrc) {
+      this.compositeCrc = compositeCrc;
+    }
+
+    FileChecksum getFileChecksum() {
       return fileChecksum;
     }
 
@@ -217,7 +251,34 @@ void compute() throws IOException {
     /**
      * Make final file checksum result given the computing process done.
      */
-    MD5MD5CRC32FileChecksum makeFinalResult() {
+    FileChecksum makeFinalResult() throws IOException {
+      if (combineMode == ChecksumCombineMode.COMPOSITE_CRC) {
+        return makeCompositeCrcResult();
+      }
+      return makeMd5CrcResult();
+    }
+
+    /**
+     * Make the composite CRC of the file from the composed block CRCs.
+     */
+    private FileChecksum makeCompositeCrcResult() throws IOException {
+      switch (crcType) {
+      case CRC32:
+      case CRC32C:
+        return new CompositeCrcFileChecksum(compositeCrc, crcType,
+            bytesPerCRC);
+      default:
+        if (locatedBlocks.isEmpty()) {
+          // the CRC of no data is 0 whatever the CRC type
+          return new CompositeCrcFileChecksum(0,
+              client.getConf().getDefaultChecksumOpt().getChecksumType(), 0);
+        }
+        throw new IOException("Cannot compose the CRCs of " + src
+            + " with checksum type " + crcType);
+      }
+    }
+
+    private MD5MD5CRC32FileChecksum makeMd5CrcResult() {
       //compute file MD5
       final MD5Hash fileMD5 = MD5Hash.digest(md5out.getData());
       switch (crcType) {
@@ -261,97 +322,168 @@ void close(IOStreamPair pair) {
   }
 
   /**
-   * Replicated file checksum computer.
+   * The block checksum returned by a datanode.
+   */
+  static class BlockChecksumResult {
+    private final DatanodeInfo datanode;
+    private final int bytesPerCrc;
+    private final long crcPerBlock;
+    private final byte[] blockChecksum;
+    private final DataChecksum.Type crcType;
+
+    BlockChecksumResult(DatanodeInfo datanode, int bytesPerCrc,
+        long crcPerBlock, byte[] blockChecksum, DataChecksum.Type crcType) {
+      this.datanode = datanode;
+      this.bytesPerCrc = bytesPerCrc;
+      this.crcPerBlock = crcPerBlock;
+      this.blockChecksum = blockChecksum;
+      this.crcType = crcType;
+    }
+  }
+
+  /**
+   * Replicated file checksum computer. The checksums of the blocks are
+   * requested from the datanodes in parallel when the client has a file
+   * checksum thread pool, and combined in the order of the blocks.
    */
   static class ReplicatedFileChecksumComputer extends FileChecksumComputer {
-    private int blockIdx;
+    /** The number of bytes to checksum of each block. */
+    private long[] requestedLengths;
 
     ReplicatedFileChecksumComputer(String src, long length,
                                    LocatedBlocks blockLocations,
                                    ClientProtocol namenode,
-                                   DFSClient client) throws IOException {
-      super(src, length, blockLocations, namenode, client);
+                                   DFSClient client,
+                                   ChecksumCombineMode combineMode)
+        throws IOException {
+      super(src, length, blockLocations, namenode, client, combineMode);
     }
 
     @Override
     void checksumBlocks() throws IOException {
-      // get block checksum for each block
-      for (blockIdx = 0;
-           blockIdx < getLocatedBlocks().size() && getRemaining() >= 0;
-           blockIdx++) {
-        if (isRefetchBlocks()) {  // refetch to get fresh tokens
-          refetchBlocks();
+      final List<LocatedBlock> blocks = getLocatedBlocks();
+      requestedLengths = new long[blocks.size()];
+      int numBlocks = 0;
+      while (numBlocks < blocks.size() && getRemaining() >= 0) {
+        final long len = Math.min(getRemaining(),
+            blocks.get(numBlocks).getBlockSize());
+        requestedLengths[numBlocks++] = len;
+        setRemaining(getRemaining() - len);
+      }
+
+      final ExecutorService pool = numBlocks > 1 ?
+          getClient().getFileChecksumThreadPool() : null;
+      final List<Future<BlockChecksumResult>> futures = new ArrayList<>();
+      try {
+        if (pool != null) {
+          for (int i = 0; i < numBlocks; i++) {
+            final LocatedBlock locatedBlock = blocks.get(i);
+            final long len = requestedLengths[i];
+            futures.add(pool.submit(new Callable<BlockChecksumResult>() {
+              @Override
+              public BlockChecksumResult call() throws IOException {
+                return checksumBlock(locatedBlock, len, false);
+              }
+            }));
+          }
         }
 
-        LocatedBlock locatedBlock = getLocatedBlocks().get(blockIdx);
+        // get block checksum for each block
+        for (int blockIdx = 0; blockIdx < numBlocks; blockIdx++) {
+          BlockChecksumResult result;
+          try {
+            result = pool != null ? getResult(futures.get(blockIdx)) :
+                checksumBlock(getLocatedBlocks().get(blockIdx),
+                    requestedLengths[blockIdx], false);
+          } catch (InvalidBlockTokenException ibte) {
+            LOG.debug("Got access token error in response to "
+                + "OP_BLOCK_CHECKSUM for file {} for block {}. Will retry "
+                + "the block once.", getSrc(),
+                getLocatedBlocks().get(blockIdx).getBlock());
+            // refetch to get fresh tokens
+            refetchBlocks();
+            result = checksumBlock(getLocatedBlocks().get(blockIdx),
+                requestedLengths[blockIdx], true);
+          }
+          processBlockChecksum(blockIdx, result);
+        }
+      } finally {
+        for (Future<BlockChecksumResult> future : futures) {
+          future.cancel(true);
+        }
+      }
+    }
 
-        if (!checksumBlock(locatedBlock)) {
-          throw new IOException("Fail to get block MD5 for " + locatedBlock);
+    private static BlockChecksumResult getResult(
+        Future<BlockChecksumResult> future) throws IOException {
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(
+            "Interrupted while getting a block checksum");
+      } catch (ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
         }
+        throw new IOException(cause);
       }
     }
 
     /**
-     * Return true when sounds good to continue or retry, false when severe
-     * condition or totally failed.
+     * Get the checksum of the first len bytes of a block from any of its
+     * datanodes.
+     * @param retried whether the block is already retried with a fresh
+     *                token, in which case a datanode rejecting the token is
+     *                skipped like any other failing datanode.
+     * @throws InvalidBlockTokenException if the block token is rejected and
+     *         the block is not retried yet, so that the caller may retry it
+     *         with a fresh token.
      */
-    private boolean checksumBlock(
-        LocatedBlock locatedBlock) throws IOException {
-      ExtendedBlock block = locatedBlock.getBlock();
-      if (getRemaining() < block.getNumBytes()) {
-        block.setNumBytes(getRemaining());
-      }
-      setRemaining(getRemaining() - block.getNumBytes());
+    private BlockChecksumResult checksumBlock(LocatedBlock locatedBlock,
+        long len, boolean retried) throws IOException {
+      final ExtendedBlock block = new ExtendedBlock(locatedBlock.getBlock());
+      block.setNumBytes(len);
 
       DatanodeInfo[] datanodes = locatedBlock.getLocations();
 
-      int tmpTimeout = 3000 * datanodes.length +
+      int timeout = 3000 * datanodes.length +
           getClient().getConf().getSocketTimeout();
-      setTimeout(tmpTimeout);
 
       //try each datanode location of the block
-      boolean done = false;
-      for (int j = 0; !done && j < datanodes.length; j++) {
+      for (int j = 0; j < datanodes.length; j++) {
         try {
-          tryDatanode(locatedBlock, datanodes[j]);
-          done = true;
+          return tryDatanode(locatedBlock, block, datanodes[j], timeout);
         } catch (InvalidBlockTokenException ibte) {
-          if (blockIdx > getLastRetriedIndex()) {
-            LOG.debug("Got access token error in response to OP_BLOCK_CHECKSUM "
-                    + "for file {} for block {} from datanode {}. Will retry "
-                    + "the block once.",
-                getSrc(), block, datanodes[j]);
-            setLastRetriedIndex(blockIdx);
-            done = true; // actually it's not done; but we'll retry
-            blockIdx--; // repeat at blockIdx-th block
-            setRefetchBlocks(true);
+          if (!retried) {
+            throw ibte;
           }
+          LOG.warn("src={}" + ", datanodes[{}]={}",
+              getSrc(), j, datanodes[j], ibte);
         } catch (IOException ie) {
           LOG.warn("src={}" + ", datanodes[{}]={}",
               getSrc(), j, datanodes[j], ie);
         }
       }
-
-      return done;
+      throw new IOException("Fail to get block checksum for " + locatedBlock);
     }
 
     /**
      * Try one replica or datanode to compute the block checksum given a block.
      */
-    private void tryDatanode(LocatedBlock locatedBlock,
-                             DatanodeInfo datanode) throws IOException {
-
-      ExtendedBlock block = locatedBlock.getBlock();
-
-      try (IOStreamPair pair = getClient().connectToDN(datanode, getTimeout(),
+    private BlockChecksumResult tryDatanode(LocatedBlock locatedBlock,
+        ExtendedBlock block, DatanodeInfo datanode, int timeout)
+        throws IOException {
+      try (IOStreamPair pair = getClient().connectToDN(datanode, timeout,
           locatedBlock.getBlockToken())) {
 
         LOG.debug("write to {}: {}, block={}", datanode,
             Op.BLOCK_CHECKSUM, block);
 
-        // get block MD5
+        // get block checksum
         createSender(pair).blockChecksum(block,
-            locatedBlock.getBlockToken());
+            locatedBlock.getBlockToken(), getBlockChecksumType());
 
         final BlockOpResponseProto reply = BlockOpResponseProto.parseFrom(
             PBHelperClient.vintPrefixed(pair.in));
@@ -362,26 +494,14 @@ private void tryDatanode(LocatedBlock locatedBlock,
 
         OpBlockChecksumResponseProto checksumData =
             reply.getChecksumResponse();
-
-        //read byte-per-checksum
-        final int bpc = checksumData.getBytesPerCrc();
-        if (blockIdx == 0) { //first block
-          setBytesPerCRC(bpc);
-        } else if (bpc != getBytesPerCRC()) {
-          throw new IOException("Byte-per-checksum not matched: bpc=" + bpc
-              + " but bytesPerCRC=" + getBytesPerCRC());
-        }
-
-        //read crc-per-block
-        final long cpb = checksumData.getCrcPerBlock();
-        if (getLocatedBlocks().size() > 1 && blockIdx == 0) {
-          setCrcPerBlock(cpb);
+        if (PBHelperClient.convert(checksumData.getBlockChecksumType())
+            != getBlockChecksumType()) {
+          throw new IOException("Got a " + PBHelperClient.convert(
+              checksumData.getBlockChecksumType()) + " block checksum "
+              + logInfo + " but requested " + getBlockChecksumType()
+              + "; the datanode may not support it");
         }
 
-        //read md5
-        final MD5Hash md5 = new MD5Hash(checksumData.getMd5().toByteArray());
-        md5.write(getMd5out());
-
         // read crc-type
         final DataChecksum.Type ct;
         if (checksumData.hasCrcType()) {
@@ -392,21 +512,67 @@ private void tryDatanode(LocatedBlock locatedBlock,
           ct = getClient().inferChecksumTypeByReading(locatedBlock, datanode);
         }
 
-        if (blockIdx == 0) { // first block
-          setCrcType(ct);
-        } else if (getCrcType() != DataChecksum.Type.MIXED
-            && getCrcType() != ct) {
-          // if crc types are mixed in a file
-          setCrcType(DataChecksum.Type.MIXED);
+        return new BlockChecksumResult(datanode,
+            checksumData.getBytesPerCrc(), checksumData.getCrcPerBlock(),
+            checksumData.getBlockChecksum().toByteArray(), ct);
+      }
+    }
+
+    /**
+     * Combine the checksum of a block with those of the previous blocks.
+     */
+    private void processBlockChecksum(int blockIdx,
+        BlockChecksumResult result) throws IOException {
+      //read byte-per-checksum
+      final int bpc = result.bytesPerCrc;
+      if (blockIdx == 0) { //first block
+        setBytesPerCRC(bpc);
+      } else if (bpc != getBytesPerCRC()
+          && getCombineMode() == ChecksumCombineMode.MD5MD5CRC) {
+        // composed CRCs do not depend on the bytes per checksum
+        throw new IOException("Byte-per-checksum not matched: bpc=" + bpc
+            + " but bytesPerCRC=" + getBytesPerCRC());
+      }
+
+      //read crc-per-block
+      if (getLocatedBlocks().size() > 1 && blockIdx == 0) {
+        setCrcPerBlock(result.crcPerBlock);
+      }
+
+      final DataChecksum.Type ct = result.crcType;
+      if (blockIdx == 0) { // first block
+        setCrcType(ct);
+      } else if (getCrcType() != DataChecksum.Type.MIXED
+          && getCrcType() != ct) {
+        // if crc types are mixed in a file
+        setCrcType(DataChecksum.Type.MIXED);
+      }
+
+      final String value;
+      if (getCombineMode() == ChecksumCombineMode.COMPOSITE_CRC) {
+        if (getCrcType() == DataChecksum.Type.MIXED) {
+          throw new IOException("Cannot compose the CRCs of " + getSrc()
+              + ": the crc types of the blocks are mixed");
         }
+        //read and compose the block crc
+        final int blockCrc = CrcUtil.readInt(result.blockChecksum, 0);
+        setCompositeCrc(blockIdx == 0 ? blockCrc : CrcUtil.compose(
+            getCompositeCrc(), blockCrc, requestedLengths[blockIdx],
+            CrcUtil.getCrcPolynomialForType(ct)));
+        value = String.format("crc=0x%08x", blockCrc);
+      } else {
+        //read md5
+        final MD5Hash md5 = new MD5Hash(result.blockChecksum);
+        md5.write(getMd5out());
+        value = "md5=" + md5;
+      }
 
-        if (LOG.isDebugEnabled()) {
-          if (blockIdx == 0) {
-            LOG.debug("set bytesPerCRC=" + getBytesPerCRC()
-                + ", crcPerBlock=" + getCrcPerBlock());
-          }
-          LOG.debug("got reply from " + datanode + ": md5=" + md5);
+      if (LOG.isDebugEnabled()) {
+        if (blockIdx == 0) {
+          LOG.debug("set bytesPerCRC=" + getBytesPerCRC()
+              + ", crcPerBlock=" + getCrcPerBlock());
         }
+        LOG.debug("got reply from " + result.datanode + ": " + value);
       }
     }
   }
@@ -423,9 +589,14 @@ && getCrcType() != ct) {
                                           LocatedBlocks blockLocations,
                                           ClientProtocol namenode,
                                           DFSClient client,
-                                          ErasureCodingPolicy ecPolicy)
+                                          ErasureCodingPolicy ecPolicy,
+                                          ChecksumCombineMode combineMode)
         throws IOException {
-      super(src, length, blockLocations, namenode, client);
+      super(src, length, blockLocations, namenode, client, combineMode);
+      if (combineMode == ChecksumCombineMode.COMPOSITE_CRC) {
+        throw new IOException("Composite CRC file checksums are not "
+            + "supported for striped file " + src);
+      }
 
       this.ecPolicy = ecPolicy;
     }
@@ -539,7 +710,7 @@ private void tryDatanode(LocatedStripedBlock blockGroup,
 
         //read md5
         final MD5Hash md5 = new MD5Hash(
-            checksumData.getMd5().toByteArray());
+            checksumData.getBlockChecksum().toByteArray());
         md5.write(getMd5out());
 
         // read crc-type
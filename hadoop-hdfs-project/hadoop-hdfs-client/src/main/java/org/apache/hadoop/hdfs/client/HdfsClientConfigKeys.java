@@ -113,6 +113,8 @@ public interface HdfsClientConfigKeys {
   String  DFS_CHECKSUM_TYPE_DEFAULT = "CRC32C";
   String  DFS_BYTES_PER_CHECKSUM_KEY = "dfs.bytes-per-checksum";
   int     DFS_BYTES_PER_CHECKSUM_DEFAULT = 512;
+  String  DFS_CHECKSUM_COMBINE_MODE_KEY = "dfs.checksum.combine.mode";
+  String  DFS_CHECKSUM_COMBINE_MODE_DEFAULT = "MD5MD5CRC";
   String  DFS_DATANODE_SOCKET_WRITE_TIMEOUT_KEY =
       "dfs.datanode.socket.write.timeout";
   String  DFS_CLIENT_DOMAIN_SOCKET_DATA_TRAFFIC =
@@ -273,6 +275,8 @@ interface Write {
     String  EXCLUDE_NODES_CACHE_EXPIRY_INTERVAL_KEY =
         PREFIX + "exclude.nodes.cache.expiry.interval.millis";
     long    EXCLUDE_NODES_CACHE_EXPIRY_INTERVAL_DEFAULT = 10*MINUTE;
+    String  PACKET_POOL_MAX_BYTES_KEY = PREFIX + "packet-pool.max-bytes";
+    long    PACKET_POOL_MAX_BYTES_DEFAULT = 0;
 
     interface ByteArrayManager {
       String PREFIX = Write.PREFIX + "byte-array-manager.";
@@ -368,6 +372,16 @@ interface HedgedRead {
     long    THRESHOLD_MILLIS_DEFAULT = 500;
     String  THREADPOOL_SIZE_KEY = PREFIX + "threadpool.size";
     int     THREADPOOL_SIZE_DEFAULT = 0;
+    String  ADAPTIVE_ENABLED_KEY = PREFIX + "adaptive.enabled";
+    boolean ADAPTIVE_ENABLED_DEFAULT = false;
+    String  ADAPTIVE_PERCENTILE_KEY = PREFIX + "adaptive.percentile";
+    float   ADAPTIVE_PERCENTILE_DEFAULT = 95f;
+    String  ADAPTIVE_MIN_THRESHOLD_MILLIS_KEY =
+        PREFIX + "adaptive.min.threshold.millis";
+    long    ADAPTIVE_MIN_THRESHOLD_MILLIS_DEFAULT = 10;
+    String  ADAPTIVE_SLOW_NODE_FACTOR_KEY =
+        PREFIX + "adaptive.slow.node.factor";
+    float   ADAPTIVE_SLOW_NODE_FACTOR_DEFAULT = 3f;
   }
 
   /** dfs.client.read.striped configuration properties */
@@ -380,6 +394,37 @@ interface StripedRead {
      * span 6 DNs, so this default value accommodates 3 read streams
      */
     int     THREADPOOL_SIZE_DEFAULT = 18;
+    /**
+     * The number of stripes a stateful read fetches at a time. Each internal
+     * block then serves the cells of all of them in one request.
+     */
+    String  READAHEAD_STRIPES_KEY = PREFIX + "readahead.stripes";
+    int     READAHEAD_STRIPES_DEFAULT = 1;
+    /** The number of decoded stripes kept for the preads of a stream. */
+    String  DECODED_STRIPE_CACHE_SIZE_KEY =
+        PREFIX + "decoded.stripe.cache.size";
+    int     DECODED_STRIPE_CACHE_SIZE_DEFAULT = 0;
+  }
+
+  /** dfs.client.read.vectored configuration properties */
+  interface VectoredRead {
+    String PREFIX = Read.PREFIX + "vectored.";
+
+    String  THREADPOOL_SIZE_KEY = PREFIX + "threadpool.size";
+    int     THREADPOOL_SIZE_DEFAULT = 8;
+  }
+
+  /** dfs.client.file-checksum configuration properties */
+  interface GetFileChecksum {
+    String PREFIX = HdfsClientConfigKeys.PREFIX + "file-checksum.";
+
+    /**
+     * The number of threads requesting the block checksums of a file from
+     * the DataNodes in parallel. If zero, the blocks are requested one by
+     * one in the calling thread.
+     */
+    String  THREADPOOL_SIZE_KEY = PREFIX + "threadpool.size";
+    int     THREADPOOL_SIZE_DEFAULT = 0;
   }
 
   /** dfs.http.client configuration properties */
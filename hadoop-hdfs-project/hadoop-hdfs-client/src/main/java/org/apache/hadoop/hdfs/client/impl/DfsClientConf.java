@@ -22,6 +22,7 @@
 import org.apache.hadoop.HadoopIllegalArgumentException;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
+import org.apache.hadoop.fs.Options.ChecksumCombineMode;
 import org.apache.hadoop.fs.Options.ChecksumOpt;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.ReplicaAccessorBuilder;
@@ -38,6 +39,8 @@
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_BLOCK_SIZE_KEY;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_BYTES_PER_CHECKSUM_DEFAULT;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_BYTES_PER_CHECKSUM_KEY;
+import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CHECKSUM_COMBINE_MODE_DEFAULT;
+import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CHECKSUM_COMBINE_MODE_KEY;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CHECKSUM_TYPE_DEFAULT;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CHECKSUM_TYPE_KEY;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_CACHED_CONN_RETRY_DEFAULT;
@@ -104,9 +107,11 @@ public class DfsClientConf {
   private final int datanodeSocketWriteTimeout;
   private final int ioBufferSize;
   private final ChecksumOpt defaultChecksumOpt;
+  private final ChecksumCombineMode checksumCombineMode;
   private final int writePacketSize;
   private final int writeMaxPackets;
   private final ByteArrayManager.Conf writeByteArrayManagerConf;
+  private final long writePacketPoolMaxBytes;
   private final int socketTimeout;
   private final int socketSendBufferSize;
   private final long excludedNodesCacheExpiry;
@@ -131,10 +136,18 @@ public class DfsClientConf {
 
   private final long hedgedReadThresholdMillis;
   private final int hedgedReadThreadpoolSize;
+  private final boolean hedgedReadAdaptive;
+  private final float hedgedReadAdaptivePercentile;
+  private final long hedgedReadAdaptiveMinThresholdMillis;
+  private final float hedgedReadSlowNodeFactor;
   private final List<Class<? extends ReplicaAccessorBuilder>>
       replicaAccessorBuilderClasses;
 
   private final int stripedReadThreadpoolSize;
+  private final int stripedReadAheadStripes;
+  private final int stripedReadDecodedStripeCacheSize;
+  private final int vectoredReadThreadpoolSize;
+  private final int fileChecksumThreadpoolSize;
 
   private final boolean dataTransferTcpNoDelay;
 
@@ -175,6 +188,7 @@ public DfsClientConf(Configuration conf) {
         CommonConfigurationKeysPublic.IO_FILE_BUFFER_SIZE_KEY,
         CommonConfigurationKeysPublic.IO_FILE_BUFFER_SIZE_DEFAULT);
     defaultChecksumOpt = getChecksumOptFromConf(conf);
+    checksumCombineMode = getChecksumCombineModeFromConf(conf);
     dataTransferTcpNoDelay = conf.getBoolean(
         DFS_DATA_TRANSFER_CLIENT_TCPNODELAY_KEY,
         DFS_DATA_TRANSFER_CLIENT_TCPNODELAY_DEFAULT);
@@ -208,6 +222,9 @@ public DfsClientConf(Configuration conf) {
       writeByteArrayManagerConf = new ByteArrayManager.Conf(
           countThreshold, countLimit, countResetTimePeriodMs);
     }
+    writePacketPoolMaxBytes = conf.getLongBytes(
+        Write.PACKET_POOL_MAX_BYTES_KEY,
+        Write.PACKET_POOL_MAX_BYTES_DEFAULT);
 
     defaultBlockSize = conf.getLongBytes(DFS_BLOCK_SIZE_KEY,
         DFS_BLOCK_SIZE_DEFAULT);
@@ -250,6 +267,18 @@ public DfsClientConf(Configuration conf) {
     hedgedReadThreadpoolSize = conf.getInt(
         HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_KEY,
         HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_DEFAULT);
+    hedgedReadAdaptive = conf.getBoolean(
+        HedgedRead.ADAPTIVE_ENABLED_KEY,
+        HedgedRead.ADAPTIVE_ENABLED_DEFAULT);
+    hedgedReadAdaptivePercentile = conf.getFloat(
+        HedgedRead.ADAPTIVE_PERCENTILE_KEY,
+        HedgedRead.ADAPTIVE_PERCENTILE_DEFAULT);
+    hedgedReadAdaptiveMinThresholdMillis = conf.getLong(
+        HedgedRead.ADAPTIVE_MIN_THRESHOLD_MILLIS_KEY,
+        HedgedRead.ADAPTIVE_MIN_THRESHOLD_MILLIS_DEFAULT);
+    hedgedReadSlowNodeFactor = conf.getFloat(
+        HedgedRead.ADAPTIVE_SLOW_NODE_FACTOR_KEY,
+        HedgedRead.ADAPTIVE_SLOW_NODE_FACTOR_DEFAULT);
 
     stripedReadThreadpoolSize = conf.getInt(
         HdfsClientConfigKeys.StripedRead.THREADPOOL_SIZE_KEY,
@@ -257,6 +286,32 @@ public DfsClientConf(Configuration conf) {
     Preconditions.checkArgument(stripedReadThreadpoolSize > 0, "The value of " +
         HdfsClientConfigKeys.StripedRead.THREADPOOL_SIZE_KEY +
         " must be greater than 0.");
+    stripedReadAheadStripes = conf.getInt(
+        HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_KEY,
+        HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_DEFAULT);
+    Preconditions.checkArgument(stripedReadAheadStripes > 0, "The value of " +
+        HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_KEY +
+        " must be greater than 0.");
+    stripedReadDecodedStripeCacheSize = conf.getInt(
+        HdfsClientConfigKeys.StripedRead.DECODED_STRIPE_CACHE_SIZE_KEY,
+        HdfsClientConfigKeys.StripedRead.DECODED_STRIPE_CACHE_SIZE_DEFAULT);
+    Preconditions.checkArgument(stripedReadDecodedStripeCacheSize >= 0,
+        "The value of "
+        + HdfsClientConfigKeys.StripedRead.DECODED_STRIPE_CACHE_SIZE_KEY
+        + " must not be negative.");
+    vectoredReadThreadpoolSize = conf.getInt(
+        HdfsClientConfigKeys.VectoredRead.THREADPOOL_SIZE_KEY,
+        HdfsClientConfigKeys.VectoredRead.THREADPOOL_SIZE_DEFAULT);
+    Preconditions.checkArgument(vectoredReadThreadpoolSize >= 0,
+        "The value of " + HdfsClientConfigKeys.VectoredRead.THREADPOOL_SIZE_KEY
+        + " must not be negative.");
+    fileChecksumThreadpoolSize = conf.getInt(
+        HdfsClientConfigKeys.GetFileChecksum.THREADPOOL_SIZE_KEY,
+        HdfsClientConfigKeys.GetFileChecksum.THREADPOOL_SIZE_DEFAULT);
+    Preconditions.checkArgument(fileChecksumThreadpoolSize >= 0,
+        "The value of "
+        + HdfsClientConfigKeys.GetFileChecksum.THREADPOOL_SIZE_KEY
+        + " must not be negative.");
     replicaAccessorBuilderClasses = loadReplicaAccessorBuilderClasses(conf);
   }
 
@@ -298,6 +353,21 @@ private static DataChecksum.Type getChecksumType(Configuration conf) {
     }
   }
 
+  private static ChecksumCombineMode getChecksumCombineModeFromConf(
+      Configuration conf) {
+    final String mode = conf.get(
+        DFS_CHECKSUM_COMBINE_MODE_KEY,
+        DFS_CHECKSUM_COMBINE_MODE_DEFAULT);
+    try {
+      return ChecksumCombineMode.valueOf(mode);
+    } catch(IllegalArgumentException iae) {
+      LOG.warn("Bad checksum combine mode: {}. Using default {}", mode,
+               DFS_CHECKSUM_COMBINE_MODE_DEFAULT);
+      return ChecksumCombineMode.valueOf(
+          DFS_CHECKSUM_COMBINE_MODE_DEFAULT);
+    }
+  }
+
   // Construct a checksum option from conf
   public static ChecksumOpt getChecksumOptFromConf(Configuration conf) {
     DataChecksum.Type type = getChecksumType(conf);
@@ -390,6 +460,13 @@ public ChecksumOpt getDefaultChecksumOpt() {
     return defaultChecksumOpt;
   }
 
+  /**
+   * @return the checksumCombineMode
+   */
+  public ChecksumCombineMode getChecksumCombineMode() {
+    return checksumCombineMode;
+  }
+
   /**
    * @return the writePacketSize
    */
@@ -411,6 +488,14 @@ public ByteArrayManager.Conf getWriteByteArrayManagerConf() {
     return writeByteArrayManagerConf;
   }
 
+  /**
+   * @return the number of bytes kept in free packet buffers, or 0 if packet
+   *         buffers are not pooled
+   */
+  public long getWritePacketPoolMaxBytes() {
+    return writePacketPoolMaxBytes;
+  }
+
   /**
    * @return whether TCP_NODELAY should be set on client sockets
    */
@@ -551,6 +636,35 @@ public int getHedgedReadThreadpoolSize() {
     return hedgedReadThreadpoolSize;
   }
 
+  /**
+   * @return whether reads track DataNode latencies, to hedge adaptively and
+   *         avoid slow DataNodes
+   */
+  public boolean isHedgedReadAdaptive() {
+    return hedgedReadAdaptive;
+  }
+
+  /**
+   * @return the hedgedReadAdaptivePercentile
+   */
+  public float getHedgedReadAdaptivePercentile() {
+    return hedgedReadAdaptivePercentile;
+  }
+
+  /**
+   * @return the hedgedReadAdaptiveMinThresholdMillis
+   */
+  public long getHedgedReadAdaptiveMinThresholdMillis() {
+    return hedgedReadAdaptiveMinThresholdMillis;
+  }
+
+  /**
+   * @return the hedgedReadSlowNodeFactor
+   */
+  public float getHedgedReadSlowNodeFactor() {
+    return hedgedReadSlowNodeFactor;
+  }
+
   /**
    * @return the stripedReadThreadpoolSize
    */
@@ -558,6 +672,34 @@ public int getStripedReadThreadpoolSize() {
     return stripedReadThreadpoolSize;
   }
 
+  /**
+   * @return the stripedReadAheadStripes
+   */
+  public int getStripedReadAheadStripes() {
+    return stripedReadAheadStripes;
+  }
+
+  /**
+   * @return the stripedReadDecodedStripeCacheSize
+   */
+  public int getStripedReadDecodedStripeCacheSize() {
+    return stripedReadDecodedStripeCacheSize;
+  }
+
+  /**
+   * @return the vectoredReadThreadpoolSize
+   */
+  public int getVectoredReadThreadpoolSize() {
+    return vectoredReadThreadpoolSize;
+  }
+
+  /**
+   * @return the fileChecksumThreadpoolSize
+   */
+  public int getFileChecksumThreadpoolSize() {
+    return fileChecksumThreadpoolSize;
+  }
+
   /**
    * @return the replicaAccessorBuilderClasses
    */
@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.client.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport.DiffReportEntry;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport.DiffType;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReportListing;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReportListing.DiffReportListingEntry;
+
+/**
+ * Combines the pages of a {@link SnapshotDiffReportListing} into a
+ * {@link SnapshotDiffReport}, matching the sources and the targets of the
+ * renames found in different pages.
+ */
+@InterfaceAudience.Private
+public class SnapshotDiffReportGenerator {
+  /** The source and the target of a rename. */
+  private static class RenameEntry {
+    private byte[] sourcePath;
+    private byte[] targetPath;
+
+    boolean isRename() {
+      return sourcePath != null && targetPath != null;
+    }
+  }
+
+  private final String snapshotRoot;
+  private final String fromSnapshot;
+  private final String toSnapshot;
+  private boolean isFromEarlier = true;
+  private final List<DiffReportListingEntry> modifiedList =
+      new ArrayList<>();
+  private final Map<Long, List<DiffReportListingEntry>> createdByDir =
+      new HashMap<>();
+  private final Map<Long, List<DiffReportListingEntry>> deletedByDir =
+      new HashMap<>();
+  private final Map<Long, RenameEntry> renameMap = new HashMap<>();
+
+  public SnapshotDiffReportGenerator(String snapshotRoot, String fromSnapshot,
+      String toSnapshot) {
+    this.snapshotRoot = snapshotRoot;
+    this.fromSnapshot = fromSnapshot;
+    this.toSnapshot = toSnapshot;
+  }
+
+  /** Add a page of the listing, in the order of the pages. */
+  public void addListing(SnapshotDiffReportListing listing) {
+    isFromEarlier = listing.getIsFromEarlier();
+    modifiedList.addAll(listing.getModifyList());
+    for (DiffReportListingEntry entry : listing.getCreateList()) {
+      addByDir(createdByDir, entry);
+    }
+    for (DiffReportListingEntry entry : listing.getDeleteList()) {
+      addByDir(deletedByDir, entry);
+      if (entry.isReference()) {
+        RenameEntry rename = getEntry(entry.getFileId());
+        rename.sourcePath = entry.getSourcePath();
+        if (entry.getTargetPath() != null) {
+          rename.targetPath = entry.getTargetPath();
+        }
+      }
+    }
+  }
+
+  private static void addByDir(Map<Long, List<DiffReportListingEntry>> map,
+      DiffReportListingEntry entry) {
+    List<DiffReportListingEntry> list = map.get(entry.getDirId());
+    if (list == null) {
+      list = new ArrayList<>();
+      map.put(entry.getDirId(), list);
+    }
+    list.add(entry);
+  }
+
+  private RenameEntry getEntry(long inodeId) {
+    RenameEntry entry = renameMap.get(inodeId);
+    if (entry == null) {
+      entry = new RenameEntry();
+      renameMap.put(inodeId, entry);
+    }
+    return entry;
+  }
+
+  /**
+   * Generate the report once all the pages are added.
+   */
+  public SnapshotDiffReport generateReport() {
+    // a created reference is the target of a rename, unless the path of the
+    // target was found with the source
+    for (List<DiffReportListingEntry> created : createdByDir.values()) {
+      for (DiffReportListingEntry entry : created) {
+        if (entry.isReference()) {
+          RenameEntry rename = getEntry(entry.getFileId());
+          if (rename.targetPath == null) {
+            rename.targetPath = entry.getSourcePath();
+          }
+        }
+      }
+    }
+    List<DiffReportEntry> diffReportList = new ArrayList<>();
+    for (DiffReportListingEntry modified : modifiedList) {
+      diffReportList.add(
+          new DiffReportEntry(DiffType.MODIFY, modified.getSourcePath(), null));
+      generateReport(modified.getDirId(), diffReportList);
+    }
+    return new SnapshotDiffReport(snapshotRoot, fromSnapshot, toSnapshot,
+        diffReportList);
+  }
+
+  /**
+   * Add the entries of the children created in and deleted from a directory
+   * to the report.
+   */
+  private void generateReport(long dirId, List<DiffReportEntry> list) {
+    for (DiffReportListingEntry created : getList(createdByDir, dirId)) {
+      RenameEntry entry = renameMap.get(created.getFileId());
+      if (entry == null || !entry.isRename()) {
+        list.add(new DiffReportEntry(isFromEarlier ? DiffType.CREATE
+            : DiffType.DELETE, created.getSourcePath()));
+      }
+    }
+    for (DiffReportListingEntry deleted : getList(deletedByDir, dirId)) {
+      RenameEntry entry = renameMap.get(deleted.getFileId());
+      if (entry != null && entry.isRename()) {
+        list.add(new DiffReportEntry(DiffType.RENAME,
+            isFromEarlier ? entry.sourcePath : entry.targetPath,
+            isFromEarlier ? entry.targetPath : entry.sourcePath));
+      } else {
+        list.add(new DiffReportEntry(isFromEarlier ? DiffType.DELETE
+            : DiffType.CREATE, deleted.getSourcePath()));
+      }
+    }
+  }
+
+  private static List<DiffReportListingEntry> getList(
+      Map<Long, List<DiffReportListingEntry>> map, long dirId) {
+    List<DiffReportListingEntry> list = map.get(dirId);
+    return list != null ? list
+        : Collections.<DiffReportListingEntry>emptyList();
+  }
+}
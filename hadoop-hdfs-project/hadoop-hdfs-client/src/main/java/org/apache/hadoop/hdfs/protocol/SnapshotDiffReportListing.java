@@ -0,0 +1,165 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.protocol;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.hdfs.DFSUtilClient;
+
+/**
+ * A page of the difference between two snapshots of a directory, or between
+ * a snapshot of the directory and its current tree.
+ *
+ * Unlike a {@link SnapshotDiffReport}, a listing holds the changes as found
+ * in the directories, with the inode IDs needed to match the source and the
+ * target of a rename across pages. The client combines the pages into a
+ * report once the listing is complete.
+ *
+ * A listing ends at a cursor, the path of a directory and the index of the
+ * child of the directory to continue from. The cursor of the last page is
+ * an empty path and an index of -1.
+ */
+public class SnapshotDiffReportListing {
+  /**
+   * A change found in a directory: a modified file or directory, or a child
+   * created in or deleted from a directory.
+   */
+  public static class DiffReportListingEntry {
+    /** The ID of the modified inode, or of the parent of the child. */
+    private final long dirId;
+    /** The ID of the modified inode, or of the child. */
+    private final long fileId;
+    /** The path relative to the snapshot root. */
+    private final byte[] sourcePath;
+    /**
+     * For a created child, whether it is a reference, the possible target of
+     * a rename. For a deleted child, whether it is the source of a rename.
+     */
+    private final boolean isReference;
+    /**
+     * The path of the target of a rename whose source is a deleted child,
+     * if known to be under the snapshot root. Null otherwise.
+     */
+    private final byte[] targetPath;
+
+    public DiffReportListingEntry(long dirId, long fileId, byte[] sourcePath,
+        boolean isReference, byte[] targetPath) {
+      this.dirId = dirId;
+      this.fileId = fileId;
+      this.sourcePath = sourcePath;
+      this.isReference = isReference;
+      this.targetPath = targetPath;
+    }
+
+    public DiffReportListingEntry(long dirId, long fileId,
+        byte[][] sourcePathComponents, boolean isReference,
+        byte[][] targetPathComponents) {
+      this(dirId, fileId, DFSUtilClient.byteArray2bytes(sourcePathComponents),
+          isReference, targetPathComponents == null ? null
+              : DFSUtilClient.byteArray2bytes(targetPathComponents));
+    }
+
+    public long getDirId() {
+      return dirId;
+    }
+
+    public long getFileId() {
+      return fileId;
+    }
+
+    public byte[] getSourcePath() {
+      return sourcePath;
+    }
+
+    public boolean isReference() {
+      return isReference;
+    }
+
+    public byte[] getTargetPath() {
+      return targetPath;
+    }
+
+    @Override
+    public String toString() {
+      return "DiffReportListingEntry(dirId=" + dirId + ", fileId=" + fileId
+          + ", path=" + DFSUtilClient.bytes2String(sourcePath)
+          + (isReference ? ", reference" : "")
+          + (targetPath != null ?
+              " -> " + DFSUtilClient.bytes2String(targetPath) : "") + ")";
+    }
+  }
+
+  private final List<DiffReportListingEntry> modifyList;
+  private final List<DiffReportListingEntry> createList;
+  private final List<DiffReportListingEntry> deleteList;
+  /** The path of the directory of the cursor, relative to the root. */
+  private final byte[] lastPath;
+  /** The index of the child of the directory of the cursor. */
+  private final int lastIndex;
+  /** Whether the from snapshot is earlier than the to snapshot. */
+  private final boolean isFromEarlier;
+
+  public SnapshotDiffReportListing() {
+    this(Collections.<DiffReportListingEntry>emptyList(),
+        Collections.<DiffReportListingEntry>emptyList(),
+        Collections.<DiffReportListingEntry>emptyList(),
+        DFSUtilClient.EMPTY_BYTES, -1, true);
+  }
+
+  public SnapshotDiffReportListing(List<DiffReportListingEntry> modifyList,
+      List<DiffReportListingEntry> createList,
+      List<DiffReportListingEntry> deleteList, byte[] lastPath,
+      int lastIndex, boolean isFromEarlier) {
+    this.modifyList = modifyList;
+    this.createList = createList;
+    this.deleteList = deleteList;
+    this.lastPath = lastPath;
+    this.lastIndex = lastIndex;
+    this.isFromEarlier = isFromEarlier;
+  }
+
+  public List<DiffReportListingEntry> getModifyList() {
+    return modifyList;
+  }
+
+  public List<DiffReportListingEntry> getCreateList() {
+    return createList;
+  }
+
+  public List<DiffReportListingEntry> getDeleteList() {
+    return deleteList;
+  }
+
+  public byte[] getLastPath() {
+    return lastPath;
+  }
+
+  public int getLastIndex() {
+    return lastIndex;
+  }
+
+  public boolean getIsFromEarlier() {
+    return isFromEarlier;
+  }
+
+  /** @return true if this is the last page of the listing. */
+  public boolean isLast() {
+    return lastIndex == -1 && lastPath.length == 0;
+  }
+}
@@ -22,6 +22,7 @@
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.protocol.BlockChecksumType;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.protocol.StripedBlockInfo;
@@ -197,14 +198,16 @@ void copyBlock(final ExtendedBlock blk,
       final Token<BlockTokenIdentifier> blockToken) throws IOException;
 
   /**
-   * Get block checksum (MD5 of CRC32).
+   * Get block checksum (MD5 of CRC32, or the composed CRC of the block).
    *
    * @param blk a block.
    * @param blockToken security token for accessing the block.
+   * @param blockChecksumType how to combine the chunk CRCs of the block.
    * @throws IOException
    */
   void blockChecksum(ExtendedBlock blk,
-      Token<BlockTokenIdentifier> blockToken) throws IOException;
+      Token<BlockTokenIdentifier> blockToken,
+      BlockChecksumType blockChecksumType) throws IOException;
 
 
   /**
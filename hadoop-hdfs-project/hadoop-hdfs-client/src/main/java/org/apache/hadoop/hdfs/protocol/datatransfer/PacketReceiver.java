@@ -25,6 +25,7 @@
 import java.nio.channels.ReadableByteChannel;
 
 import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.io.ByteBufferPool;
 import org.apache.hadoop.util.DirectBufferPool;
 import org.apache.hadoop.io.IOUtils;
 
@@ -51,6 +52,8 @@ public class PacketReceiver implements Closeable {
 
   private static final DirectBufferPool bufferPool = new DirectBufferPool();
   private final boolean useDirectBuffers;
+  /** The pool of heap buffers, or null to allocate them. */
+  private final ByteBufferPool heapBufferPool;
 
   /**
    * The entirety of the most recently read packet.
@@ -76,6 +79,19 @@ public class PacketReceiver implements Closeable {
 
   public PacketReceiver(boolean useDirectBuffers) {
     this.useDirectBuffers = useDirectBuffers;
+    this.heapBufferPool = null;
+    reallocPacketBuf(PacketHeader.PKT_LENGTHS_LEN);
+  }
+
+  /**
+   * Receive packets into heap buffers taken from the given pool. The buffer
+   * is returned to the pool when this receiver is closed.
+   *
+   * @param heapBufferPool the pool, or null to allocate the buffers
+   */
+  public PacketReceiver(ByteBufferPool heapBufferPool) {
+    this.useDirectBuffers = false;
+    this.heapBufferPool = heapBufferPool;
     reallocPacketBuf(PacketHeader.PKT_LENGTHS_LEN);
   }
 
@@ -268,6 +284,8 @@ private void reallocPacketBuf(int atLeastCapacity) {
       ByteBuffer newBuf;
       if (useDirectBuffers) {
         newBuf = bufferPool.getBuffer(atLeastCapacity);
+      } else if (heapBufferPool != null) {
+        newBuf = heapBufferPool.getBuffer(false, atLeastCapacity);
       } else {
         newBuf = ByteBuffer.allocate(atLeastCapacity);
       }
@@ -287,6 +305,9 @@ private void returnPacketBufToPool() {
     if (curPacketBuf != null && curPacketBuf.isDirect()) {
       bufferPool.returnBuffer(curPacketBuf);
       curPacketBuf = null;
+    } else if (curPacketBuf != null && heapBufferPool != null) {
+      heapBufferPool.putBuffer(curPacketBuf);
+      curPacketBuf = null;
     }
   }
 
@@ -59,6 +59,7 @@
 import org.apache.hadoop.hdfs.inotify.EventBatch;
 import org.apache.hadoop.hdfs.inotify.EventBatchList;
 import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.protocol.BlockChecksumType;
 import org.apache.hadoop.hdfs.protocol.BlockStoragePolicy;
 import org.apache.hadoop.hdfs.protocol.CacheDirectiveEntry;
 import org.apache.hadoop.hdfs.protocol.CacheDirectiveInfo;
@@ -92,6 +93,8 @@
 import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport;
 import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport.DiffReportEntry;
 import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport.DiffType;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReportListing;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReportListing.DiffReportListingEntry;
 import org.apache.hadoop.hdfs.protocol.SnapshottableDirectoryStatus;
 import org.apache.hadoop.hdfs.protocol.proto.AclProtos.AclEntryProto;
 import org.apache.hadoop.hdfs.protocol.proto.AclProtos.AclEntryProto.AclEntryScopeProto;
@@ -116,6 +119,7 @@
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.RollingUpgradeActionProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.RollingUpgradeInfoProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.SafeModeActionProto;
+import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.BlockChecksumTypeProto;
 import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.ShortCircuitShmIdProto;
 import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.ShortCircuitShmSlotProto;
 import org.apache.hadoop.hdfs.protocol.proto.EncryptionZonesProtos.EncryptionZoneProto;
@@ -145,7 +149,10 @@
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.LocatedBlocksProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.QuotaUsageProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.RollingUpgradeStatusProto;
+import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.SnapshotDiffReportCursorProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.SnapshotDiffReportEntryProto;
+import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.SnapshotDiffReportListingEntryProto;
+import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.SnapshotDiffReportListingProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.SnapshotDiffReportProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.SnapshottableDirectoryListingProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.SnapshottableDirectoryStatusProto;
@@ -215,6 +222,30 @@ public static HdfsProtos.ChecksumTypeProto convert(DataChecksum.Type type) {
     return HdfsProtos.ChecksumTypeProto.valueOf(type.id);
   }
 
+  public static BlockChecksumTypeProto convert(BlockChecksumType type) {
+    switch (type) {
+    case MD5CRC:
+      return BlockChecksumTypeProto.MD5CRC;
+    case COMPOSITE_CRC:
+      return BlockChecksumTypeProto.COMPOSITE_CRC;
+    default:
+      throw new IllegalArgumentException(
+          "Unexpected block checksum type: " + type);
+    }
+  }
+
+  public static BlockChecksumType convert(BlockChecksumTypeProto type) {
+    switch (type) {
+    case MD5CRC:
+      return BlockChecksumType.MD5CRC;
+    case COMPOSITE_CRC:
+      return BlockChecksumType.COMPOSITE_CRC;
+    default:
+      throw new IllegalArgumentException(
+          "Unexpected block checksum type: " + type);
+    }
+  }
+
   public static ExtendedBlockProto convert(final ExtendedBlock b) {
     if (b == null) return null;
     return ExtendedBlockProto.newBuilder().
@@ -1376,6 +1407,46 @@ public static DiffReportEntry convert(SnapshotDiffReportEntryProto entry) {
         .toByteArray() : null);
   }
 
+  public static SnapshotDiffReportListing convert(
+      SnapshotDiffReportListingProto reportProto) {
+    if (reportProto == null) {
+      return null;
+    }
+    List<DiffReportListingEntry> modifiedEntries =
+        convertListingEntries(reportProto.getModifiedEntriesList());
+    List<DiffReportListingEntry> createdEntries =
+        convertListingEntries(reportProto.getCreatedEntriesList());
+    List<DiffReportListingEntry> deletedEntries =
+        convertListingEntries(reportProto.getDeletedEntriesList());
+    byte[] startPath = DFSUtilClient.EMPTY_BYTES;
+    int index = -1;
+    if (reportProto.hasCursor()) {
+      startPath = reportProto.getCursor().getStartPath().toByteArray();
+      index = reportProto.getCursor().getIndex();
+    }
+    return new SnapshotDiffReportListing(modifiedEntries, createdEntries,
+        deletedEntries, startPath, index, reportProto.getIsFromEarlier());
+  }
+
+  private static List<DiffReportListingEntry> convertListingEntries(
+      List<SnapshotDiffReportListingEntryProto> list) {
+    List<DiffReportListingEntry> entries = new ArrayList<>(list.size());
+    for (SnapshotDiffReportListingEntryProto entryProto : list) {
+      entries.add(convert(entryProto));
+    }
+    return entries;
+  }
+
+  public static DiffReportListingEntry convert(
+      SnapshotDiffReportListingEntryProto entry) {
+    if (entry == null) {
+      return null;
+    }
+    return new DiffReportListingEntry(entry.getDirId(), entry.getFileId(),
+        entry.getFullpath().toByteArray(), entry.getIsReference(),
+        entry.hasTargetPath() ? entry.getTargetPath().toByteArray() : null);
+  }
+
   public static SnapshottableDirectoryStatus[] convert(
       SnapshottableDirectoryListingProto sdlp) {
     if (sdlp == null)
@@ -2218,6 +2289,48 @@ public static SnapshotDiffReportProto convert(SnapshotDiffReport report) {
         .addAllDiffReportEntries(entryProtos).build();
   }
 
+  public static SnapshotDiffReportListingEntryProto convert(
+      DiffReportListingEntry entry) {
+    if (entry == null) {
+      return null;
+    }
+    SnapshotDiffReportListingEntryProto.Builder builder =
+        SnapshotDiffReportListingEntryProto.newBuilder()
+            .setFullpath(getByteString(entry.getSourcePath()))
+            .setDirId(entry.getDirId())
+            .setFileId(entry.getFileId())
+            .setIsReference(entry.isReference());
+    if (entry.getTargetPath() != null) {
+      builder.setTargetPath(getByteString(entry.getTargetPath()));
+    }
+    return builder.build();
+  }
+
+  public static SnapshotDiffReportListingProto convert(
+      SnapshotDiffReportListing report) {
+    if (report == null) {
+      return null;
+    }
+    SnapshotDiffReportListingProto.Builder builder =
+        SnapshotDiffReportListingProto.newBuilder()
+            .setIsFromEarlier(report.getIsFromEarlier());
+    for (DiffReportListingEntry entry : report.getModifyList()) {
+      builder.addModifiedEntries(convert(entry));
+    }
+    for (DiffReportListingEntry entry : report.getCreateList()) {
+      builder.addCreatedEntries(convert(entry));
+    }
+    for (DiffReportListingEntry entry : report.getDeleteList()) {
+      builder.addDeletedEntries(convert(entry));
+    }
+    if (!report.isLast()) {
+      builder.setCursor(SnapshotDiffReportCursorProto.newBuilder()
+          .setStartPath(getByteString(report.getLastPath()))
+          .setIndex(report.getLastIndex()).build());
+    }
+    return builder.build();
+  }
+
   public static CacheDirectiveStatsProto convert(CacheDirectiveStats stats) {
     CacheDirectiveStatsProto.Builder builder =
         CacheDirectiveStatsProto.newBuilder();
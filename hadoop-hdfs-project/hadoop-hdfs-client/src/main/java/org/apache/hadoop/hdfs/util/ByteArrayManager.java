@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hdfs.util;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
@@ -297,6 +298,10 @@ public static ByteArrayManager newInstance(Conf conf) {
     return conf == null? new NewByteArrayWithoutLimit(): new Impl(conf);
   }
 
+  public static ByteArrayManager newInstance(PacketBufferPool pool) {
+    return new Pooled(pool);
+  }
+
   /**
    * A dummy implementation which simply calls new byte[].
    */
@@ -312,6 +317,32 @@ public int release(byte[] array) {
     }
   }
 
+  /**
+   * Take the byte arrays from a {@link PacketBufferPool}. Unlike {@link Impl},
+   * this never blocks: the number of arrays in use is not limited, only the
+   * number of bytes kept in free arrays.
+   */
+  static class Pooled extends ByteArrayManager {
+    private final PacketBufferPool pool;
+
+    Pooled(PacketBufferPool pool) {
+      this.pool = Preconditions.checkNotNull(pool);
+    }
+
+    @Override
+    public byte[] newByteArray(int size) {
+      Preconditions.checkArgument(size >= 0);
+      return size == 0? EMPTY_BYTE_ARRAY: pool.getBuffer(false, size).array();
+    }
+
+    @Override
+    public int release(byte[] array) {
+      Preconditions.checkNotNull(array);
+      pool.putBuffer(ByteBuffer.wrap(array));
+      return -1;
+    }
+  }
+
   /**
    * Manage byte array allocation and provide a mechanism for recycling the byte
    * array objects.
@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.io.ByteBufferPool;
+import org.apache.hadoop.io.ElasticByteBufferPool;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A {@link ByteBufferPool} for the buffers of data transfer packets.
+ *
+ * Buffers are grouped into size classes, which are the powers of two from
+ * {@link #MIN_BUFFER_SIZE} to {@link #MAX_BUFFER_SIZE}, so that a buffer can
+ * be reused for any packet of up to its size. Unlike
+ * {@link ElasticByteBufferPool}, which keeps every buffer returned to it, this
+ * pool keeps at most a given number of bytes in free buffers and drops the
+ * buffers returned beyond that. A buffer taken from the pool is owned by the
+ * caller until it is returned; a buffer which is never returned is simply
+ * garbage collected.
+ */
+@InterfaceAudience.Private
+public class PacketBufferPool implements ByteBufferPool {
+  static final int MIN_BUFFER_SIZE = 512;
+  /** Larger buffers are allocated as requested and not pooled. */
+  static final int MAX_BUFFER_SIZE = 16 * 1024 * 1024;
+
+  private static final int NUM_CLASSES =
+      Integer.numberOfTrailingZeros(MAX_BUFFER_SIZE)
+      - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE) + 1;
+
+  private final long maxFreeBytes;
+  private final ArrayDeque<ByteBuffer>[] heapBuffers = newClasses();
+  private final ArrayDeque<ByteBuffer>[] directBuffers = newClasses();
+
+  private long freeBytes = 0;
+  private long numAllocated = 0;
+  private long bytesAllocated = 0;
+  private long numReused = 0;
+
+  /**
+   * @param maxFreeBytes the maximum number of bytes kept in free buffers.
+   */
+  public PacketBufferPool(long maxFreeBytes) {
+    Preconditions.checkArgument(maxFreeBytes >= 0);
+    this.maxFreeBytes = maxFreeBytes;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ArrayDeque<ByteBuffer>[] newClasses() {
+    final ArrayDeque<ByteBuffer>[] classes = new ArrayDeque[NUM_CLASSES];
+    for (int i = 0; i < classes.length; i++) {
+      classes[i] = new ArrayDeque<>();
+    }
+    return classes;
+  }
+
+  /**
+   * @return the size class of the given length, or -1 if the buffers of the
+   *         length are not pooled.
+   */
+  private static int getSizeClass(int length) {
+    if (length > MAX_BUFFER_SIZE) {
+      return -1;
+    }
+    final int size = length <= MIN_BUFFER_SIZE ? MIN_BUFFER_SIZE
+        : ByteArrayManager.leastPowerOfTwo(length);
+    return Integer.numberOfTrailingZeros(size)
+        - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+  }
+
+  /**
+   * Get a cleared buffer with a capacity of at least the given length,
+   * rounded up to its size class.
+   */
+  @Override
+  public ByteBuffer getBuffer(boolean direct, int length) {
+    Preconditions.checkArgument(length >= 0);
+    final int sizeClass = getSizeClass(length);
+    final int size;
+    if (sizeClass < 0) {
+      size = length;
+    } else {
+      size = MIN_BUFFER_SIZE << sizeClass;
+      synchronized (this) {
+        final ByteBuffer buffer =
+            (direct ? directBuffers : heapBuffers)[sizeClass].pollFirst();
+        if (buffer != null) {
+          freeBytes -= size;
+          numReused++;
+          buffer.clear();
+          return buffer;
+        }
+      }
+    }
+    synchronized (this) {
+      numAllocated++;
+      bytesAllocated += size;
+    }
+    return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+  }
+
+  /**
+   * Return a buffer to the pool. Buffers which are not of a size class, or
+   * would exceed the maximum number of free bytes, are dropped.
+   */
+  @Override
+  public void putBuffer(ByteBuffer buffer) {
+    final int size = buffer.capacity();
+    if (size < MIN_BUFFER_SIZE || Integer.bitCount(size) != 1
+        || (!buffer.isDirect() && buffer.arrayOffset() != 0)) {
+      return;
+    }
+    final int sizeClass = getSizeClass(size);
+    if (sizeClass < 0) {
+      return;
+    }
+    synchronized (this) {
+      if (freeBytes + size > maxFreeBytes) {
+        return;
+      }
+      freeBytes += size;
+      // reuse the most recently returned buffers first
+      (buffer.isDirect() ? directBuffers : heapBuffers)[sizeClass]
+          .addFirst(buffer);
+    }
+  }
+
+  /** @return the number of bytes in free buffers. */
+  public synchronized long getFreeBytes() {
+    return freeBytes;
+  }
+
+  /** @return the number of buffers allocated by the pool. */
+  public synchronized long getNumAllocated() {
+    return numAllocated;
+  }
+
+  /** @return the number of bytes allocated by the pool. */
+  public synchronized long getBytesAllocated() {
+    return bytesAllocated;
+  }
+
+  /** @return the number of buffers which were reused. */
+  public synchronized long getNumReused() {
+    return numReused;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return getClass().getSimpleName() + "(freeBytes=" + freeBytes
+        + "/" + maxFreeBytes + ", allocated=" + numAllocated
+        + ", reused=" + numReused + ")";
+  }
+}
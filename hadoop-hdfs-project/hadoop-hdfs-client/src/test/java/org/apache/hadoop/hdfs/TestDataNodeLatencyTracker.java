@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.hdfs.DataNodeLatencyTracker.LatencyHistogram;
+import org.apache.hadoop.hdfs.protocol.DatanodeID;
+import org.junit.Test;
+
+public class TestDataNodeLatencyTracker {
+  private static final DatanodeID DN1 =
+      new DatanodeID("1.1.1.1", "host1", "uuid1", 100, 101, 102, 103);
+  private static final DatanodeID DN2 =
+      new DatanodeID("2.2.2.2", "host2", "uuid2", 100, 101, 102, 103);
+  private static final DatanodeID DN3 =
+      new DatanodeID("3.3.3.3", "host3", "uuid3", 100, 101, 102, 103);
+
+  @Test
+  public void testBuckets() {
+    for (long micros = 0; micros < 100000; micros++) {
+      int bucket = LatencyHistogram.bucket(micros);
+      assertTrue(micros + " below its bucket",
+          LatencyHistogram.lowerBound(bucket) <= micros);
+      assertTrue(micros + " above its bucket",
+          micros < LatencyHistogram.lowerBound(bucket + 1));
+    }
+    assertEquals(LatencyHistogram.NUM_BUCKETS - 1,
+        LatencyHistogram.bucket(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testHedgeThreshold() {
+    DataNodeLatencyTracker tracker =
+        new DataNodeLatencyTracker(90, 1, 3);
+    // too few samples for a percentile
+    for (int i = 0; i < DataNodeLatencyTracker.MIN_SAMPLES - 1; i++) {
+      tracker.addLatency(DN1, 2000);
+    }
+    assertEquals(500, tracker.getHedgeThresholdMillis(500));
+
+    // 90% of reads take 2ms, 10% 100ms
+    for (int i = 0; i < 71; i++) {
+      tracker.addLatency(DN1, 2000);
+    }
+    for (int i = 0; i < 10; i++) {
+      tracker.addLatency(DN2, 100000);
+    }
+    long threshold = tracker.getHedgeThresholdMillis(500);
+    assertTrue("threshold " + threshold, threshold >= 2 && threshold <= 3);
+
+    // once more reads are slow, the threshold grows
+    for (int i = 0; i < 20; i++) {
+      tracker.addLatency(DN2, 100000);
+    }
+    threshold = tracker.getHedgeThresholdMillis(500);
+    assertTrue("threshold " + threshold, threshold >= 100 && threshold <= 120);
+
+    // but never below the minimum
+    tracker = new DataNodeLatencyTracker(90, 50, 3);
+    for (int i = 0; i < 100; i++) {
+      tracker.addLatency(DN1, 10);
+    }
+    assertEquals(50, tracker.getHedgeThresholdMillis(500));
+  }
+
+  @Test
+  public void testSlowNode() {
+    DataNodeLatencyTracker tracker =
+        new DataNodeLatencyTracker(95, 10, 3);
+    assertFalse(tracker.isSlow(DN1));
+    for (int i = 0; i < 100; i++) {
+      tracker.addLatency(DN1, 1000);
+      tracker.addLatency(DN2, 2500);
+    }
+    for (int i = 0; i < DataNodeLatencyTracker.MIN_SAMPLES; i++) {
+      tracker.addLatency(DN3, 50000);
+    }
+    assertFalse(tracker.isSlow(DN1));
+    assertFalse(tracker.isSlow(DN2));
+    assertTrue(tracker.isSlow(DN3));
+  }
+
+  @Test
+  public void testDecay() throws Exception {
+    DataNodeLatencyTracker tracker =
+        new DataNodeLatencyTracker(95, 10, 3, 100);
+    for (int i = 0; i < 100; i++) {
+      tracker.addLatency(DN1, 1000);
+    }
+    for (int i = 0; i < 4 * DataNodeLatencyTracker.MIN_SAMPLES; i++) {
+      tracker.addLatency(DN2, 50000);
+    }
+    assertTrue(tracker.isSlow(DN2));
+    assertEquals(4 * DataNodeLatencyTracker.MIN_SAMPLES,
+        tracker.getNumSamples(DN2));
+    // without new reads, the slow node is forgotten
+    Thread.sleep(350);
+    assertTrue(tracker.getNumSamples(DN2) < DataNodeLatencyTracker.MIN_SAMPLES);
+    assertFalse(tracker.isSlow(DN2));
+  }
+}
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Test {@link PacketBufferPool}.
+ */
+public class TestPacketBufferPool {
+  private static final int PACKET_LEN = 65049;
+
+  @Test
+  public void testSizeClasses() {
+    PacketBufferPool pool = new PacketBufferPool(1 << 20);
+    assertEquals(PacketBufferPool.MIN_BUFFER_SIZE,
+        pool.getBuffer(false, 6).capacity());
+    ByteBuffer buffer = pool.getBuffer(false, PACKET_LEN);
+    assertEquals(64 * 1024, buffer.capacity());
+    assertFalse(buffer.isDirect());
+    buffer.position(100);
+    pool.putBuffer(buffer);
+    assertEquals(64 * 1024, pool.getFreeBytes());
+
+    // any length of the size class gets the buffer back, cleared
+    ByteBuffer reused = pool.getBuffer(false, 40000);
+    assertSame(buffer, reused);
+    assertEquals(0, reused.position());
+    assertEquals(reused.capacity(), reused.limit());
+    assertEquals(0, pool.getFreeBytes());
+    assertEquals(2, pool.getNumAllocated());
+    assertEquals(1, pool.getNumReused());
+
+    // a smaller size class does not
+    pool.putBuffer(reused);
+    assertNotSame(reused, pool.getBuffer(false, 1000));
+  }
+
+  @Test
+  public void testDirectBuffers() {
+    PacketBufferPool pool = new PacketBufferPool(1 << 20);
+    ByteBuffer heap = pool.getBuffer(false, 4096);
+    ByteBuffer direct = pool.getBuffer(true, 4096);
+    assertTrue(direct.isDirect());
+    pool.putBuffer(heap);
+    pool.putBuffer(direct);
+    assertSame(direct, pool.getBuffer(true, 4096));
+    assertSame(heap, pool.getBuffer(false, 4096));
+  }
+
+  @Test
+  public void testMaxFreeBytes() {
+    PacketBufferPool pool = new PacketBufferPool(2048);
+    ByteBuffer[] buffers = new ByteBuffer[3];
+    for (int i = 0; i < buffers.length; i++) {
+      buffers[i] = pool.getBuffer(false, 1024);
+    }
+    for (ByteBuffer b : buffers) {
+      pool.putBuffer(b);
+    }
+    assertEquals(2048, pool.getFreeBytes());
+    pool.getBuffer(false, 1024);
+    pool.getBuffer(false, 1024);
+    pool.getBuffer(false, 1024);
+    assertEquals(0, pool.getFreeBytes());
+    assertEquals(4, pool.getNumAllocated());
+    assertEquals(2, pool.getNumReused());
+  }
+
+  @Test
+  public void testForeignBuffers() {
+    PacketBufferPool pool = new PacketBufferPool(1 << 30);
+    // not of a size class
+    pool.putBuffer(ByteBuffer.allocate(1000));
+    pool.putBuffer(ByteBuffer.allocate(256));
+    // a slice of a larger array
+    ByteBuffer array = ByteBuffer.allocate(2048);
+    array.position(1024);
+    pool.putBuffer(array.slice());
+    assertEquals(0, pool.getFreeBytes());
+
+    // buffers beyond the largest size class are not pooled
+    final int large = 2 * PacketBufferPool.MAX_BUFFER_SIZE;
+    ByteBuffer buffer = pool.getBuffer(false, large);
+    assertEquals(large, buffer.capacity());
+    pool.putBuffer(buffer);
+    assertEquals(0, pool.getFreeBytes());
+  }
+
+  @Test
+  public void testByteArrayManager() throws Exception {
+    PacketBufferPool pool = new PacketBufferPool(1 << 20);
+    ByteArrayManager bam = ByteArrayManager.newInstance(pool);
+    byte[] array = bam.newByteArray(PACKET_LEN);
+    assertEquals(64 * 1024, array.length);
+    assertEquals(0, bam.newByteArray(0).length);
+    bam.release(array);
+    assertSame(array, bam.newByteArray(PACKET_LEN));
+    assertEquals(1, pool.getNumAllocated());
+    assertEquals(1, pool.getNumReused());
+  }
+}
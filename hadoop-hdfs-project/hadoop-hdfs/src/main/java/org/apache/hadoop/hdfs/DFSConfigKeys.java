@@ -112,6 +112,12 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final long    DFS_DATANODE_MAX_LOCKED_MEMORY_DEFAULT = 0;
   public static final String  DFS_DATANODE_FSDATASETCACHE_MAX_THREADS_PER_VOLUME_KEY = "dfs.datanode.fsdatasetcache.max.threads.per.volume";
   public static final int     DFS_DATANODE_FSDATASETCACHE_MAX_THREADS_PER_VOLUME_DEFAULT = 4;
+  public static final String  DFS_DATANODE_FSDATASET_LOCK_STRIPES_KEY =
+      "dfs.datanode.fsdataset.lock.stripes";
+  public static final int     DFS_DATANODE_FSDATASET_LOCK_STRIPES_DEFAULT = 0;
+  public static final String  DFS_DATANODE_READ_CACHE_SIZE_KEY =
+      "dfs.datanode.read.cache.size";
+  public static final long    DFS_DATANODE_READ_CACHE_SIZE_DEFAULT = 0;
   public static final String  DFS_DATANODE_LAZY_WRITER_INTERVAL_SEC = "dfs.datanode.lazywriter.interval.sec";
   public static final int     DFS_DATANODE_LAZY_WRITER_INTERVAL_DEFAULT_SEC = 60;
   public static final String  DFS_DATANODE_RAM_DISK_REPLICA_TRACKER_KEY = "dfs.datanode.ram.disk.replica.tracker";
@@ -311,13 +317,39 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_NAMENODE_EDITS_ASYNC_LOGGING =
       "dfs.namenode.edits.asynclogging";
   public static final boolean DFS_NAMENODE_EDITS_ASYNC_LOGGING_DEFAULT = false;
+  public static final String  DFS_NAMENODE_EDITS_ASYNC_LOGGING_PENDING_QUEUE_SIZE =
+      "dfs.namenode.edits.asynclogging.pending.queue.size";
+  public static final int     DFS_NAMENODE_EDITS_ASYNC_LOGGING_PENDING_QUEUE_SIZE_DEFAULT =
+      4096;
+  public static final String  DFS_NAMENODE_EDITS_ASYNC_LOGGING_MAX_BATCH_EDITS =
+      "dfs.namenode.edits.asynclogging.max-batch-edits";
+  public static final int     DFS_NAMENODE_EDITS_ASYNC_LOGGING_MAX_BATCH_EDITS_DEFAULT =
+      0;
+  public static final String  DFS_NAMENODE_EDITS_ASYNC_LOGGING_MAX_BATCH_WAIT_MS =
+      "dfs.namenode.edits.asynclogging.max-batch-wait-ms";
+  public static final long    DFS_NAMENODE_EDITS_ASYNC_LOGGING_MAX_BATCH_WAIT_MS_DEFAULT =
+      0;
 
   public static final String  DFS_LIST_LIMIT = "dfs.ls.limit";
   public static final int     DFS_LIST_LIMIT_DEFAULT = 1000;
+  public static final String  DFS_NAMENODE_LISTING_CACHE_MAX_BYTES_KEY =
+      "dfs.namenode.listing.cache.max-bytes";
+  public static final long    DFS_NAMENODE_LISTING_CACHE_MAX_BYTES_DEFAULT = 0;
   public static final String  DFS_CONTENT_SUMMARY_LIMIT_KEY = "dfs.content-summary.limit";
   public static final int     DFS_CONTENT_SUMMARY_LIMIT_DEFAULT = 5000;
   public static final String  DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_KEY = "dfs.content-summary.sleep-microsec";
   public static final long    DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_DEFAULT = 500;
+  public static final String  DFS_CONTENT_SUMMARY_CACHE_SIZE_KEY =
+      "dfs.content-summary.cache.size";
+  public static final int     DFS_CONTENT_SUMMARY_CACHE_SIZE_DEFAULT = 0;
+  public static final String  DFS_CONTENT_SUMMARY_CACHE_MAX_STALENESS_MS_KEY =
+      "dfs.content-summary.cache.max-staleness.ms";
+  public static final long    DFS_CONTENT_SUMMARY_CACHE_MAX_STALENESS_MS_DEFAULT =
+      0;
+  public static final String  DFS_CONTENT_SUMMARY_CACHE_VERIFY_INTERVAL_KEY =
+      "dfs.content-summary.cache.verify-interval";
+  public static final int     DFS_CONTENT_SUMMARY_CACHE_VERIFY_INTERVAL_DEFAULT =
+      0;
   public static final String  DFS_DATANODE_FAILED_VOLUMES_TOLERATED_KEY = "dfs.datanode.failed.volumes.tolerated";
   public static final int     DFS_DATANODE_FAILED_VOLUMES_TOLERATED_DEFAULT = 0;
   public static final String  DFS_DATANODE_SYNCONCLOSE_KEY = "dfs.datanode.synconclose";
@@ -342,6 +374,18 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_NAMENODE_LIST_CACHE_DIRECTIVES_NUM_RESPONSES =
       "dfs.namenode.list.cache.directives.num.responses";
   public static final int     DFS_NAMENODE_LIST_CACHE_DIRECTIVES_NUM_RESPONSES_DEFAULT = 100;
+  public static final String  DFS_NAMENODE_SNAPSHOT_DIFF_LISTING_LIMIT =
+      "dfs.namenode.snapshotdiff.listing.limit";
+  public static final int     DFS_NAMENODE_SNAPSHOT_DIFF_LISTING_LIMIT_DEFAULT =
+      1000;
+  public static final String  DFS_NAMENODE_SNAPSHOT_SKIPLIST_INTERVAL =
+      "dfs.namenode.snapshot.skiplist.interval";
+  public static final int     DFS_NAMENODE_SNAPSHOT_SKIPLIST_INTERVAL_DEFAULT =
+      10;
+  public static final String  DFS_NAMENODE_SNAPSHOT_SKIPLIST_MAX_LEVELS =
+      "dfs.namenode.snapshot.skiplist.max.levels";
+  public static final int
+      DFS_NAMENODE_SNAPSHOT_SKIPLIST_MAX_LEVELS_DEFAULT = 0;
   public static final String  DFS_NAMENODE_PATH_BASED_CACHE_REFRESH_INTERVAL_MS =
       "dfs.namenode.path.based.cache.refresh.interval.ms";
   public static final long    DFS_NAMENODE_PATH_BASED_CACHE_REFRESH_INTERVAL_MS_DEFAULT = 30000L;
@@ -416,6 +460,23 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final long
       DFS_NAMENODE_MAX_LOCK_HOLD_TO_RELEASE_LEASE_MS_DEFAULT = 25;
 
+  public static final String  DFS_NAMENODE_BLOCKS_MAP_CAPACITY_PERCENTAGE_KEY =
+      "dfs.namenode.blocks-map.capacity.percentage";
+  public static final double  DFS_NAMENODE_BLOCKS_MAP_CAPACITY_PERCENTAGE_DEFAULT =
+      2.0;
+  public static final String  DFS_NAMENODE_INODE_MAP_CAPACITY_PERCENTAGE_KEY =
+      "dfs.namenode.inode-map.capacity.percentage";
+  public static final double  DFS_NAMENODE_INODE_MAP_CAPACITY_PERCENTAGE_DEFAULT =
+      1.0;
+  public static final String  DFS_NAMENODE_BLOCKREPORT_RESOLVE_THREADS_KEY =
+      "dfs.namenode.blockreport.resolve.threads";
+  public static final int     DFS_NAMENODE_BLOCKREPORT_RESOLVE_THREADS_DEFAULT =
+      1;
+  public static final String  DFS_NAMENODE_BLOCKREPORT_RESOLVE_SHARD_SIZE_KEY =
+      "dfs.namenode.blockreport.resolve.shard.size";
+  public static final int     DFS_NAMENODE_BLOCKREPORT_RESOLVE_SHARD_SIZE_DEFAULT =
+      100000;
+
   public static final String  DFS_NAMENODE_LOCK_DETAILED_METRICS_KEY =
       "dfs.namenode.lock.detailed-metrics.enabled";
   public static final boolean DFS_NAMENODE_LOCK_DETAILED_METRICS_DEFAULT =
@@ -564,12 +625,30 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final int     DFS_DN_EC_RECONSTRUCTION_STRIPED_READ_TIMEOUT_MILLIS_DEFAULT = 5000; //5s
   public static final String  DFS_DN_EC_RECONSTRUCTION_STRIPED_BLK_THREADS_KEY = "dfs.datanode.ec.reconstruction.stripedblock.threads.size";
   public static final int     DFS_DN_EC_RECONSTRUCTION_STRIPED_BLK_THREADS_DEFAULT = 8;
+  public static final String  DFS_DN_EC_RECONSTRUCTION_BANDWIDTHPERSEC_KEY = "dfs.datanode.ec.reconstruction.bandwidthPerSec";
+  public static final long    DFS_DN_EC_RECONSTRUCTION_BANDWIDTHPERSEC_DEFAULT = 0;
 
   public static final String
       DFS_DATANODE_DIRECTORYSCAN_THROTTLE_LIMIT_MS_PER_SEC_KEY =
       "dfs.datanode.directoryscan.throttle.limit.ms.per.sec";
   public static final int
       DFS_DATANODE_DIRECTORYSCAN_THROTTLE_LIMIT_MS_PER_SEC_DEFAULT = 1000;
+  public static final String  DFS_DATANODE_DIRECTORYSCAN_INDEX_ENABLED_KEY =
+      "dfs.datanode.directoryscan.index.enabled";
+  public static final boolean DFS_DATANODE_DIRECTORYSCAN_INDEX_ENABLED_DEFAULT =
+      false;
+  public static final String  DFS_DATANODE_DIRECTORYSCAN_FULL_SCAN_PERIOD_KEY =
+      "dfs.datanode.directoryscan.full.scan.period";
+  public static final int     DFS_DATANODE_DIRECTORYSCAN_FULL_SCAN_PERIOD_DEFAULT =
+      4;
+  public static final String  DFS_DATANODE_REPLICA_SNAPSHOT_ENABLED_KEY =
+      "dfs.datanode.replica.snapshot.enabled";
+  public static final boolean DFS_DATANODE_REPLICA_SNAPSHOT_ENABLED_DEFAULT =
+      false;
+  public static final String  DFS_DATANODE_REPLICA_SNAPSHOT_INTERVAL_KEY =
+      "dfs.datanode.replica.snapshot.interval";
+  public static final long    DFS_DATANODE_REPLICA_SNAPSHOT_INTERVAL_DEFAULT =
+      3600;
   public static final String  DFS_DATANODE_DNS_INTERFACE_KEY = "dfs.datanode.dns.interface";
   public static final String  DFS_DATANODE_DNS_INTERFACE_DEFAULT = "default";
   public static final String  DFS_DATANODE_DNS_NAMESERVER_KEY = "dfs.datanode.dns.nameserver";
@@ -584,6 +663,12 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_DATANODE_MAX_RECEIVER_THREADS_KEY =
       HdfsClientConfigKeys.DeprecatedKeys.DFS_DATANODE_MAX_RECEIVER_THREADS_KEY;
   public static final int     DFS_DATANODE_MAX_RECEIVER_THREADS_DEFAULT = 4096;
+  public static final String  DFS_DATANODE_TRANSFER_WORKER_THREADS_KEY =
+      "dfs.datanode.transfer.worker.threads";
+  public static final int     DFS_DATANODE_TRANSFER_WORKER_THREADS_DEFAULT = 0;
+  public static final String  DFS_DATANODE_PACKET_POOL_MAX_BYTES_KEY =
+      "dfs.datanode.packet-pool.max-bytes";
+  public static final long    DFS_DATANODE_PACKET_POOL_MAX_BYTES_DEFAULT = 0;
   public static final String  DFS_DATANODE_SCAN_PERIOD_HOURS_KEY = "dfs.datanode.scan.period.hours";
   public static final int     DFS_DATANODE_SCAN_PERIOD_HOURS_DEFAULT = 21 * 24;  // 3 weeks.
   public static final String  DFS_BLOCK_SCANNER_VOLUME_BYTES_PER_SECOND = "dfs.block.scanner.volume.bytes.per.second";
@@ -612,6 +697,13 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.namenode.lifeline.handler.count";
   public static final String  DFS_NAMENODE_SERVICE_HANDLER_COUNT_KEY = "dfs.namenode.service.handler.count";
   public static final int     DFS_NAMENODE_SERVICE_HANDLER_COUNT_DEFAULT = 10;
+  public static final String  DFS_NAMENODE_RPC_PARK_CONTENDED_READS_KEY =
+      "dfs.namenode.rpc.park-contended-reads";
+  public static final boolean DFS_NAMENODE_RPC_PARK_CONTENDED_READS_DEFAULT =
+      false;
+  public static final String  DFS_NAMENODE_RPC_PARK_MAX_TIMES_KEY =
+      "dfs.namenode.rpc.park.max-times";
+  public static final int     DFS_NAMENODE_RPC_PARK_MAX_TIMES_DEFAULT = 3;
   public static final String  DFS_HTTP_POLICY_KEY = "dfs.http.policy";
   public static final String  DFS_HTTP_POLICY_DEFAULT =  HttpConfig.Policy.HTTP_ONLY.name();
   public static final String  DFS_DEFAULT_CHUNK_VIEW_SIZE_KEY = "dfs.default.chunk.view.size";
@@ -677,6 +769,20 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DFS_IMAGE_COMPRESSION_CODEC_DEFAULT =
                                    "org.apache.hadoop.io.compress.DefaultCodec";
 
+  // property for parallel fsimage loading
+  public static final String DFS_IMAGE_PARALLEL_LOAD_KEY =
+      "dfs.image.parallel.load";
+  public static final boolean DFS_IMAGE_PARALLEL_LOAD_DEFAULT = false;
+  public static final String DFS_IMAGE_PARALLEL_TARGET_SECTIONS_KEY =
+      "dfs.image.parallel.target.sections";
+  public static final int DFS_IMAGE_PARALLEL_TARGET_SECTIONS_DEFAULT = 12;
+  public static final String DFS_IMAGE_PARALLEL_INODE_THRESHOLD_KEY =
+      "dfs.image.parallel.inode.threshold";
+  public static final int DFS_IMAGE_PARALLEL_INODE_THRESHOLD_DEFAULT = 1000000;
+  public static final String DFS_IMAGE_PARALLEL_THREADS_KEY =
+      "dfs.image.parallel.threads";
+  public static final int DFS_IMAGE_PARALLEL_THREADS_DEFAULT = 4;
+
   public static final String DFS_IMAGE_TRANSFER_RATE_KEY =
                                            "dfs.image.transfer.bandwidthPerSec";
   public static final long DFS_IMAGE_TRANSFER_RATE_DEFAULT = 0;  //no throttling
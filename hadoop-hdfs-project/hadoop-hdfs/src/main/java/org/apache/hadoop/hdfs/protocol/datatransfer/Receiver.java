@@ -290,7 +290,8 @@ private void opBlockChecksum(DataInputStream in) throws IOException {
         proto.getClass().getSimpleName());
     try {
     blockChecksum(PBHelperClient.convert(proto.getHeader().getBlock()),
-        PBHelperClient.convert(proto.getHeader().getToken()));
+        PBHelperClient.convert(proto.getHeader().getToken()),
+        PBHelperClient.convert(proto.getBlockChecksumType()));
     } finally {
       if (traceScope != null) traceScope.close();
     }
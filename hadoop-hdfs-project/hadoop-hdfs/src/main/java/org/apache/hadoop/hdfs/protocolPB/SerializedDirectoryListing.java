@@ -0,0 +1,46 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.protocolPB;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.protocol.DirectoryListing;
+import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.DirectoryListingProto;
+
+/**
+ * A {@link DirectoryListing} which also keeps its protobuf form, so that a
+ * cached listing is converted only once however many times it is returned
+ * to clients.
+ */
+@InterfaceAudience.Private
+public class SerializedDirectoryListing extends DirectoryListing {
+  private final DirectoryListingProto proto;
+
+  public SerializedDirectoryListing(DirectoryListing listing) {
+    super(listing.getPartialListing(), listing.getRemainingEntries());
+    this.proto = PBHelperClient.convert(listing);
+  }
+
+  public DirectoryListingProto getProto() {
+    return proto;
+  }
+
+  /** @return the size of the listing on the wire. */
+  public int getSerializedSize() {
+    return proto.getSerializedSize();
+  }
+}
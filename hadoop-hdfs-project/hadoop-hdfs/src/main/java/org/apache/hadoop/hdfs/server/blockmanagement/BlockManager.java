@@ -20,6 +20,7 @@
 import static org.apache.hadoop.util.ExitUtil.terminate;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -41,6 +42,9 @@
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
@@ -118,6 +122,7 @@
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -255,6 +260,14 @@ public long getNumTimedOutPendingReconstructions() {
   private final BlockReportProcessingThread blockReportThread =
       new BlockReportProcessingThread();
 
+  /**
+   * Looks up the replicas of initial block reports in the BlocksMap in
+   * parallel, null if they are looked up serially.
+   */
+  private final ExecutorService blockReportResolver;
+  /** Number of replicas of an initial block report per resolver task. */
+  private final int blockReportResolveShardSize;
+
   /** Store blocks -> datanodedescriptor(s) map of corrupt replicas */
   final CorruptReplicasMap corruptReplicas = new CorruptReplicasMap();
 
@@ -388,9 +401,34 @@ public BlockManager(final Namesystem namesystem, boolean haEnabled,
         datanodeManager.getBlockInvalidateLimit(),
         startupDelayBlockDeletionInMs);
 
-    // Compute the map capacity by allocating 2% of total memory
+    // Compute the map capacity by allocating a percentage of total memory,
+    // 2% by default
+    final double blocksMapPercentage = conf.getDouble(
+        DFSConfigKeys.DFS_NAMENODE_BLOCKS_MAP_CAPACITY_PERCENTAGE_KEY,
+        DFSConfigKeys.DFS_NAMENODE_BLOCKS_MAP_CAPACITY_PERCENTAGE_DEFAULT);
+    Preconditions.checkArgument(
+        blocksMapPercentage > 0.0 && blocksMapPercentage <= 100.0,
+        "%s must be in (0, 100], but is %s",
+        DFSConfigKeys.DFS_NAMENODE_BLOCKS_MAP_CAPACITY_PERCENTAGE_KEY,
+        blocksMapPercentage);
     blocksMap = new BlocksMap(
-        LightWeightGSet.computeCapacity(2.0, "BlocksMap"));
+        LightWeightGSet.computeCapacity(blocksMapPercentage, "BlocksMap"));
+    final int resolveThreads = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_RESOLVE_THREADS_KEY,
+        DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_RESOLVE_THREADS_DEFAULT);
+    this.blockReportResolveShardSize = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_RESOLVE_SHARD_SIZE_KEY,
+        DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_RESOLVE_SHARD_SIZE_DEFAULT);
+    Preconditions.checkArgument(blockReportResolveShardSize > 0,
+        DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_RESOLVE_SHARD_SIZE_KEY
+        + " must be greater than 0");
+    if (resolveThreads > 1) {
+      blockReportResolver = Executors.newFixedThreadPool(resolveThreads,
+          new ThreadFactoryBuilder().setDaemon(true)
+              .setNameFormat("BlockReportResolver-%d").build());
+    } else {
+      blockReportResolver = null;
+    }
     placementPolicies = new BlockPlacementPolicies(
       conf, datanodeManager.getFSClusterStats(),
       datanodeManager.getNetworkTopology(),
@@ -630,6 +668,9 @@ public void close() {
       blockReportThread.join(3000);
     } catch (InterruptedException ie) {
     }
+    if (blockReportResolver != null) {
+      blockReportResolver.shutdownNow();
+    }
     datanodeManager.close();
     pendingReconstruction.stop();
     blocksMap.close();
@@ -2545,7 +2586,10 @@ private void processFirstBlockReport(
     assert (namesystem.hasWriteLock());
     assert (storageInfo.getBlockReportCount() == 0);
 
+    final BlockInfo[] resolved = resolveStoredBlocks(report);
+    int index = -1;
     for (BlockReportReplica iblk : report) {
+      index++;
       ReplicaState reportedState = iblk.getState();
 
       if (LOG.isDebugEnabled()) {
@@ -2559,7 +2603,8 @@ private void processFirstBlockReport(
         continue;
       }
 
-      BlockInfo storedBlock = getStoredBlock(iblk);
+      BlockInfo storedBlock = resolved != null ?
+          resolved[index] : getStoredBlock(iblk);
 
       // If block does not belong to any file, we check if it violates
       // an integrity assumption of Name node
@@ -2606,6 +2651,63 @@ private void processFirstBlockReport(
     }
   }
 
+  /**
+   * Look up the stored blocks of the replicas of an initial block report in
+   * parallel. The report is split into shards of consecutive replicas, i.e.
+   * disjoint block id ranges of a sorted report, resolved by one task each.
+   * The caller holds the namesystem write lock, so the BlocksMap does not
+   * change while the tasks read it.
+   * @return the stored block of each replica in report order, or null if the
+   *         report is to be resolved serially.
+   */
+  private BlockInfo[] resolveStoredBlocks(final BlockListAsLongs report)
+      throws IOException {
+    final int numBlocks = report.getNumberOfBlocks();
+    if (blockReportResolver == null ||
+        numBlocks < 2 * blockReportResolveShardSize) {
+      return null;
+    }
+    final long[] blockIds = new long[numBlocks];
+    int n = 0;
+    for (BlockReportReplica iblk : report) {
+      if (n == numBlocks) {
+        return null;
+      }
+      blockIds[n++] = iblk.getBlockId();
+    }
+    if (n != numBlocks) {
+      return null;
+    }
+
+    final BlockInfo[] resolved = new BlockInfo[numBlocks];
+    final List<Future<?>> futures = new ArrayList<>();
+    for (int start = 0; start < numBlocks;
+         start += blockReportResolveShardSize) {
+      final int from = start;
+      final int to = Math.min(numBlocks, start + blockReportResolveShardSize);
+      futures.add(blockReportResolver.submit(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = from; i < to; i++) {
+            resolved[i] = getStoredBlock(new Block(blockIds[i]));
+          }
+        }
+      }));
+    }
+    for (Future<?> f : futures) {
+      try {
+        f.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(
+            "Interrupted while resolving a block report");
+      } catch (ExecutionException e) {
+        throw new IOException("Failed to resolve a block report", e.getCause());
+      }
+    }
+    return resolved;
+  }
+
   private void reportDiffSorted(DatanodeStorageInfo storageInfo,
       Iterable<BlockReportReplica> newReport,
       Collection<BlockInfoToAdd> toAdd,     // add to DatanodeDescriptor
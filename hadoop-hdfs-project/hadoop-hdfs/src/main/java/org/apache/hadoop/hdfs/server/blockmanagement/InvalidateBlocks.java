@@ -31,7 +31,7 @@
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.server.namenode.NameNode;
-import org.apache.hadoop.hdfs.util.LightWeightHashSet;
+import org.apache.hadoop.hdfs.util.LongObjectHashMap;
 import org.apache.hadoop.util.StringUtils;
 import org.apache.hadoop.util.Time;
 import org.apache.hadoop.hdfs.DFSUtil;
@@ -47,9 +47,9 @@
  */
 @InterfaceAudience.Private
 class InvalidateBlocks {
-  /** Mapping: DatanodeInfo -> Collection of Blocks */
-  private final Map<DatanodeInfo, LightWeightHashSet<Block>> node2blocks =
-      new HashMap<DatanodeInfo, LightWeightHashSet<Block>>();
+  /** Mapping: DatanodeInfo -> (block id -> Block) */
+  private final Map<DatanodeInfo, LongObjectHashMap<Block>> node2blocks =
+      new HashMap<DatanodeInfo, LongObjectHashMap<Block>>();
   /** The total number of blocks in the map. */
   private long numBlocks = 0L;
 
@@ -91,11 +91,11 @@ synchronized long numBlocks() {
    * returns false.
    */
   synchronized boolean contains(final DatanodeInfo dn, final Block block) {
-    final LightWeightHashSet<Block> s = node2blocks.get(dn);
+    final LongObjectHashMap<Block> s = node2blocks.get(dn);
     if (s == null) {
       return false; // no invalidate blocks for this storage ID
     }
-    Block blockInSet = s.getElement(block);
+    Block blockInSet = s.get(block.getBlockId());
     return blockInSet != null &&
         block.getGenerationStamp() == blockInSet.getGenerationStamp();
   }
@@ -106,12 +106,12 @@ synchronized boolean contains(final DatanodeInfo dn, final Block block) {
    */
   synchronized void add(final Block block, final DatanodeInfo datanode,
       final boolean log) {
-    LightWeightHashSet<Block> set = node2blocks.get(datanode);
+    LongObjectHashMap<Block> set = node2blocks.get(datanode);
     if (set == null) {
-      set = new LightWeightHashSet<Block>();
+      set = new LongObjectHashMap<Block>();
       node2blocks.put(datanode, set);
     }
-    if (set.add(block)) {
+    if (set.putIfAbsent(block.getBlockId(), block) == null) {
       numBlocks++;
       if (log) {
         NameNode.blockStateChangeLog.debug("BLOCK* {}: add {} to {}",
@@ -122,7 +122,7 @@ synchronized void add(final Block block, final DatanodeInfo datanode,
 
   /** Remove a storage from the invalidatesSet */
   synchronized void remove(final DatanodeInfo dn) {
-    final LightWeightHashSet<Block> blocks = node2blocks.remove(dn);
+    final LongObjectHashMap<Block> blocks = node2blocks.remove(dn);
     if (blocks != null) {
       numBlocks -= blocks.size();
     }
@@ -130,8 +130,8 @@ synchronized void remove(final DatanodeInfo dn) {
 
   /** Remove the block from the specified storage. */
   synchronized void remove(final DatanodeInfo dn, final Block block) {
-    final LightWeightHashSet<Block> v = node2blocks.get(dn);
-    if (v != null && v.remove(block)) {
+    final LongObjectHashMap<Block> v = node2blocks.get(dn);
+    if (v != null && v.remove(block.getBlockId()) != null) {
       numBlocks--;
       if (v.isEmpty()) {
         node2blocks.remove(dn);
@@ -148,8 +148,8 @@ synchronized void dump(final PrintWriter out) {
       return;
     }
 
-    for(Map.Entry<DatanodeInfo, LightWeightHashSet<Block>> entry : node2blocks.entrySet()) {
-      final LightWeightHashSet<Block> blocks = entry.getValue();
+    for(Map.Entry<DatanodeInfo, LongObjectHashMap<Block>> entry : node2blocks.entrySet()) {
+      final LongObjectHashMap<Block> blocks = entry.getValue();
       if (blocks.size() > 0) {
         out.println(entry.getKey());
         out.println(StringUtils.join(',', blocks));
@@ -180,7 +180,7 @@ synchronized List<Block> invalidateWork(final DatanodeDescriptor dn) {
       }
       return null;
     }
-    final LightWeightHashSet<Block> set = node2blocks.get(dn);
+    final LongObjectHashMap<Block> set = node2blocks.get(dn);
     if (set == null) {
       return null;
     }
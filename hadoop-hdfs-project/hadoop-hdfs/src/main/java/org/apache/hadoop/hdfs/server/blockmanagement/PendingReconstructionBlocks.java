@@ -23,12 +23,9 @@
 import java.sql.Time;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
-import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.util.LongObjectHashMap;
 import org.apache.hadoop.util.Daemon;
 import org.slf4j.Logger;
 
@@ -46,7 +43,8 @@
 class PendingReconstructionBlocks {
   private static final Logger LOG = BlockManager.LOG;
 
-  private final Map<BlockInfo, PendingBlockInfo> pendingReconstructions;
+  /** Mapping: block id -> PendingBlockInfo */
+  private final LongObjectHashMap<PendingBlockInfo> pendingReconstructions;
   private final ArrayList<BlockInfo> timedOutItems;
   Daemon timerThread = null;
   private volatile boolean fsRunning = true;
@@ -63,7 +61,7 @@ class PendingReconstructionBlocks {
     if ( timeoutPeriod > 0 ) {
       this.timeout = timeoutPeriod;
     }
-    pendingReconstructions = new HashMap<>();
+    pendingReconstructions = new LongObjectHashMap<>();
     timedOutItems = new ArrayList<>();
   }
 
@@ -79,9 +77,10 @@ void start() {
    */
   void increment(BlockInfo block, DatanodeDescriptor... targets) {
     synchronized (pendingReconstructions) {
-      PendingBlockInfo found = pendingReconstructions.get(block);
+      PendingBlockInfo found = pendingReconstructions.get(block.getBlockId());
       if (found == null) {
-        pendingReconstructions.put(block, new PendingBlockInfo(targets));
+        pendingReconstructions.put(block.getBlockId(),
+            new PendingBlockInfo(block, targets));
       } else {
         found.incrementReplicas(targets);
         found.setTimeStamp();
@@ -98,12 +97,12 @@ void increment(BlockInfo block, DatanodeDescriptor... targets) {
    */
   void decrement(BlockInfo block, DatanodeDescriptor dn) {
     synchronized (pendingReconstructions) {
-      PendingBlockInfo found = pendingReconstructions.get(block);
+      PendingBlockInfo found = pendingReconstructions.get(block.getBlockId());
       if (found != null) {
         LOG.debug("Removing pending reconstruction for {}", block);
         found.decrementReplicas(dn);
         if (found.getNumReplicas() <= 0) {
-          pendingReconstructions.remove(block);
+          pendingReconstructions.remove(block.getBlockId());
         }
       }
     }
@@ -118,7 +117,7 @@ void decrement(BlockInfo block, DatanodeDescriptor dn) {
    */
   void remove(BlockInfo block) {
     synchronized (pendingReconstructions) {
-      pendingReconstructions.remove(block);
+      pendingReconstructions.remove(block.getBlockId());
     }
   }
 
@@ -144,7 +143,7 @@ int size() {
    */
   int getNumReplicas(BlockInfo block) {
     synchronized (pendingReconstructions) {
-      PendingBlockInfo found = pendingReconstructions.get(block);
+      PendingBlockInfo found = pendingReconstructions.get(block.getBlockId());
       if (found != null) {
         return found.getNumReplicas();
       }
@@ -189,15 +188,21 @@ BlockInfo[] getTimedOutBlocks() {
    * reconstruction requests are in progress.
    */
   static class PendingBlockInfo {
+    private final BlockInfo block;
     private long timeStamp;
     private final List<DatanodeDescriptor> targets;
 
-    PendingBlockInfo(DatanodeDescriptor[] targets) {
+    PendingBlockInfo(BlockInfo block, DatanodeDescriptor[] targets) {
+      this.block = block;
       this.timeStamp = monotonicNow();
       this.targets = targets == null ? new ArrayList<DatanodeDescriptor>()
           : new ArrayList<>(Arrays.asList(targets));
     }
 
+    BlockInfo getBlock() {
+      return block;
+    }
+
     long getTimeStamp() {
       return timeStamp;
     }
@@ -248,21 +253,20 @@ public void run() {
      */
     void pendingReconstructionCheck() {
       synchronized (pendingReconstructions) {
-        Iterator<Map.Entry<BlockInfo, PendingBlockInfo>> iter =
-            pendingReconstructions.entrySet().iterator();
+        List<BlockInfo> timedOut = new ArrayList<>();
         long now = monotonicNow();
         LOG.debug("PendingReconstructionMonitor checking Q");
-        while (iter.hasNext()) {
-          Map.Entry<BlockInfo, PendingBlockInfo> entry = iter.next();
-          PendingBlockInfo pendingBlock = entry.getValue();
+        for (PendingBlockInfo pendingBlock : pendingReconstructions) {
           if (now > pendingBlock.getTimeStamp() + timeout) {
-            BlockInfo block = entry.getKey();
-            synchronized (timedOutItems) {
-              timedOutItems.add(block);
-            }
-            LOG.warn("PendingReconstructionMonitor timed out " + block);
-            iter.remove();
+            timedOut.add(pendingBlock.getBlock());
+          }
+        }
+        for (BlockInfo block : timedOut) {
+          synchronized (timedOutItems) {
+            timedOutItems.add(block);
           }
+          LOG.warn("PendingReconstructionMonitor timed out " + block);
+          pendingReconstructions.remove(block.getBlockId());
         }
       }
     }
@@ -289,11 +293,8 @@ void metaSave(PrintWriter out) {
     synchronized (pendingReconstructions) {
       out.println("Metasave: Blocks being reconstructed: " +
                   pendingReconstructions.size());
-      for (Map.Entry<BlockInfo, PendingBlockInfo> entry :
-          pendingReconstructions.entrySet()) {
-        PendingBlockInfo pendingBlock = entry.getValue();
-        Block block = entry.getKey();
-        out.println(block +
+      for (PendingBlockInfo pendingBlock : pendingReconstructions) {
+        out.println(pendingBlock.getBlock() +
             " StartTime: " + new Time(pendingBlock.timeStamp) +
             " NumReconstructInProgress: " +
             pendingBlock.getNumReplicas());
@@ -21,6 +21,7 @@
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.hdfs.DFSUtilClient;
+import org.apache.hadoop.hdfs.protocol.BlockChecksumType;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
@@ -40,6 +41,7 @@
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.MD5Hash;
 import org.apache.hadoop.security.token.Token;
+import org.apache.hadoop.util.CrcUtil;
 import org.apache.hadoop.util.DataChecksum;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -266,10 +268,18 @@ byte[] crcPartialBlock() throws IOException {
    * Replicated block checksum computer.
    */
   static class ReplicatedBlockChecksumComputer extends BlockChecksumComputer {
+    private final BlockChecksumType blockChecksumType;
 
     ReplicatedBlockChecksumComputer(DataNode datanode,
-                                    ExtendedBlock block) throws IOException {
+                                    ExtendedBlock block,
+                                    BlockChecksumType blockChecksumType)
+        throws IOException {
       super(datanode, block);
+      this.blockChecksumType = blockChecksumType;
+    }
+
+    BlockChecksumType getBlockChecksumType() {
+      return blockChecksumType;
     }
 
     @Override
@@ -277,6 +287,15 @@ void compute() throws IOException {
       try {
         readHeader();
 
+        if (blockChecksumType == BlockChecksumType.COMPOSITE_CRC) {
+          final int crc = checksumComposite();
+          setOutBytes(CrcUtil.intToBytes(crc));
+          LOG.debug("block={}, bytesPerCRC={}, crcPerBlock={}, crc={}",
+              getBlock(), getBytesPerCRC(), getCrcPerBlock(),
+              String.format("0x%08x", crc));
+          return;
+        }
+
         MD5Hash md5out;
         if (isPartialBlk() && getCrcPerBlock() > 0) {
           md5out = checksumPartialBlock();
@@ -320,6 +339,37 @@ private MD5Hash checksumPartialBlock() throws IOException {
 
       return new MD5Hash(digester.digest());
     }
+
+    /**
+     * Compose the CRCs of the chunks of the requested range into the CRC of
+     * the range. The CRCs of the full chunks are read from the metadata
+     * file, and the CRC of a trailing partial chunk is computed from the
+     * block data unless the range ends with the block.
+     */
+    private int checksumComposite() throws IOException {
+      final int mod = CrcUtil.getCrcPolynomialForType(getCrcType());
+      final int bytesPerCRC = getBytesPerCRC();
+      final long dataLength = isPartialBlk() ?
+          getRequestLength() : getVisibleLength();
+      final long numFullChunks = dataLength / bytesPerCRC;
+      final int partialLength = (int) (dataLength % bytesPerCRC);
+
+      // the CRC of no data is 0, so compose from 0
+      final int chunkMonomial = CrcUtil.getMonomial(bytesPerCRC, mod);
+      final DataInputStream checksumIn = getChecksumIn();
+      int crc = 0;
+      for (long i = 0; i < numFullChunks; i++) {
+        crc = CrcUtil.composeWithMonomial(crc, checksumIn.readInt(),
+            chunkMonomial, mod);
+      }
+
+      if (partialLength > 0) {
+        final int partialCrc = isPartialBlk() ?
+            CrcUtil.readInt(crcPartialBlock(), 0) : checksumIn.readInt();
+        crc = CrcUtil.compose(crc, partialCrc, partialLength, mod);
+      }
+      return crc;
+    }
   }
 
   /**
@@ -438,7 +488,8 @@ private void checksumBlock(ExtendedBlock block, int blockIdx,
             getDatanode(), Op.BLOCK_CHECKSUM, block);
 
         // get block MD5
-        createSender(pair).blockChecksum(block, blockToken);
+        createSender(pair).blockChecksum(block, blockToken,
+            BlockChecksumType.MD5CRC);
 
         final DataTransferProtos.BlockOpResponseProto reply =
             DataTransferProtos.BlockOpResponseProto.parseFrom(
@@ -464,7 +515,8 @@ private void checksumBlock(ExtendedBlock block, int blockIdx,
         setOrVerifyChecksumProperties(blockIdx, checksumData.getBytesPerCrc(),
             checksumData.getCrcPerBlock(), ct);
         //read md5
-        final MD5Hash md5 = new MD5Hash(checksumData.getMd5().toByteArray());
+        final MD5Hash md5 = new MD5Hash(
+            checksumData.getBlockChecksum().toByteArray());
         md5.write(md5writer);
         LOG.debug("got reply from datanode:{}, md5={}", targetDatanode, md5);
       }
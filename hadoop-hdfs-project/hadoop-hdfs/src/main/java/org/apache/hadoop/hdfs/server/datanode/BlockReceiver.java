@@ -88,7 +88,9 @@ class BlockReceiver implements Closeable {
   private final int bytesPerChecksum;
   private final int checksumSize;
   
-  private final PacketReceiver packetReceiver = new PacketReceiver(false);
+  private final PacketReceiver packetReceiver;
+  /** The checksums computed for packets which were sent without them. */
+  private ByteBuffer computedChecksumBuf;
   
   protected final String inAddr;
   protected final String myAddr;
@@ -150,6 +152,7 @@ class BlockReceiver implements Closeable {
       CachingStrategy cachingStrategy,
       final boolean allowLazyPersist,
       final boolean pinning) throws IOException {
+    this.packetReceiver = new PacketReceiver(datanode.getPacketBufferPool());
     try{
       this.block = block;
       this.in = in;
@@ -634,7 +637,13 @@ private int receivePacket() throws IOException {
 
       if (checksumReceivedLen == 0 && !streams.isTransientStorage()) {
         // checksum is missing, need to calculate it
-        checksumBuf = ByteBuffer.allocate(checksumLen);
+        if (computedChecksumBuf == null
+            || computedChecksumBuf.capacity() < checksumLen) {
+          computedChecksumBuf = ByteBuffer.allocate(checksumLen);
+        }
+        computedChecksumBuf.clear();
+        computedChecksumBuf.limit(checksumLen);
+        checksumBuf = computedChecksumBuf;
         diskChecksum.calculateChunkedSums(dataBuf, checksumBuf);
       }
       
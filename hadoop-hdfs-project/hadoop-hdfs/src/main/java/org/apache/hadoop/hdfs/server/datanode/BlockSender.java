@@ -41,6 +41,7 @@
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.ReplicaState;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeReference;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.LengthInputStream;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.MappedReplica;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.ReplicaInputStreams;
 import org.apache.hadoop.hdfs.util.DataTransferThrottler;
 import org.apache.hadoop.io.IOUtils;
@@ -122,6 +123,11 @@ class BlockSender implements java.io.Closeable {
 
   /** InputStreams and file descriptors to read block/checksum. */
   private ReplicaInputStreams ris;
+  /** The replica from the read cache of the dataset, if it is cached. */
+  private MappedReplica mappedReplica;
+  /** The data and the checksums of the cached replica. */
+  private ByteBuffer mappedData;
+  private ByteBuffer mappedChecksums;
   /** updated while using transferTo() */
   private long blockInPosition = -1;
   /** Checksum utility */
@@ -202,7 +208,6 @@ class BlockSender implements java.io.Closeable {
     try {
       this.block = block;
       this.corruptChecksumOk = corruptChecksumOk;
-      this.verifyChecksum = verifyChecksum;
       this.clientTraceFmt = clientTraceFmt;
 
       /*
@@ -290,6 +295,16 @@ class BlockSender implements java.io.Closeable {
       // Obtain a reference before reading data
       volumeRef = datanode.data.getVolume(block).obtainReference();
 
+      // Serve a finalized replica from the read cache, unless the reader
+      // does not want it to stay in memory.
+      if (sendChecksum && !dropCacheBehindAllReads &&
+          replica.getState() == ReplicaState.FINALIZED &&
+          !replica.isOnTransientStorage()) {
+        mappedReplica = datanode.data.getMappedReplica(block);
+      }
+      // The cached replica was verified when it was loaded
+      this.verifyChecksum = verifyChecksum && mappedReplica == null;
+
       /* 
        * (corruptChecksumOK, meta_file_exist): operation
        * True,   True: will verify checksum  
@@ -298,7 +313,11 @@ class BlockSender implements java.io.Closeable {
        * False, False: throws IOException file not found
        */
       DataChecksum csum = null;
-      if (verifyChecksum || sendChecksum) {
+      if (mappedReplica != null) {
+        csum = mappedReplica.getChecksum();
+        mappedData = mappedReplica.getData();
+        mappedChecksums = mappedReplica.getChecksums();
+      } else if (verifyChecksum || sendChecksum) {
         LengthInputStream metaIn = null;
         boolean keepMetaInOpen = false;
         try {
@@ -411,11 +430,14 @@ class BlockSender implements java.io.Closeable {
       if (DataNode.LOG.isDebugEnabled()) {
         DataNode.LOG.debug("replica=" + replica);
       }
-      blockIn = datanode.data.getBlockInputStream(block, offset); // seek to offset
+      if (mappedReplica == null) {
+        blockIn = datanode.data.getBlockInputStream(block, offset); // seek to offset
+      }
       ris = new ReplicaInputStreams(
           blockIn, checksumIn, volumeRef, fileIoProvider);
     } catch (IOException ioe) {
       IOUtils.closeStream(this);
+      IOUtils.closeStream(mappedReplica);
       org.apache.commons.io.IOUtils.closeQuietly(blockIn);
       org.apache.commons.io.IOUtils.closeQuietly(checksumIn);
       throw ioe;
@@ -446,6 +468,12 @@ public void close() throws IOException {
     } finally {
       IOUtils.closeStream(ris);
       ris = null;
+      if (mappedReplica != null) {
+        mappedReplica.close();
+        mappedReplica = null;
+        mappedData = null;
+        mappedChecksums = null;
+      }
     }
   }
   
@@ -549,7 +577,10 @@ private int sendPacket(ByteBuffer pkt, int maxChunks, OutputStream out,
     int checksumOff = pkt.position();
     byte[] buf = pkt.array();
     
-    if (checksumSize > 0 && ris.getChecksumIn() != null) {
+    if (checksumSize > 0 && mappedChecksums != null) {
+      mappedChecksums.position((int) (offset / chunkSize) * checksumSize);
+      mappedChecksums.get(buf, checksumOff, checksumDataLen);
+    } else if (checksumSize > 0 && ris.getChecksumIn() != null) {
       readChecksum(buf, checksumOff, checksumDataLen);
 
       // write in progress that we need to use to get last checksum
@@ -563,7 +594,13 @@ private int sendPacket(ByteBuffer pkt, int maxChunks, OutputStream out,
     }
     
     int dataOff = checksumOff + checksumDataLen;
-    if (!transferTo) { // normal transfer
+    if (mappedData != null) {
+      mappedData.limit((int) offset + dataLen).position((int) offset);
+      if (!transferTo) {
+        mappedData.get(buf, dataOff, dataLen);
+      }
+      datanode.metrics.incrReadCacheBytesRead(dataLen);
+    } else if (!transferTo) { // normal transfer
       ris.readDataFully(buf, dataOff, dataLen);
 
       if (verifyChecksum) {
@@ -578,15 +615,25 @@ private int sendPacket(ByteBuffer pkt, int maxChunks, OutputStream out,
         sockOut.write(buf, headerOff, dataOff - headerOff);
 
         // no need to flush since we know out is not a buffered stream
-        FileChannel fileCh = ((FileInputStream)ris.getDataIn()).getChannel();
-        LongWritable waitTime = new LongWritable();
-        LongWritable transferTime = new LongWritable();
-        fileIoProvider.transferToSocketFully(
-            ris.getVolumeRef().getVolume(), sockOut, fileCh, blockInPosition,
-            dataLen, waitTime, transferTime);
-        datanode.metrics.addSendDataPacketBlockedOnNetworkNanos(waitTime.get());
-        datanode.metrics.addSendDataPacketTransferNanos(transferTime.get());
-        blockInPosition += dataLen;
+        if (mappedData != null) {
+          // write the cached data to the socket without copying it
+          while (mappedData.hasRemaining()) {
+            if (sockOut.write(mappedData) < 0) {
+              throw new IOException("The stream is closed");
+            }
+          }
+        } else {
+          FileChannel fileCh = ((FileInputStream)ris.getDataIn()).getChannel();
+          LongWritable waitTime = new LongWritable();
+          LongWritable transferTime = new LongWritable();
+          fileIoProvider.transferToSocketFully(
+              ris.getVolumeRef().getVolume(), sockOut, fileCh, blockInPosition,
+              dataLen, waitTime, transferTime);
+          datanode.metrics.addSendDataPacketBlockedOnNetworkNanos(
+              waitTime.get());
+          datanode.metrics.addSendDataPacketTransferNanos(transferTime.get());
+          blockInPosition += dataLen;
+        }
       } else {
         // normal transfer
         out.write(buf, headerOff, dataOff + dataLen - headerOff);
@@ -744,11 +791,14 @@ private long doSendBlock(DataOutputStream out, OutputStream baseStream,
       int pktBufSize = PacketHeader.PKT_MAX_HEADER_LEN;
       boolean transferTo = transferToAllowed && !verifyChecksum
           && baseStream instanceof SocketOutputStream
-          && ris.getDataIn() instanceof FileInputStream;
+          && (ris.getDataIn() instanceof FileInputStream
+              || mappedData != null);
       if (transferTo) {
-        FileChannel fileChannel =
-            ((FileInputStream)ris.getDataIn()).getChannel();
-        blockInPosition = fileChannel.position();
+        if (mappedData == null) {
+          FileChannel fileChannel =
+              ((FileInputStream)ris.getDataIn()).getChannel();
+          blockInPosition = fileChannel.position();
+        }
         streamForSendChunks = baseStream;
         maxChunksPerPacket = numberOfChunks(TRANSFERTO_BUFFER_SIZE);
         
@@ -111,6 +111,7 @@ public class DNConf {
   final long restartReplicaExpiry;
 
   final long maxLockedMemory;
+  private final long packetPoolMaxBytes;
 
   private final long bpReadyTimeout;
 
@@ -245,6 +246,10 @@ public DNConf(final Configurable dn) {
         DFS_DATANODE_MAX_LOCKED_MEMORY_KEY,
         DFS_DATANODE_MAX_LOCKED_MEMORY_DEFAULT);
 
+    this.packetPoolMaxBytes = getConf().getLongBytes(
+        DFSConfigKeys.DFS_DATANODE_PACKET_POOL_MAX_BYTES_KEY,
+        DFSConfigKeys.DFS_DATANODE_PACKET_POOL_MAX_BYTES_DEFAULT);
+
     this.restartReplicaExpiry = getConf().getLong(
         DFS_DATANODE_RESTART_REPLICA_EXPIRY_KEY,
         DFS_DATANODE_RESTART_REPLICA_EXPIRY_DEFAULT) * 1000L;
@@ -307,6 +312,14 @@ public long getMaxLockedMemory() {
     return maxLockedMemory;
   }
 
+  /**
+   * @return the number of bytes kept in free packet buffers, or 0 if packet
+   *         buffers are not pooled
+   */
+  public long getPacketPoolMaxBytes() {
+    return packetPoolMaxBytes;
+  }
+
   /**
    * Returns true if connect to datanode via hostname
    * 
@@ -175,6 +175,7 @@
 import org.apache.hadoop.hdfs.server.protocol.InterDatanodeProtocol;
 import org.apache.hadoop.hdfs.server.protocol.NamespaceInfo;
 import org.apache.hadoop.hdfs.server.protocol.ReplicaRecoveryInfo;
+import org.apache.hadoop.hdfs.util.PacketBufferPool;
 import org.apache.hadoop.http.HttpConfig;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.ReadaheadPool;
@@ -321,6 +322,7 @@ public static InetSocketAddress createSocketAddr(String target) {
   final AtomicInteger xmitsInProgress = new AtomicInteger();
   Daemon dataXceiverServer = null;
   DataXceiverServer xserver = null;
+  private PacketBufferPool packetBufferPool = null;
   Daemon localDataXceiverServer = null;
   ShortCircuitRegistry shortCircuitRegistry = null;
   ThreadGroup threadGroup = null;
@@ -1088,6 +1090,9 @@ private void initDataXceiver() throws IOException {
     }
     streamingAddr = tcpPeerServer.getStreamingAddr();
     LOG.info("Opened streaming server at " + streamingAddr);
+    if (dnConf.getPacketPoolMaxBytes() > 0) {
+      packetBufferPool = new PacketBufferPool(dnConf.getPacketPoolMaxBytes());
+    }
     this.threadGroup = new ThreadGroup("dataXceiverServer");
     xserver = new DataXceiverServer(tcpPeerServer, getConf(), this);
     this.dataXceiverServer = new Daemon(threadGroup, xserver);
@@ -1660,6 +1665,14 @@ private void registerMXBean() {
   public DataXceiverServer getXferServer() {
     return xserver;  
   }
+
+  /**
+   * @return the pool of the buffers which blocks are received into, or null
+   *         if the buffers are not pooled.
+   */
+  public PacketBufferPool getPacketBufferPool() {
+    return packetBufferPool;
+  }
   
   @VisibleForTesting
   public int getXferPort() {
@@ -2091,7 +2104,11 @@ private void handleDiskError(String errMsgr) {
   /** Number of concurrent xceivers per node. */
   @Override // DataNodeMXBean
   public int getXceiverCount() {
-    return threadGroup == null ? 0 : threadGroup.activeCount();
+    if (threadGroup == null) {
+      return 0;
+    }
+    final int numThreads = threadGroup.activeCount();
+    return xserver == null ? numThreads : xserver.getXceiverCount(numThreads);
   }
 
   @Override // DataNodeMXBean
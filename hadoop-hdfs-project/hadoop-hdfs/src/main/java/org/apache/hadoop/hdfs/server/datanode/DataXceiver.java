@@ -25,6 +25,7 @@
 import org.apache.hadoop.hdfs.DFSUtilClient;
 import org.apache.hadoop.hdfs.ExtendedBlockId;
 import org.apache.hadoop.hdfs.net.Peer;
+import org.apache.hadoop.hdfs.protocol.BlockChecksumType;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants;
@@ -58,9 +59,11 @@
 import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitShm.SlotId;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.net.NetUtils;
+import org.apache.hadoop.net.SocketInputStream;
 import org.apache.hadoop.net.unix.DomainSocket;
 import org.apache.hadoop.security.token.SecretManager.InvalidToken;
 import org.apache.hadoop.security.token.Token;
+import org.apache.hadoop.util.Daemon;
 import org.apache.hadoop.util.DataChecksum;
 import org.apache.hadoop.util.StopWatch;
 import org.apache.hadoop.util.Time;
@@ -82,6 +85,8 @@
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
 import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
@@ -119,6 +124,15 @@ class DataXceiver extends Receiver implements Runnable {
   private final int smallBufferSize;
   private Thread xceiver = null;
 
+  /** Serves the connection on worker threads, or null. */
+  private final DataXceiverDispatcher dispatcher;
+  /** The channel to park the connection on, or null if it cannot be. */
+  private SelectableChannel selectableChannel;
+  private boolean initialized = false;
+  private int opsProcessed = 0;
+  /** An op already read from the connection, to be processed first. */
+  private Op pendingOp = null;
+
   /**
    * Client Name used in previous operation. Not available on first request
    * on the socket.
@@ -127,11 +141,18 @@ class DataXceiver extends Receiver implements Runnable {
   
   public static DataXceiver create(Peer peer, DataNode dn,
       DataXceiverServer dataXceiverServer) throws IOException {
-    return new DataXceiver(peer, dn, dataXceiverServer);
+    return new DataXceiver(peer, dn, dataXceiverServer, null);
+  }
+
+  static DataXceiver create(Peer peer, DataNode dn,
+      DataXceiverServer dataXceiverServer, DataXceiverDispatcher dispatcher)
+      throws IOException {
+    return new DataXceiver(peer, dn, dataXceiverServer, dispatcher);
   }
   
   private DataXceiver(Peer peer, DataNode datanode,
-      DataXceiverServer dataXceiverServer) throws IOException {
+      DataXceiverServer dataXceiverServer, DataXceiverDispatcher dispatcher)
+      throws IOException {
     super(datanode.getTracer());
     this.peer = peer;
     this.dnConf = datanode.getDnConf();
@@ -147,6 +168,15 @@ private DataXceiver(Peer peer, DataNode datanode,
     remoteAddressWithoutPort =
         (colonIdx < 0) ? remoteAddress : remoteAddress.substring(0, colonIdx);
     localAddress = peer.getLocalAddressString();
+    this.dispatcher = dispatcher;
+    if (dispatcher != null
+        && peer.getInputStreamChannel() instanceof SocketInputStream) {
+      final ReadableByteChannel ch =
+          ((SocketInputStream) peer.getInputStreamChannel()).getChannel();
+      if (ch instanceof SelectableChannel) {
+        this.selectableChannel = (SelectableChannel) ch;
+      }
+    }
 
     if (LOG.isDebugEnabled()) {
       LOG.debug("Number of active connections is: "
@@ -216,79 +246,125 @@ private synchronized BlockReceiver getCurrentBlockReceiver() {
   
   /**
    * Read/write data from/to the DataXceiverServer.
+   *
+   * When the server serves the connection on a {@link DataXceiverDispatcher},
+   * this returns without closing the connection whenever it is parked to wait
+   * for the next operation or handed off to its own thread, and runs again
+   * once the connection is dispatched.
    */
   @Override
   public void run() {
-    int opsProcessed = 0;
     Op op = null;
+    boolean released = false;
+    // A connection is dispatched when its next op arrives, so read at least
+    // one op before parking it again.
+    boolean mayPark = false;
 
     try {
       synchronized(this) {
         xceiver = Thread.currentThread();
       }
-      dataXceiverServer.addPeer(peer, Thread.currentThread(), this);
-      peer.setWriteTimeout(datanode.getDnConf().socketWriteTimeout);
-      InputStream input = socketIn;
-      try {
-        IOStreamPair saslStreams = datanode.saslServer.receive(peer, socketOut,
-          socketIn, datanode.getXferAddress().getPort(),
-          datanode.getDatanodeId());
-        input = new BufferedInputStream(saslStreams.in,
-            smallBufferSize);
-        socketOut = saslStreams.out;
-      } catch (InvalidMagicNumberException imne) {
-        if (imne.isHandshake4Encryption()) {
-          LOG.info("Failed to read expected encryption handshake from client " +
-              "at " + peer.getRemoteAddressString() + ". Perhaps the client " +
-              "is running an older version of Hadoop which does not support " +
-              "encryption");
-        } else {
-          LOG.info("Failed to read expected SASL data transfer protection " +
-              "handshake from client at " + peer.getRemoteAddressString() + 
-              ". Perhaps the client is running an older version of Hadoop " +
-              "which does not support SASL data transfer protection");
+      if (initialized) {
+        dataXceiverServer.setPeerThread(peer, Thread.currentThread());
+      } else {
+        initialized = true;
+        dataXceiverServer.addPeer(peer, Thread.currentThread(), this);
+        peer.setWriteTimeout(datanode.getDnConf().socketWriteTimeout);
+        InputStream input = socketIn;
+        try {
+          IOStreamPair saslStreams = datanode.saslServer.receive(peer,
+              socketOut, socketIn, datanode.getXferAddress().getPort(),
+              datanode.getDatanodeId());
+          input = new BufferedInputStream(saslStreams.in,
+              smallBufferSize);
+          socketOut = saslStreams.out;
+          if (saslStreams.in != socketIn) {
+            // a wrapping stream may hold data the selector cannot see
+            selectableChannel = null;
+          }
+        } catch (InvalidMagicNumberException imne) {
+          if (imne.isHandshake4Encryption()) {
+            LOG.info("Failed to read expected encryption handshake from " +
+                "client at " + peer.getRemoteAddressString() + ". Perhaps " +
+                "the client is running an older version of Hadoop which " +
+                "does not support encryption");
+          } else {
+            LOG.info("Failed to read expected SASL data transfer protection " +
+                "handshake from client at " + peer.getRemoteAddressString() +
+                ". Perhaps the client is running an older version of Hadoop " +
+                "which does not support SASL data transfer protection");
+          }
+          return;
         }
-        return;
+
+        super.initialize(new DataInputStream(input));
       }
       
-      super.initialize(new DataInputStream(input));
-      
       // We process requests in a loop, and stay around for a short timeout.
       // This optimistic behaviour allows the other end to reuse connections.
       // Setting keepalive timeout to 0 disable this behavior.
       do {
-        updateCurrentThreadName("Waiting for operation #" + (opsProcessed + 1));
+        if (pendingOp != null) {
+          // handed off by a worker, which has already read the op
+          op = pendingOp;
+          pendingOp = null;
+        } else {
+          if (mayPark && dispatcher != null && selectableChannel != null
+              && in.available() == 0) {
+            // wait for the next op without holding a thread
+            updateCurrentThreadName("Parked");
+            dataXceiverServer.setPeerThread(peer, null);
+            released = true;
+            dispatcher.park(this, selectableChannel,
+                dnConf.socketKeepaliveTimeout);
+            return;
+          }
+          updateCurrentThreadName("Waiting for operation #"
+              + (opsProcessed + 1));
+
+          try {
+            if (opsProcessed != 0) {
+              assert dnConf.socketKeepaliveTimeout > 0;
+              peer.setReadTimeout(dnConf.socketKeepaliveTimeout);
+            } else {
+              peer.setReadTimeout(dnConf.socketTimeout);
+            }
+            op = readOp();
+          } catch (InterruptedIOException ignored) {
+            // Time out while we wait for client rpc
+            break;
+          } catch (EOFException | ClosedChannelException e) {
+            // Since we optimistically expect the next op, it's quite normal to
+            // get EOF here.
+            LOG.debug("Cached {} closing after {} ops.  " +
+                "This message is usually benign.", peer, opsProcessed);
+            break;
+          } catch (IOException err) {
+            incrDatanodeNetworkErrors();
+            throw err;
+          }
 
-        try {
+          // restore normal timeout
           if (opsProcessed != 0) {
-            assert dnConf.socketKeepaliveTimeout > 0;
-            peer.setReadTimeout(dnConf.socketKeepaliveTimeout);
-          } else {
             peer.setReadTimeout(dnConf.socketTimeout);
           }
-          op = readOp();
-        } catch (InterruptedIOException ignored) {
-          // Time out while we wait for client rpc
-          break;
-        } catch (EOFException | ClosedChannelException e) {
-          // Since we optimistically expect the next op, it's quite normal to
-          // get EOF here.
-          LOG.debug("Cached {} closing after {} ops.  " +
-              "This message is usually benign.", peer, opsProcessed);
-          break;
-        } catch (IOException err) {
-          incrDatanodeNetworkErrors();
-          throw err;
-        }
 
-        // restore normal timeout
-        if (opsProcessed != 0) {
-          peer.setReadTimeout(dnConf.socketTimeout);
+          if (dispatcher != null && isPipelineOp(op)
+              && dispatcher.isWorker(Thread.currentThread())) {
+            // These ops wait for other DataNodes, which may be waiting for
+            // a worker of this DataNode. Serve them on their own thread.
+            pendingOp = op;
+            dataXceiverServer.setPeerThread(peer, null);
+            released = true;
+            new Daemon(datanode.threadGroup, this).start();
+            return;
+          }
         }
 
         opStartTime = monotonicNow();
         processOp(op);
         ++opsProcessed;
+        mayPark = true;
       } while ((peer != null) &&
           (!peer.isClosed() && dnConf.socketKeepaliveTimeout > 0));
     } catch (Throwable t) {
@@ -324,18 +400,52 @@ public void run() {
       }
     } finally {
       collectThreadLocalStates();
-      if (LOG.isDebugEnabled()) {
-        LOG.debug(datanode.getDisplayName() + ":Number of active connections is: "
-            + datanode.getXceiverCount());
-      }
-      updateCurrentThreadName("Cleaning up");
-      if (peer != null) {
-        dataXceiverServer.closePeer(peer);
-        IOUtils.closeStream(in);
+      if (!released) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug(datanode.getDisplayName()
+              + ":Number of active connections is: "
+              + datanode.getXceiverCount());
+        }
+        updateCurrentThreadName("Cleaning up");
+        if (peer != null) {
+          dataXceiverServer.closePeer(peer);
+          IOUtils.closeStream(in);
+        }
       }
     }
   }
 
+  /**
+   * @return true if the op may wait for other DataNodes to serve a transfer
+   * of their own, such as the next DataNode in a write pipeline.
+   */
+  private static boolean isPipelineOp(Op op) {
+    return op == Op.WRITE_BLOCK || op == Op.REPLACE_BLOCK
+        || op == Op.TRANSFER_BLOCK || op == Op.BLOCK_GROUP_CHECKSUM;
+  }
+
+  /** @return the address of the client, without the port. */
+  String getClientAddress() {
+    return remoteAddressWithoutPort;
+  }
+
+  /** @return the channel to park the connection on, or null if none. */
+  SelectableChannel getSelectableChannel() {
+    return selectableChannel;
+  }
+
+  /**
+   * Close a connection which is not being served, because it was parked
+   * beyond the keepalive timeout or the server is shutting down.
+   */
+  void closeWaiting() {
+    LOG.debug("Closing {} after {} ops", peer, opsProcessed);
+    if (peer != null) {
+      dataXceiverServer.closePeer(peer);
+      IOUtils.closeStream(in);
+    }
+  }
+
   /**
    * In this short living thread, any local states should be collected before
    * the thread dies away.
@@ -942,7 +1052,8 @@ public void transferBlock(final ExtendedBlock blk,
 
   @Override
   public void blockChecksum(ExtendedBlock block,
-                            Token<BlockTokenIdentifier> blockToken)
+                            Token<BlockTokenIdentifier> blockToken,
+                            BlockChecksumType blockChecksumType)
       throws IOException {
     updateCurrentThreadName("Getting checksum for block " + block);
     final DataOutputStream out = new DataOutputStream(
@@ -950,8 +1061,8 @@ public void blockChecksum(ExtendedBlock block,
     checkAccess(out, true, block, blockToken,
         Op.BLOCK_CHECKSUM, BlockTokenIdentifier.AccessMode.READ);
 
-    BlockChecksumComputer maker =
-        new ReplicatedBlockChecksumComputer(datanode, block);
+    BlockChecksumComputer maker = new ReplicatedBlockChecksumComputer(
+        datanode, block, blockChecksumType);
 
     try {
       maker.compute();
@@ -962,8 +1073,10 @@ public void blockChecksum(ExtendedBlock block,
           .setChecksumResponse(OpBlockChecksumResponseProto.newBuilder()
               .setBytesPerCrc(maker.getBytesPerCRC())
               .setCrcPerBlock(maker.getCrcPerBlock())
-              .setMd5(ByteString.copyFrom(maker.getOutBytes()))
-              .setCrcType(PBHelperClient.convert(maker.getCrcType())))
+              .setBlockChecksum(ByteString.copyFrom(maker.getOutBytes()))
+              .setCrcType(PBHelperClient.convert(maker.getCrcType()))
+              .setBlockChecksumType(
+                  PBHelperClient.convert(blockChecksumType)))
           .build()
           .writeDelimitedTo(out);
       out.flush();
@@ -1002,7 +1115,7 @@ public void blockGroupChecksum(final StripedBlockInfo stripedBlockInfo,
           .setChecksumResponse(OpBlockChecksumResponseProto.newBuilder()
               .setBytesPerCrc(maker.getBytesPerCRC())
               .setCrcPerBlock(maker.getCrcPerBlock())
-              .setMd5(ByteString.copyFrom(maker.getOutBytes()))
+              .setBlockChecksum(ByteString.copyFrom(maker.getOutBytes()))
               .setCrcType(PBHelperClient.convert(maker.getCrcType())))
           .build()
           .writeDelimitedTo(out);
@@ -0,0 +1,357 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.util.Daemon;
+import org.slf4j.Logger;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import static org.apache.hadoop.util.Time.monotonicNow;
+
+/**
+ * Serves {@link DataXceiver}s on a fixed pool of worker threads instead of a
+ * thread per connection.
+ *
+ * A worker runs the operations of a connection until the connection has to
+ * wait for its next operation. The connection is then parked in a selector,
+ * so a kept-alive connection costs no thread, and the worker moves on. A new
+ * connection is parked the same way until the client sends its first bytes.
+ * Once the client sends the next operation, the connection is queued under
+ * the address of its client. The workers take
+ * the queued connections round robin across the client addresses, so that a
+ * client opening many connections cannot starve the others.
+ *
+ * The data itself is still sent and received with blocking I/O on the worker,
+ * so {@link BlockSender} keeps its transferTo zero-copy path.
+ */
+class DataXceiverDispatcher {
+  public static final Logger LOG = DataNode.LOG;
+
+  /** How often parked connections are checked for keepalive expiry. */
+  private static final long EXPIRY_INTERVAL_MS = 1000;
+
+  private final DataNode datanode;
+  private final Selector selector;
+  private final Daemon selectorThread;
+  private final Daemon[] workers;
+
+  /** Connections to be parked by the selector thread. */
+  private final Queue<Parked> toPark = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger numParked = new AtomicInteger();
+  private final AtomicInteger numQueued = new AtomicInteger();
+  private final AtomicInteger numBusy = new AtomicInteger();
+
+  /**
+   * Connections ready to be served, queued per client address. A client
+   * moves to the end of the iteration order whenever one of its connections
+   * is taken. Guarded by this.
+   */
+  private final LinkedHashMap<String, ArrayDeque<DataXceiver>> ready =
+      new LinkedHashMap<>();
+
+  private volatile boolean running = true;
+
+  /** A connection waiting in the selector for its next operation. */
+  private static class Parked {
+    private final DataXceiver xceiver;
+    private final SelectableChannel channel;
+    private final long deadline;
+
+    Parked(DataXceiver xceiver, SelectableChannel channel, long deadline) {
+      this.xceiver = xceiver;
+      this.channel = channel;
+      this.deadline = deadline;
+    }
+  }
+
+  DataXceiverDispatcher(DataNode datanode, int numWorkers)
+      throws IOException {
+    this.datanode = datanode;
+    this.selector = Selector.open();
+    this.selectorThread = new Daemon(datanode.threadGroup, new Runnable() {
+      @Override
+      public void run() {
+        select();
+      }
+    });
+    selectorThread.setName("DataXceiver selector");
+    this.workers = new Daemon[numWorkers];
+    for (int i = 0; i < numWorkers; i++) {
+      workers[i] = new Daemon(datanode.threadGroup, new Runnable() {
+        @Override
+        public void run() {
+          work();
+        }
+      });
+      workers[i].setName("DataXceiver worker #" + i);
+    }
+  }
+
+  void start() {
+    selectorThread.start();
+    for (Daemon w : workers) {
+      w.start();
+    }
+    LOG.info("Serving data transfer connections on " + workers.length
+        + " worker threads");
+  }
+
+  /** Stop the threads and close the connections which are not served. */
+  void stop() {
+    running = false;
+    selector.wakeup();
+    for (Daemon w : workers) {
+      w.interrupt();
+    }
+    final List<DataXceiver> notServed = new ArrayList<>();
+    synchronized (this) {
+      for (ArrayDeque<DataXceiver> q : ready.values()) {
+        notServed.addAll(q);
+      }
+      ready.clear();
+      numQueued.set(0);
+    }
+    for (DataXceiver x : notServed) {
+      x.closeWaiting();
+    }
+    for (Parked p; (p = toPark.poll()) != null;) {
+      unpark(p, true);
+    }
+  }
+
+  /** @return true if the thread is one of the workers. */
+  boolean isWorker(Thread t) {
+    for (Daemon w : workers) {
+      if (w == t) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** @return the number of live threads of the dispatcher. */
+  int getNumThreads() {
+    int n = selectorThread.isAlive() ? 1 : 0;
+    for (Daemon w : workers) {
+      if (w.isAlive()) {
+        n++;
+      }
+    }
+    return n;
+  }
+
+  /** @return the number of connections waiting for a worker. */
+  int getNumQueued() {
+    return numQueued.get();
+  }
+
+  /**
+   * @return the number of connections parked, queued or being served by a
+   *     worker. A connection moving between these states may be counted
+   *     twice, but is never missed.
+   */
+  int getNumConnections() {
+    return numBusy.get() + numQueued.get() + numParked.get();
+  }
+
+  /**
+   * Serve a new connection once the client sends its first bytes, so that a
+   * slow client does not hold a worker in the handshake. The connection is
+   * closed if nothing arrives within the socket timeout.
+   */
+  void accept(DataXceiver xceiver) {
+    final SelectableChannel channel = xceiver.getSelectableChannel();
+    if (channel != null) {
+      park(xceiver, channel, datanode.getDnConf().socketTimeout);
+    } else {
+      dispatch(xceiver);
+    }
+  }
+
+  /** Queue a connection to be served by a worker. */
+  void dispatch(DataXceiver xceiver) {
+    synchronized (this) {
+      if (running) {
+        final String client = xceiver.getClientAddress();
+        ArrayDeque<DataXceiver> q = ready.get(client);
+        if (q == null) {
+          q = new ArrayDeque<>();
+          ready.put(client, q);
+        }
+        q.add(xceiver);
+        numQueued.incrementAndGet();
+        notify();
+        return;
+      }
+    }
+    xceiver.closeWaiting();
+  }
+
+  private synchronized DataXceiver take() throws InterruptedException {
+    while (ready.isEmpty()) {
+      wait();
+    }
+    final Iterator<Map.Entry<String, ArrayDeque<DataXceiver>>> it =
+        ready.entrySet().iterator();
+    final Map.Entry<String, ArrayDeque<DataXceiver>> first = it.next();
+    final ArrayDeque<DataXceiver> q = first.getValue();
+    final DataXceiver xceiver = q.poll();
+    numBusy.incrementAndGet();
+    numQueued.decrementAndGet();
+    it.remove();
+    if (!q.isEmpty()) {
+      // serve the other clients first
+      ready.put(first.getKey(), q);
+    }
+    return xceiver;
+  }
+
+  private void work() {
+    final String name = Thread.currentThread().getName();
+    while (running && datanode.shouldRun) {
+      final DataXceiver xceiver;
+      try {
+        xceiver = take();
+      } catch (InterruptedException e) {
+        continue;
+      }
+      try {
+        xceiver.run();
+      } finally {
+        numBusy.decrementAndGet();
+      }
+      // an interrupt meant for the connection must not hit the next one
+      Thread.interrupted();
+      Thread.currentThread().setName(name);
+    }
+  }
+
+  /**
+   * Park a connection until the client sends its next operation or the
+   * timeout expires.
+   */
+  void park(DataXceiver xceiver, SelectableChannel channel, long timeoutMs) {
+    if (!running) {
+      xceiver.closeWaiting();
+      return;
+    }
+    toPark.add(new Parked(xceiver, channel, monotonicNow() + timeoutMs));
+    numParked.incrementAndGet();
+    datanode.metrics.incrDataNodeParkedXceiversCount();
+    selector.wakeup();
+  }
+
+  private void unpark(Parked p, boolean expired) {
+    if (expired) {
+      LOG.debug("Closing {} after its timeout", p.channel);
+      p.xceiver.closeWaiting();
+    } else {
+      dispatch(p.xceiver);
+    }
+    numParked.decrementAndGet();
+    datanode.metrics.decrDataNodeParkedXceiversCount();
+  }
+
+  @VisibleForTesting
+  int getNumParked() {
+    return numParked.get();
+  }
+
+  private void select() {
+    long nextExpiryCheck = monotonicNow() + EXPIRY_INTERVAL_MS;
+    while (running && datanode.shouldRun) {
+      try {
+        // Deregister the keys cancelled in the previous round first. A channel
+        // cannot be parked again, nor really closed, while still registered.
+        selector.selectNow();
+        registerParked();
+        if (selector.selectedKeys().isEmpty()) {
+          selector.select(EXPIRY_INTERVAL_MS);
+        }
+        for (Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+             it.hasNext();) {
+          final SelectionKey key = it.next();
+          it.remove();
+          if (key.isValid()) {
+            key.cancel();
+            unpark((Parked) key.attachment(), false);
+          }
+        }
+        final long now = monotonicNow();
+        if (now >= nextExpiryCheck) {
+          expireParked(now);
+          nextExpiryCheck = now + EXPIRY_INTERVAL_MS;
+        }
+      } catch (ClosedSelectorException e) {
+        break;
+      } catch (IOException e) {
+        LOG.warn("Error in the DataXceiver selector", e);
+      }
+    }
+    // new connections are parked before they are known to the server
+    try {
+      for (SelectionKey key : selector.keys()) {
+        if (key.isValid()) {
+          key.cancel();
+          unpark((Parked) key.attachment(), true);
+        }
+      }
+    } catch (ClosedSelectorException ignored) {
+    }
+    IOUtils.cleanup(null, selector);
+  }
+
+  private void registerParked() {
+    for (Parked p; (p = toPark.poll()) != null;) {
+      try {
+        p.channel.register(selector, SelectionKey.OP_READ, p);
+      } catch (IOException | CancelledKeyException e) {
+        LOG.debug("Could not park {}", p.channel, e);
+        unpark(p, true);
+      }
+    }
+  }
+
+  private void expireParked(long now) {
+    for (SelectionKey key : selector.keys()) {
+      final Parked p = (Parked) key.attachment();
+      if (key.isValid() && now >= p.deadline) {
+        key.cancel();
+        unpark(p, true);
+      }
+    }
+  }
+}
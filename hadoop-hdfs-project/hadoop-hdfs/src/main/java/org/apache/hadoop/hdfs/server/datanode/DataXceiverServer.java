@@ -27,6 +27,7 @@
 import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.net.Peer;
 import org.apache.hadoop.hdfs.net.PeerServer;
+import org.apache.hadoop.hdfs.net.TcpPeerServer;
 import org.apache.hadoop.hdfs.util.DataTransferThrottler;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.util.Daemon;
@@ -115,10 +116,16 @@ synchronized void release() {
    * For older clients we just use the server-side default block size.
    */
   final long estimateBlockSize;
+
+  /**
+   * Serves the connections on a pool of worker threads, or null if each
+   * connection has a thread of its own.
+   */
+  private final DataXceiverDispatcher dispatcher;
   
   
   DataXceiverServer(PeerServer peerServer, Configuration conf,
-      DataNode datanode) {
+      DataNode datanode) throws IOException {
     this.peerServer = peerServer;
     this.datanode = datanode;
     
@@ -135,11 +142,21 @@ synchronized void release() {
             DFSConfigKeys.DFS_DATANODE_BALANCE_BANDWIDTHPERSEC_DEFAULT),
         conf.getInt(DFSConfigKeys.DFS_DATANODE_BALANCE_MAX_NUM_CONCURRENT_MOVES_KEY,
             DFSConfigKeys.DFS_DATANODE_BALANCE_MAX_NUM_CONCURRENT_MOVES_DEFAULT));
+
+    final int numWorkers = conf.getInt(
+        DFSConfigKeys.DFS_DATANODE_TRANSFER_WORKER_THREADS_KEY,
+        DFSConfigKeys.DFS_DATANODE_TRANSFER_WORKER_THREADS_DEFAULT);
+    // domain socket connections cannot be parked in a selector
+    this.dispatcher = numWorkers > 0 && peerServer instanceof TcpPeerServer ?
+        new DataXceiverDispatcher(datanode, numWorkers) : null;
   }
 
   @Override
   public void run() {
     Peer peer = null;
+    if (dispatcher != null) {
+      dispatcher.start();
+    }
     while (datanode.shouldRun && !datanode.shutdownForUpgrade) {
       try {
         peer = peerServer.accept();
@@ -152,9 +169,14 @@ public void run() {
               + maxXceiverCount);
         }
 
-        new Daemon(datanode.threadGroup,
-            DataXceiver.create(peer, datanode, this))
-            .start();
+        if (dispatcher != null) {
+          dispatcher.accept(
+              DataXceiver.create(peer, datanode, this, dispatcher));
+        } else {
+          new Daemon(datanode.threadGroup,
+              DataXceiver.create(peer, datanode, this))
+              .start();
+        }
       } catch (SocketTimeoutException ignored) {
         // wake up to see if should continue to run
       } catch (AsynchronousCloseException ace) {
@@ -211,6 +233,9 @@ public void run() {
     }
     // Close all peers.
     closeAllPeers();
+    if (dispatcher != null) {
+      dispatcher.stop();
+    }
   }
 
   void kill() {
@@ -235,10 +260,22 @@ synchronized void addPeer(Peer peer, Thread t, DataXceiver xceiver)
     datanode.metrics.incrDataNodeActiveXceiversCount();
   }
 
+  /**
+   * Update the thread serving a peer, which is null while the peer is parked
+   * by the {@link DataXceiverDispatcher}.
+   */
+  synchronized void setPeerThread(Peer peer, Thread t) {
+    if (peers.containsKey(peer)) {
+      peers.put(peer, t);
+    }
+  }
+
   synchronized void closePeer(Peer peer) {
-    peers.remove(peer);
-    peersXceiver.remove(peer);
-    datanode.metrics.decrDataNodeActiveXceiversCount();
+    // a parked peer may have been closed by closeAllPeers already
+    if (peersXceiver.remove(peer) != null) {
+      peers.remove(peer);
+      datanode.metrics.decrDataNodeActiveXceiversCount();
+    }
     IOUtils.cleanup(null, peer);
   }
 
@@ -272,7 +309,9 @@ synchronized void restartNotifyPeers() {
     assert (datanode.shouldRun == true && datanode.shutdownForUpgrade);
     for (Thread t : peers.values()) {
       // interrupt each and every DataXceiver thread.
-      t.interrupt();
+      if (t != null) {
+        t.interrupt();
+      }
     }
   }
 
@@ -287,6 +326,19 @@ synchronized void closeAllPeers() {
     datanode.metrics.setDataNodeActiveXceiversCount(0);
   }
 
+  /**
+   * Count the xceivers of the DataNode, given the number of threads serving
+   * them. The connections served by the dispatcher count as xceivers, but the
+   * threads of the dispatcher do not.
+   */
+  int getXceiverCount(int numThreads) {
+    if (dispatcher == null) {
+      return numThreads;
+    }
+    return numThreads - dispatcher.getNumThreads()
+        + dispatcher.getNumConnections();
+  }
+
   // Return the number of peers.
   synchronized int getNumPeers() {
     return peers.size();
@@ -298,6 +350,11 @@ synchronized int getNumPeersXceiver() {
     return peersXceiver.size();
   }
 
+  @VisibleForTesting
+  DataXceiverDispatcher getDispatcher() {
+    return dispatcher;
+  }
+
   @VisibleForTesting
   PeerServer getPeerServer() {
     return peerServer;
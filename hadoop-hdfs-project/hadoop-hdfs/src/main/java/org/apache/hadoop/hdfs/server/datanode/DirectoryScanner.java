@@ -72,6 +72,12 @@ public class DirectoryScanner implements Runnable {
   private final ScheduledExecutorService masterThread;
   private final long scanPeriodMsecs;
   private final int throttleLimitMsPerSec;
+  /** Whether the volumes keep an index of the directories scanned. */
+  private final boolean indexEnabled;
+  /** Every how many scans the index is ignored and all directories listed. */
+  private final int fullScanPeriod;
+  private int scanCount = 0;
+  private volatile boolean fullScan = true;
   private volatile boolean shouldRun = false;
   private boolean retainDiffs = false;
   private final DataNode datanode;
@@ -88,6 +94,18 @@ public class DirectoryScanner implements Runnable {
    */
   @VisibleForTesting
   final AtomicLong timeWaitingMs = new AtomicLong(0L);
+  /**
+   * Total number of directories listed by the report compiler threads.
+   * Used for testing purposes.
+   */
+  @VisibleForTesting
+  final AtomicLong dirsListed = new AtomicLong(0L);
+  /**
+   * Total number of directories taken from the index of the previous scan
+   * by the report compiler threads.  Used for testing purposes.
+   */
+  @VisibleForTesting
+  final AtomicLong dirsReused = new AtomicLong(0L);
   /**
    * The complete list of block differences indexed by block pool ID.
    */
@@ -248,6 +266,20 @@ public Map<String, ScanInfo[]> toSortedArrays() {
       throttleLimitMsPerSec = throttle;
     }
 
+    indexEnabled = conf.getBoolean(
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_INDEX_ENABLED_KEY,
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_INDEX_ENABLED_DEFAULT);
+    int period = conf.getInt(
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_FULL_SCAN_PERIOD_KEY,
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_FULL_SCAN_PERIOD_DEFAULT);
+    if (period < 1) {
+      LOG.error(DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_FULL_SCAN_PERIOD_KEY
+          + " set to value below 1. Assuming default value of "
+          + DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_FULL_SCAN_PERIOD_DEFAULT);
+      period = DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_FULL_SCAN_PERIOD_DEFAULT;
+    }
+    fullScanPeriod = period;
+
     int threads = 
         conf.getInt(DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_THREADS_KEY,
                     DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_THREADS_DEFAULT);
@@ -389,88 +421,109 @@ void reconcile() throws IOException {
    */
   private void scan() {
     clear();
+    fullScan = !indexEnabled || ++scanCount % fullScanPeriod == 0;
+    final long listedBefore = dirsListed.get();
+    final long reusedBefore = dirsReused.get();
+    final long start = Time.monotonicNow();
     Map<String, ScanInfo[]> diskReport = getDiskReport();
 
-    // Hold FSDataset lock to prevent further changes to the block map
-    try(AutoCloseableLock lock = dataset.acquireDatasetLock()) {
-      for (Entry<String, ScanInfo[]> entry : diskReport.entrySet()) {
-        String bpid = entry.getKey();
-        ScanInfo[] blockpoolReport = entry.getValue();
-        
-        Stats statsRecord = new Stats(bpid);
-        stats.put(bpid, statsRecord);
-        LinkedList<ScanInfo> diffRecord = new LinkedList<ScanInfo>();
-        diffs.put(bpid, diffRecord);
-        
-        statsRecord.totalBlocks = blockpoolReport.length;
-        final List<ReplicaInfo> bl = dataset.getFinalizedBlocks(bpid);
-        Collections.sort(bl); // Sort based on blockId
-  
-        int d = 0; // index for blockpoolReport
-        int m = 0; // index for memReprot
-        while (m < bl.size() && d < blockpoolReport.length) {
-          ReplicaInfo memBlock = bl.get(m);
-          ScanInfo info = blockpoolReport[d];
-          if (info.getBlockId() < memBlock.getBlockId()) {
-            if (!dataset.isDeletingBlock(bpid, info.getBlockId())) {
-              // Block is missing in memory
-              statsRecord.missingMemoryBlocks++;
-              addDifference(diffRecord, statsRecord, info);
-            }
-            d++;
-            continue;
-          }
-          if (info.getBlockId() > memBlock.getBlockId()) {
-            // Block is missing on the disk
-            addDifference(diffRecord, statsRecord,
-                          memBlock.getBlockId(), info.getVolume());
-            m++;
-            continue;
-          }
-          // Block file and/or metadata file exists on the disk
-          // Block exists in memory
-          if (info.getBlockFile() == null) {
-            // Block metadata file exits and block file is missing
-            addDifference(diffRecord, statsRecord, info);
-          } else if (info.getGenStamp() != memBlock.getGenerationStamp()
-              || info.getBlockFileLength() != memBlock.getNumBytes()) {
-            // Block metadata file is missing or has wrong generation stamp,
-            // or block file length is different than expected
-            statsRecord.mismatchBlocks++;
-            addDifference(diffRecord, statsRecord, info);
-          } else if (memBlock.compareWith(info) != 0) {
-            // volumeMap record and on-disk files don't match.
-            statsRecord.duplicateBlocks++;
+    // The dataset lock is only held to take a snapshot of the finalized
+    // replicas. The differences found are checked again under the lock by
+    // FsDatasetSpi#checkAndUpdate.
+    long totalBlocks = 0;
+    for (Entry<String, ScanInfo[]> entry : diskReport.entrySet()) {
+      String bpid = entry.getKey();
+      ScanInfo[] blockpoolReport = entry.getValue();
+
+      Stats statsRecord = new Stats(bpid);
+      stats.put(bpid, statsRecord);
+      LinkedList<ScanInfo> diffRecord = new LinkedList<ScanInfo>();
+      diffs.put(bpid, diffRecord);
+
+      statsRecord.totalBlocks = blockpoolReport.length;
+      totalBlocks += blockpoolReport.length;
+      final List<ReplicaInfo> bl;
+      final long lockStart = Time.monotonicNow();
+      try (AutoCloseableLock lock = dataset.acquireDatasetLock()) {
+        bl = dataset.getFinalizedBlocks(bpid);
+      }
+      datanode.getMetrics().addDirectoryScanLockHold(
+          Time.monotonicNow() - lockStart);
+      Collections.sort(bl); // Sort based on blockId
+
+      int d = 0; // index for blockpoolReport
+      int m = 0; // index for memReprot
+      while (m < bl.size() && d < blockpoolReport.length) {
+        ReplicaInfo memBlock = bl.get(m);
+        ScanInfo info = blockpoolReport[d];
+        if (info.getBlockId() < memBlock.getBlockId()) {
+          if (!dataset.isDeletingBlock(bpid, info.getBlockId())) {
+            // Block is missing in memory
+            statsRecord.missingMemoryBlocks++;
             addDifference(diffRecord, statsRecord, info);
           }
           d++;
-
-          if (d < blockpoolReport.length) {
-            // There may be multiple on-disk records for the same block, don't increment
-            // the memory record pointer if so.
-            ScanInfo nextInfo = blockpoolReport[Math.min(d, blockpoolReport.length - 1)];
-            if (nextInfo.getBlockId() != info.getBlockId()) {
-              ++m;
-            }
-          } else {
-            ++m;
-          }
+          continue;
         }
-        while (m < bl.size()) {
-          ReplicaInfo current = bl.get(m++);
+        if (info.getBlockId() > memBlock.getBlockId()) {
+          // Block is missing on the disk
           addDifference(diffRecord, statsRecord,
-                        current.getBlockId(), current.getVolume());
+                        memBlock.getBlockId(), info.getVolume());
+          m++;
+          continue;
         }
-        while (d < blockpoolReport.length) {
-          if (!dataset.isDeletingBlock(bpid, blockpoolReport[d].getBlockId())) {
-            statsRecord.missingMemoryBlocks++;
-            addDifference(diffRecord, statsRecord, blockpoolReport[d]);
+        // Block file and/or metadata file exists on the disk
+        // Block exists in memory
+        if (info.getBlockFile() == null) {
+          // Block metadata file exits and block file is missing
+          addDifference(diffRecord, statsRecord, info);
+        } else if (info.getGenStamp() != memBlock.getGenerationStamp()
+            || info.getBlockFileLength() != memBlock.getNumBytes()) {
+          // Block metadata file is missing or has wrong generation stamp,
+          // or block file length is different than expected
+          statsRecord.mismatchBlocks++;
+          addDifference(diffRecord, statsRecord, info);
+        } else if (memBlock.compareWith(info) != 0) {
+          // volumeMap record and on-disk files don't match.
+          statsRecord.duplicateBlocks++;
+          addDifference(diffRecord, statsRecord, info);
+        }
+        d++;
+
+        if (d < blockpoolReport.length) {
+          // There may be multiple on-disk records for the same block, don't increment
+          // the memory record pointer if so.
+          ScanInfo nextInfo = blockpoolReport[Math.min(d, blockpoolReport.length - 1)];
+          if (nextInfo.getBlockId() != info.getBlockId()) {
+            ++m;
           }
-          d++;
+        } else {
+          ++m;
+        }
+      }
+      while (m < bl.size()) {
+        ReplicaInfo current = bl.get(m++);
+        addDifference(diffRecord, statsRecord,
+                      current.getBlockId(), current.getVolume());
+      }
+      while (d < blockpoolReport.length) {
+        if (!dataset.isDeletingBlock(bpid, blockpoolReport[d].getBlockId())) {
+          statsRecord.missingMemoryBlocks++;
+          addDifference(diffRecord, statsRecord, blockpoolReport[d]);
         }
-        LOG.info(statsRecord.toString());
-      } //end for
-    } //end synchronized
+        d++;
+      }
+      LOG.info(statsRecord.toString());
+    }
+
+    final long elapsed = Time.monotonicNow() - start;
+    final long listed = dirsListed.get() - listedBefore;
+    final long reused = dirsReused.get() - reusedBefore;
+    datanode.getMetrics().addDirectoryScan(elapsed, totalBlocks,
+        listed, reused);
+    LOG.info("Scanned " + totalBlocks + " blocks in " + elapsed + " ms, "
+        + listed + " directories listed and " + reused
+        + " taken from the index" + (fullScan ? " (full scan)" : ""));
   }
 
   /**
@@ -623,6 +676,35 @@ public ScanInfoPerBlockPool call() throws IOException {
       return result;
     }
 
+    /**
+     * @return whether the volume should keep an index of the directories
+     * scanned, so that the next scan lists only the changed ones.
+     */
+    public boolean isIndexEnabled() {
+      return indexEnabled;
+    }
+
+    /**
+     * @return whether all directories should be listed, ignoring the index
+     * of the previous scan.
+     */
+    public boolean isFullScan() {
+      return fullScan;
+    }
+
+    /** Called by the volume for each directory it lists. */
+    public void directoryListed() {
+      dirsListed.incrementAndGet();
+    }
+
+    /**
+     * Called by the volume for each directory taken from the index of the
+     * previous scan.
+     */
+    public void directoryReused() {
+      dirsReused.incrementAndGet();
+    }
+
     /**
      * Called by the thread before each potential disk scan so that a pause
      * can be optionally inserted to limit the number of scans per second.
@@ -21,12 +21,16 @@
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.DFSUtilClient;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.server.datanode.DataNode;
 import org.apache.hadoop.hdfs.server.protocol.BlockECReconstructionCommand.BlockECReconstructionInfo;
+import org.apache.hadoop.hdfs.util.DataTransferThrottler;
 import org.apache.hadoop.util.Daemon;
 import org.slf4j.Logger;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -47,6 +51,10 @@ public final class ErasureCodingWorker {
 
   private ThreadPoolExecutor stripedReconstructionPool;
   private ThreadPoolExecutor stripedReadPool;
+  // The bandwidth shared by the reconstruction tasks, null if unlimited
+  private final DataTransferThrottler throttler;
+  // The number of readers of the running tasks on each source datanode
+  private final Map<DatanodeInfo, Integer> sourceReaders = new HashMap<>();
 
   public ErasureCodingWorker(Configuration conf, DataNode datanode) {
     this.datanode = datanode;
@@ -58,6 +66,10 @@ public ErasureCodingWorker(Configuration conf, DataNode datanode) {
     initializeStripedBlkReconstructionThreadPool(conf.getInt(
         DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_STRIPED_BLK_THREADS_KEY,
         DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_STRIPED_BLK_THREADS_DEFAULT));
+    final long bandwidth = conf.getLong(
+        DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_BANDWIDTHPERSEC_KEY,
+        DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_BANDWIDTHPERSEC_DEFAULT);
+    throttler = bandwidth > 0 ? new DataTransferThrottler(bandwidth) : null;
   }
 
   private void initializeStripedReadThreadPool(int num) {
@@ -138,4 +150,30 @@ Configuration getConf() {
   ThreadPoolExecutor getStripedReadPool() {
     return stripedReadPool;
   }
+
+  DataTransferThrottler getThrottler() {
+    return throttler;
+  }
+
+  /**
+   * @return the number of readers the running reconstruction tasks have on
+   *         a source datanode.
+   */
+  synchronized int getSourceReaders(DatanodeInfo source) {
+    final Integer n = sourceReaders.get(source);
+    return n == null ? 0 : n;
+  }
+
+  synchronized void addSourceReader(DatanodeInfo source) {
+    sourceReaders.put(source, getSourceReaders(source) + 1);
+  }
+
+  synchronized void removeSourceReader(DatanodeInfo source) {
+    final int n = getSourceReaders(source) - 1;
+    if (n > 0) {
+      sourceReaders.put(source, n);
+    } else {
+      sourceReaders.remove(source);
+    }
+  }
 }
@@ -22,6 +22,8 @@
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.hdfs.server.datanode.metrics.DataNodeMetrics;
+import org.apache.hadoop.hdfs.util.DataTransferThrottler;
+import org.apache.hadoop.util.Time;
 
 /**
  * StripedBlockReconstructor reconstruct one or more missed striped block in
@@ -49,6 +51,7 @@ boolean hasValidTargets() {
   @Override
   public void run() {
     getDatanode().incrementXmitsInProgress();
+    final long start = Time.monotonicNow();
     try {
       initDecoderIfNecessary();
 
@@ -72,33 +75,73 @@ public void run() {
       metrics.incrECReconstructionBytesRead(getBytesRead());
       metrics.incrECReconstructionRemoteBytesRead(getRemoteBytesRead());
       metrics.incrECReconstructionBytesWritten(getBytesWritten());
+      metrics.addECReconstruction(Time.monotonicNow() - start,
+          getBytesWritten());
       getStripedReader().close();
       stripedWriter.close();
     }
   }
 
+  /**
+   * Reconstruct the targets round by round. The reads of the next round are
+   * submitted once the current round is decoded, so they overlap with the
+   * transfer of the current round to the targets.
+   */
   void reconstruct() throws IOException {
-    while (getPositionInBlock() < getMaxTargetLength()) {
-      long remaining = getMaxTargetLength() - getPositionInBlock();
-      final int toReconstructLen =
-          (int) Math.min(getStripedReader().getBufferSize(), remaining);
-
-      // step1: read from minimum source DNs required for reconstruction.
-      // The returned success list is the source DNs we do real read from
-      getStripedReader().readMinimumSources(toReconstructLen);
+    if (getPositionInBlock() >= getMaxTargetLength()) {
+      return;
+    }
+    long bytesTransferred = getBytesRead() + getBytesWritten();
+    int toReconstructLen = getNextReconstructLength();
+    // step1: read from minimum source DNs required for reconstruction.
+    // The returned success list is the source DNs we do real read from
+    getStripedReader().startReadMinimumSources(toReconstructLen);
+    while (true) {
+      getStripedReader().finishReadMinimumSources();
 
       // step2: decode to reconstruct targets
       reconstructTargets(toReconstructLen);
 
+      updatePositionInBlock(toReconstructLen);
+      getStripedReader().clearBuffers();
+      final boolean hasNext = getPositionInBlock() < getMaxTargetLength();
+      final int nextReconstructLen =
+          hasNext ? getNextReconstructLength() : 0;
+      if (hasNext) {
+        getStripedReader().startReadMinimumSources(nextReconstructLen);
+      }
+
       // step3: transfer data
       if (stripedWriter.transferData2Targets() == 0) {
         String error = "Transfer failed for all targets.";
         throw new IOException(error);
       }
+      stripedWriter.clearBuffers();
 
-      updatePositionInBlock(toReconstructLen);
+      final long transferred = getBytesRead() + getBytesWritten();
+      throttle(transferred - bytesTransferred);
+      bytesTransferred = transferred;
 
-      clearBuffers();
+      if (!hasNext) {
+        break;
+      }
+      toReconstructLen = nextReconstructLen;
+    }
+  }
+
+  private int getNextReconstructLength() {
+    long remaining = getMaxTargetLength() - getPositionInBlock();
+    return (int) Math.min(getStripedReader().getBufferSize(), remaining);
+  }
+
+  /** Wait for the bandwidth budget of the worker, if there is one. */
+  private void throttle(long bytes) {
+    final DataTransferThrottler throttler = getThrottler();
+    if (throttler != null && bytes > 0) {
+      final long start = Time.monotonicNow();
+      throttler.throttle(bytes);
+      getDatanode().getMetrics().incrECReconstructionThrottledTime(
+          Time.monotonicNow() - start);
     }
   }
 
@@ -115,13 +158,4 @@ private void reconstructTargets(int toReconstructLen) {
 
     stripedWriter.updateRealTargetBuffers(toReconstructLen);
   }
-
-  /**
-   * Clear all associated buffers.
-   */
-  private void clearBuffers() {
-    getStripedReader().clearBuffers();
-
-    stripedWriter.clearBuffers();
-  }
 }
@@ -34,8 +34,10 @@
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -77,9 +79,27 @@ class StripedReader {
   private final DatanodeInfo[] sources;
 
   private final List<StripedBlockReader> readers;
+  private final ErasureCodingWorker worker;
+  // The sources whose readers are counted by the worker
+  private final BitSet addedSourceReaders;
 
   private final Map<Future<Void>, Integer> futures = new HashMap<>();
   private final CompletionService<Void> readService;
+  // The reads submitted but not finished yet
+  private PendingRead pendingRead;
+
+  /** The state of the reads of an iteration. */
+  private class PendingRead {
+    private final int reconstructLength;
+    private final CorruptedBlocks corruptedBlocks = new CorruptedBlocks();
+    private final BitSet usedFlag = new BitSet(sources.length);
+    private final int[] newSuccess = new int[minRequiredSources];
+    private int nSuccess = 0;
+
+    PendingRead(int reconstructLength) {
+      this.reconstructLength = reconstructLength;
+    }
+  }
 
   StripedReader(StripedReconstructor reconstructor, DataNode datanode,
       Configuration conf, StripedReconstructionInfo stripedReconInfo) {
@@ -107,18 +127,41 @@ class StripedReader {
       zeroStripeIndices = new short[zeroStripNum];
     }
 
-    this.liveIndices = stripedReconInfo.getLiveIndices();
-    assert liveIndices != null;
-    this.sources = stripedReconInfo.getSources();
-    assert sources != null;
-
-    readers = new ArrayList<>(sources.length);
-    readService = reconstructor.createReadService();
+    final byte[] indices = stripedReconInfo.getLiveIndices();
+    assert indices != null;
+    final DatanodeInfo[] dns = stripedReconInfo.getSources();
+    assert dns != null;
 
-    Preconditions.checkArgument(liveIndices.length >= minRequiredSources,
+    Preconditions.checkArgument(indices.length >= minRequiredSources,
         "No enough live striped blocks.");
-    Preconditions.checkArgument(liveIndices.length == sources.length,
+    Preconditions.checkArgument(indices.length == dns.length,
         "liveBlockIndices and source datanodes should match");
+
+    // Try the sources the other reconstruction tasks read the least from
+    // first, so the tasks of this datanode spread their reads.
+    this.worker = reconstructor.getWorker();
+    final int[] loads = new int[dns.length];
+    final Integer[] order = new Integer[dns.length];
+    for (int i = 0; i < dns.length; i++) {
+      loads[i] = worker.getSourceReaders(dns[i]);
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return Integer.compare(loads[a], loads[b]);
+      }
+    });
+    this.liveIndices = new byte[indices.length];
+    this.sources = new DatanodeInfo[dns.length];
+    for (int i = 0; i < order.length; i++) {
+      liveIndices[i] = indices[order[i]];
+      sources[i] = dns[order[i]];
+    }
+    addedSourceReaders = new BitSet(sources.length);
+
+    readers = new ArrayList<>(sources.length);
+    readService = reconstructor.createReadService();
   }
 
   void init() throws IOException {
@@ -156,10 +199,20 @@ private void initReaders() throws IOException {
   }
 
   StripedBlockReader createReader(int idxInSources, long offsetInBlock) {
-    return new StripedBlockReader(this, datanode,
+    final StripedBlockReader reader = new StripedBlockReader(this, datanode,
         conf, liveIndices[idxInSources],
         reconstructor.getBlock(liveIndices[idxInSources]),
         sources[idxInSources], offsetInBlock);
+    addSourceReader(idxInSources, reader);
+    return reader;
+  }
+
+  private void addSourceReader(int idxInSources, StripedBlockReader reader) {
+    if (reader.getBlockReader() != null
+        && !addedSourceReaders.get(idxInSources)) {
+      worker.addSourceReader(sources[idxInSources]);
+      addedSourceReaders.set(idxInSources);
+    }
   }
 
   private void initBufferSize() {
@@ -255,23 +308,25 @@ private void paddingBufferToLen(ByteBuffer buffer, int len) {
    * @throws IOException
    */
   void readMinimumSources(int reconstructLength) throws IOException {
-    CorruptedBlocks corruptedBlocks = new CorruptedBlocks();
-    try {
-      successList = doReadMinimumSources(reconstructLength, corruptedBlocks);
-    } finally {
-      // report corrupted blocks to NN
-      datanode.reportCorruptedBlocks(corruptedBlocks);
-    }
+    startReadMinimumSources(reconstructLength);
+    finishReadMinimumSources();
   }
 
-  int[] doReadMinimumSources(int reconstructLength,
-                             CorruptedBlocks corruptedBlocks)
-      throws IOException {
+  /**
+   * Submit the reads of an iteration from the success list, without waiting
+   * for them. The reads fill the read buffers, which must not be used until
+   * {@link #finishReadMinimumSources()} returns, and start at the current
+   * position in block, which must not change until then.
+   *
+   * @param reconstructLength the length to reconstruct.
+   */
+  void startReadMinimumSources(int reconstructLength) {
     Preconditions.checkArgument(reconstructLength >= 0 &&
         reconstructLength <= bufferSize);
-    int nSuccess = 0;
-    int[] newSuccess = new int[minRequiredSources];
-    BitSet usedFlag = new BitSet(sources.length);
+    Preconditions.checkState(pendingRead == null,
+        "The reads of the previous iteration are not finished");
+    final PendingRead pending = new PendingRead(reconstructLength);
+    pendingRead = pending;
     /*
      * Read from minimum source DNs required, the success list contains
      * source DNs which we think best.
@@ -282,16 +337,40 @@ int[] doReadMinimumSources(int reconstructLength,
           reconstructLength);
       if (toRead > 0) {
         Callable<Void> readCallable =
-            reader.readFromBlock(toRead, corruptedBlocks);
+            reader.readFromBlock(toRead, pending.corruptedBlocks);
         Future<Void> f = readService.submit(readCallable);
         futures.put(f, successList[i]);
       } else {
         // If the read length is 0, we don't need to do real read
         reader.getReadBuffer().position(0);
-        newSuccess[nSuccess++] = successList[i];
+        pending.newSuccess[pending.nSuccess++] = successList[i];
       }
-      usedFlag.set(successList[i]);
+      pending.usedFlag.set(successList[i]);
+    }
+  }
+
+  /**
+   * Wait for the reads submitted by
+   * {@link #startReadMinimumSources(int)}, and update the success list.
+   */
+  void finishReadMinimumSources() throws IOException {
+    Preconditions.checkState(pendingRead != null, "No reads to finish");
+    final PendingRead pending = pendingRead;
+    pendingRead = null;
+    try {
+      successList = doReadMinimumSources(pending);
+    } finally {
+      // report corrupted blocks to NN
+      datanode.reportCorruptedBlocks(pending.corruptedBlocks);
     }
+  }
+
+  private int[] doReadMinimumSources(PendingRead pending) throws IOException {
+    final int reconstructLength = pending.reconstructLength;
+    final CorruptedBlocks corruptedBlocks = pending.corruptedBlocks;
+    final BitSet usedFlag = pending.usedFlag;
+    final int[] newSuccess = pending.newSuccess;
+    int nSuccess = pending.nSuccess;
 
     while (!futures.isEmpty()) {
       try {
@@ -388,6 +467,7 @@ private int scheduleNewRead(BitSet used, int reconstructLength,
         if (toRead > 0) {
           stripedReader.closeBlockReader();
           stripedReader.resetBlockReader(reconstructor.getPositionInBlock());
+          addSourceReader(i, stripedReader);
           if (stripedReader.getBlockReader() != null) {
             stripedReader.getReadBuffer().position(0);
             m = i;
@@ -421,6 +501,11 @@ private static void cancelReads(Collection<Future<Void>> futures) {
   }
 
   void close() {
+    // the reads of an unfinished iteration still use the read buffers
+    cancelReads(futures.keySet());
+    futures.clear();
+    pendingRead = null;
+
     if (zeroStripeBuffers != null) {
       for (ByteBuffer zeroStripeBuffer : zeroStripeBuffers) {
         reconstructor.freeBuffer(zeroStripeBuffer);
@@ -433,6 +518,12 @@ void close() {
       reader.freeReadBuffer();
       reader.closeBlockReader();
     }
+
+    for (int i = addedSourceReaders.nextSetBit(0); i >= 0;
+         i = addedSourceReaders.nextSetBit(i + 1)) {
+      worker.removeSourceReader(sources[i]);
+    }
+    addedSourceReaders.clear();
   }
 
   StripedReconstructor getReconstructor() {
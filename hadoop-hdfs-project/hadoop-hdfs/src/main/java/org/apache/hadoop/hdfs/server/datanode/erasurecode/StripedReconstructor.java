@@ -24,6 +24,7 @@
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.server.datanode.CachingStrategy;
 import org.apache.hadoop.hdfs.server.datanode.DataNode;
+import org.apache.hadoop.hdfs.util.DataTransferThrottler;
 import org.apache.hadoop.hdfs.util.StripedBlockUtil;
 import org.apache.hadoop.io.ByteBufferPool;
 import org.apache.hadoop.io.ElasticByteBufferPool;
@@ -100,6 +101,7 @@
 abstract class StripedReconstructor {
   protected static final Logger LOG = DataNode.LOG;
 
+  private final ErasureCodingWorker worker;
   private final Configuration conf;
   private final DataNode datanode;
   private final ErasureCodingPolicy ecPolicy;
@@ -111,6 +113,7 @@ abstract class StripedReconstructor {
   private long positionInBlock;
   private StripedReader stripedReader;
   private ThreadPoolExecutor stripedReadPool;
+  private final DataTransferThrottler throttler;
   private final CachingStrategy cachingStrategy;
   private long maxTargetLength = 0L;
   private final BitSet liveBitSet;
@@ -122,7 +125,9 @@ abstract class StripedReconstructor {
 
   StripedReconstructor(ErasureCodingWorker worker,
       StripedReconstructionInfo stripedReconInfo) {
+    this.worker = worker;
     this.stripedReadPool = worker.getStripedReadPool();
+    this.throttler = worker.getThrottler();
     this.datanode = worker.getDatanode();
     this.conf = worker.getConf();
     this.ecPolicy = stripedReconInfo.getEcPolicy();
@@ -225,6 +230,14 @@ CachingStrategy getCachingStrategy() {
     return cachingStrategy;
   }
 
+  /**
+   * @return the throttler of the bandwidth shared by the reconstruction
+   *         tasks of the datanode, or null if it is unlimited.
+   */
+  DataTransferThrottler getThrottler() {
+    return throttler;
+  }
+
   CompletionService<Void> createReadService() {
     return new ExecutorCompletionService<>(stripedReadPool);
   }
@@ -257,6 +270,10 @@ StripedReader getStripedReader() {
     return stripedReader;
   }
 
+  ErasureCodingWorker getWorker() {
+    return worker;
+  }
+
   Configuration getConf() {
     return conf;
   }
@@ -310,6 +310,15 @@ InputStream getBlockInputStream(ExtendedBlock b, long seekOffset)
   ReplicaInputStreams getTmpInputStreams(ExtendedBlock b, long blkoff,
       long ckoff) throws IOException;
 
+  /**
+   * Returns the finalized replica of the block from the read cache of the
+   * dataset, and records the read of the block for the cache.
+   * The caller must close the returned replica.
+   * @param b block
+   * @return the replica in memory, or null if it is not cached
+   */
+  MappedReplica getMappedReplica(ExtendedBlock b);
+
   /**
    * Creates a temporary replica and returns the meta information of the replica
    * .
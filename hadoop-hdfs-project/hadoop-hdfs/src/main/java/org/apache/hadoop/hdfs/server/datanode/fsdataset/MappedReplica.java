@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.util.DataChecksum;
+
+/**
+ * A finalized replica held in memory by the dataset, whose data was verified
+ * against its checksums when it was loaded.
+ *
+ * The memory stays valid until the replica is closed, even if the dataset
+ * drops the replica from memory in the meantime.
+ */
+public interface MappedReplica extends Closeable {
+  /** @return the checksum type of the replica. */
+  DataChecksum getChecksum();
+
+  /** @return a read-only view of the data of the replica. */
+  ByteBuffer getData();
+
+  /**
+   * @return a read-only view of the checksums of the data chunks of the
+   *         replica, without the header of the meta file.
+   */
+  ByteBuffer getChecksums();
+
+  /** @return the generation stamp of the replica. */
+  long getGenerationStamp();
+
+  /** @return the length of the replica. */
+  long getLength();
+
+  /** Release the replica. */
+  @Override
+  void close();
+}
@@ -18,7 +18,9 @@
 package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -28,7 +30,9 @@
 import java.io.OutputStreamWriter;
 import java.io.RandomAccessFile;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Scanner;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -88,6 +92,16 @@ class BlockPoolSlice {
   private static final int SHUTDOWN_HOOK_PRIORITY = 30;
   private final boolean deleteDuplicateReplicas;
   private static final String REPLICA_CACHE_FILE = "replicas";
+  private static final String DIRECTORY_SCAN_INDEX_FILE = "dirscan.index";
+  private static final String REPLICA_SNAPSHOT_FILE = "replicas.snapshot";
+  /**
+   * How long before a replica snapshot was taken a directory is taken to
+   * have changed after it, to cover the granularity of modification times.
+   */
+  private static final long REPLICA_SNAPSHOT_MTIME_MARGIN_MS = 2000;
+  /** The number of subdirectories on each level of the finalized dir. */
+  private static final int SUBDIRS_PER_LEVEL = 32;
+  private final boolean replicaSnapshotEnabled;
   private final long replicaCacheExpiry = 5*60*1000;
   private AtomicLong numOfBlocks = new AtomicLong();
   private final long cachedDfsUsedCheckTime;
@@ -137,6 +151,10 @@ class BlockPoolSlice {
         CommonConfigurationKeys.IPC_MAXIMUM_DATA_LENGTH,
         CommonConfigurationKeys.IPC_MAXIMUM_DATA_LENGTH_DEFAULT);
 
+    this.replicaSnapshotEnabled = conf.getBoolean(
+        DFSConfigKeys.DFS_DATANODE_REPLICA_SNAPSHOT_ENABLED_KEY,
+        DFSConfigKeys.DFS_DATANODE_REPLICA_SNAPSHOT_ENABLED_DEFAULT);
+
     this.timer = timer;
 
     // Files that were being written when the datanode was last shutdown
@@ -370,7 +388,10 @@ void getVolumeMap(ReplicaMap volumeMap,
     boolean  success = readReplicasFromCache(volumeMap, lazyWriteReplicaMap);
     if (!success) {
       // add finalized replicas
-      addToReplicasMap(volumeMap, finalizedDir, lazyWriteReplicaMap, true);
+      if (!replicaSnapshotEnabled ||
+          !readReplicaSnapshot(volumeMap, lazyWriteReplicaMap)) {
+        addToReplicasMap(volumeMap, finalizedDir, lazyWriteReplicaMap, true);
+      }
       // add rbw replicas
       addToReplicasMap(volumeMap, rbwDir, lazyWriteReplicaMap, false);
     }
@@ -749,6 +770,9 @@ public String toString() {
 
   void shutdown(BlockListAsLongs blocksListToPersist) {
     saveReplicas(blocksListToPersist);
+    if (replicaSnapshotEnabled && blocksListToPersist != null) {
+      saveReplicaSnapshot(timer.now(), blocksListToPersist);
+    }
     saveDfsUsed();
     dfsUsedSaved = true;
 
@@ -864,6 +888,204 @@ private void saveReplicas(BlockListAsLongs blocksListToPersist) {
     }
   }
 
+  /**
+   * Add the finalized replicas from the replica snapshot, listing only the
+   * directories changed since it was taken.
+   *
+   * @return false if there is no usable snapshot, and the finalized
+   *         directory must be scanned.
+   */
+  private boolean readReplicaSnapshot(ReplicaMap volumeMap,
+      final RamDiskReplicaTracker lazyWriteReplicaMap) {
+    final File snapshotFile = new File(currentDir, REPLICA_SNAPSHOT_FILE);
+    if (!fileIoProvider.exists(volume, snapshotFile)) {
+      LOG.info("Replica snapshot " + snapshotFile.getPath()
+          + " doesn't exist");
+      return false;
+    }
+    final long start = timer.monotonicNow();
+    final ReplicaMap tmpReplicaMap = new ReplicaMap(new AutoCloseableLock());
+    FileInputStream in = null;
+    try {
+      in = fileIoProvider.getFileInputStream(volume, snapshotFile);
+      final ReplicaMapSnapshot snapshot = ReplicaMapSnapshot.read(in);
+      final boolean[] unchanged =
+          new boolean[SUBDIRS_PER_LEVEL * SUBDIRS_PER_LEVEL];
+      final List<File> changedDirs = new ArrayList<>();
+      if (!findChangedDirs(
+          snapshot.getTime() - REPLICA_SNAPSHOT_MTIME_MARGIN_MS,
+          unchanged, changedDirs)) {
+        LOG.info("Unexpected layout of " + finalizedDir
+            + ", not using the replica snapshot");
+        return false;
+      }
+      int loaded = 0;
+      for (int i = 0; i < snapshot.size(); i++) {
+        final long blockId = snapshot.getBlockId(i);
+        if (unchanged[getSubdirIndex(blockId)]) {
+          addReplicaToReplicasMap(new Block(blockId, snapshot.getNumBytes(i),
+              snapshot.getGenerationStamp(i)), tmpReplicaMap,
+              lazyWriteReplicaMap, true);
+          loaded++;
+        }
+      }
+      for (File dir : changedDirs) {
+        addToReplicasMap(tmpReplicaMap, dir, lazyWriteReplicaMap, true);
+      }
+      for (Iterator<ReplicaInfo> iter =
+          tmpReplicaMap.replicas(bpid).iterator(); iter.hasNext(); ) {
+        ReplicaInfo info = iter.next();
+        iter.remove();
+        volumeMap.add(bpid, info);
+      }
+      LOG.info("Loaded " + loaded + " replicas from " + snapshotFile.getPath()
+          + " and listed " + changedDirs.size() + " changed directories in "
+          + (timer.monotonicNow() - start) + " ms");
+      return true;
+    } catch (Exception e) {
+      LOG.info("Exception occured while reading the replica snapshot "
+          + snapshotFile.getPath(), e);
+      return false;
+    } finally {
+      IOUtils.closeStream(in);
+    }
+  }
+
+  /**
+   * The index of the leaf directory of a block in
+   * {@link DatanodeUtil#idToBlockDir(File, long)}.
+   */
+  private static int getSubdirIndex(long blockId) {
+    return (int) ((blockId >> 16) & 0x1F) * SUBDIRS_PER_LEVEL
+        + (int) ((blockId >> 8) & 0x1F);
+  }
+
+  /**
+   * Find the leaf directories of the finalized directory modified since a
+   * given time. Only their modification times are read.
+   *
+   * @param unchanged set for each existing leaf directory not modified.
+   * @param changedDirs to which the modified leaf directories are added.
+   * @return false if the finalized directory does not have the layout of
+   *         {@link DatanodeUtil#idToBlockDir(File, long)}.
+   */
+  private boolean findChangedDirs(long time, boolean[] unchanged,
+      List<File> changedDirs) throws IOException {
+    for (File d1 : fileIoProvider.listFiles(volume, finalizedDir)) {
+      final int i1 = parseSubdir(d1);
+      if (i1 < 0) {
+        return false;
+      }
+      for (File d2 : fileIoProvider.listFiles(volume, d1)) {
+        final int i2 = parseSubdir(d2);
+        if (i2 < 0) {
+          return false;
+        }
+        final long mtime = d2.lastModified();
+        if (mtime == 0 || mtime >= time) {
+          changedDirs.add(d2);
+        } else {
+          unchanged[i1 * SUBDIRS_PER_LEVEL + i2] = true;
+        }
+      }
+    }
+    return true;
+  }
+
+  /** @return the number of a subdir, or -1 if the file is not one. */
+  private static int parseSubdir(File f) {
+    final String name = f.getName();
+    if (!name.startsWith(DataStorage.BLOCK_SUBDIR_PREFIX)
+        || !f.isDirectory()) {
+      return -1;
+    }
+    try {
+      final int i = Integer.parseInt(
+          name.substring(DataStorage.BLOCK_SUBDIR_PREFIX.length()));
+      return i >= 0 && i < SUBDIRS_PER_LEVEL ? i : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Write a snapshot of the finalized replicas.
+   *
+   * @param time the time the replicas were taken.
+   */
+  synchronized void saveReplicaSnapshot(long time,
+      BlockListAsLongs blocksList) {
+    final File tmpFile = new File(currentDir, REPLICA_SNAPSHOT_FILE + ".tmp");
+    final File snapshotFile = new File(currentDir, REPLICA_SNAPSHOT_FILE);
+    DataOutputStream out = null;
+    try {
+      out = new DataOutputStream(new BufferedOutputStream(
+          fileIoProvider.getFileOutputStream(volume, tmpFile),
+          ioFileBufferSize));
+      ReplicaMapSnapshot.write(out, time, blocksList);
+      out.close();
+      fileIoProvider.replaceFile(volume, tmpFile, snapshotFile);
+    } catch (Exception e) {
+      // A stale snapshot is still validated when loaded, so keep it.
+      LOG.warn("Failed to write the replica snapshot "
+          + snapshotFile.getPath(), e);
+    } finally {
+      IOUtils.closeStream(out);
+      fileIoProvider.deleteWithExistsCheck(volume, tmpFile);
+    }
+  }
+
+  /**
+   * Load the index of the finalized directories written by the last
+   * directory scan.
+   *
+   * @return the index, or null if there is no usable index.
+   */
+  DirectoryScanIndex loadDirectoryScanIndex() {
+    final File indexFile = new File(currentDir, DIRECTORY_SCAN_INDEX_FILE);
+    if (!fileIoProvider.exists(volume, indexFile)) {
+      return null;
+    }
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(
+          fileIoProvider.getFileInputStream(volume, indexFile),
+          ioFileBufferSize));
+      return DirectoryScanIndex.readFrom(in);
+    } catch (Exception e) {
+      // The whole block pool will be listed, and the index rewritten.
+      LOG.warn("Failed to read the directory scan index "
+          + indexFile.getPath(), e);
+      return null;
+    } finally {
+      IOUtils.closeStream(in);
+    }
+  }
+
+  /** Replace the index of the finalized directories. */
+  void saveDirectoryScanIndex(DirectoryScanIndex index) {
+    final File tmpFile = new File(currentDir,
+        DIRECTORY_SCAN_INDEX_FILE + ".tmp");
+    final File indexFile = new File(currentDir, DIRECTORY_SCAN_INDEX_FILE);
+    DataOutputStream out = null;
+    try {
+      out = new DataOutputStream(new BufferedOutputStream(
+          fileIoProvider.getFileOutputStream(volume, tmpFile),
+          ioFileBufferSize));
+      index.writeTo(out);
+      out.close();
+      fileIoProvider.replaceFile(volume, tmpFile, indexFile);
+    } catch (Exception e) {
+      // The index is not critical, the next scan lists every directory.
+      LOG.warn("Failed to write the directory scan index "
+          + indexFile.getPath(), e);
+      fileIoProvider.deleteWithExistsCheck(volume, indexFile);
+    } finally {
+      IOUtils.closeStream(out);
+      fileIoProvider.deleteWithExistsCheck(volume, tmpFile);
+    }
+  }
+
   void incrNumBlocks() {
     numOfBlocks.incrementAndGet();
   }
@@ -0,0 +1,422 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.ChecksumException;
+import org.apache.hadoop.hdfs.ExtendedBlockId;
+import org.apache.hadoop.hdfs.server.datanode.BlockMetadataHeader;
+import org.apache.hadoop.hdfs.server.datanode.ReplicaInfo;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.MappedReplica;
+import org.apache.hadoop.hdfs.server.datanode.metrics.DataNodeMetrics;
+import org.apache.hadoop.io.nativeio.NativeIO;
+import org.apache.hadoop.util.DataChecksum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Keeps frequently read finalized replicas mapped in memory, together with
+ * their checksums, without any cache directive. Unlike
+ * {@link FsDatasetCache}, the mappings are not locked in memory.
+ *
+ * A replica is loaded in the background once it has been read
+ * {@link #MIN_ACCESSES} times, and its checksums are verified only then.
+ * Readers of the loaded replica do not need to verify them again.
+ *
+ * The replicas are evicted in least recently read order. When the cache is
+ * full, a replica is only admitted if it was read more often recently than
+ * each of the replicas it would evict, as estimated by a
+ * {@link FrequencySketch}. This is the TinyLFU admission policy, which keeps
+ * a scan over many blocks from flushing the cache.
+ *
+ * A replica is unmapped once it is evicted and all of its readers closed it.
+ */
+class BlockReadCache {
+  static final Logger LOG = LoggerFactory.getLogger(BlockReadCache.class);
+
+  /** The number of reads of a replica before it is loaded. */
+  @VisibleForTesting
+  static final int MIN_ACCESSES = 2;
+
+  /** The smallest block size expected, for sizing the sketch. */
+  private static final long MIN_EXPECTED_BLOCK_SIZE = 1024 * 1024;
+
+  /** A replica in the cache. */
+  private final class Entry implements MappedReplica {
+    private final ExtendedBlockId key;
+    private final long genStamp;
+    private final long length;
+    private final String storageUuid;
+    private final DataChecksum checksum;
+    private final MappableBlock block;
+    private final ByteBuffer checksums;
+    /** The number of readers of the entry. Guarded by the cache. */
+    private int refCount;
+    /** True once the entry is no longer in the cache. Guarded by the cache. */
+    private boolean evicted;
+
+    Entry(ExtendedBlockId key, ReplicaInfo replica, DataChecksum checksum,
+        MappableBlock block, ByteBuffer checksums) {
+      this.key = key;
+      this.genStamp = replica.getGenerationStamp();
+      this.length = replica.getNumBytes();
+      this.storageUuid = replica.getStorageUuid();
+      this.checksum = checksum;
+      this.block = block;
+      this.checksums = checksums;
+    }
+
+    /** @return true if the entry was loaded from the replica as it is. */
+    boolean isFor(ReplicaInfo replica) {
+      return genStamp == replica.getGenerationStamp()
+          && length == replica.getNumBytes()
+          && storageUuid.equals(replica.getStorageUuid());
+    }
+
+    long getSize() {
+      return length + checksums.capacity();
+    }
+
+    @Override
+    public DataChecksum getChecksum() {
+      return checksum;
+    }
+
+    @Override
+    public ByteBuffer getData() {
+      return block.getData();
+    }
+
+    @Override
+    public ByteBuffer getChecksums() {
+      return checksums.asReadOnlyBuffer();
+    }
+
+    @Override
+    public long getGenerationStamp() {
+      return genStamp;
+    }
+
+    @Override
+    public long getLength() {
+      return length;
+    }
+
+    @Override
+    public void close() {
+      release(this);
+    }
+
+    @Override
+    public String toString() {
+      return key + "_" + genStamp;
+    }
+  }
+
+  /** Loads a replica and adds it to the cache if it is admitted. */
+  private class LoadTask implements Runnable {
+    private final ExtendedBlockId key;
+    private final ReplicaInfo replica;
+
+    LoadTask(ExtendedBlockId key, ReplicaInfo replica) {
+      this.key = key;
+      this.replica = replica;
+    }
+
+    @Override
+    public void run() {
+      Entry entry = null;
+      try {
+        entry = load(key, replica);
+      } catch (ChecksumException e) {
+        LOG.warn("Failed to load " + replica + " into the read cache: "
+            + "checksum verification failed.", e);
+      } catch (IOException e) {
+        LOG.warn("Failed to load " + replica + " into the read cache", e);
+      }
+      if (entry == null) {
+        synchronized (BlockReadCache.this) {
+          loading.remove(key);
+        }
+        return;
+      }
+      // The replica may have been changed while it was loaded.
+      final boolean current = dataset.volumeMap.get(key.getBlockPoolId(),
+          key.getBlockId()) == replica && entry.isFor(replica);
+      if (!admit(entry, current)) {
+        entry.block.close();
+      }
+    }
+  }
+
+  private final FsDatasetImpl dataset;
+  private final DataNodeMetrics metrics;
+  private final long capacity;
+  private final ThreadPoolExecutor loader;
+
+  /** Guarded by this. */
+  private final FrequencySketch sketch;
+  /** The cached replicas in least recently read order. Guarded by this. */
+  private final LinkedHashMap<ExtendedBlockId, Entry> entries =
+      new LinkedHashMap<>(16, 0.75f, true);
+  /**
+   * The replicas being loaded. Invalidating a replica removes it, so that
+   * its load is discarded. Guarded by this.
+   */
+  private final Set<ExtendedBlockId> loading = new HashSet<>();
+  /** Guarded by this. */
+  private long used;
+  /** Guarded by this. */
+  private boolean running = true;
+
+  BlockReadCache(FsDatasetImpl dataset, long capacity) {
+    this.dataset = dataset;
+    this.metrics = dataset.datanode.getMetrics();
+    this.capacity = capacity;
+    this.sketch = new FrequencySketch((int) Math.min(1 << 20,
+        capacity / MIN_EXPECTED_BLOCK_SIZE));
+    this.loader = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("BlockReadCache-%d-" + dataset.toString())
+            .build());
+    this.loader.allowCoreThreadTimeOut(true);
+  }
+
+  private static long hash(ExtendedBlockId key) {
+    return 31L * key.getBlockPoolId().hashCode() + key.getBlockId();
+  }
+
+  /**
+   * Get a finalized replica from the cache, and record the read of it.
+   * The replica is loaded in the background if it is read often enough.
+   *
+   * @return the cached replica, which the caller must close, or null if the
+   *         replica is not cached.
+   */
+  MappedReplica get(String bpid, ReplicaInfo replica) {
+    final ExtendedBlockId key =
+        new ExtendedBlockId(replica.getBlockId(), bpid);
+    final long length = replica.getNumBytes();
+    synchronized (this) {
+      sketch.increment(hash(key));
+      final Entry entry = entries.get(key);
+      if (entry != null) {
+        if (entry.isFor(replica)) {
+          entry.refCount++;
+          metrics.incrReadCacheHits();
+          return entry;
+        }
+        remove(key);
+      }
+      metrics.incrReadCacheMisses();
+      if (!running || length <= 0 || length > capacity
+          || length > Integer.MAX_VALUE || loading.contains(key)
+          || sketch.frequency(hash(key)) < MIN_ACCESSES
+          || getVictims(key, length) == null) {
+        return null;
+      }
+      loading.add(key);
+    }
+    try {
+      loader.execute(new LoadTask(key, replica));
+    } catch (RejectedExecutionException e) {
+      synchronized (this) {
+        loading.remove(key);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Map a replica and verify its checksums.
+   */
+  private Entry load(ExtendedBlockId key, ReplicaInfo replica)
+      throws IOException {
+    final long length = replica.getNumBytes();
+    final String name = replica.getBlockURI().toString();
+    InputStream blockIn = null;
+    InputStream metaIn = null;
+    MappedByteBuffer mmap = null;
+    Entry entry = null;
+    try {
+      blockIn = replica.getDataInputStream(0);
+      if (!(blockIn instanceof FileInputStream)) {
+        throw new IOException(name + " is not backed by a file.");
+      }
+      mmap = ((FileInputStream) blockIn).getChannel()
+          .map(MapMode.READ_ONLY, 0, length);
+
+      metaIn = replica.getMetadataInputStream(0);
+      final DataInputStream checksumIn =
+          new DataInputStream(new BufferedInputStream(metaIn));
+      final DataChecksum checksum =
+          BlockMetadataHeader.readDataChecksum(checksumIn, name);
+      final byte[] sums = new byte[checksum.getChecksumSize((int) length)];
+      checksumIn.readFully(sums);
+      // Native checksum verification needs direct buffers.
+      final ByteBuffer checksums = ByteBuffer.allocateDirect(sums.length);
+      checksums.put(sums);
+      checksums.flip();
+
+      checksum.verifyChunkedSums(mmap.duplicate(), checksums.duplicate(),
+          name, 0);
+      entry = new Entry(key, replica, checksum,
+          new MappableBlock(mmap, length), checksums);
+    } finally {
+      IOUtils.closeQuietly(blockIn);
+      IOUtils.closeQuietly(metaIn);
+      if (entry == null && mmap != null) {
+        NativeIO.POSIX.munmap(mmap);
+      }
+    }
+    return entry;
+  }
+
+  /**
+   * Add a loaded replica to the cache, unless it was invalidated while being
+   * loaded, or it was read less often recently than a replica it would evict.
+   *
+   * @param current false if the replica was changed while being loaded.
+   * @return true if the replica was added.
+   */
+  private synchronized boolean admit(Entry entry, boolean current) {
+    if (!loading.remove(entry.key) || !current || !running) {
+      return false;
+    }
+    final List<Entry> victims = getVictims(entry.key, entry.getSize());
+    if (victims == null) {
+      LOG.debug("Not admitting {} into the read cache", entry);
+      return false;
+    }
+    for (Entry victim : victims) {
+      remove(victim.key);
+    }
+    entries.put(entry.key, entry);
+    used += entry.getSize();
+    metrics.incrReadCacheBlocksLoaded();
+    metrics.setReadCacheUsed(used);
+    LOG.debug("Loaded {} into the read cache, {} bytes used", entry, used);
+    return true;
+  }
+
+  /**
+   * @return the least recently read replicas to evict for adding a replica of
+   *         the given size, or null if the replica was not read more often
+   *         recently than each of them.
+   */
+  private List<Entry> getVictims(ExtendedBlockId key, long size) {
+    assert Thread.holdsLock(this);
+    final List<Entry> victims = new ArrayList<>();
+    long needed = used + size - capacity;
+    if (needed > 0) {
+      final int frequency = sketch.frequency(hash(key));
+      for (Entry victim : entries.values()) {
+        if (needed <= 0) {
+          break;
+        }
+        if (sketch.frequency(hash(victim.key)) >= frequency) {
+          return null;
+        }
+        victims.add(victim);
+        needed -= victim.getSize();
+      }
+    }
+    return victims;
+  }
+
+  /** Remove a replica from the cache. */
+  private void remove(ExtendedBlockId key) {
+    assert Thread.holdsLock(this);
+    final Entry entry = entries.remove(key);
+    if (entry == null) {
+      return;
+    }
+    used -= entry.getSize();
+    entry.evicted = true;
+    if (entry.refCount == 0) {
+      entry.block.close();
+    }
+    metrics.incrReadCacheBlocksEvicted();
+    metrics.setReadCacheUsed(used);
+  }
+
+  private synchronized void release(Entry entry) {
+    if (--entry.refCount == 0 && entry.evicted) {
+      entry.block.close();
+    }
+  }
+
+  /**
+   * Drop a replica from the cache, and discard a load of it in progress.
+   */
+  synchronized void invalidate(String bpid, long blockId) {
+    final ExtendedBlockId key = new ExtendedBlockId(blockId, bpid);
+    loading.remove(key);
+    remove(key);
+  }
+
+  /** Drop all replicas and stop loading. */
+  void shutdown() {
+    loader.shutdownNow();
+    synchronized (this) {
+      running = false;
+      loading.clear();
+      for (ExtendedBlockId key : new ArrayList<>(entries.keySet())) {
+        remove(key);
+      }
+    }
+  }
+
+  @VisibleForTesting
+  synchronized boolean isCached(String bpid, long blockId) {
+    return entries.containsKey(new ExtendedBlockId(blockId, bpid));
+  }
+
+  @VisibleForTesting
+  synchronized int getNumLoading() {
+    return loading.size();
+  }
+
+  @VisibleForTesting
+  synchronized long getUsed() {
+    return used;
+  }
+}
@@ -0,0 +1,230 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.lib.Interns;
+import org.apache.hadoop.util.AutoCloseableLock;
+import org.apache.hadoop.util.InstrumentedWriteLock;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * The locks of a {@link FsDatasetImpl}.
+ *
+ * The dataset lock is a read write lock. Global operations, such as adding or
+ * removing volumes and block pools or scanning the whole replica map, take it
+ * exclusively through {@link #acquireDatasetLock()}.
+ *
+ * When striping is enabled, an operation on the replicas of one volume takes
+ * the dataset lock shared together with one of a fixed number of stripe
+ * locks, selected by the block pool id and the storage id of the volume, see
+ * {@link #acquireVolumeLock(String, String)}. Writes to different volumes then
+ * no longer wait for each other. Lookups which only read the replica map take
+ * the dataset lock shared, see {@link #acquireSharedLock()}.
+ *
+ * When striping is disabled, all of these are the exclusive dataset lock.
+ *
+ * A thread holding a stripe or the shared lock must not acquire the dataset
+ * lock exclusively, nor another stripe.
+ */
+class DatasetLockManager {
+  /** A lock recording how long its callers waited to acquire it. */
+  private static class TimedLock extends AutoCloseableLock {
+    final AtomicLong acquisitions = new AtomicLong();
+    final AtomicLong waitNanos = new AtomicLong();
+
+    TimedLock(Lock lock) {
+      super(lock);
+    }
+
+    @Override
+    public AutoCloseableLock acquire() {
+      final long start = System.nanoTime();
+      lockAll();
+      waitNanos.addAndGet(System.nanoTime() - start);
+      acquisitions.incrementAndGet();
+      return this;
+    }
+
+    void lockAll() {
+      super.acquire();
+    }
+  }
+
+  /** A stripe lock, which also holds the dataset lock shared. */
+  private static class StripeLock extends TimedLock {
+    private final Lock shared;
+
+    StripeLock(Lock shared) {
+      super(new ReentrantLock());
+      this.shared = shared;
+    }
+
+    @Override
+    void lockAll() {
+      shared.lock();
+      try {
+        super.lockAll();
+      } catch (RuntimeException e) {
+        shared.unlock();
+        throw e;
+      }
+    }
+
+    @Override
+    public void release() {
+      try {
+        super.release();
+      } finally {
+        shared.unlock();
+      }
+    }
+  }
+
+  private final TimedLock datasetLock;
+  private final TimedLock sharedLock;
+  /** The stripe locks, or null if striping is disabled. */
+  private final StripeLock[] stripes;
+
+  DatasetLockManager(Configuration conf, Log log) {
+    final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
+    this.datasetLock = new TimedLock(
+        new InstrumentedWriteLock(FsDatasetImpl.class.getName(), log, rwLock,
+          conf.getTimeDuration(
+            DFSConfigKeys.DFS_LOCK_SUPPRESS_WARNING_INTERVAL_KEY,
+            DFSConfigKeys.DFS_LOCK_SUPPRESS_WARNING_INTERVAL_DEFAULT,
+            TimeUnit.MILLISECONDS),
+          300));
+
+    final int numStripes = conf.getInt(
+        DFSConfigKeys.DFS_DATANODE_FSDATASET_LOCK_STRIPES_KEY,
+        DFSConfigKeys.DFS_DATANODE_FSDATASET_LOCK_STRIPES_DEFAULT);
+    if (numStripes > 0) {
+      this.sharedLock = new TimedLock(rwLock.readLock());
+      this.stripes = new StripeLock[numStripes];
+      for (int i = 0; i < numStripes; i++) {
+        stripes[i] = new StripeLock(rwLock.readLock());
+      }
+    } else {
+      this.sharedLock = datasetLock;
+      this.stripes = null;
+    }
+  }
+
+  boolean isStriped() {
+    return stripes != null;
+  }
+
+  /** @return the exclusive dataset lock, not acquired. */
+  AutoCloseableLock getDatasetLock() {
+    return datasetLock;
+  }
+
+  /** Acquire the dataset lock exclusively. */
+  AutoCloseableLock acquireDatasetLock() {
+    return datasetLock.acquire();
+  }
+
+  /**
+   * Acquire the dataset lock shared, for reading the replica map.
+   * It is the exclusive dataset lock if striping is disabled.
+   */
+  AutoCloseableLock acquireSharedLock() {
+    return sharedLock.acquire();
+  }
+
+  /**
+   * Acquire the lock guarding the replicas of a block pool on a volume.
+   * It is the exclusive dataset lock if striping is disabled.
+   */
+  AutoCloseableLock acquireVolumeLock(String bpid, String storageId) {
+    if (stripes == null) {
+      return datasetLock.acquire();
+    }
+    return stripes[getStripeIndex(bpid, storageId)].acquire();
+  }
+
+  @VisibleForTesting
+  int getStripeIndex(String bpid, String storageId) {
+    final int hash = 31 * bpid.hashCode() + storageId.hashCode();
+    return (hash & Integer.MAX_VALUE) % stripes.length;
+  }
+
+  @VisibleForTesting
+  int getNumStripes() {
+    return stripes == null ? 0 : stripes.length;
+  }
+
+  @VisibleForTesting
+  long getStripeAcquisitions(int stripe) {
+    return stripes[stripe].acquisitions.get();
+  }
+
+  @VisibleForTesting
+  long getStripeWaitNanos(int stripe) {
+    return stripes[stripe].waitNanos.get();
+  }
+
+  /** @return a condition of the exclusive dataset lock. */
+  Condition newCondition() {
+    return datasetLock.newCondition();
+  }
+
+  /**
+   * Add the lock acquisition counts and the time spent waiting for the
+   * locks, in nanoseconds, as a metrics record.
+   */
+  void getMetrics(MetricsCollector collector) {
+    final MetricsRecordBuilder rb = collector.addRecord("FSDatasetLock")
+        .setContext("FSDatasetState")
+        .addCounter(Interns.info("DatasetLockAcquisitions",
+            "Number of times the dataset lock was acquired exclusively"),
+            datasetLock.acquisitions.get())
+        .addCounter(Interns.info("DatasetLockWaitNanos",
+            "Time spent waiting for the exclusive dataset lock"),
+            datasetLock.waitNanos.get());
+    if (stripes == null) {
+      return;
+    }
+    rb.addCounter(Interns.info("SharedLockAcquisitions",
+        "Number of times the dataset lock was acquired shared"),
+        sharedLock.acquisitions.get())
+      .addCounter(Interns.info("SharedLockWaitNanos",
+          "Time spent waiting for the shared dataset lock"),
+          sharedLock.waitNanos.get());
+    for (int i = 0; i < stripes.length; i++) {
+      rb.addCounter(Interns.info("Stripe" + i + "LockAcquisitions",
+          "Number of times stripe " + i + " was acquired"),
+          stripes[i].acquisitions.get())
+        .addCounter(Interns.info("Stripe" + i + "LockWaitNanos",
+            "Time spent waiting for stripe " + i), stripes[i].waitNanos.get());
+    }
+  }
+}
@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi.ScanInfo;
+
+/**
+ * The directories of the finalized replicas of a block pool on a volume, as
+ * seen by the last directory scan.
+ *
+ * A directory's modification time changes whenever a file is created,
+ * deleted or renamed in it, which covers the ways a finalized replica comes
+ * and goes. A directory whose modification time did not change since it was
+ * indexed is therefore taken from the index, without listing it or getting
+ * the length of its block files. Changes to the contents of the files, which
+ * do not touch the directory, are only found by a full scan.
+ *
+ * Directories modified too recently are not indexed, since a later change
+ * may leave the modification time the same on file systems with a coarse
+ * time granularity.
+ */
+class DirectoryScanIndex {
+  private static final int LAYOUT_VERSION = 1;
+  /** The minimum age of the modification time of an indexed directory. */
+  static final long MIN_DIR_AGE_MS = 2000;
+
+  /** The directories by their path relative to the finalized directory. */
+  private final Map<String, Dir> dirs = new HashMap<>();
+
+  /** An indexed directory. */
+  static class Dir {
+    private final long modificationTime;
+    private final List<String> subdirs = new ArrayList<>();
+    private final List<Entry> entries = new ArrayList<>();
+
+    Dir(long modificationTime) {
+      this.modificationTime = modificationTime;
+    }
+
+    long getModificationTime() {
+      return modificationTime;
+    }
+
+    List<String> getSubdirs() {
+      return subdirs;
+    }
+
+    void addSubdir(String name) {
+      subdirs.add(name);
+    }
+
+    void add(ScanInfo info) {
+      final File blockFile = info.getBlockFile();
+      final File metaFile = info.getMetaFile();
+      entries.add(new Entry(info.getBlockId(),
+          blockFile == null ? null : blockFile.getName(),
+          metaFile == null ? null : metaFile.getName(),
+          info.getBlockFileLength()));
+    }
+
+    /** Add the replicas of the directory to a report. */
+    void addTo(List<ScanInfo> report, File dir, FsVolumeSpi volume) {
+      for (Entry e : entries) {
+        report.add(new ScanInfo(e.blockId,
+            e.blockName == null ? null : new File(dir, e.blockName),
+            e.metaName == null ? null : new File(dir, e.metaName),
+            volume, e.blockLength));
+      }
+    }
+  }
+
+  /** The files of a replica. */
+  private static class Entry {
+    private final long blockId;
+    private final String blockName;
+    private final String metaName;
+    private final long blockLength;
+
+    Entry(long blockId, String blockName, String metaName, long blockLength) {
+      this.blockId = blockId;
+      this.blockName = blockName;
+      this.metaName = metaName;
+      this.blockLength = blockLength;
+    }
+  }
+
+  Dir get(String path) {
+    return dirs.get(path);
+  }
+
+  void put(String path, Dir dir) {
+    dirs.put(path, dir);
+  }
+
+  int size() {
+    return dirs.size();
+  }
+
+  void writeTo(DataOutputStream out) throws IOException {
+    out.writeInt(LAYOUT_VERSION);
+    out.writeInt(dirs.size());
+    for (Map.Entry<String, Dir> d : dirs.entrySet()) {
+      final Dir dir = d.getValue();
+      out.writeUTF(d.getKey());
+      out.writeLong(dir.modificationTime);
+      out.writeInt(dir.subdirs.size());
+      for (String s : dir.subdirs) {
+        out.writeUTF(s);
+      }
+      out.writeInt(dir.entries.size());
+      for (Entry e : dir.entries) {
+        out.writeLong(e.blockId);
+        writeName(out, e.blockName);
+        writeName(out, e.metaName);
+        out.writeLong(e.blockLength);
+      }
+    }
+  }
+
+  static DirectoryScanIndex readFrom(DataInputStream in) throws IOException {
+    final int version = in.readInt();
+    if (version != LAYOUT_VERSION) {
+      throw new IOException("Unexpected directory scan index version "
+          + version + ", expected " + LAYOUT_VERSION);
+    }
+    final DirectoryScanIndex index = new DirectoryScanIndex();
+    final int numDirs = in.readInt();
+    for (int i = 0; i < numDirs; i++) {
+      final String path = in.readUTF();
+      final Dir dir = new Dir(in.readLong());
+      final int numSubdirs = in.readInt();
+      for (int j = 0; j < numSubdirs; j++) {
+        dir.subdirs.add(in.readUTF());
+      }
+      final int numEntries = in.readInt();
+      for (int j = 0; j < numEntries; j++) {
+        dir.entries.add(new Entry(in.readLong(), readName(in), readName(in),
+            in.readLong()));
+      }
+      index.dirs.put(path, dir);
+    }
+    return index;
+  }
+
+  private static void writeName(DataOutputStream out, String name)
+      throws IOException {
+    out.writeBoolean(name != null);
+    if (name != null) {
+      out.writeUTF(name);
+    }
+  }
+
+  private static String readName(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+/**
+ * Estimates how often items were accessed recently, in constant space.
+ *
+ * This is a count-min sketch of four-bit counters, as used by the TinyLFU
+ * admission policy. Each item has a counter in each of four rows, and its
+ * frequency is the smallest of them. Once the number of increments reaches
+ * ten times the width of the sketch, all counters are halved, so that
+ * accesses long ago weigh less than recent ones.
+ *
+ * This class is not thread safe.
+ */
+class FrequencySketch {
+  /** The largest value of a counter. */
+  static final int MAX_FREQUENCY = 15;
+
+  private static final int DEPTH = 4;
+  private static final long[] SEEDS = {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+      0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+  /** Clears the highest bit of every counter after a shift. */
+  private static final long RESET_MASK = 0x7777777777777777L;
+
+  /** Each long holds sixteen counters. */
+  private final long[] table;
+  private final int tableMask;
+  private final int sampleSize;
+  private int size;
+
+  /**
+   * @param width the number of counters in a row, rounded up to a power
+   *              of two. It should be about the number of items tracked.
+   */
+  FrequencySketch(int width) {
+    final int n = Integer.highestOneBit(Math.max(16, width) - 1) << 1;
+    this.table = new long[n];
+    this.tableMask = n - 1;
+    this.sampleSize = 10 * n;
+  }
+
+  /** @return the estimated number of recent accesses of the item. */
+  int frequency(long item) {
+    int frequency = MAX_FREQUENCY;
+    for (int i = 0; i < DEPTH; i++) {
+      final long h = hash(item, i);
+      final int offset = counterOffset(h);
+      frequency = Math.min(frequency,
+          (int) ((table[(int) h & tableMask] >>> offset) & 0xfL));
+    }
+    return frequency;
+  }
+
+  /** Record an access of the item. */
+  void increment(long item) {
+    boolean added = false;
+    for (int i = 0; i < DEPTH; i++) {
+      final long h = hash(item, i);
+      final int index = (int) h & tableMask;
+      final int offset = counterOffset(h);
+      if (((table[index] >>> offset) & 0xfL) < MAX_FREQUENCY) {
+        table[index] += 1L << offset;
+        added = true;
+      }
+    }
+    if (added && ++size >= sampleSize) {
+      reset();
+    }
+  }
+
+  /** Halve all counters. */
+  private void reset() {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size /= 2;
+  }
+
+  private static long hash(long item, int i) {
+    long h = (item ^ SEEDS[i]) * 0x9e3779b97f4a7c15L;
+    return h ^ (h >>> 31);
+  }
+
+  /** @return the bit offset of a counter in its long, from the top bits. */
+  private static int counterOffset(long h) {
+    return (int) (h >>> 60) << 2;
+  }
+}
@@ -38,8 +38,10 @@
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
-import java.util.concurrent.locks.Condition;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
 
 import javax.management.NotCompliantMBeanException;
 import javax.management.ObjectName;
@@ -86,6 +88,7 @@
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeReference;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.LengthInputStream;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.MappedReplica;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.ReplicaInputStreams;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.ReplicaOutputStreams;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.RoundRobinVolumeChoosingPolicy;
@@ -109,7 +112,6 @@
 import org.apache.hadoop.util.DataChecksum;
 import org.apache.hadoop.util.DiskChecker.DiskErrorException;
 import org.apache.hadoop.util.DiskChecker.DiskOutOfSpaceException;
-import org.apache.hadoop.util.InstrumentedLock;
 import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.hadoop.util.Time;
 import org.apache.hadoop.util.Timer;
@@ -174,7 +176,7 @@ public StorageReport[] getStorageReports(String bpid)
 
   @Override
   public FsVolumeImpl getVolume(final ExtendedBlock b) {
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
+    try (AutoCloseableLock lock = lockManager.acquireSharedLock()) {
       final ReplicaInfo r =
           volumeMap.get(b.getBlockPoolId(), b.getLocalBlock());
       return r != null ? (FsVolumeImpl) r.getVolume() : null;
@@ -184,7 +186,7 @@ public FsVolumeImpl getVolume(final ExtendedBlock b) {
   @Override // FsDatasetSpi
   public Block getStoredBlock(String bpid, long blkid)
       throws IOException {
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
+    try (AutoCloseableLock lock = lockManager.acquireSharedLock()) {
       ReplicaInfo r = volumeMap.get(bpid, blkid);
       if (r == null) {
         return null;
@@ -231,6 +233,10 @@ public LengthInputStream getMetaDataInputStream(ExtendedBlock b)
   final FsDatasetAsyncDiskService asyncDiskService;
   final Daemon lazyWriter;
   final FsDatasetCache cacheManager;
+  /** The read cache, or null if it is disabled. */
+  final BlockReadCache readCache;
+  /** Writes the replica snapshots periodically, or null. */
+  private final ScheduledExecutorService replicaSnapshotter;
   private final Configuration conf;
   private final int volFailuresTolerated;
   private volatile boolean fsRunning;
@@ -252,6 +258,8 @@ public LengthInputStream getMetaDataInputStream(ExtendedBlock b)
   private boolean blockPinningEnabled;
   private final int maxDataLength;
 
+  @VisibleForTesting
+  final DatasetLockManager lockManager;
   @VisibleForTesting
   final AutoCloseableLock datasetLock;
   private final Condition datasetLockCondition;
@@ -266,14 +274,9 @@ public LengthInputStream getMetaDataInputStream(ExtendedBlock b)
     this.dataStorage = storage;
     this.conf = conf;
     this.smallBufferSize = DFSUtilClient.getSmallBufferSize(conf);
-    this.datasetLock = new AutoCloseableLock(
-        new InstrumentedLock(getClass().getName(), LOG,
-          conf.getTimeDuration(
-            DFSConfigKeys.DFS_LOCK_SUPPRESS_WARNING_INTERVAL_KEY,
-            DFSConfigKeys.DFS_LOCK_SUPPRESS_WARNING_INTERVAL_DEFAULT,
-            TimeUnit.MILLISECONDS),
-          300));
-    this.datasetLockCondition = datasetLock.newCondition();
+    this.lockManager = new DatasetLockManager(conf, LOG);
+    this.datasetLock = lockManager.getDatasetLock();
+    this.datasetLockCondition = lockManager.newCondition();
 
     // The number of volumes required for operation is the total number
     // of volumes minus the number of failed volumes we can tolerate.
@@ -295,7 +298,10 @@ public LengthInputStream getMetaDataInputStream(ExtendedBlock b)
     }
 
     storageMap = new ConcurrentHashMap<String, DatanodeStorage>();
-    volumeMap = new ReplicaMap(datasetLock);
+    // With striped locks the replica map is updated under a shared dataset
+    // lock, so it needs a lock of its own.
+    volumeMap = new ReplicaMap(lockManager.isStriped() ?
+        new AutoCloseableLock() : datasetLock);
     ramDiskReplicaTracker = RamDiskReplicaTracker.getInstance(conf, this);
 
     @SuppressWarnings("unchecked")
@@ -316,6 +322,30 @@ public LengthInputStream getMetaDataInputStream(ExtendedBlock b)
     setupAsyncLazyPersistThreads();
 
     cacheManager = new FsDatasetCache(this);
+    final long readCacheSize = conf.getLongBytes(
+        DFSConfigKeys.DFS_DATANODE_READ_CACHE_SIZE_KEY,
+        DFSConfigKeys.DFS_DATANODE_READ_CACHE_SIZE_DEFAULT);
+    readCache = readCacheSize > 0 ?
+        new BlockReadCache(this, readCacheSize) : null;
+
+    final long snapshotInterval = conf.getTimeDuration(
+        DFSConfigKeys.DFS_DATANODE_REPLICA_SNAPSHOT_INTERVAL_KEY,
+        DFSConfigKeys.DFS_DATANODE_REPLICA_SNAPSHOT_INTERVAL_DEFAULT,
+        TimeUnit.SECONDS);
+    if (conf.getBoolean(DFSConfigKeys.DFS_DATANODE_REPLICA_SNAPSHOT_ENABLED_KEY,
+        DFSConfigKeys.DFS_DATANODE_REPLICA_SNAPSHOT_ENABLED_DEFAULT)
+        && snapshotInterval > 0) {
+      replicaSnapshotter = Executors.newSingleThreadScheduledExecutor(
+          new Daemon.DaemonFactory());
+      replicaSnapshotter.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          saveReplicaSnapshots();
+        }
+      }, snapshotInterval, snapshotInterval, TimeUnit.SECONDS);
+    } else {
+      replicaSnapshotter = null;
+    }
 
     // Start the lazy writer once we have built the replica maps.
     // We need to start the lazy writer even if MaxLockedMemory is set to
@@ -525,16 +555,19 @@ public void removeVolumes(
           // not scan disks.
           for (String bpid : volumeMap.getBlockPoolList()) {
             List<ReplicaInfo> blocks = new ArrayList<>();
-            for (Iterator<ReplicaInfo> it =
-                  volumeMap.replicas(bpid).iterator(); it.hasNext();) {
-              ReplicaInfo block = it.next();
-              final StorageLocation blockStorageLocation =
-                  block.getVolume().getStorageLocation();
-              LOG.info("checking for block " + block.getBlockId() +
-                  " with storageLocation " + blockStorageLocation);
-              if (blockStorageLocation.equals(sdLocation)) {
-                blocks.add(block);
-                it.remove();
+            // Lookups may read the replica map without the dataset lock.
+            try (AutoCloseableLock l = volumeMap.getLock().acquire()) {
+              for (Iterator<ReplicaInfo> it =
+                    volumeMap.replicas(bpid).iterator(); it.hasNext();) {
+                ReplicaInfo block = it.next();
+                final StorageLocation blockStorageLocation =
+                    block.getVolume().getStorageLocation();
+                LOG.info("checking for block " + block.getBlockId() +
+                    " with storageLocation " + blockStorageLocation);
+                if (blockStorageLocation.equals(sdLocation)) {
+                  blocks.add(block);
+                  it.remove();
+                }
               }
             }
             blkToInvalidate.put(bpid, blocks);
@@ -707,6 +740,7 @@ public long getNumBlocksFailedToUncache() {
   public void getMetrics(MetricsCollector collector, boolean all) {
     try {
       DataNodeMetricHelper.getMetrics(collector, this, "FSDatasetState");
+      lockManager.getMetrics(collector);
     } catch (Exception e) {
         LOG.warn("Exception thrown while metric collection. Exception : "
           + e.getMessage());
@@ -744,14 +778,32 @@ ReplicaInfo getBlockReplica(String bpid, long blockId) throws IOException {
     return r;
   }
 
+  @Override // FsDatasetSpi
+  public MappedReplica getMappedReplica(ExtendedBlock b) {
+    if (readCache == null) {
+      return null;
+    }
+    final ReplicaInfo info = volumeMap.get(b.getBlockPoolId(),
+        b.getBlockId());
+    if (info == null || info.getState() != ReplicaState.FINALIZED
+        || info.getGenerationStamp() != b.getGenerationStamp()
+        || info.getVolume().isTransientStorage()) {
+      return null;
+    }
+    return readCache.get(b.getBlockPoolId(), info);
+  }
+
+  private void invalidateReadCache(String bpid, long blockId) {
+    if (readCache != null) {
+      readCache.invalidate(bpid, blockId);
+    }
+  }
+
   @Override // FsDatasetSpi
   public InputStream getBlockInputStream(ExtendedBlock b,
       long seekOffset) throws IOException {
 
-    ReplicaInfo info;
-    synchronized(this) {
-      info = volumeMap.get(b.getBlockPoolId(), b.getLocalBlock());
-    }
+    ReplicaInfo info = volumeMap.get(b.getBlockPoolId(), b.getLocalBlock());
 
     if (info != null && info.getVolume().isTransientStorage()) {
       ramDiskReplicaTracker.touch(b.getBlockPoolId(), b.getBlockId());
@@ -815,7 +867,7 @@ ReplicaInfo getReplicaInfo(String bpid, long blkid)
   @Override // FsDatasetSpi
   public ReplicaInputStreams getTmpInputStreams(ExtendedBlock b,
       long blkOffset, long metaOffset) throws IOException {
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
+    try (AutoCloseableLock lock = lockManager.acquireSharedLock()) {
       ReplicaInfo info = getReplicaInfo(b);
       FsVolumeReference ref = info.getVolume().obtainReference();
       try {
@@ -1150,6 +1202,7 @@ private ReplicaInPipeline append(String bpid,
       }
       // If the block is cached, start uncaching it.
       cacheManager.uncacheBlock(bpid, replicaInfo.getBlockId());
+      invalidateReadCache(bpid, replicaInfo.getBlockId());
 
       // If there are any hardlinks to the block, break them.  This ensures
       // we are not appending to a file that is part of a previous/ directory.
@@ -1291,48 +1344,49 @@ public Replica recoverClose(ExtendedBlock b, long newGS,
   public ReplicaHandler createRbw(
       StorageType storageType, ExtendedBlock b, boolean allowLazyPersist)
       throws IOException {
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
-      ReplicaInfo replicaInfo = volumeMap.get(b.getBlockPoolId(),
-          b.getBlockId());
-      if (replicaInfo != null) {
-        throw new ReplicaAlreadyExistsException("Block " + b +
-            " already exists in state " + replicaInfo.getState() +
-            " and thus cannot be created.");
-      }
-      // create a new block
-      FsVolumeReference ref = null;
-
-      // Use ramdisk only if block size is a multiple of OS page size.
-      // This simplifies reservation for partially used replicas
-      // significantly.
-      if (allowLazyPersist &&
-          lazyWriter != null &&
-          b.getNumBytes() % cacheManager.getOsPageSize() == 0 &&
-          reserveLockedMemory(b.getNumBytes())) {
-        try {
-          // First try to place the block on a transient volume.
-          ref = volumes.getNextTransientVolume(b.getNumBytes());
-          datanode.getMetrics().incrRamDiskBlocksWrite();
-        } catch (DiskOutOfSpaceException de) {
-          // Ignore the exception since we just fall back to persistent storage.
-        } finally {
-          if (ref == null) {
-            cacheManager.release(b.getNumBytes());
-          }
+    ReplicaInfo replicaInfo = volumeMap.get(b.getBlockPoolId(),
+        b.getBlockId());
+    if (replicaInfo != null) {
+      throw new ReplicaAlreadyExistsException("Block " + b +
+          " already exists in state " + replicaInfo.getState() +
+          " and thus cannot be created.");
+    }
+    // create a new block
+    FsVolumeReference ref = null;
+
+    // Use ramdisk only if block size is a multiple of OS page size.
+    // This simplifies reservation for partially used replicas
+    // significantly.
+    if (allowLazyPersist &&
+        lazyWriter != null &&
+        b.getNumBytes() % cacheManager.getOsPageSize() == 0 &&
+        reserveLockedMemory(b.getNumBytes())) {
+      try {
+        // First try to place the block on a transient volume.
+        ref = volumes.getNextTransientVolume(b.getNumBytes());
+        datanode.getMetrics().incrRamDiskBlocksWrite();
+      } catch (DiskOutOfSpaceException de) {
+        // Ignore the exception since we just fall back to persistent storage.
+      } finally {
+        if (ref == null) {
+          cacheManager.release(b.getNumBytes());
         }
       }
+    }
 
-      if (ref == null) {
-        ref = volumes.getNextVolume(storageType, b.getNumBytes());
-      }
+    if (ref == null) {
+      ref = volumes.getNextVolume(storageType, b.getNumBytes());
+    }
 
-      FsVolumeImpl v = (FsVolumeImpl) ref.getVolume();
-      // create an rbw file to hold block in the designated volume
+    FsVolumeImpl v = (FsVolumeImpl) ref.getVolume();
+    // create an rbw file to hold block in the designated volume
 
-      if (allowLazyPersist && !v.isTransientStorage()) {
-        datanode.getMetrics().incrRamDiskBlocksWriteFallback();
-      }
+    if (allowLazyPersist && !v.isTransientStorage()) {
+      datanode.getMetrics().incrRamDiskBlocksWriteFallback();
+    }
 
+    try (AutoCloseableLock lock = lockManager.acquireVolumeLock(
+        b.getBlockPoolId(), v.getStorageID())) {
       ReplicaInPipeline newReplicaInfo;
       try {
         newReplicaInfo = v.createRbw(b);
@@ -1346,9 +1400,29 @@ public ReplicaHandler createRbw(
         throw e;
       }
 
-      volumeMap.add(b.getBlockPoolId(), newReplicaInfo.getReplicaInfo());
-      return new ReplicaHandler(newReplicaInfo, ref);
+      // Another writer may have created the replica on a different volume
+      // since the check above.
+      replicaInfo = volumeMap.addIfAbsent(b.getBlockPoolId(),
+          newReplicaInfo.getReplicaInfo());
+      if (replicaInfo == null) {
+        return new ReplicaHandler(newReplicaInfo, ref);
+      }
+      newReplicaInfo.releaseAllBytesReserved();
+      delBlockFromDisk(newReplicaInfo.getReplicaInfo());
+      if (v.isTransientStorage()) {
+        releaseLockedMemory(b.getNumBytes(), true);
+      }
+    }
+    // Undo the block count of the discarded rbw file. This takes the dataset
+    // lock, so it must not be done under the volume lock.
+    try {
+      v.decDfsUsedAndNumBlocks(b.getBlockPoolId(), 0, true);
+    } finally {
+      IOUtils.cleanup(null, ref);
     }
+    throw new ReplicaAlreadyExistsException("Block " + b +
+        " already exists in state " + replicaInfo.getState() +
+        " and thus cannot be created.");
   }
 
   @Override // FsDatasetSpi
@@ -1573,52 +1647,64 @@ public void adjustCrcChannelPosition(ExtendedBlock b, ReplicaOutputStreams strea
    */
   @Override // FsDatasetSpi
   public void finalizeBlock(ExtendedBlock b) throws IOException {
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
-      if (Thread.interrupted()) {
-        // Don't allow data modifications from interrupted threads
-        throw new IOException("Cannot finalize block from Interrupted Thread");
-      }
-      ReplicaInfo replicaInfo = getReplicaInfo(b);
-      if (replicaInfo.getState() == ReplicaState.FINALIZED) {
-        // this is legal, when recovery happens on a file that has
-        // been opened for append but never modified
+    while (true) {
+      final FsVolumeSpi v = getReplicaInfo(b).getVolume();
+      try (AutoCloseableLock lock = lockManager.acquireVolumeLock(
+          b.getBlockPoolId(), v.getStorageID())) {
+        if (Thread.interrupted()) {
+          // Don't allow data modifications from interrupted threads
+          throw new IOException(
+              "Cannot finalize block from Interrupted Thread");
+        }
+        ReplicaInfo replicaInfo = getReplicaInfo(b);
+        if (replicaInfo.getVolume() != v) {
+          // the replica was moved to another volume, lock that one instead
+          continue;
+        }
+        if (replicaInfo.getState() == ReplicaState.FINALIZED) {
+          // this is legal, when recovery happens on a file that has
+          // been opened for append but never modified
+          return;
+        }
+        finalizeReplica(b.getBlockPoolId(), replicaInfo);
         return;
       }
-      finalizeReplica(b.getBlockPoolId(), replicaInfo);
     }
   }
 
+  /**
+   * Finalize a replica. The caller must hold the dataset lock or the lock
+   * of the replica's volume.
+   */
   private ReplicaInfo finalizeReplica(String bpid,
       ReplicaInfo replicaInfo) throws IOException {
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
-      ReplicaInfo newReplicaInfo = null;
-      if (replicaInfo.getState() == ReplicaState.RUR &&
-          replicaInfo.getOriginalReplica().getState()
-          == ReplicaState.FINALIZED) {
-        newReplicaInfo = replicaInfo.getOriginalReplica();
-      } else {
-        FsVolumeImpl v = (FsVolumeImpl)replicaInfo.getVolume();
-        if (v == null) {
-          throw new IOException("No volume for block " + replicaInfo);
-        }
-
-        newReplicaInfo = v.addFinalizedBlock(
-            bpid, replicaInfo, replicaInfo, replicaInfo.getBytesReserved());
-        if (v.isTransientStorage()) {
-          releaseLockedMemory(
-              replicaInfo.getOriginalBytesReserved()
-                  - replicaInfo.getNumBytes(),
-              false);
-          ramDiskReplicaTracker.addReplica(
-              bpid, replicaInfo.getBlockId(), v, replicaInfo.getNumBytes());
-          datanode.getMetrics().addRamDiskBytesWrite(replicaInfo.getNumBytes());
-        }
+    ReplicaInfo newReplicaInfo = null;
+    if (replicaInfo.getState() == ReplicaState.RUR &&
+        replicaInfo.getOriginalReplica().getState()
+        == ReplicaState.FINALIZED) {
+      newReplicaInfo = replicaInfo.getOriginalReplica();
+    } else {
+      FsVolumeImpl v = (FsVolumeImpl)replicaInfo.getVolume();
+      if (v == null) {
+        throw new IOException("No volume for block " + replicaInfo);
       }
-      assert newReplicaInfo.getState() == ReplicaState.FINALIZED
-          : "Replica should be finalized";
-      volumeMap.add(bpid, newReplicaInfo);
-      return newReplicaInfo;
-    }
+
+      newReplicaInfo = v.addFinalizedBlock(
+          bpid, replicaInfo, replicaInfo, replicaInfo.getBytesReserved());
+      if (v.isTransientStorage()) {
+        releaseLockedMemory(
+            replicaInfo.getOriginalBytesReserved()
+                - replicaInfo.getNumBytes(),
+            false);
+        ramDiskReplicaTracker.addReplica(
+            bpid, replicaInfo.getBlockId(), v, replicaInfo.getNumBytes());
+        datanode.getMetrics().addRamDiskBytesWrite(replicaInfo.getNumBytes());
+      }
+    }
+    assert newReplicaInfo.getState() == ReplicaState.FINALIZED
+        : "Replica should be finalized";
+    volumeMap.add(bpid, newReplicaInfo);
+    return newReplicaInfo;
   }
 
   /**
@@ -1931,6 +2017,7 @@ public void invalidate(String bpid, Block invalidBlks[]) throws IOException {
 
       // If the block is cached, start uncaching it.
       cacheManager.uncacheBlock(bpid, invalidBlks[i].getBlockId());
+      invalidateReadCache(bpid, invalidBlks[i].getBlockId());
 
       // Delete the block asynchronously to make sure we can do it fast enough.
       // It's ok to unlink the block file before the uncache operation
@@ -1971,6 +2058,7 @@ public void invalidate(String bpid, ReplicaInfo block) {
 
     // If the block is cached, start uncaching it.
     cacheManager.uncacheBlock(bpid, block.getBlockId());
+    invalidateReadCache(bpid, block.getBlockId());
 
     datanode.notifyNamenodeDeletedBlock(new ExtendedBlock(bpid, block),
         block.getStorageUuid());
@@ -2053,7 +2141,7 @@ public boolean isCached(String bpid, long blockId) {
 
   @Override // FsDatasetSpi
   public boolean contains(final ExtendedBlock block) {
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
+    try (AutoCloseableLock lock = lockManager.acquireSharedLock()) {
       final long blockId = block.getLocalBlock().getBlockId();
       final String bpid = block.getBlockPoolId();
       final ReplicaInfo r = volumeMap.get(bpid, blockId);
@@ -2103,6 +2191,14 @@ void registerMBean(final String datanodeUuid) {
   public void shutdown() {
     fsRunning = false;
 
+    if (replicaSnapshotter != null) {
+      replicaSnapshotter.shutdownNow();
+    }
+
+    if (readCache != null) {
+      readCache.shutdown();
+    }
+
     if (lazyWriter != null) {
       ((LazyWriter) lazyWriter.getRunnable()).stop();
       lazyWriter.interrupt();
@@ -2355,16 +2451,24 @@ public String getReplicaString(String bpid, long blockId) {
   public ReplicaRecoveryInfo initReplicaRecovery(RecoveringBlock rBlock)
       throws IOException {
     return initReplicaRecovery(rBlock.getBlock().getBlockPoolId(), volumeMap,
-        rBlock.getBlock().getLocalBlock(), rBlock.getNewGenerationStamp(),
+        datasetLock, rBlock.getBlock().getLocalBlock(),
+        rBlock.getNewGenerationStamp(),
         datanode.getDnConf().getXceiverStopTimeout());
   }
 
   /** static version of {@link #initReplicaRecovery(RecoveringBlock)}. */
   static ReplicaRecoveryInfo initReplicaRecovery(String bpid, ReplicaMap map,
       Block block, long recoveryId, long xceiverStopTimeout) throws IOException {
+    return initReplicaRecovery(bpid, map, map.getLock(), block, recoveryId,
+        xceiverStopTimeout);
+  }
+
+  private static ReplicaRecoveryInfo initReplicaRecovery(String bpid,
+      ReplicaMap map, AutoCloseableLock datasetLock, Block block,
+      long recoveryId, long xceiverStopTimeout) throws IOException {
     while (true) {
       try {
-        try (AutoCloseableLock lock = map.getLock().acquire()) {
+        try (AutoCloseableLock lock = datasetLock.acquire()) {
           return initReplicaRecoveryImpl(bpid, map, block, recoveryId);
         }
       } catch (MustStopExistingWriter e) {
@@ -2561,7 +2665,7 @@ private ReplicaInfo updateReplicaUnderRecovery(
   @Override // FsDatasetSpi
   public long getReplicaVisibleLength(final ExtendedBlock block)
   throws IOException {
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
+    try (AutoCloseableLock lock = lockManager.acquireSharedLock()) {
       final Replica replica = getReplicaInfo(block.getBlockPoolId(),
           block.getBlockId());
       if (replica.getGenerationStamp() < block.getGenerationStamp()) {
@@ -2584,6 +2688,40 @@ public void addBlockPool(String bpid, Configuration conf)
     volumes.getAllVolumesMap(bpid, volumeMap, ramDiskReplicaTracker);
   }
 
+  /**
+   * Write a snapshot of the finalized replicas of each block pool on each
+   * volume, from which the replica map is loaded on restart.
+   */
+  @VisibleForTesting
+  void saveReplicaSnapshots() {
+    try {
+      for (String bpid : volumeMap.getBlockPoolList()) {
+        // Taken before the replicas, so that the directories changed after
+        // them are listed again when the snapshot is loaded.
+        final long time = Time.now();
+        final Map<DatanodeStorage, BlockListAsLongs> blocksPerVolume =
+            getBlockReports(bpid);
+        for (FsVolumeImpl v : volumes.getVolumes()) {
+          final BlockListAsLongs blocks =
+              blocksPerVolume.get(v.toDatanodeStorage());
+          if (blocks == null) {
+            continue;
+          }
+          try (FsVolumeReference ref = v.obtainReference()) {
+            v.saveReplicaSnapshot(bpid, time, blocks);
+          } catch (ClosedChannelException e) {
+            // The volume is being removed.
+          } catch (IOException e) {
+            LOG.warn("Failed to close the reference of " + v, e);
+          }
+        }
+      }
+    } catch (RuntimeException e) {
+      // Keep the snapshots scheduled.
+      LOG.warn("Failed to save the replica snapshots", e);
+    }
+  }
+
   @Override
   public void shutdownBlockPool(String bpid) {
     try (AutoCloseableLock lock = datasetLock.acquire()) {
@@ -2686,7 +2824,7 @@ public void deleteBlockPool(String bpid, boolean force)
   @Override // FsDatasetSpi
   public BlockLocalPathInfo getBlockLocalPathInfo(ExtendedBlock block)
       throws IOException {
-    try (AutoCloseableLock lock = datasetLock.acquire()) {
+    try (AutoCloseableLock lock = lockManager.acquireSharedLock()) {
       final Replica replica = volumeMap.get(block.getBlockPoolId(),
           block.getBlockId());
       if (replica == null) {
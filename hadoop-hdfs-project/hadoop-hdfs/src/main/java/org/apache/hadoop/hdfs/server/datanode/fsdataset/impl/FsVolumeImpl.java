@@ -339,8 +339,8 @@ void onMetaFileDeletion(String bpid, long value) {
     decDfsUsedAndNumBlocks(bpid, value, false);
   }
 
-  private void decDfsUsedAndNumBlocks(String bpid, long value,
-                                      boolean blockFileDeleted) {
+  void decDfsUsedAndNumBlocks(String bpid, long value,
+                              boolean blockFileDeleted) {
     try(AutoCloseableLock lock = dataset.acquireDatasetLock()) {
       BlockPoolSlice bp = bpSlices.get(bpid);
       if (bp != null) {
@@ -1025,6 +1025,14 @@ void addBlockPool(String bpid, Configuration c, Timer timer)
     bpSlices.put(bpid, bp);
   }
   
+  /** Write a snapshot of the finalized replicas of a block pool. */
+  void saveReplicaSnapshot(String bpid, long time, BlockListAsLongs blocks) {
+    BlockPoolSlice bp = bpSlices.get(bpid);
+    if (bp != null) {
+      bp.saveReplicaSnapshot(time, blocks);
+    }
+  }
+
   void shutdownBlockPool(String bpid, BlockListAsLongs blocksListsAsLongs) {
     BlockPoolSlice bp = bpSlices.get(bpid);
     if (bp != null) {
@@ -1295,8 +1303,19 @@ private File[] copyReplicaWithNewBlockIdAndGS(
   public LinkedList<ScanInfo> compileReport(String bpid,
       LinkedList<ScanInfo> report, ReportCompiler reportCompiler)
       throws InterruptedException, IOException {
-    return compileReport(getFinalizedDir(bpid),
-        getFinalizedDir(bpid), report, reportCompiler);
+    final File finalizedDir = getFinalizedDir(bpid);
+    if (!reportCompiler.isIndexEnabled()) {
+      return compileReport(finalizedDir, finalizedDir, report, reportCompiler,
+          null, null);
+    }
+    final BlockPoolSlice bp = getBlockPoolSlice(bpid);
+    final DirectoryScanIndex previous =
+        reportCompiler.isFullScan() ? null : bp.loadDirectoryScanIndex();
+    final DirectoryScanIndex index = new DirectoryScanIndex();
+    compileReport(finalizedDir, finalizedDir, report, reportCompiler,
+        previous, index);
+    bp.saveDirectoryScanIndex(index);
+    return report;
   }
 
   @Override
@@ -1309,12 +1328,42 @@ public DataNodeVolumeMetrics getMetrics() {
     return metrics;
   }
 
+  /**
+   * Add the replicas in a directory and its subdirectories to a report.
+   *
+   * @param previous the index of the last scan. Directories which did not
+   *                 change since are taken from it. May be null.
+   * @param index the index to which the directories are added, or null if
+   *              the scan is not indexed.
+   */
   private LinkedList<ScanInfo> compileReport(File bpFinalizedDir,
-      File dir, LinkedList<ScanInfo> report, ReportCompiler reportCompiler)
+      File dir, LinkedList<ScanInfo> report, ReportCompiler reportCompiler,
+      DirectoryScanIndex previous, DirectoryScanIndex index)
         throws InterruptedException {
 
     reportCompiler.throttle();
 
+    // taken before listing, so that any later change is seen next time
+    final long modificationTime = index == null ? 0 : dir.lastModified();
+    final String path = index == null ? null :
+        dir.getPath().substring(bpFinalizedDir.getPath().length());
+    final DirectoryScanIndex.Dir indexed =
+        previous == null ? null : previous.get(path);
+    if (indexed != null && modificationTime != 0
+        && indexed.getModificationTime() == modificationTime) {
+      reportCompiler.directoryReused();
+      index.put(path, indexed);
+      indexed.addTo(report, dir, this);
+      for (String subdir : indexed.getSubdirs()) {
+        compileReport(bpFinalizedDir, new File(dir, subdir), report,
+            reportCompiler, previous, index);
+      }
+      return report;
+    }
+    reportCompiler.directoryListed();
+    final DirectoryScanIndex.Dir listed = index == null ? null :
+        new DirectoryScanIndex.Dir(modificationTime);
+
     List <String> fileNames;
     try {
       fileNames = fileIoProvider.listDirectory(
@@ -1343,7 +1392,11 @@ private LinkedList<ScanInfo> compileReport(File bpFinalizedDir,
 
       File file = new File(dir, fileNames.get(i));
       if (file.isDirectory()) {
-        compileReport(bpFinalizedDir, file, report, reportCompiler);
+        if (listed != null) {
+          listed.addSubdir(file.getName());
+        }
+        compileReport(bpFinalizedDir, file, report, reportCompiler,
+            previous, index);
         continue;
       }
       if (!Block.isBlockFilename(file)) {
@@ -1351,7 +1404,8 @@ private LinkedList<ScanInfo> compileReport(File bpFinalizedDir,
           long blockId = Block.getBlockId(file.getName());
           verifyFileLocation(file.getParentFile(), bpFinalizedDir,
               blockId);
-          report.add(new ScanInfo(blockId, null, file, this));
+          addToReport(report, listed,
+              new ScanInfo(blockId, null, file, this));
         }
         continue;
       }
@@ -1374,11 +1428,24 @@ private LinkedList<ScanInfo> compileReport(File bpFinalizedDir,
         }
       }
       verifyFileLocation(blockFile, bpFinalizedDir, blockId);
-      report.add(new ScanInfo(blockId, blockFile, metaFile, this));
+      addToReport(report, listed,
+          new ScanInfo(blockId, blockFile, metaFile, this));
+    }
+    if (listed != null && modificationTime != 0 && modificationTime
+        < Time.now() - DirectoryScanIndex.MIN_DIR_AGE_MS) {
+      index.put(path, listed);
     }
     return report;
   }
 
+  private static void addToReport(LinkedList<ScanInfo> report,
+      DirectoryScanIndex.Dir dir, ScanInfo info) {
+    report.add(info);
+    if (dir != null) {
+      dir.add(info);
+    }
+  }
+
   /**
    * Helper method to determine if a file name is consistent with a block.
    * meta-data file
@@ -58,6 +58,11 @@ public long getLength() {
     return length;
   }
 
+  /** @return a read-only view of the mapped block. */
+  ByteBuffer getData() {
+    return mmap.asReadOnlyBuffer();
+  }
+
   /**
    * Load the block.
    *
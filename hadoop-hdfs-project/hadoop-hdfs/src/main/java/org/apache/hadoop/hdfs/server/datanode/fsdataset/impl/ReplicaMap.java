@@ -135,6 +135,34 @@ ReplicaInfo add(String bpid, ReplicaInfo replicaInfo) {
     }
   }
 
+  /**
+   * Add a replica's meta information into the map unless the map already
+   * holds a replica with the same block id.
+   *
+   * @param bpid block pool id
+   * @param replicaInfo a replica's meta information
+   * @return the replica already in the map, or null if the replica was added
+   * @throws IllegalArgumentException if the input parameter is null
+   */
+  ReplicaInfo addIfAbsent(String bpid, ReplicaInfo replicaInfo) {
+    checkBlockPool(bpid);
+    checkBlock(replicaInfo);
+    try (AutoCloseableLock l = lock.acquire()) {
+      FoldedTreeSet<ReplicaInfo> set = map.get(bpid);
+      if (set == null) {
+        // Add an entry for block pool if it does not exist already
+        set = new FoldedTreeSet<>();
+        map.put(bpid, set);
+      }
+      ReplicaInfo existing =
+          set.get(replicaInfo.getBlockId(), LONG_AND_BLOCK_COMPARATOR);
+      if (existing == null) {
+        set.add(replicaInfo);
+      }
+      return existing;
+    }
+  }
+
   /**
    * Add all entries from the given replica map into the local replica map.
    */
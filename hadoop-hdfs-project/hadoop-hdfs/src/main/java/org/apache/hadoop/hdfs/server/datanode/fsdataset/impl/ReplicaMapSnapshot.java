@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+import org.apache.hadoop.hdfs.protocol.BlockListAsLongs;
+import org.apache.hadoop.hdfs.protocol.BlockListAsLongs.BlockReportReplica;
+import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.ReplicaState;
+
+/**
+ * A snapshot of the finalized replicas of a block pool on a volume.
+ *
+ * The snapshot is a header followed by fixed-size records of the block ID,
+ * generation stamp and length of each replica, and a CRC32 of the records.
+ * It is memory-mapped when read, so loading it costs little more than
+ * creating the replicas.
+ *
+ * A snapshot records the time it was taken. A finalized directory modified
+ * since has replicas added or removed after the snapshot, so it must be
+ * listed again; the replicas of the other directories are as recorded.
+ */
+class ReplicaMapSnapshot {
+  private static final int LAYOUT_VERSION = 1;
+  /** The layout version, time and number of records. */
+  private static final int HEADER_SIZE = 4 + 8 + 4;
+  private static final int RECORD_SIZE = 3 * 8;
+  private static final int CHECKSUM_SIZE = 4;
+
+  private final long time;
+  private final int size;
+  private final ByteBuffer records;
+
+  private ReplicaMapSnapshot(long time, int size, ByteBuffer records) {
+    this.time = time;
+    this.size = size;
+    this.records = records;
+  }
+
+  /** @return the time the snapshot was taken. */
+  long getTime() {
+    return time;
+  }
+
+  /** @return the number of replicas. */
+  int size() {
+    return size;
+  }
+
+  long getBlockId(int i) {
+    return records.getLong(i * RECORD_SIZE);
+  }
+
+  long getGenerationStamp(int i) {
+    return records.getLong(i * RECORD_SIZE + 8);
+  }
+
+  long getNumBytes(int i) {
+    return records.getLong(i * RECORD_SIZE + 16);
+  }
+
+  /**
+   * Write the finalized replicas of a block list.
+   *
+   * @param time the time the replicas were taken, which must not be later
+   *             than any change to the finalized directories not reflected
+   *             in them.
+   */
+  static void write(DataOutputStream out, long time, BlockListAsLongs blocks)
+      throws IOException {
+    int size = 0;
+    for (BlockReportReplica r : blocks) {
+      if (r.getState() == ReplicaState.FINALIZED) {
+        size++;
+      }
+    }
+    out.writeInt(LAYOUT_VERSION);
+    out.writeLong(time);
+    out.writeInt(size);
+    final CRC32 crc = new CRC32();
+    final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    for (BlockReportReplica r : blocks) {
+      if (r.getState() == ReplicaState.FINALIZED) {
+        record.clear();
+        record.putLong(r.getBlockId());
+        record.putLong(r.getGenerationStamp());
+        record.putLong(r.getNumBytes());
+        crc.update(record.array(), 0, RECORD_SIZE);
+        out.write(record.array(), 0, RECORD_SIZE);
+      }
+    }
+    out.writeInt((int) crc.getValue());
+  }
+
+  /**
+   * Map a snapshot file and verify its checksum.
+   *
+   * @throws IOException if the file is not a valid snapshot.
+   */
+  static ReplicaMapSnapshot read(FileInputStream in) throws IOException {
+    final FileChannel channel = in.getChannel();
+    final long length = channel.size();
+    if (length < HEADER_SIZE + CHECKSUM_SIZE) {
+      throw new IOException("Replica snapshot too short: " + length);
+    }
+    final ByteBuffer buf =
+        channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+    final int version = buf.getInt();
+    if (version != LAYOUT_VERSION) {
+      throw new IOException("Unexpected replica snapshot version " + version
+          + ", expected " + LAYOUT_VERSION);
+    }
+    final long time = buf.getLong();
+    final int size = buf.getInt();
+    if (size < 0 || length
+        != HEADER_SIZE + (long) size * RECORD_SIZE + CHECKSUM_SIZE) {
+      throw new IOException("Replica snapshot of " + size
+          + " replicas has an unexpected length " + length);
+    }
+    final ByteBuffer records = buf.slice();
+    records.limit(size * RECORD_SIZE);
+    final CRC32 crc = new CRC32();
+    crc.update(records.duplicate());
+    final int expected = buf.getInt(HEADER_SIZE + size * RECORD_SIZE);
+    if ((int) crc.getValue() != expected) {
+      throw new IOException("Replica snapshot checksum mismatch");
+    }
+    return new ReplicaMapSnapshot(time, size, records);
+  }
+}
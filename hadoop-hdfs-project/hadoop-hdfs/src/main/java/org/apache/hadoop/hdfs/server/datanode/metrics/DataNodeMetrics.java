@@ -31,6 +31,7 @@
 import org.apache.hadoop.metrics2.lib.MutableQuantiles;
 import org.apache.hadoop.metrics2.lib.MutableRate;
 import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
+import org.apache.hadoop.metrics2.lib.MutableGaugeLong;
 import org.apache.hadoop.metrics2.source.JvmMetrics;
 
 import java.util.concurrent.ThreadLocalRandom;
@@ -95,6 +96,31 @@ public class DataNodeMetrics {
   @Metric MutableRate        ramDiskBlocksLazyPersistWindowMs;
   final MutableQuantiles[]   ramDiskBlocksLazyPersistWindowMsQuantiles;
 
+  // Read cache metrics
+  @Metric("Reads of blocks served from the read cache")
+  MutableCounterLong readCacheHits;
+  @Metric("Reads of blocks not in the read cache")
+  MutableCounterLong readCacheMisses;
+  @Metric("Bytes of block data sent from the read cache")
+  MutableCounterLong readCacheBytesRead;
+  @Metric("Blocks loaded into the read cache")
+  MutableCounterLong readCacheBlocksLoaded;
+  @Metric("Blocks evicted from the read cache")
+  MutableCounterLong readCacheBlocksEvicted;
+  @Metric("Bytes of memory used by the read cache")
+  MutableGaugeLong readCacheUsed;
+
+  @Metric("Duration of directory scans in milliseconds")
+  MutableRate directoryScans;
+  @Metric("Milliseconds the directory scanner held the dataset lock")
+  MutableRate directoryScanLockHold;
+  @Metric("Blocks per second checked by the last directory scan")
+  MutableGaugeLong directoryScanBlocksPerSec;
+  @Metric("Directories listed by directory scans")
+  MutableCounterLong directoryScanDirsListed;
+  @Metric("Directories taken from the index of the previous directory scan")
+  MutableCounterLong directoryScanDirsReused;
+
   @Metric MutableCounterLong fsyncCount;
   
   @Metric MutableCounterLong volumeFailures;
@@ -105,6 +131,10 @@ public class DataNodeMetrics {
   @Metric("Count of active dataNode xceivers")
   private MutableGaugeInt dataNodeActiveXceiversCount;
 
+  @Metric("Count of dataNode xceivers waiting for their next operation " +
+      "without a thread")
+  private MutableGaugeInt dataNodeParkedXceiversCount;
+
   @Metric MutableRate readBlockOp;
   @Metric MutableRate writeBlockOp;
   @Metric MutableRate blockChecksumOp;
@@ -142,6 +172,12 @@ public class DataNodeMetrics {
   MutableCounterLong ecReconstructionBytesWritten;
   @Metric("Bytes remote read by erasure coding worker")
   MutableCounterLong ecReconstructionRemoteBytesRead;
+  @Metric("Milliseconds spent by reconstruction tasks")
+  MutableRate ecReconstructionTime;
+  @Metric("Bytes per second written by the last reconstruction task")
+  MutableGaugeLong ecReconstructionBytesWrittenPerSec;
+  @Metric("Milliseconds reconstruction tasks waited for the bandwidth budget")
+  MutableCounterLong ecReconstructionThrottledTimeMillis;
 
   final MetricsRegistry registry = new MetricsRegistry("datanode");
   final String name;
@@ -433,6 +469,49 @@ public void addRamDiskBlocksLazyPersistWindowMs(long latencyMs) {
     }
   }
 
+  public void addDirectoryScan(long latencyMs, long blocks, long dirsListed,
+      long dirsReused) {
+    directoryScans.add(latencyMs);
+    directoryScanBlocksPerSec.set(blocks * 1000 / Math.max(1, latencyMs));
+    directoryScanDirsListed.incr(dirsListed);
+    directoryScanDirsReused.incr(dirsReused);
+  }
+
+  public void addDirectoryScanLockHold(long latencyMs) {
+    directoryScanLockHold.add(latencyMs);
+  }
+
+  public void incrReadCacheHits() {
+    readCacheHits.incr();
+  }
+
+  public void incrReadCacheMisses() {
+    readCacheMisses.incr();
+  }
+
+  public void incrReadCacheBytesRead(long bytes) {
+    readCacheBytesRead.incr(bytes);
+  }
+
+  public void incrReadCacheBlocksLoaded() {
+    readCacheBlocksLoaded.incr();
+  }
+
+  public void incrReadCacheBlocksEvicted() {
+    readCacheBlocksEvicted.incr();
+  }
+
+  public void setReadCacheUsed(long bytes) {
+    readCacheUsed.set(bytes);
+  }
+
+  @Metric("Ratio of block reads served from the read cache")
+  public float getReadCacheHitRatio() {
+    final long hits = readCacheHits.value();
+    final long reads = hits + readCacheMisses.value();
+    return reads == 0 ? 0 : (float) hits / reads;
+  }
+
   public void incrECReconstructionTasks() {
     ecReconstructionTasks.incr();
   }
@@ -453,6 +532,14 @@ public void setDataNodeActiveXceiversCount(int value) {
     dataNodeActiveXceiversCount.set(value);
   }
 
+  public void incrDataNodeParkedXceiversCount() {
+    dataNodeParkedXceiversCount.incr();
+  }
+
+  public void decrDataNodeParkedXceiversCount() {
+    dataNodeParkedXceiversCount.decr();
+  }
+
   public void incrECDecodingTime(long decodingTimeNanos) {
     ecDecodingTimeNanos.incr(decodingTimeNanos);
   }
@@ -468,4 +555,14 @@ public void incrECReconstructionRemoteBytesRead(long bytes) {
   public void incrECReconstructionBytesWritten(long bytes) {
     ecReconstructionBytesWritten.incr(bytes);
   }
+
+  public void addECReconstruction(long latencyMs, long bytesWritten) {
+    ecReconstructionTime.add(latencyMs);
+    ecReconstructionBytesWrittenPerSec.set(
+        bytesWritten * 1000 / Math.max(1, latencyMs));
+  }
+
+  public void incrECReconstructionThrottledTime(long millis) {
+    ecReconstructionThrottledTimeMillis.incr(millis);
+  }
 }
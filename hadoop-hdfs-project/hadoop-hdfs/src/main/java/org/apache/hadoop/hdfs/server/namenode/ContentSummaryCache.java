@@ -0,0 +1,207 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.util.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+/**
+ * A bounded LRU cache of directory content summaries, keyed by inode id.
+ *
+ * The namespace write paths that update quota usage also invalidate the
+ * cached summaries of every ancestor of the changed inode, see
+ * {@link FSDirectory#invalidateContentSummary(INodesInPath, int)}. Before a
+ * summary is computed, a pending entry is registered for the directory; the
+ * result is only cached if no invalidation removed the pending entry while
+ * the computation ran, e.g. after it yielded the lock.
+ *
+ * If a maximum staleness is configured, invalidated summaries are kept and
+ * still returned until they reach that age. If a verify interval is
+ * configured, every Nth hit is recomputed and checked against the cache.
+ */
+class ContentSummaryCache {
+  static final Logger LOG = LoggerFactory.getLogger(ContentSummaryCache.class);
+
+  /** A cached summary, or a pending computation if summary is null. */
+  static final class Entry {
+    private final ContentSummary summary;
+    private final long computedTime;
+    private boolean stale = false;
+
+    private Entry(ContentSummary summary, long computedTime) {
+      this.summary = summary;
+      this.computedTime = computedTime;
+    }
+  }
+
+  private final Map<Long, Entry> entries;
+  private final long maxStalenessMs;
+  private final int verifyInterval;
+  private final Timer timer;
+
+  private long hits = 0;
+  private long misses = 0;
+  private long mismatches = 0;
+
+  ContentSummaryCache(final int capacity, long maxStalenessMs,
+      int verifyInterval, Timer timer) {
+    Preconditions.checkArgument(capacity > 0,
+        "Content summary cache size must be positive: %s", capacity);
+    this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+        return size() > capacity;
+      }
+    };
+    this.maxStalenessMs = maxStalenessMs;
+    this.verifyInterval = verifyInterval;
+    this.timer = timer;
+  }
+
+  /**
+   * @return the cached summary of the directory, or null if it is not cached
+   *         or has changed since it was computed.
+   */
+  synchronized ContentSummary get(long inodeId) {
+    Entry e = entries.get(inodeId);
+    if (e != null && e.stale &&
+        timer.monotonicNow() - e.computedTime > maxStalenessMs) {
+      entries.remove(inodeId);
+      e = null;
+    }
+    if (e == null || e.summary == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return e.summary;
+  }
+
+  /**
+   * @return whether the current hit on the directory should be verified
+   *         against a freshly computed summary. Summaries returned past an
+   *         invalidation are never verified.
+   */
+  synchronized boolean shouldVerify(long inodeId) {
+    if (verifyInterval <= 0 || hits % verifyInterval != 0) {
+      return false;
+    }
+    Entry e = entries.get(inodeId);
+    return e != null && e.summary != null && !e.stale;
+  }
+
+  /**
+   * Register a pending computation of the summary of a directory.
+   * @return the token to pass to {@link #put} once the summary is computed.
+   */
+  synchronized Entry begin(long inodeId) {
+    Entry pending = new Entry(null, timer.monotonicNow());
+    entries.put(inodeId, pending);
+    return pending;
+  }
+
+  /**
+   * Cache the summary of a directory, unless the directory was invalidated
+   * since {@link #begin} returned the given token.
+   * @return whether the summary was cached.
+   */
+  synchronized boolean put(long inodeId, ContentSummary summary,
+      Entry token) {
+    if (entries.get(inodeId) != token) {
+      return false;
+    }
+    entries.put(inodeId, new Entry(summary, token.computedTime));
+    return true;
+  }
+
+  /**
+   * Recache the summary of a directory after a verification, recording a
+   * mismatch if it differs from the previously cached one.
+   * @return whether the cached summary was correct.
+   */
+  synchronized boolean verify(long inodeId, String path, ContentSummary cached,
+      ContentSummary computed, Entry token) {
+    if (!put(inodeId, computed, token) || cached.equals(computed)) {
+      // the directory changed while verifying, nothing to compare with
+      return true;
+    }
+    mismatches++;
+    LOG.warn("Cached content summary of {} is inconsistent. Cached: {}, " +
+        "computed: {}", path, cached, computed);
+    return false;
+  }
+
+  /** Invalidate the cached summary of a directory. */
+  synchronized void invalidate(long inodeId) {
+    Entry e = entries.get(inodeId);
+    if (e == null) {
+      return;
+    }
+    if (maxStalenessMs > 0 && e.summary != null) {
+      e.stale = true;
+    } else {
+      entries.remove(inodeId);
+    }
+  }
+
+  /**
+   * Invalidate the cached summaries of all directories, for changes whose
+   * affected directories are not known, e.g. below a snapshot root.
+   */
+  synchronized void invalidateAll() {
+    Iterator<Entry> it = entries.values().iterator();
+    while (it.hasNext()) {
+      Entry e = it.next();
+      if (maxStalenessMs > 0 && e.summary != null) {
+        e.stale = true;
+      } else {
+        it.remove();
+      }
+    }
+  }
+
+  synchronized void clear() {
+    entries.clear();
+  }
+
+  synchronized long getHits() {
+    return hits;
+  }
+
+  synchronized long getMisses() {
+    return misses;
+  }
+
+  synchronized long getMismatches() {
+    return mismatches;
+  }
+
+  @VisibleForTesting
+  synchronized int size() {
+    return entries.size();
+  }
+}
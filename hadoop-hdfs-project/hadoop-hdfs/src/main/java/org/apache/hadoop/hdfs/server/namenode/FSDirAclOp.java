@@ -51,6 +51,7 @@ static HdfsFileStatus modifyAclEntries(
       List<AclEntry> newAcl = AclTransformation.mergeAclEntries(
           existingAcl, aclSpec);
       AclStorage.updateINodeAcl(inode, newAcl, snapshotId);
+      fsd.invalidateListing(inode);
       fsd.getEditLog().logSetAcl(src, newAcl);
     } finally {
       fsd.writeUnlock();
@@ -76,6 +77,7 @@ static HdfsFileStatus removeAclEntries(
       List<AclEntry> newAcl = AclTransformation.filterAclEntriesByAclSpec(
         existingAcl, aclSpec);
       AclStorage.updateINodeAcl(inode, newAcl, snapshotId);
+      fsd.invalidateListing(inode);
       fsd.getEditLog().logSetAcl(src, newAcl);
     } finally {
       fsd.writeUnlock();
@@ -100,6 +102,7 @@ static HdfsFileStatus removeDefaultAcl(FSDirectory fsd, final String srcArg)
       List<AclEntry> newAcl = AclTransformation.filterDefaultAclEntries(
         existingAcl);
       AclStorage.updateINodeAcl(inode, newAcl, snapshotId);
+      fsd.invalidateListing(inode);
       fsd.getEditLog().logSetAcl(src, newAcl);
     } finally {
       fsd.writeUnlock();
@@ -189,6 +192,7 @@ static List<AclEntry> unprotectedSetAcl(FSDirectory fsd, INodesInPath iip,
       newAcl = AclTransformation.replaceAclEntries(existingAcl, aclSpec);
     }
     AclStorage.updateINodeAcl(inode, newAcl, snapshotId);
+    fsd.invalidateListing(inode);
     return newAcl;
   }
 
@@ -210,6 +214,7 @@ private static void unprotectedRemoveAcl(FSDirectory fsd, INodesInPath iip)
     if (f == null) {
       return;
     }
+    fsd.invalidateListing(inode);
 
     FsPermission perm = inode.getFsPermission();
     List<AclEntry> featureEntries = AclStorage.getEntriesFromAclFeature(f);
@@ -274,6 +274,7 @@ static void unprotectedSetPermission(
     final INode inode = FSDirectory.resolveLastINode(iip);
     int snapshotId = iip.getLatestSnapshotId();
     inode.setPermission(permissions, snapshotId);
+    fsd.invalidateListing(inode);
   }
 
   static void unprotectedSetOwner(
@@ -288,6 +289,7 @@ static void unprotectedSetOwner(
     if (groupname != null) {
       inode.setGroup(groupname, iip.getLatestSnapshotId());
     }
+    fsd.invalidateListing(inode);
   }
 
   static boolean setTimes(
@@ -372,6 +374,7 @@ static INodeDirectory unprotectedSetQuota(
       final int latest = iip.getLatestSnapshotId();
       dirNode.recordModification(latest);
       dirNode.setQuota(fsd.getBlockStoragePolicySuite(), nsQuota, ssQuota, type);
+      fsd.invalidateContentSummary(dirNode);
       return dirNode;
     }
   }
@@ -400,6 +403,7 @@ static BlockInfo[] unprotectedSetReplication(
     }
 
     file.setFileReplication(replication, iip.getLatestSnapshotId());
+    fsd.invalidateListing(file);
     short targetReplication = (short) Math.max(
         replication, file.getPreferredBlockReplication());
 
@@ -431,6 +435,9 @@ static void unprotectedSetStoragePolicy(FSDirectory fsd, BlockManager bm,
       throw new FileNotFoundException("File/Directory does not exist: "
           + iip.getPath());
     }
+    // the space consumed by storage type follows the storage policy
+    fsd.invalidateContentSummary(inode);
+    fsd.invalidateListing(inode);
     final int snapshotId = iip.getLatestSnapshotId();
     if (inode.isFile()) {
       if (policyId != HdfsConstants.BLOCK_STORAGE_POLICY_ID_UNSPECIFIED) {
@@ -497,6 +504,9 @@ static boolean unprotectedSetTimes(
       inode.setAccessTime(atime, latest);
       status = true;
     }
+    if (status) {
+      fsd.invalidateListing(inode);
+    }
     return status;
   }
 }
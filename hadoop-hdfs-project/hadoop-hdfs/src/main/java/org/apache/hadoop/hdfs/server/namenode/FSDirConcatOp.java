@@ -262,6 +262,8 @@ static void unprotectedConcat(FSDirectory fsd, INodesInPath targetIIP,
     trgInode.setModificationTime(timestamp, targetIIP.getLatestSnapshotId());
     trgParent.updateModificationTime(timestamp, targetIIP.getLatestSnapshotId());
     // update quota on the parent directory with deltas
+    fsd.invalidateContentSummary(targetIIP, targetIIP.length() - 1);
+    fsd.invalidateChildrenListing(trgParent);
     FSDirectory.unprotectedUpdateCount(targetIIP, targetIIP.length() - 1, deltas);
   }
 }
@@ -240,6 +240,23 @@ private static DirectoryListing getListing(FSDirectory fsd, INodesInPath iip,
             }, 0);
       }
 
+      // Only listings of the current state without locations are cached.
+      final ListingCache cache = fsd.getListingCache();
+      ListingCache.Inherited inherited = null;
+      if (cache != null && !needLocation && !iip.isSnapshot()
+          && !iip.isRaw()) {
+        inherited = new ListingCache.Inherited(
+            targetNode.getStoragePolicyID(),
+            FSDirErasureCodingOp.getErasureCodingPolicy(
+                fsd.getFSNamesystem(), iip),
+            FSDirEncryptionZoneOp.isInAnEZ(fsd, iip));
+        final DirectoryListing cached = cache.get(targetNode.getId(),
+            startAfter, includeStoragePolicy, inherited);
+        if (cached != null) {
+          return cached;
+        }
+      }
+
       final INodeDirectory dirInode = targetNode.asDirectory();
       final ReadOnlyList<INode> contents = dirInode.getChildrenList(snapshot);
       int startChild = INodeDirectory.nextChild(contents, startAfter);
@@ -272,8 +289,13 @@ private static DirectoryListing getListing(FSDirectory fsd, INodesInPath iip,
       if (listingCnt < numOfListing) {
           listing = Arrays.copyOf(listing, listingCnt);
       }
-      return new DirectoryListing(
+      final DirectoryListing dl = new DirectoryListing(
           listing, totalNumChildren-startChild-listingCnt);
+      if (inherited != null) {
+        return cache.put(targetNode.getId(), startAfter,
+            includeStoragePolicy, inherited, dl);
+      }
+      return dl;
     } finally {
       fsd.readUnlock();
     }
@@ -507,6 +529,20 @@ private static ContentSummary getContentSummaryInt(FSDirectory fsd,
         throw new FileNotFoundException("File does not exist: " + iip.getPath());
       }
       else {
+        // Only the current state of directories is cached.
+        final ContentSummaryCache cache = fsd.getContentSummaryCache();
+        final boolean cacheable = cache != null && targetNode.isDirectory()
+            && !iip.isSnapshot();
+        final long id = targetNode.getId();
+        ContentSummary cached = null;
+        ContentSummaryCache.Entry token = null;
+        if (cacheable) {
+          cached = cache.get(id);
+          if (cached != null && !cache.shouldVerify(id)) {
+            return cached;
+          }
+          token = cache.begin(id);
+        }
         // Make it relinquish locks everytime contentCountLimit entries are
         // processed. 0 means disabled. I.e. blocking for the entire duration.
         ContentSummaryComputationContext cscc =
@@ -515,6 +551,11 @@ private static ContentSummary getContentSummaryInt(FSDirectory fsd,
         ContentSummary cs = targetNode.computeAndConvertContentSummary(
             iip.getPathSnapshotId(), cscc);
         fsd.addYieldCount(cscc.getYieldCount());
+        if (cached != null) {
+          cache.verify(id, iip.getPath(), cached, cs, token);
+        } else if (cacheable) {
+          cache.put(id, cs, token);
+        }
         return cs;
       }
     } finally {
@@ -303,6 +303,7 @@ private static boolean unprotectedTruncate(FSNamesystem fsn,
     long remainingLength = file.collectBlocksBeyondMax(newLength,
         collectedBlocks, toRetain);
     file.setModificationTime(mtime);
+    fsn.getFSDirectory().invalidateListing(file);
     // return whether on a block boundary
     return (remainingLength - newLength) == 0;
   }
@@ -103,6 +103,8 @@ static void persistBlocks(
       FSDirectory fsd, String path, INodeFile file, boolean logRetryCache) {
     assert fsd.getFSNamesystem().hasWriteLock();
     Preconditions.checkArgument(file.isUnderConstruction());
+    fsd.invalidateContentSummary(file);
+    fsd.invalidateListing(file);
     fsd.getEditLog().logUpdateBlocks(path, file, logRetryCache);
     if(NameNode.stateChangeLog.isDebugEnabled()) {
       NameNode.stateChangeLog.debug("persistBlocks: " + path
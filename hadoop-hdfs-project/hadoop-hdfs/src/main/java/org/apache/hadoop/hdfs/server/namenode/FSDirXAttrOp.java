@@ -196,6 +196,7 @@ static List<XAttr> unprotectedRemoveXAttrs(
                                               removedXAttrs);
     if (existingXAttrs.size() != newXAttrs.size()) {
       XAttrStorage.updateINodeXAttrs(inode, newXAttrs, snapshotId);
+      fsd.invalidateListing(inode);
       return removedXAttrs;
     }
     return null;
@@ -285,6 +286,7 @@ static INode unprotectedSetXAttrs(
     }
 
     XAttrStorage.updateINodeXAttrs(inode, newXAttrs, iip.getLatestSnapshotId());
+    fsd.invalidateListing(inode);
     return inode;
   }
 
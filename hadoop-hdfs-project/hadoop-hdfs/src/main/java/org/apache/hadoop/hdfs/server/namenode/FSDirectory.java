@@ -61,6 +61,7 @@
 import org.apache.hadoop.security.AccessControlException;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.util.Time;
+import org.apache.hadoop.util.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -149,6 +150,10 @@ private static INodeDirectory createRoot(FSNamesystem namesystem) {
   private final int lsLimit;  // max list limit
   private final int contentCountLimit; // max content summary counts per run
   private final long contentSleepMicroSec;
+  // cached directory content summaries, null if disabled
+  private final ContentSummaryCache contentSummaryCache;
+  // cached directory listings, null if disabled
+  private final ListingCache listingCache;
   private final INodeMap inodeMap; // Synchronized by dirLock
   private long yieldCount = 0; // keep track of lock yield count.
   private int quotaInitThreads;
@@ -257,7 +262,9 @@ public enum DirOp {
     this.dirLock = new ReentrantReadWriteLock(true); // fair
     this.inodeId = new INodeId();
     rootDir = createRoot(ns);
-    inodeMap = INodeMap.newInstance(rootDir);
+    inodeMap = INodeMap.newInstance(rootDir, conf.getDouble(
+        DFSConfigKeys.DFS_NAMENODE_INODE_MAP_CAPACITY_PERCENTAGE_KEY,
+        DFSConfigKeys.DFS_NAMENODE_INODE_MAP_CAPACITY_PERCENTAGE_DEFAULT));
     this.isPermissionEnabled = conf.getBoolean(
       DFSConfigKeys.DFS_PERMISSIONS_ENABLED_KEY,
       DFSConfigKeys.DFS_PERMISSIONS_ENABLED_DEFAULT);
@@ -312,6 +319,32 @@ public enum DirOp {
     this.contentSleepMicroSec = conf.getLong(
         DFSConfigKeys.DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_KEY,
         DFSConfigKeys.DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_DEFAULT);
+    int contentSummaryCacheSize = conf.getInt(
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_SIZE_KEY,
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_SIZE_DEFAULT);
+    if (contentSummaryCacheSize > 0) {
+      this.contentSummaryCache = new ContentSummaryCache(
+          contentSummaryCacheSize,
+          conf.getLong(
+              DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_MAX_STALENESS_MS_KEY,
+              DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_MAX_STALENESS_MS_DEFAULT),
+          conf.getInt(
+              DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_VERIFY_INTERVAL_KEY,
+              DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_VERIFY_INTERVAL_DEFAULT),
+          new Timer());
+      LOG.info("Content summary cache size: " + contentSummaryCacheSize);
+    } else {
+      this.contentSummaryCache = null;
+    }
+    long listingCacheMaxBytes = conf.getLong(
+        DFSConfigKeys.DFS_NAMENODE_LISTING_CACHE_MAX_BYTES_KEY,
+        DFSConfigKeys.DFS_NAMENODE_LISTING_CACHE_MAX_BYTES_DEFAULT);
+    if (listingCacheMaxBytes > 0) {
+      this.listingCache = new ListingCache(listingCacheMaxBytes);
+      LOG.info("Listing cache size: " + listingCacheMaxBytes + " bytes");
+    } else {
+      this.listingCache = null;
+    }
     
     // filesystem limits
     this.maxComponentLength = conf.getInt(
@@ -515,6 +548,22 @@ long getContentSleepMicroSec() {
     return contentSleepMicroSec;
   }
 
+  /**
+   * @return the content summary cache, or null if it is disabled.
+   */
+  ContentSummaryCache getContentSummaryCache() {
+    return contentSummaryCache;
+  }
+
+  /**
+   * @return the directory listing cache, or null if it is disabled.
+   */
+  ListingCache getListingCache() {
+    // an attribute provider may return different attributes for a path
+    // every time, so its listings are not cached
+    return attributeProvider == null ? listingCache : null;
+  }
+
   int getInodeXAttrsLimit() {
     return inodeXAttrsLimit;
   }
@@ -905,6 +954,7 @@ void updateCount(INodesInPath iip, int numOfINodes,
     if (numOfINodes > iip.length()) {
       numOfINodes = iip.length();
     }
+    invalidateContentSummary(iip, numOfINodes);
     if (checkQuota && !skipQuotaCheck) {
       verifyQuota(iip, numOfINodes, counts, null);
     }
@@ -939,6 +989,72 @@ static void unprotectedUpdateCount(INodesInPath inodesInPath,
     }
   }
 
+  /**
+   * Invalidate the cached content summaries of the first inodes of a path,
+   * i.e. the ancestors whose quota usage is updated for a change.
+   */
+  void invalidateContentSummary(INodesInPath iip, int numOfINodes) {
+    if (contentSummaryCache == null) {
+      return;
+    }
+    for (int i = 0; i < numOfINodes; i++) {
+      INode inode = iip.getINode(i);
+      if (inode != null) {
+        contentSummaryCache.invalidate(inode.getId());
+      }
+    }
+  }
+
+  /**
+   * Invalidate the cached content summaries of an inode and its ancestors.
+   */
+  void invalidateContentSummary(INode inode) {
+    if (contentSummaryCache == null) {
+      return;
+    }
+    for (INode i = inode; i != null; i = i.getParent()) {
+      contentSummaryCache.invalidate(i.getId());
+    }
+  }
+
+  /**
+   * Invalidate all cached content summaries. Snapshot operations change the
+   * summaries of the whole subtree of the snapshot root, whose cached
+   * directories are not tracked.
+   */
+  public void invalidateAllContentSummaries() {
+    if (contentSummaryCache != null) {
+      contentSummaryCache.invalidateAll();
+    }
+  }
+
+  /**
+   * Invalidate the cached listing which holds the status of an inode, i.e.
+   * the listing of its parent directory.
+   */
+  void invalidateListing(INode inode) {
+    if (listingCache == null) {
+      return;
+    }
+    INodeDirectory parent = inode.getParent();
+    if (parent != null) {
+      listingCache.invalidate(parent.getId());
+    }
+  }
+
+  /**
+   * Invalidate the cached listing of a directory whose children were added
+   * or removed, and the listing of its parent since the number of children
+   * and the modification time of the directory changed.
+   */
+  void invalidateChildrenListing(INodeDirectory dir) {
+    if (listingCache == null) {
+      return;
+    }
+    listingCache.invalidate(dir.getId());
+    invalidateListing(dir);
+  }
+
   /**
    * Update the cached quota space for a block that is being completed.
    * Must only be called once, as the block is being completed.
@@ -952,6 +1068,9 @@ public void updateSpaceForCompleteBlock(BlockInfo completeBlk,
     INodesInPath iip = inodes != null ? inodes :
         INodesInPath.fromINode(namesystem.getBlockCollection(completeBlk));
     INodeFile fileINode = iip.getLastINode().asFile();
+    // the length of the file changes even if its space consumption does not
+    invalidateContentSummary(fileINode);
+    invalidateListing(fileINode);
     // Adjust disk space consumption if required
     final long diff;
     final short replicationFactor;
@@ -1237,6 +1356,7 @@ public INodesInPath addLastINode(INodesInPath existing, INode inode,
         copyINodeDefaultAcl(inode, modes);
       }
       addToInodeMap(inode);
+      invalidateChildrenListing(parent);
     }
     return INodesInPath.append(existing, inode, inode.getLocalNameBytes());
   }
@@ -1268,6 +1388,8 @@ public long removeLastINode(final INodesInPath iip) {
     if (!parent.removeChild(last, latestSnapshot)) {
       return -1;
     }
+    invalidateContentSummary(parent);
+    invalidateChildrenListing(parent);
 
     return (!last.isInLatestSnapshot(latestSnapshot)
         && INodeReference.tryRemoveReference(last) > 0) ? 0 : 1;
@@ -1417,6 +1539,12 @@ void reset() {
       addToInodeMap(rootDir);
       nameCache.reset();
       inodeId.setCurrentValue(INodeId.LAST_RESERVED_ID);
+      if (contentSummaryCache != null) {
+        contentSummaryCache.clear();
+      }
+      if (listingCache != null) {
+        listingCache.clear();
+      }
     } finally {
       writeUnlock();
     }
@@ -714,6 +714,7 @@ protected void logSync(long mytxid) {
       if (metrics != null) { // Metrics non-null only when used inside name node
         metrics.addSync(elapsed);
         metrics.incrTransactionsBatchedInSync(editsBatchedInSync);
+        metrics.addSyncBatchSize(editsBatchedInSync + 1);
         numTransactionsBatchedInSync.addAndGet(editsBatchedInSync);
       }
       
@@ -1242,6 +1243,10 @@ synchronized void setJournalSetForTesting(JournalSet js) {
     this.journalSet = js;
   }
   
+  NameNodeMetrics getMetrics() {
+    return metrics;
+  }
+
   /**
    * Used only by tests.
    */
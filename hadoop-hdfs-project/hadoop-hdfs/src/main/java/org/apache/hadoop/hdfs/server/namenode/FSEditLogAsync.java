@@ -29,11 +29,15 @@
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
 import org.apache.hadoop.ipc.Server;
 import org.apache.hadoop.util.ExitUtil;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 
+import static org.apache.hadoop.util.Time.monotonicNow;
+
 class FSEditLogAsync extends FSEditLog implements Runnable {
   static final Log LOG = LogFactory.getLog(FSEditLog.class);
 
@@ -43,18 +47,43 @@ class FSEditLogAsync extends FSEditLog implements Runnable {
   private static ThreadLocal<Edit> threadEdit = new ThreadLocal<Edit>();
 
   // requires concurrent access from caller threads and syncing thread.
-  private final BlockingQueue<Edit> editPendingQ =
-      new ArrayBlockingQueue<Edit>(4096);
+  private final BlockingQueue<Edit> editPendingQ;
 
   // only accessed by syncing thread so no synchronization required.
   // queue is unbounded because it's effectively limited by the size
   // of the edit log buffer - ie. a sync will eventually be forced.
   private final Deque<Edit> syncWaitQ = new ArrayDeque<Edit>();
 
+  // max edits grouped into one sync, 0 for unbounded.
+  private final int maxBatchEdits;
+  // max ms the first edit of a batch waits for the sync, 0 for unbounded.
+  private final long maxBatchWaitMs;
+  // only accessed by syncing thread; when the first edit of the current
+  // batch was written.
+  private long batchStartTime;
+
   FSEditLogAsync(Configuration conf, NNStorage storage, List<URI> editsDirs) {
     super(conf, storage, editsDirs);
     // op instances cannot be shared due to queuing for background thread.
     cache.disableCache();
+    int pendingQSize = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_LOGGING_PENDING_QUEUE_SIZE,
+        DFSConfigKeys.
+            DFS_NAMENODE_EDITS_ASYNC_LOGGING_PENDING_QUEUE_SIZE_DEFAULT);
+    Preconditions.checkArgument(pendingQSize > 0,
+        DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_LOGGING_PENDING_QUEUE_SIZE
+        + " must be greater than 0");
+    editPendingQ = new ArrayBlockingQueue<Edit>(pendingQSize);
+    maxBatchEdits = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_LOGGING_MAX_BATCH_EDITS,
+        DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_LOGGING_MAX_BATCH_EDITS_DEFAULT);
+    maxBatchWaitMs = conf.getTimeDuration(
+        DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_LOGGING_MAX_BATCH_WAIT_MS,
+        DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_LOGGING_MAX_BATCH_WAIT_MS_DEFAULT,
+        TimeUnit.MILLISECONDS);
+    LOG.info("Async edit log pending queue size: " + pendingQSize
+        + ", max edits per batch: " + maxBatchEdits
+        + ", max batch wait: " + maxBatchWaitMs + " ms");
   }
 
   private boolean isSyncThreadAlive() {
@@ -173,9 +202,16 @@ public void run() {
         boolean doSync;
         Edit edit = dequeueEdit();
         if (edit != null) {
-          // sync if requested by edit log.
+          if (syncWaitQ.isEmpty()) {
+            batchStartTime = monotonicNow();
+          }
+          // sync if requested by edit log, the batch is full or the first
+          // edit of the batch has waited long enough.
           doSync = edit.logEdit();
           syncWaitQ.add(edit);
+          doSync |= maxBatchEdits > 0 && syncWaitQ.size() >= maxBatchEdits;
+          doSync |= maxBatchWaitMs > 0
+              && monotonicNow() - batchStartTime >= maxBatchWaitMs;
         } else {
           // sync when editq runs dry, but have edits pending a sync.
           doSync = !syncWaitQ.isEmpty();
@@ -189,6 +225,10 @@ public void run() {
           } catch (RuntimeException ex) {
             syncEx = ex;
           }
+          NameNodeMetrics metrics = getMetrics();
+          if (metrics != null) {
+            metrics.addEditBatchWaitTime(monotonicNow() - batchStartTime);
+          }
           while ((edit = syncWaitQ.poll()) != null) {
             edit.logSyncNotify(syncEx);
           }
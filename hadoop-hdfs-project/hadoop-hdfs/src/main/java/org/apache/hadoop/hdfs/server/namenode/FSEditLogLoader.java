@@ -983,6 +983,8 @@ private void addNewBlock(AddBlockOp op, INodeFile file,
     BlockInfo[] oldBlocks = file.getBlocks();
     Block pBlock = op.getPenultimateBlock();
     Block newBlock= op.getLastBlock();
+    fsNamesys.getFSDirectory().invalidateContentSummary(file);
+    fsNamesys.getFSDirectory().invalidateListing(file);
     
     if (pBlock != null) { // the penultimate block is not null
       assert oldBlocks != null && oldBlocks.length > 0;
@@ -1031,6 +1033,8 @@ private void updateBlocks(FSDirectory fsDir, BlockListUpdatingOp op,
     BlockInfo[] oldBlocks = file.getBlocks();
     Block[] newBlocks = op.getBlocks();
     String path = op.getPath();
+    fsDir.invalidateContentSummary(file);
+    fsDir.invalidateListing(file);
     
     // Are we only updating the last block's gen stamp.
     boolean isGenStampUpdate = oldBlocks.length == newBlocks.length;
@@ -20,11 +20,16 @@
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -66,6 +71,7 @@
 import org.apache.hadoop.hdfs.server.namenode.startupprogress.Step;
 import org.apache.hadoop.hdfs.util.EnumCounters;
 import org.apache.hadoop.hdfs.util.ReadOnlyList;
+import org.apache.hadoop.io.IOUtils;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
@@ -225,6 +231,9 @@ public static void updateBlocksMap(INodeFile file, BlockManager bm) {
       }
     }
 
+    /** Number of INodes added to the INode map per lock acquisition. */
+    private static final int INODE_BATCH_SIZE = 1000;
+
     private final FSDirectory dir;
     private final FSNamesystem fsn;
     private final FSImageFormatProtobuf.Loader parent;
@@ -235,6 +244,33 @@ public static void updateBlocksMap(INodeFile file, BlockManager bm) {
       this.parent = parent;
     }
 
+    /**
+     * Load the INode directory sub-sections in parallel. Each directory is
+     * written to exactly one sub-section, so the children lists of different
+     * tasks never overlap.
+     */
+    void loadINodeDirectorySectionInParallel(ExecutorService service,
+        List<FileSummary.Section> sections) throws IOException {
+      LOG.info("Loading the INode directory section in parallel with "
+          + sections.size() + " sub-sections");
+      List<Future<Void>> futures = new ArrayList<>(sections.size());
+      for (FileSummary.Section s : sections) {
+        final InputStream in = parent.getInputStreamForSection(s);
+        futures.add(service.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            try {
+              loadINodeDirectorySection(in);
+            } finally {
+              IOUtils.cleanup(LOG, in);
+            }
+            return null;
+          }
+        }));
+      }
+      waitForParallelLoad(futures);
+    }
+
     void loadINodeDirectorySection(InputStream in) throws IOException {
       final List<INodeReference> refList = parent.getLoaderContext()
           .getRefList();
@@ -257,13 +293,126 @@ void loadINodeDirectorySection(InputStream in) throws IOException {
       }
     }
 
-    void loadINodeSection(InputStream in, StartupProgress prog,
+    /**
+     * Load the INode sub-sections in parallel. The first sub-section starts
+     * with the INode section header, which is read before any task starts.
+     */
+    void loadINodeSectionInParallel(ExecutorService service,
+        List<FileSummary.Section> sections, StartupProgress prog,
+        Step currentStep) throws IOException {
+      LOG.info("Loading the INode section in parallel with "
+          + sections.size() + " sub-sections");
+      final Counter counter = prog.getCounter(Phase.LOADING_FSIMAGE,
+          currentStep);
+      List<Future<Long>> futures = new ArrayList<>(sections.size());
+      long expectedInodes = 0;
+      for (int i = 0; i < sections.size(); i++) {
+        final InputStream in = parent.getInputStreamForSection(
+            sections.get(i));
+        if (i == 0) {
+          try {
+            expectedInodes = loadINodeSectionHeader(in, prog, currentStep);
+          } catch (IOException e) {
+            IOUtils.cleanup(LOG, in);
+            throw e;
+          }
+        }
+        futures.add(service.submit(new Callable<Long>() {
+          @Override
+          public Long call() throws IOException {
+            try {
+              return loadINodesInSection(in, counter);
+            } finally {
+              IOUtils.cleanup(LOG, in);
+            }
+          }
+        }));
+      }
+      long loaded = 0;
+      for (long n : waitForParallelLoad(futures)) {
+        loaded += n;
+      }
+      if (loaded != expectedInodes) {
+        throw new IOException("Expected to load " + expectedInodes
+            + " INodes in parallel but loaded " + loaded);
+      }
+    }
+
+    private static <T> List<T> waitForParallelLoad(List<Future<T>> futures)
+        throws IOException {
+      List<T> results = new ArrayList<>(futures.size());
+      IOException ioe = null;
+      for (Future<T> f : futures) {
+        try {
+          results.add(f.get());
+        } catch (InterruptedException e) {
+          throw (IOException) new InterruptedIOException(
+              "Interrupted while loading the fsimage in parallel").initCause(e);
+        } catch (ExecutionException e) {
+          if (ioe == null) {
+            ioe = e.getCause() instanceof IOException ?
+                (IOException) e.getCause() : new IOException(e.getCause());
+          }
+        }
+      }
+      if (ioe != null) {
+        throw ioe;
+      }
+      return results;
+    }
+
+    /**
+     * Load all INodes remaining in the stream, adding them to the INode map
+     * in batches to limit contention between parallel loaders.
+     * @return the number of INodes loaded.
+     */
+    private long loadINodesInSection(InputStream in, Counter counter)
+        throws IOException {
+      List<INode> batch = new ArrayList<>(INODE_BATCH_SIZE);
+      long loaded = 0;
+      while (true) {
+        INodeSection.INode p = INodeSection.INode.parseDelimitedFrom(in);
+        // note that in is a LimitedInputStream
+        if (p == null) {
+          break;
+        }
+        if (p.getId() == INodeId.ROOT_INODE_ID) {
+          synchronized (this) {
+            loadRootINode(p);
+          }
+        } else {
+          batch.add(loadINode(p));
+          if (batch.size() >= INODE_BATCH_SIZE) {
+            addToInodeMap(batch);
+          }
+        }
+        loaded++;
+        counter.increment();
+      }
+      addToInodeMap(batch);
+      return loaded;
+    }
+
+    private synchronized void addToInodeMap(List<INode> inodes) {
+      for (INode n : inodes) {
+        dir.addToInodeMap(n);
+      }
+      inodes.clear();
+    }
+
+    private long loadINodeSectionHeader(InputStream in, StartupProgress prog,
         Step currentStep) throws IOException {
       INodeSection s = INodeSection.parseDelimitedFrom(in);
       fsn.dir.resetLastInodeId(s.getLastInodeId());
       long numInodes = s.getNumInodes();
       LOG.info("Loading " + numInodes + " INodes.");
       prog.setTotal(Phase.LOADING_FSIMAGE, currentStep, numInodes);
+      return numInodes;
+    }
+
+    void loadINodeSection(InputStream in, StartupProgress prog,
+        Step currentStep) throws IOException {
+      long numInodes = loadINodeSectionHeader(in, prog, currentStep);
       Counter counter = prog.getCounter(Phase.LOADING_FSIMAGE, currentStep);
       for (int i = 0; i < numInodes; ++i) {
         INodeSection.INode p = INodeSection.INode.parseDelimitedFrom(in);
@@ -303,10 +452,13 @@ private void addToParent(INodeDirectory parent, INode child) {
       if (!parent.addChild(child)) {
         return;
       }
-      dir.cacheName(child);
+      // the name cache and blocks map are shared by parallel loaders
+      synchronized (this) {
+        dir.cacheName(child);
 
-      if (child.isFile()) {
-        updateBlocksMap(child.asFile(), fsn.getBlockManager());
+        if (child.isFile()) {
+          updateBlocksMap(child.asFile(), fsn.getBlockManager());
+        }
       }
     }
 
@@ -556,9 +708,15 @@ void serializeINodeDirectorySection(OutputStream out) throws IOException {
           .getINodeMap().getMapIterator();
       final ArrayList<INodeReference> refList = parent.getSaverContext()
           .getRefList();
+      parent.beginSubSections(fsn.getFSDirectory().getINodeMap().size());
       int i = 0;
+      int numINodes = 0;
       while (iter.hasNext()) {
         INodeWithAdditionalFields n = iter.next();
+        if (++numINodes > 1 && parent.isSubSectionBoundary(numINodes - 1)) {
+          parent.commitSubSection(summary,
+              FSImageFormatProtobuf.SectionName.INODE_DIR_SUB);
+        }
         if (!n.isDirectory()) {
           continue;
         }
@@ -585,8 +743,9 @@ void serializeINodeDirectorySection(OutputStream out) throws IOException {
           context.checkCancelled();
         }
       }
-      parent.commitSection(summary,
-          FSImageFormatProtobuf.SectionName.INODE_DIR);
+      parent.commitSectionAndSubSection(summary,
+          FSImageFormatProtobuf.SectionName.INODE_DIR,
+          FSImageFormatProtobuf.SectionName.INODE_DIR_SUB);
     }
 
     void serializeINodeSection(OutputStream out) throws IOException {
@@ -597,6 +756,7 @@ void serializeINodeSection(OutputStream out) throws IOException {
       INodeSection s = b.build();
       s.writeDelimitedTo(out);
 
+      parent.beginSubSections(inodesMap.size());
       int i = 0;
       Iterator<INodeWithAdditionalFields> iter = inodesMap.getMapIterator();
       while (iter.hasNext()) {
@@ -606,8 +766,14 @@ void serializeINodeSection(OutputStream out) throws IOException {
         if (i % FSImageFormatProtobuf.Saver.CHECK_CANCEL_INTERVAL == 0) {
           context.checkCancelled();
         }
+        if (parent.isSubSectionBoundary(i)) {
+          parent.commitSubSection(summary,
+              FSImageFormatProtobuf.SectionName.INODE_SUB);
+        }
       }
-      parent.commitSection(summary, FSImageFormatProtobuf.SectionName.INODE);
+      parent.commitSectionAndSubSection(summary,
+          FSImageFormatProtobuf.SectionName.INODE,
+          FSImageFormatProtobuf.SectionName.INODE_SUB);
     }
 
     void serializeFilesUCSection(OutputStream out) throws IOException {
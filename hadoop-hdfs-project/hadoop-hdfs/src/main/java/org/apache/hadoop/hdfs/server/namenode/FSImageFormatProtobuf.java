@@ -36,15 +36,19 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.hadoop.io.compress.CompressionOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CacheDirectiveInfoProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CachePoolInfoProto;
 import org.apache.hadoop.hdfs.security.token.delegation.DelegationTokenSecretManager;
@@ -69,6 +73,7 @@
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.CodedOutputStream;
 
 /**
@@ -151,6 +156,8 @@ public static final class Loader implements FSImageFormat.AbstractLoader {
      * when we're doing (rollingUpgrade rollback).
      */
     private final boolean requireSameLayoutVersion;
+    /** The image file being loaded, to open streams for sub-sections. */
+    private File filename;
 
     Loader(Configuration conf, FSNamesystem fsn,
         boolean requireSameLayoutVersion) {
@@ -179,6 +186,7 @@ void load(File file) throws IOException {
       imgDigest = MD5FileUtils.computeMd5ForFile(file);
       RandomAccessFile raFile = new RandomAccessFile(file, "r");
       FileInputStream fin = new FileInputStream(file);
+      filename = file;
       try {
         loadInternal(raFile, fin);
         long end = Time.monotonicNow();
@@ -211,6 +219,18 @@ private void loadInternal(RandomAccessFile raFile, FileInputStream fin)
 
       ArrayList<FileSummary.Section> sections = Lists.newArrayList(summary
           .getSectionsList());
+      // Sub-sections index ranges of their parent section and are never
+      // loaded on their own.
+      ArrayList<FileSummary.Section> subSections =
+          getAndRemoveSubSections(sections);
+      ExecutorService executorService = null;
+      if (summary.hasCodec()) {
+        subSections.clear();
+      } else if (!subSections.isEmpty() && conf.getBoolean(
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_KEY,
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_DEFAULT)) {
+        executorService = getParallelExecutorService();
+      }
       Collections.sort(sections, new Comparator<FileSummary.Section>() {
         @Override
         public int compare(FileSummary.Section s1, FileSummary.Section s2) {
@@ -234,64 +254,143 @@ public int compare(FileSummary.Section s1, FileSummary.Section s2) {
        */
       Step currentStep = null;
 
-      for (FileSummary.Section s : sections) {
-        channel.position(s.getOffset());
-        InputStream in = new BufferedInputStream(new LimitInputStream(fin,
-            s.getLength()));
-
-        in = FSImageUtil.wrapInputStreamForCompression(conf,
-            summary.getCodec(), in);
-
-        String n = s.getName();
-
-        switch (SectionName.fromString(n)) {
-        case NS_INFO:
-          loadNameSystemSection(in);
-          break;
-        case STRING_TABLE:
-          loadStringTableSection(in);
-          break;
-        case INODE: {
-          currentStep = new Step(StepType.INODES);
-          prog.beginStep(Phase.LOADING_FSIMAGE, currentStep);
-          inodeLoader.loadINodeSection(in, prog, currentStep);
+      try {
+        for (FileSummary.Section s : sections) {
+          channel.position(s.getOffset());
+          InputStream in = new BufferedInputStream(new LimitInputStream(fin,
+              s.getLength()));
+
+          in = FSImageUtil.wrapInputStreamForCompression(conf,
+              summary.getCodec(), in);
+
+          String n = s.getName();
+          SectionName sectionName = SectionName.fromString(n);
+          if (sectionName == null) {
+            LOG.warn("Unrecognized section {}", n);
+            continue;
+          }
+
+          switch (sectionName) {
+          case NS_INFO:
+            loadNameSystemSection(in);
+            break;
+          case STRING_TABLE:
+            loadStringTableSection(in);
+            break;
+          case INODE: {
+            currentStep = new Step(StepType.INODES);
+            prog.beginStep(Phase.LOADING_FSIMAGE, currentStep);
+            ArrayList<FileSummary.Section> inodeSubSections =
+                getSubSectionsOfName(subSections, SectionName.INODE_SUB);
+            if (executorService != null && !inodeSubSections.isEmpty()) {
+              inodeLoader.loadINodeSectionInParallel(executorService,
+                  inodeSubSections, prog, currentStep);
+            } else {
+              inodeLoader.loadINodeSection(in, prog, currentStep);
+            }
+          }
+            break;
+          case INODE_REFERENCE:
+            snapshotLoader.loadINodeReferenceSection(in);
+            break;
+          case INODE_DIR: {
+            ArrayList<FileSummary.Section> dirSubSections =
+                getSubSectionsOfName(subSections, SectionName.INODE_DIR_SUB);
+            if (executorService != null && !dirSubSections.isEmpty()) {
+              inodeLoader.loadINodeDirectorySectionInParallel(executorService,
+                  dirSubSections);
+            } else {
+              inodeLoader.loadINodeDirectorySection(in);
+            }
+          }
+            break;
+          case FILES_UNDERCONSTRUCTION:
+            inodeLoader.loadFilesUnderConstructionSection(in);
+            break;
+          case SNAPSHOT:
+            snapshotLoader.loadSnapshotSection(in);
+            break;
+          case SNAPSHOT_DIFF:
+            snapshotLoader.loadSnapshotDiffSection(in);
+            break;
+          case SECRET_MANAGER: {
+            prog.endStep(Phase.LOADING_FSIMAGE, currentStep);
+            Step step = new Step(StepType.DELEGATION_TOKENS);
+            prog.beginStep(Phase.LOADING_FSIMAGE, step);
+            loadSecretManagerSection(in, prog, step);
+            prog.endStep(Phase.LOADING_FSIMAGE, step);
+          }
+            break;
+          case CACHE_MANAGER: {
+            Step step = new Step(StepType.CACHE_POOLS);
+            prog.beginStep(Phase.LOADING_FSIMAGE, step);
+            loadCacheManagerSection(in, prog, step);
+            prog.endStep(Phase.LOADING_FSIMAGE, step);
+          }
+            break;
+          default:
+            LOG.warn("Unrecognized section {}", n);
+            break;
+          }
         }
-          break;
-        case INODE_REFERENCE:
-          snapshotLoader.loadINodeReferenceSection(in);
-          break;
-        case INODE_DIR:
-          inodeLoader.loadINodeDirectorySection(in);
-          break;
-        case FILES_UNDERCONSTRUCTION:
-          inodeLoader.loadFilesUnderConstructionSection(in);
-          break;
-        case SNAPSHOT:
-          snapshotLoader.loadSnapshotSection(in);
-          break;
-        case SNAPSHOT_DIFF:
-          snapshotLoader.loadSnapshotDiffSection(in);
-          break;
-        case SECRET_MANAGER: {
-          prog.endStep(Phase.LOADING_FSIMAGE, currentStep);
-          Step step = new Step(StepType.DELEGATION_TOKENS);
-          prog.beginStep(Phase.LOADING_FSIMAGE, step);
-          loadSecretManagerSection(in, prog, step);
-          prog.endStep(Phase.LOADING_FSIMAGE, step);
+      } finally {
+        if (executorService != null) {
+          executorService.shutdown();
         }
-          break;
-        case CACHE_MANAGER: {
-          Step step = new Step(StepType.CACHE_POOLS);
-          prog.beginStep(Phase.LOADING_FSIMAGE, step);
-          loadCacheManagerSection(in, prog, step);
-          prog.endStep(Phase.LOADING_FSIMAGE, step);
+      }
+    }
+
+    /**
+     * Open a new stream over a section or sub-section of the image being
+     * loaded, independent of the stream used for serial loading.
+     */
+    InputStream getInputStreamForSection(FileSummary.Section section)
+        throws IOException {
+      FileInputStream fin = new FileInputStream(filename);
+      try {
+        fin.getChannel().position(section.getOffset());
+        return new BufferedInputStream(new LimitInputStream(fin,
+            section.getLength()));
+      } catch (IOException e) {
+        fin.close();
+        throw e;
+      }
+    }
+
+    private ExecutorService getParallelExecutorService() {
+      int threads = conf.getInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_KEY,
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_DEFAULT);
+      LOG.info("The fsimage will be loaded in parallel using {} threads",
+          threads);
+      return Executors.newFixedThreadPool(threads,
+          new ThreadFactoryBuilder().setDaemon(true)
+              .setNameFormat("FSImageLoader-%d").build());
+    }
+
+    private static ArrayList<FileSummary.Section> getAndRemoveSubSections(
+        ArrayList<FileSummary.Section> sections) {
+      ArrayList<FileSummary.Section> subSections = Lists.newArrayList();
+      Iterator<FileSummary.Section> iter = sections.iterator();
+      while (iter.hasNext()) {
+        FileSummary.Section s = iter.next();
+        SectionName n = SectionName.fromString(s.getName());
+        if (n == SectionName.INODE_SUB || n == SectionName.INODE_DIR_SUB) {
+          subSections.add(s);
+          iter.remove();
         }
-          break;
-        default:
-          LOG.warn("Unrecognized section {}", n);
-          break;
+      }
+      return subSections;
+    }
+
+    private static ArrayList<FileSummary.Section> getSubSectionsOfName(
+        ArrayList<FileSummary.Section> subSections, SectionName name) {
+      ArrayList<FileSummary.Section> result = Lists.newArrayList();
+      for (FileSummary.Section s : subSections) {
+        if (SectionName.fromString(s.getName()) == name) {
+          result.add(s);
         }
       }
+      return result;
     }
 
     private void loadNameSystemSection(InputStream in) throws IOException {
@@ -382,9 +481,30 @@ public static final class Saver {
     private CompressionCodec codec;
     private OutputStream underlyingOutputStream;
 
+    // sub-sections index the INode and INode directory sections for
+    // parallel loading.
+    private final boolean writeSubSections;
+    private final int targetSubSections;
+    private final int inodeThreshold;
+    private int itemsPerSubSection = Integer.MAX_VALUE;
+    private long subSectionOffset = currentOffset;
+
     Saver(SaveNamespaceContext context) {
+      this(context, new Configuration(false));
+    }
+
+    Saver(SaveNamespaceContext context, Configuration conf) {
       this.context = context;
       this.saverContext = new SaverContext();
+      this.writeSubSections = conf.getBoolean(
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_KEY,
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_DEFAULT);
+      this.targetSubSections = conf.getInt(
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_TARGET_SECTIONS_KEY,
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_TARGET_SECTIONS_DEFAULT);
+      this.inodeThreshold = conf.getInt(
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_INODE_THRESHOLD_KEY,
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_INODE_THRESHOLD_DEFAULT);
     }
 
     public MD5Hash getSavedDigest() {
@@ -413,6 +533,61 @@ public void commitSection(FileSummary.Builder summary, SectionName name)
       summary.addSections(FileSummary.Section.newBuilder().setName(name.name)
           .setLength(length).setOffset(currentOffset));
       currentOffset += length;
+      subSectionOffset = currentOffset;
+    }
+
+    /**
+     * Decide whether a section with the given number of items is split into
+     * sub-sections, and how many items each of them holds.
+     */
+    void beginSubSections(long numItems) {
+      if (writeSubSections && codec == null && targetSubSections > 1 &&
+          numItems >= inodeThreshold) {
+        itemsPerSubSection = (int) Math.max(1,
+            Math.min(Integer.MAX_VALUE, numItems / targetSubSections));
+      } else {
+        itemsPerSubSection = Integer.MAX_VALUE;
+      }
+    }
+
+    /**
+     * @return whether a sub-section should end after the given number of
+     *         items of the current section have been written.
+     */
+    boolean isSubSectionBoundary(int numItems) {
+      return itemsPerSubSection != Integer.MAX_VALUE &&
+          numItems % itemsPerSubSection == 0;
+    }
+
+    /**
+     * Index the data written since the previous sub-section boundary as a
+     * sub-section. The first sub-section of a section starts with the section
+     * header. Sub-sections are only written for uncompressed images.
+     */
+    void commitSubSection(FileSummary.Builder summary, SectionName name)
+        throws IOException {
+      if (itemsPerSubSection == Integer.MAX_VALUE) {
+        return;
+      }
+      sectionOutputStream.flush();
+      long endOffset = fileChannel.position();
+      long length = endOffset - subSectionOffset;
+      if (length > 0) {
+        summary.addSections(FileSummary.Section.newBuilder()
+            .setName(name.name).setLength(length)
+            .setOffset(subSectionOffset));
+      }
+      subSectionOffset = endOffset;
+    }
+
+    /**
+     * Commit the trailing sub-section and then the whole section.
+     */
+    void commitSectionAndSubSection(FileSummary.Builder summary,
+        SectionName name, SectionName subSectionName) throws IOException {
+      commitSubSection(summary, subSectionName);
+      itemsPerSubSection = Integer.MAX_VALUE;
+      commitSection(summary, name);
     }
 
     private void flushSectionOutputStream() throws IOException {
@@ -613,7 +788,9 @@ public enum SectionName {
     FILES_UNDERCONSTRUCTION("FILES_UNDERCONSTRUCTION"),
     SNAPSHOT_DIFF("SNAPSHOT_DIFF"),
     SECRET_MANAGER("SECRET_MANAGER"),
-    CACHE_MANAGER("CACHE_MANAGER");
+    CACHE_MANAGER("CACHE_MANAGER"),
+    INODE_SUB("INODE_SUB"),
+    INODE_DIR_SUB("INODE_DIR_SUB");
 
     private static final SectionName[] values = SectionName.values();
 
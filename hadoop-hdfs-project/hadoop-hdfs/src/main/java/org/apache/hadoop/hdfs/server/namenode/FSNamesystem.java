@@ -198,6 +198,7 @@
 import org.apache.hadoop.hdfs.protocol.SnapshotAccessControlException;
 import org.apache.hadoop.hdfs.protocol.SnapshotException;
 import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReportListing;
 import org.apache.hadoop.hdfs.protocol.SnapshottableDirectoryStatus;
 import org.apache.hadoop.hdfs.protocol.datatransfer.ReplaceDatanodeOnFailure;
 import org.apache.hadoop.hdfs.security.token.block.BlockTokenIdentifier;
@@ -833,7 +834,7 @@ static FSNamesystem loadFromDisk(Configuration conf) throws IOException {
       
       this.dtSecretManager = createDelegationTokenSecretManager(conf);
       this.dir = new FSDirectory(this, conf);
-      this.snapshotManager = new SnapshotManager(dir);
+      this.snapshotManager = new SnapshotManager(conf, dir);
       this.cacheManager = new CacheManager(this, conf, blockManager);
       this.ecPolicyManager = new ErasureCodingPolicyManager();
       this.topConf = new TopConf(conf);
@@ -1547,6 +1548,26 @@ public int getReadHoldCount() {
     return this.fsLock.getReadHoldCount();
   }
 
+  /**
+   * Park the given RPC call if it would have to wait for the read lock. The
+   * call is resumed once the write lock has been released.
+   * @return true if the call was parked and must return without a result.
+   */
+  boolean parkIfReadContended(final Server.Call call) {
+    if (!fsLock.isReadContended() || !call.park()) {
+      return false;
+    }
+    if (!fsLock.runWhenReadable(new Runnable() {
+      @Override
+      public void run() {
+        call.resume();
+      }
+    })) {
+      call.resume();
+    }
+    return true;
+  }
+
   public int getWriteHoldCount() {
     return this.fsLock.getWriteHoldCount();
   }
@@ -1624,6 +1645,18 @@ public boolean isRunning() {
     return fsRunning;
   }
 
+  /**
+   * @return true if the current call is a read served by the standby for a
+   *         client which tracks the namespace state id.
+   */
+  private boolean isAlignedStandbyRead() {
+    if (!isInStandbyState()) {
+      return false;
+    }
+    final Server.Call call = Server.getCurCall().get();
+    return call != null && call.getClientStateId() != Long.MIN_VALUE;
+  }
+
   public boolean isInStandbyState() {
     if (haContext == null || haContext.getState() == null) {
       // We're still starting up. In this case, if HA is
@@ -1765,6 +1798,16 @@ LocatedBlocks getBlockLocations(String clientMachine, String srcArg,
       checkOperation(OperationCategory.READ);
       res = FSDirStatAndListingOp.getBlockLocations(
           dir, pc, srcArg, offset, length, true);
+      if (isAlignedStandbyRead()) {
+        for (LocatedBlock b : res.blocks.getLocatedBlocks()) {
+          // the standby may not have received the reports of new blocks yet,
+          // let the client read them from the active
+          if ((b.getLocations() == null) || (b.getLocations().length == 0)) {
+            throw new StandbyException("Zero blocklocations for " + srcArg
+                + " on the standby NameNode");
+          }
+        }
+      }
       if (isInSafeMode()) {
         for (LocatedBlock b : res.blocks.getLocatedBlocks()) {
           // if safemode & no block locations yet then throw safemodeException
@@ -3254,6 +3297,9 @@ void commitOrCompleteLastBlock(
       final Block commitBlock) throws IOException {
     assert hasWriteLock();
     Preconditions.checkArgument(fileINode.isUnderConstruction());
+    // committing the block sets the length of the file
+    dir.invalidateContentSummary(fileINode);
+    dir.invalidateListing(fileINode);
     blockManager.commitOrCompleteLastBlock(fileINode, commitBlock, iip);
   }
 
@@ -3283,6 +3329,8 @@ void finalizeINodeFileUnderConstruction(String src, INodeFile pendingFile,
     }
 
     pendingFile.recordModification(latestSnapshot);
+    dir.invalidateContentSummary(pendingFile);
+    dir.invalidateListing(pendingFile);
 
     // The file is no longer pending.
     // Create permanent INode, update blocks. No need to replace the inode here
@@ -4066,6 +4114,48 @@ public int getFsLockQueueLength() {
     return fsLock.getQueueLength();
   }
 
+  @Metric({"ContentSummaryCacheHits",
+      "Number of content summaries served from the cache"})
+  public long getContentSummaryCacheHits() {
+    ContentSummaryCache cache = dir.getContentSummaryCache();
+    return cache == null ? 0 : cache.getHits();
+  }
+
+  @Metric({"ContentSummaryCacheMisses",
+      "Number of directory content summaries computed on a cache miss"})
+  public long getContentSummaryCacheMisses() {
+    ContentSummaryCache cache = dir.getContentSummaryCache();
+    return cache == null ? 0 : cache.getMisses();
+  }
+
+  @Metric({"ContentSummaryCacheMismatches",
+      "Number of cached content summaries found inconsistent on verification"})
+  public long getContentSummaryCacheMismatches() {
+    ContentSummaryCache cache = dir.getContentSummaryCache();
+    return cache == null ? 0 : cache.getMismatches();
+  }
+
+  @Metric({"ListingCacheHits",
+      "Number of directory listings served from the cache"})
+  public long getListingCacheHits() {
+    ListingCache cache = dir.getListingCache();
+    return cache == null ? 0 : cache.getHits();
+  }
+
+  @Metric({"ListingCacheMisses",
+      "Number of cacheable directory listings not found in the cache"})
+  public long getListingCacheMisses() {
+    ListingCache cache = dir.getListingCache();
+    return cache == null ? 0 : cache.getMisses();
+  }
+
+  @Metric({"ListingCacheBytes",
+      "Serialized size of the directory listings in the cache"})
+  public long getListingCacheBytes() {
+    ListingCache cache = dir.getListingCache();
+    return cache == null ? 0 : cache.getBytes();
+  }
+
   int getNumberOfDatanodes(DatanodeReportType type) {
     readLock();
     try {
@@ -6032,6 +6122,53 @@ SnapshotDiffReport getSnapshotDiffReport(String path,
         toSnapshotRoot, null);
     return diffs;
   }
+
+  /**
+   * Get a page of the difference between two snapshots (or between a snapshot
+   * and the current status) of a snapshottable directory. The lock is held
+   * only while listing the page.
+   *
+   * @param path The full path of the snapshottable directory.
+   * @param fromSnapshot Name of the snapshot to calculate the diff from. Null
+   *          or empty string indicates the current tree.
+   * @param toSnapshot Name of the snapshot to calculated the diff to. Null or
+   *          empty string indicates the current tree.
+   * @param startPath The path of the directory to continue the listing from,
+   *          relative to the snapshottable directory.
+   * @param index The index of the child of the directory to continue the
+   *          listing from, or -1 to start the listing.
+   * @return A page of the difference between {@code fromSnapshot} and
+   *         {@code toSnapshot}.
+   * @throws IOException
+   */
+  SnapshotDiffReportListing getSnapshotDiffReportListing(String path,
+      String fromSnapshot, String toSnapshot, byte[] startPath, int index)
+      throws IOException {
+    final String operationName = "computeSnapshotDiff";
+    SnapshotDiffReportListing diffs = null;
+    checkOperation(OperationCategory.READ);
+    boolean success = false;
+    String fromSnapshotRoot = (fromSnapshot == null || fromSnapshot.isEmpty()) ?
+        path : Snapshot.getSnapshotPath(path, fromSnapshot);
+    String toSnapshotRoot = (toSnapshot == null || toSnapshot.isEmpty()) ?
+        path : Snapshot.getSnapshotPath(path, toSnapshot);
+    readLock();
+    try {
+      checkOperation(OperationCategory.READ);
+      diffs = FSDirSnapshotOp.getSnapshotDiffReportListing(dir,
+          snapshotManager, path, fromSnapshot, toSnapshot, startPath, index);
+      success = true;
+    } catch (AccessControlException ace) {
+      logAuditEvent(success, operationName, fromSnapshotRoot,
+          toSnapshotRoot, null);
+      throw ace;
+    } finally {
+      readUnlock(operationName);
+    }
+    logAuditEvent(success, operationName, fromSnapshotRoot,
+        toSnapshotRoot, null);
+    return diffs;
+  }
   
   /**
    * Delete a snapshot of a snapshottable directory
@@ -19,6 +19,8 @@
 
 package org.apache.hadoop.hdfs.server.namenode;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -92,6 +94,10 @@ public Long initialValue() {
   private final AtomicLong timeStampOfLastReadLockReport = new AtomicLong(0);
   private final AtomicLong longestReadLockHeldInterval = new AtomicLong(0);
 
+  /** Callbacks to run once readers no longer have to wait for the lock. */
+  private final Queue<Runnable> readableWaiters =
+      new ConcurrentLinkedQueue<>();
+
   @VisibleForTesting
   static final String OP_NAME_OTHER = "OTHER";
   private static final String READ_LOCK_METRIC_PREFIX = "FSNReadLock";
@@ -147,6 +153,10 @@ public void readUnlock(String opName) {
     if (needReport) {
       addMetric(opName, readLockInterval, false);
       readLockHeldTimeStamp.remove();
+      if (!readableWaiters.isEmpty() && !isReadContended()) {
+        // e.g. the writer that was waiting for the lock gave up
+        wakeReadableWaiters();
+      }
     }
     if (needReport && readLockInterval >= this.readLockReportingThreshold) {
       long localLongestReadLock;
@@ -227,6 +237,9 @@ public void writeUnlock(String opName) {
 
     if (needReport) {
       addMetric(opName, writeLockInterval, true);
+      if (!readableWaiters.isEmpty() && coarseLock.getReadHoldCount() == 0) {
+        wakeReadableWaiters();
+      }
     }
 
     if (logReport) {
@@ -255,6 +268,44 @@ public Condition newWriteLockCondition() {
     return coarseLock.writeLock().newCondition();
   }
 
+  /**
+   * @return true if the current thread would have to wait to acquire the
+   *         read lock, as the lock is held or requested for writing.
+   */
+  public boolean isReadContended() {
+    if (coarseLock.getReadHoldCount() > 0 ||
+        coarseLock.isWriteLockedByCurrentThread()) {
+      return false;
+    }
+    return coarseLock.isWriteLocked() || coarseLock.hasQueuedThreads();
+  }
+
+  /**
+   * Run the callback once the write lock has been released, so that readers
+   * can acquire the lock again. The callback is run by the releasing thread,
+   * possibly while it still holds the lock, so it must never block.
+   * @return false if the read lock is not contended, in which case the
+   *         callback is not registered.
+   */
+  public boolean runWhenReadable(Runnable callback) {
+    if (!isReadContended()) {
+      return false;
+    }
+    readableWaiters.add(callback);
+    if (!isReadContended()) {
+      // the writer released the lock before the callback was registered
+      wakeReadableWaiters();
+    }
+    return true;
+  }
+
+  private void wakeReadableWaiters() {
+    Runnable callback;
+    while ((callback = readableWaiters.poll()) != null) {
+      callback.run();
+    }
+  }
+
   /**
    * Returns the QueueLength of waiting threads.
    *
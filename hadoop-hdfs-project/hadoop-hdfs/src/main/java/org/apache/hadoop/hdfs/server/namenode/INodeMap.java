@@ -21,6 +21,7 @@
 
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants;
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockStoragePolicySuite;
 import org.apache.hadoop.util.GSet;
@@ -34,25 +35,38 @@
  */
 public class INodeMap {
   
-  static INodeMap newInstance(INodeDirectory rootDir) {
-    // Compute the map capacity by allocating 1% of total memory
-    int capacity = LightWeightGSet.computeCapacity(1, "INodeMap");
+  static INodeMap newInstance(INodeDirectory rootDir, double percentage) {
+    // Compute the map capacity by allocating a percentage of total memory
+    Preconditions.checkArgument(percentage > 0.0 && percentage <= 100.0,
+        "%s must be in (0, 100], but is %s",
+        DFSConfigKeys.DFS_NAMENODE_INODE_MAP_CAPACITY_PERCENTAGE_KEY,
+        percentage);
+    int capacity = LightWeightGSet.computeCapacity(percentage, "INodeMap");
     GSet<INode, INodeWithAdditionalFields> map =
         new LightWeightGSet<>(capacity);
     map.put(rootDir);
-    return new INodeMap(map);
+    return new INodeMap(map, capacity);
   }
 
   /** Synchronized by external lock. */
   private final GSet<INode, INodeWithAdditionalFields> map;
+  /** The capacity of the map. */
+  private final int capacity;
   
   public Iterator<INodeWithAdditionalFields> getMapIterator() {
     return map.iterator();
   }
 
-  private INodeMap(GSet<INode, INodeWithAdditionalFields> map) {
+  private INodeMap(GSet<INode, INodeWithAdditionalFields> map,
+      int capacity) {
     Preconditions.checkArgument(map != null);
     this.map = map;
+    this.capacity = capacity;
+  }
+
+  /** @return the capacity of the map. */
+  int getCapacity() {
+    return capacity;
   }
   
   /**
@@ -0,0 +1,232 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.hadoop.hdfs.protocol.DirectoryListing;
+import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
+import org.apache.hadoop.hdfs.protocolPB.SerializedDirectoryListing;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+/**
+ * An LRU cache of directory listings without block locations, keyed by the
+ * inode id of the listed directory. The listings are kept in their protobuf
+ * form, see {@link SerializedDirectoryListing}, and the cache is bounded by
+ * their total serialized size.
+ *
+ * A cached listing holds the status of the children of a directory, so it is
+ * dropped whenever the directory or one of its children changes, see
+ * {@link FSDirectory#invalidateListing(INode)}. Listings are computed and
+ * cached under the namesystem read lock, and invalidated under the write
+ * lock, so a listing can not be cached after it became out of date.
+ *
+ * The status of the children also depends on the storage policy, erasure
+ * coding policy and encryption zone the directory inherits from its
+ * ancestors. These change without touching the directory, e.g. when it is
+ * renamed, so they are compared on every hit instead.
+ */
+class ListingCache {
+  /** The state a directory inherits from its ancestors. */
+  static final class Inherited {
+    private final byte storagePolicy;
+    private final ErasureCodingPolicy ecPolicy;
+    private final boolean encrypted;
+
+    Inherited(byte storagePolicy, ErasureCodingPolicy ecPolicy,
+        boolean encrypted) {
+      this.storagePolicy = storagePolicy;
+      this.ecPolicy = ecPolicy;
+      this.encrypted = encrypted;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Inherited)) {
+        return false;
+      }
+      Inherited that = (Inherited) obj;
+      return storagePolicy == that.storagePolicy
+          && encrypted == that.encrypted
+          && Objects.equals(ecPolicy, that.ecPolicy);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(storagePolicy, ecPolicy, encrypted);
+    }
+  }
+
+  /** The pages of the listing of a directory. */
+  private static final class Pages {
+    private final Inherited inherited;
+    private final Map<PageKey, SerializedDirectoryListing> pages =
+        new HashMap<>(4);
+    private long bytes = 0;
+
+    private Pages(Inherited inherited) {
+      this.inherited = inherited;
+    }
+  }
+
+  /** A page of a listing, starting after a name. */
+  private static final class PageKey {
+    private final byte[] startAfter;
+    private final boolean includeStoragePolicy;
+    private final int hashCode;
+
+    private PageKey(byte[] startAfter, boolean includeStoragePolicy) {
+      this.startAfter = startAfter;
+      this.includeStoragePolicy = includeStoragePolicy;
+      this.hashCode = Arrays.hashCode(startAfter) * 31
+          + (includeStoragePolicy ? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof PageKey)) {
+        return false;
+      }
+      PageKey that = (PageKey) obj;
+      return includeStoragePolicy == that.includeStoragePolicy
+          && Arrays.equals(startAfter, that.startAfter);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  private final LinkedHashMap<Long, Pages> directories =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private final long maxBytes;
+  private long bytes = 0;
+
+  private long hits = 0;
+  private long misses = 0;
+
+  ListingCache(long maxBytes) {
+    Preconditions.checkArgument(maxBytes > 0,
+        "Listing cache size must be positive: %s", maxBytes);
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * @return the cached page of the listing of the directory, or null if it
+   *         is not cached or the directory inherits a different state now.
+   */
+  synchronized SerializedDirectoryListing get(long inodeId,
+      byte[] startAfter, boolean includeStoragePolicy, Inherited inherited) {
+    Pages p = directories.get(inodeId);
+    if (p != null && !p.inherited.equals(inherited)) {
+      invalidate(inodeId);
+      p = null;
+    }
+    final SerializedDirectoryListing listing = p == null ? null
+        : p.pages.get(new PageKey(startAfter, includeStoragePolicy));
+    if (listing == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return listing;
+  }
+
+  /**
+   * Cache a page of the listing of the directory, evicting the least
+   * recently listed directories if the cache is full.
+   * @return the listing in its serialized form.
+   */
+  synchronized SerializedDirectoryListing put(long inodeId,
+      byte[] startAfter, boolean includeStoragePolicy, Inherited inherited,
+      DirectoryListing listing) {
+    final SerializedDirectoryListing serialized =
+        new SerializedDirectoryListing(listing);
+    final int size = serialized.getSerializedSize();
+    if (size > maxBytes) {
+      return serialized;
+    }
+    Pages p = directories.get(inodeId);
+    if (p != null && !p.inherited.equals(inherited)) {
+      invalidate(inodeId);
+      p = null;
+    }
+    if (p == null) {
+      p = new Pages(inherited);
+      directories.put(inodeId, p);
+    }
+    final SerializedDirectoryListing previous = p.pages.put(
+        new PageKey(startAfter, includeStoragePolicy), serialized);
+    final long delta = size
+        - (previous == null ? 0 : previous.getSerializedSize());
+    p.bytes += delta;
+    bytes += delta;
+    // the directory was just accessed, so it is evicted last
+    for (Iterator<Pages> i = directories.values().iterator();
+        bytes > maxBytes && i.hasNext();) {
+      bytes -= i.next().bytes;
+      i.remove();
+    }
+    return serialized;
+  }
+
+  /** Drop the cached listing of a directory, or of a single file. */
+  synchronized void invalidate(long inodeId) {
+    final Pages p = directories.remove(inodeId);
+    if (p != null) {
+      bytes -= p.bytes;
+    }
+  }
+
+  synchronized void clear() {
+    directories.clear();
+    bytes = 0;
+  }
+
+  synchronized long getHits() {
+    return hits;
+  }
+
+  synchronized long getMisses() {
+    return misses;
+  }
+
+  /** @return the total serialized size of the cached listings. */
+  synchronized long getBytes() {
+    return bytes;
+  }
+
+  @VisibleForTesting
+  synchronized int size() {
+    return directories.size();
+  }
+}
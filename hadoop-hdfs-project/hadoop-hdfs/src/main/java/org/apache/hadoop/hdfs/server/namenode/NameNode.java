@@ -1922,6 +1922,9 @@ public void writeUnlock() {
     public void checkOperation(final OperationCategory op)
         throws StandbyException {
       state.checkOperation(haContext, op);
+      if (op == OperationCategory.READ && state == STANDBY_STATE) {
+        checkClientStateId();
+      }
     }
     
     @Override
@@ -1931,6 +1934,25 @@ public boolean allowStaleReads() {
 
   }
   
+  /**
+   * Reject a read on the standby if the client has already seen a newer
+   * namespace state, e.g. from the active, so that the reads of a client never
+   * go back in time. The client is expected to retry on another NameNode.
+   */
+  private void checkClientStateId() throws StandbyException {
+    final Server.Call call = Server.getCurCall().get();
+    if (call == null) {
+      return;
+    }
+    final long clientStateId = call.getClientStateId();
+    final long appliedTxId = namesystem.getFSImage().getLastAppliedTxId();
+    if (clientStateId > appliedTxId) {
+      throw new StandbyException("Standby NameNode has applied transactions"
+          + " up to " + appliedTxId + ", behind the client state id "
+          + clientStateId);
+    }
+  }
+
   public boolean isStandbyState() {
     return (state.equals(STANDBY_STATE));
   }
@@ -111,6 +111,7 @@
 import org.apache.hadoop.hdfs.protocol.RecoveryInProgressException;
 import org.apache.hadoop.hdfs.protocol.RollingUpgradeInfo;
 import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReportListing;
 import org.apache.hadoop.hdfs.protocol.SnapshottableDirectoryStatus;
 import org.apache.hadoop.hdfs.protocol.UnregisteredNodeException;
 import org.apache.hadoop.hdfs.protocol.UnresolvedPathException;
@@ -239,6 +240,10 @@ public class NameNodeRpcServer implements NamenodeProtocols {
   
   private final String minimumDataNodeVersion;
 
+  /** Whether to park read calls that would wait for the namesystem lock */
+  private final boolean parkContendedReads;
+  private final int maxParkTimes;
+
   public NameNodeRpcServer(Configuration conf, NameNode nn)
       throws IOException {
     this.nn = nn;
@@ -432,6 +437,7 @@ public NameNodeRpcServer(Configuration conf, NameNode nn)
         .setVerbose(false)
         .setSecretManager(namesystem.getDelegationTokenSecretManager())
         .build();
+    clientRpcServer.setAlignmentContext(new GlobalStateIdContext(namesystem));
 
     // Add all the RPC protocols that the namenode implements
     DFSUtil.addPBProtocol(conf, HAServiceProtocolPB.class, haPbService,
@@ -478,6 +484,13 @@ public NameNodeRpcServer(Configuration conf, NameNode nn)
         DFSConfigKeys.DFS_NAMENODE_MIN_SUPPORTED_DATANODE_VERSION_KEY,
         DFSConfigKeys.DFS_NAMENODE_MIN_SUPPORTED_DATANODE_VERSION_DEFAULT);
 
+    parkContendedReads = conf.getBoolean(
+        DFSConfigKeys.DFS_NAMENODE_RPC_PARK_CONTENDED_READS_KEY,
+        DFSConfigKeys.DFS_NAMENODE_RPC_PARK_CONTENDED_READS_DEFAULT);
+    maxParkTimes = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_RPC_PARK_MAX_TIMES_KEY,
+        DFSConfigKeys.DFS_NAMENODE_RPC_PARK_MAX_TIMES_DEFAULT);
+
     // Set terse exception whose stack trace won't be logged
     clientRpcServer.addTerseExceptions(SafeModeException.class,
         FileNotFoundException.class,
@@ -702,6 +715,9 @@ public LocatedBlocks getBlockLocations(String src,
                                           long length) 
       throws IOException {
     checkNNStartup();
+    if (parkContendedRead()) {
+      return null;
+    }
     metrics.incrGetBlockLocations();
     return namesystem.getBlockLocations(getClientMachine(), 
                                         src, offset, length);
@@ -1106,6 +1122,9 @@ public void renewLease(String clientName) throws IOException {
   public DirectoryListing getListing(String src, byte[] startAfter,
       boolean needLocation) throws IOException {
     checkNNStartup();
+    if (parkContendedRead()) {
+      return null;
+    }
     DirectoryListing files = namesystem.getListing(
         src, startAfter, needLocation);
     if (files != null) {
@@ -1118,6 +1137,9 @@ public DirectoryListing getListing(String src, byte[] startAfter,
   @Override // ClientProtocol
   public HdfsFileStatus getFileInfo(String src)  throws IOException {
     checkNNStartup();
+    if (parkContendedRead()) {
+      return null;
+    }
     metrics.incrFileInfoOps();
     return namesystem.getFileInfo(src, true);
   }
@@ -1685,6 +1707,23 @@ private void verifySoftwareVersion(DatanodeRegistration dnReg)
     }
   }
 
+  /**
+   * Park the current read-only client call if it would have to wait for the
+   * namesystem lock, instead of blocking the handler. A parked call runs again
+   * from the start once the lock is released, so this must be checked before
+   * the call has any side effects. A call is parked at most
+   * {@link DFSConfigKeys#DFS_NAMENODE_RPC_PARK_MAX_TIMES_KEY} times.
+   * @return true if the call was parked; the returned value is then discarded.
+   */
+  private boolean parkContendedRead() {
+    if (!parkContendedReads) {
+      return false;
+    }
+    final Server.Call call = Server.getCurCall().get();
+    return call != null && call.getParkCount() < maxParkTimes &&
+        namesystem.parkIfReadContended(call);
+  }
+
   private static String getClientMachine() {
     String clientMachine = Server.getRemoteAddress();
     if (clientMachine == null) { //not a RPC client
@@ -1807,6 +1846,18 @@ public SnapshotDiffReport getSnapshotDiffReport(String snapshotRoot,
     return report;
   }
 
+  @Override // ClientProtocol
+  public SnapshotDiffReportListing getSnapshotDiffReportListing(
+      String snapshotRoot, String earlierSnapshotName, String laterSnapshotName,
+      byte[] startPath, int index) throws IOException {
+    checkNNStartup();
+    SnapshotDiffReportListing report = namesystem
+        .getSnapshotDiffReportListing(snapshotRoot, earlierSnapshotName,
+            laterSnapshotName, startPath, index);
+    metrics.incrSnapshotDiffReportOps();
+    return report;
+  }
+
   @Override // ClientProtocol
   public long addCacheDirective(
       CacheDirectiveInfo path, EnumSet<CacheFlag> flags) throws IOException {
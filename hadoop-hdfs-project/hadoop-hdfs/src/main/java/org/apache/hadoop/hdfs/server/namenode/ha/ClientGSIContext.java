@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.ha;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.ipc.AlignmentContext;
+import org.apache.hadoop.ipc.protobuf.RpcHeaderProtos.RpcRequestHeaderProto;
+import org.apache.hadoop.ipc.protobuf.RpcHeaderProtos.RpcResponseHeaderProto;
+
+/**
+ * The client side {@link AlignmentContext}. It tracks the highest namespace
+ * state id returned by any NameNode and sends it with every call, so that a
+ * standby NameNode which has not caught up with it refuses to serve the call.
+ */
+@InterfaceAudience.Private
+class ClientGSIContext implements AlignmentContext {
+  private final AtomicLong lastSeenStateId = new AtomicLong(Long.MIN_VALUE);
+
+  @Override
+  public long getLastSeenStateId() {
+    return lastSeenStateId.get();
+  }
+
+  @Override
+  public void updateResponseState(RpcResponseHeaderProto.Builder header) {
+    throw new UnsupportedOperationException("Server side only");
+  }
+
+  /** Advance the last seen state id, it never goes backwards. */
+  @Override
+  public void receiveResponseState(RpcResponseHeaderProto header) {
+    if (!header.hasStateId()) {
+      return;
+    }
+    final long stateId = header.getStateId();
+    for (long last = lastSeenStateId.get(); stateId > last;
+        last = lastSeenStateId.get()) {
+      if (lastSeenStateId.compareAndSet(last, stateId)) {
+        return;
+      }
+    }
+  }
+
+  @Override
+  public void updateRequestState(RpcRequestHeaderProto.Builder header) {
+    final long stateId = lastSeenStateId.get();
+    if (stateId != Long.MIN_VALUE) {
+      header.setStateId(stateId);
+    }
+  }
+
+  @Override
+  public long receiveRequestState(RpcRequestHeaderProto header) {
+    throw new UnsupportedOperationException("Server side only");
+  }
+}
@@ -145,7 +145,14 @@ public Class<T> getInterface() {
    */
   @Override
   public synchronized ProxyInfo<T> getProxy() {
-    AddressRpcProxyPair<T> current = proxies.get(currentProxyIndex);
+    return getProxy(currentProxyIndex);
+  }
+
+  /**
+   * Lazily initialize the RPC proxy object to the NameNode of the given index.
+   */
+  synchronized ProxyInfo<T> getProxy(int index) {
+    AddressRpcProxyPair<T> current = proxies.get(index);
     if (current.namenode == null) {
       try {
         current.namenode = factory.createProxy(conf,
@@ -163,6 +170,10 @@ public  void performFailover(T currentProxy) {
     incrementProxyIndex();
   }
 
+  synchronized int getCurrentProxyIndex() {
+    return currentProxyIndex;
+  }
+
   synchronized void incrementProxyIndex() {
     currentProxyIndex = (currentProxyIndex + 1) % proxies.size();
   }
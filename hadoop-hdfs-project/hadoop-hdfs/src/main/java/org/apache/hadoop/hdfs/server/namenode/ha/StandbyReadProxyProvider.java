@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.ha;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.ipc.AlignmentContext;
+import org.apache.hadoop.ipc.Client;
+import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.ipc.StandbyException;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A FailoverProxyProvider implementation which sends the {@link ReadOnly}
+ * calls to the standby NameNodes and all the other calls to the active.
+ *
+ * Every call carries the highest namespace state id the client has seen. A
+ * standby which has not applied the edits up to that state id yet rejects the
+ * read with a {@link StandbyException}, and the read is sent to the active
+ * instead, so a client always reads its own writes and never reads an older
+ * namespace than it has already seen. The NameNodes must set
+ * dfs.ha.allow.stale.reads to serve reads in the standby state.
+ */
+public class StandbyReadProxyProvider<T> extends
+    ConfiguredFailoverProxyProvider<T> {
+
+  public static final Logger LOG =
+      LoggerFactory.getLogger(StandbyReadProxyProvider.class);
+
+  private final AlignmentContext alignmentContext = new ClientGSIContext();
+  /** Index of the NameNode which served the last read. */
+  private volatile int readProxyIndex = -1;
+
+  public StandbyReadProxyProvider(
+      Configuration conf, URI uri, Class<T> xface) {
+    this(conf, uri, xface, new DefaultProxyFactory<T>());
+  }
+
+  @VisibleForTesting
+  StandbyReadProxyProvider(Configuration conf, URI uri,
+      Class<T> xface, ProxyFactory<T> factory) {
+    super(conf, uri, xface, factory);
+  }
+
+  @VisibleForTesting
+  AlignmentContext getAlignmentContext() {
+    return alignmentContext;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public synchronized ProxyInfo<T> getProxy() {
+    final ProxyInfo<T> current = super.getProxy();
+    final T wrappedProxy = (T) Proxy.newProxyInstance(
+        StandbyReadInvocationHandler.class.getClassLoader(),
+        new Class<?>[]{xface}, new StandbyReadInvocationHandler());
+    return new ProxyInfo<T>(wrappedProxy, current.proxyInfo);
+  }
+
+  class StandbyReadInvocationHandler implements InvocationHandler {
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+        throws Throwable {
+      if (method.isAnnotationPresent(ReadOnly.class)) {
+        final int active = getCurrentProxyIndex();
+        final int start = readProxyIndex < 0 ? active : readProxyIndex;
+        for (int n = 0; n < proxies.size(); n++) {
+          final int i = (start + n) % proxies.size();
+          if (i == active) {
+            continue;
+          }
+          final ProxyInfo<T> standby;
+          try {
+            standby = getProxy(i);
+          } catch (RuntimeException e) {
+            LOG.debug("Failed to create a proxy to NameNode {}", i, e);
+            continue;
+          }
+          try {
+            final Object retVal = invoke(standby, method, args);
+            readProxyIndex = i;
+            return retVal;
+          } catch (RemoteException e) {
+            if (!(e.unwrapRemoteException() instanceof StandbyException)) {
+              throw e;
+            }
+            LOG.debug("Invocation of {} rejected by [{}]: {}",
+                method.getName(), standby.proxyInfo, e.getMessage());
+          } catch (IOException e) {
+            LOG.debug("Invocation of {} failed on [{}]", method.getName(),
+                standby.proxyInfo, e);
+          }
+        }
+      }
+      return invoke(getProxy(getCurrentProxyIndex()), method, args);
+    }
+
+    private Object invoke(ProxyInfo<T> target, Method method, Object[] args)
+        throws Throwable {
+      Client.setAlignmentContext(alignmentContext);
+      try {
+        return method.invoke(target.proxy, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      } finally {
+        Client.setAlignmentContext(null);
+      }
+    }
+  }
+}
@@ -111,6 +111,10 @@ public long totalFileOps(){
   final MutableQuantiles[] syncsQuantiles;
   @Metric("Journal transactions batched in sync")
   MutableCounterLong transactionsBatchedInSync;
+  final MutableQuantiles[] syncBatchSizeQuantiles;
+  @Metric("Time edits wait for an asynchronous journal sync")
+  MutableRate editBatchWaitTime;
+  final MutableQuantiles[] editBatchWaitTimeQuantiles;
   @Metric("Block report") MutableRate blockReport;
   final MutableQuantiles[] blockReportQuantiles;
   @Metric("Cache report") MutableRate cacheReport;
@@ -141,6 +145,8 @@ public long totalFileOps(){
     
     final int len = intervals.length;
     syncsQuantiles = new MutableQuantiles[len];
+    syncBatchSizeQuantiles = new MutableQuantiles[len];
+    editBatchWaitTimeQuantiles = new MutableQuantiles[len];
     blockReportQuantiles = new MutableQuantiles[len];
     cacheReportQuantiles = new MutableQuantiles[len];
     generateEDEKTimeQuantiles = new MutableQuantiles[len];
@@ -151,6 +157,13 @@ public long totalFileOps(){
       syncsQuantiles[i] = registry.newQuantiles(
           "syncs" + interval + "s",
           "Journal syncs", "ops", "latency", interval);
+      syncBatchSizeQuantiles[i] = registry.newQuantiles(
+          "syncBatchSize" + interval + "s",
+          "Journal transactions per sync", "syncs", "transactions", interval);
+      editBatchWaitTimeQuantiles[i] = registry.newQuantiles(
+          "editBatchWaitTime" + interval + "s",
+          "Time edits wait for an asynchronous journal sync", "batches",
+          "latency", interval);
       blockReportQuantiles[i] = registry.newQuantiles(
           "blockReport" + interval + "s", 
           "Block report", "ops", "latency", interval);
@@ -306,6 +319,19 @@ public void addSync(long elapsed) {
     }
   }
 
+  public void addSyncBatchSize(long count) {
+    for (MutableQuantiles q : syncBatchSizeQuantiles) {
+      q.add(count);
+    }
+  }
+
+  public void addEditBatchWaitTime(long elapsed) {
+    editBatchWaitTime.add(elapsed);
+    for (MutableQuantiles q : editBatchWaitTimeQuantiles) {
+      q.add(elapsed);
+    }
+  }
+
   public void setFsImageLoadTime(long elapsed) {
     fsImageLoadTime.set((int) elapsed);
   }
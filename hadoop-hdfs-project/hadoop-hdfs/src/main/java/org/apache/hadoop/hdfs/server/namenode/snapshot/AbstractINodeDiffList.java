@@ -46,6 +46,14 @@ public final List<D> asList() {
   /** Get the size of the list and then clear it. */
   public void clear() {
     diffs.clear();
+    diffsChanged();
+  }
+
+  /**
+   * Called when a diff other than the last one may have changed, for
+   * subclasses keeping state derived from the diffs.
+   */
+  void diffsChanged() {
   }
 
   /** @return an {@link AbstractINodeDiff}. */
@@ -67,6 +75,7 @@ public void clear() {
   public final void deleteSnapshotDiff(INode.ReclaimContext reclaimContext,
       final int snapshot, final int prior, final N currentINode) {
     int snapshotIndex = Collections.binarySearch(diffs, snapshot);
+    diffsChanged();
 
     D removed;
     if (snapshotIndex == 0) {
@@ -116,6 +125,7 @@ final void addFirst(D diff) {
     final D first = diffs.isEmpty()? null: diffs.get(0);
     diffs.add(0, diff);
     diff.setPosterior(first);
+    diffsChanged();
   }
 
   /** @return the last diff. */
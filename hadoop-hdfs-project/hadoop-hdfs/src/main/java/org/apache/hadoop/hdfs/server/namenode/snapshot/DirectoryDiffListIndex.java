@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.snapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hdfs.server.namenode.snapshot.DirectoryWithSnapshotFeature.ChildrenDiff;
+import org.apache.hadoop.hdfs.server.namenode.snapshot.DirectoryWithSnapshotFeature.DirectoryDiff;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * An index over a directory diff list for combining the children diffs
+ * between two snapshots, in the manner of a skip list.
+ *
+ * The diff list itself is level 0. Entry i of level l combines the children
+ * diffs of the level 0 diffs i * interval^l to (i + 1) * interval^l - 1, so
+ * the diffs between two snapshots are combined from at most
+ * 2 * (interval - 1) entries of each level, instead of one by one.
+ *
+ * The entries are computed when first needed, possibly by concurrent readers
+ * of the namespace, and never cover the last diff, which records the changes
+ * made to the current state. The index must be cleared whenever any other
+ * diff of the list changes.
+ */
+class DirectoryDiffListIndex {
+  /** The parameters of the indexes of a namespace. */
+  static class Parameters {
+    private final int interval;
+    private final int maxLevels;
+
+    /**
+     * @param interval the number of entries each entry of the next level
+     *                 combines.
+     * @param maxLevels the number of levels, 0 to disable the index.
+     */
+    Parameters(int interval, int maxLevels) {
+      Preconditions.checkArgument(maxLevels <= 0 || interval > 1,
+          "The skip list interval must be greater than 1: %s", interval);
+      this.interval = interval;
+      this.maxLevels = maxLevels;
+    }
+
+    /** @return a new index, or null if the index is disabled. */
+    DirectoryDiffListIndex newIndex() {
+      return maxLevels > 0 ? new DirectoryDiffListIndex(interval, maxLevels)
+          : null;
+    }
+  }
+
+  private final int interval;
+  private final int maxLevels;
+  /** The entries of levels 1 to maxLevels, null if not computed yet. */
+  private final List<List<ChildrenDiff>> levels = new ArrayList<>();
+
+  DirectoryDiffListIndex(int interval, int maxLevels) {
+    Preconditions.checkArgument(interval > 1, "interval = %s", interval);
+    Preconditions.checkArgument(maxLevels > 0, "maxLevels = %s", maxLevels);
+    this.interval = interval;
+    this.maxLevels = maxLevels;
+  }
+
+  /**
+   * Combine the children diffs of diffs[from] to diffs[to - 1] into the
+   * given diff.
+   */
+  synchronized void combine(List<DirectoryDiff> diffs, int from, int to,
+      ChildrenDiff combined) {
+    // the last diff may still change
+    final int indexed = Math.min(to, diffs.size() - 1);
+    int i = from;
+    while (i < to) {
+      int level = 0;
+      long span = 1;
+      while (level < maxLevels && i % (span * interval) == 0
+          && i + span * interval <= indexed) {
+        level++;
+        span *= interval;
+      }
+      if (level == 0) {
+        combined.combinePosterior(diffs.get(i).getChildrenDiff(), null);
+      } else {
+        combined.combinePosterior(
+            getEntry(diffs, level, (int) (i / span)), null);
+      }
+      i += span;
+    }
+  }
+
+  synchronized void clear() {
+    levels.clear();
+  }
+
+  /** @return entry i of the given level, computing it if necessary. */
+  private ChildrenDiff getEntry(List<DirectoryDiff> diffs, int level, int i) {
+    while (levels.size() < level) {
+      levels.add(new ArrayList<ChildrenDiff>());
+    }
+    final List<ChildrenDiff> entries = levels.get(level - 1);
+    while (entries.size() <= i) {
+      entries.add(null);
+    }
+    ChildrenDiff entry = entries.get(i);
+    if (entry == null) {
+      entry = new ChildrenDiff();
+      for (int j = i * interval; j < (i + 1) * interval; j++) {
+        entry.combinePosterior(level == 1 ? diffs.get(j).getChildrenDiff()
+            : getEntry(diffs, level - 1, j), null);
+      }
+      entries.set(i, entry);
+    }
+    return entry;
+  }
+}
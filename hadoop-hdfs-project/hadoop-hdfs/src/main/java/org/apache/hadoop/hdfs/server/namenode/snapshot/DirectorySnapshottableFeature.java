@@ -19,6 +19,7 @@
 
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -26,6 +27,7 @@
 
 import org.apache.hadoop.HadoopIllegalArgumentException;
 import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hdfs.DFSUtil;
 import org.apache.hadoop.hdfs.protocol.QuotaExceededException;
 import org.apache.hadoop.hdfs.protocol.SnapshotException;
@@ -235,13 +237,16 @@ public void computeContentSummary4Snapshot(ContentSummaryComputationContext
    * @param from The name of the start point of the comparison. Null indicating
    *          the current tree.
    * @param to The name of the end point. Null indicating the current tree.
+   * @param indexParameters The parameters of the indexes of the diff lists.
    * @return The difference between the start/end points.
    * @throws SnapshotException If there is no snapshot matching the starting
    *           point, or if endSnapshotName is not null but cannot be identified
    *           as a previous snapshot.
    */
   SnapshotDiffInfo computeDiff(final INodeDirectory snapshotRoot,
-      final String from, final String to) throws SnapshotException {
+      final String from, final String to,
+      DirectoryDiffListIndex.Parameters indexParameters)
+      throws SnapshotException {
     Snapshot fromSnapshot = getSnapshotByName(snapshotRoot, from);
     Snapshot toSnapshot = getSnapshotByName(snapshotRoot, to);
     // if the start point is equal to the end point, return null
@@ -249,12 +254,89 @@ SnapshotDiffInfo computeDiff(final INodeDirectory snapshotRoot,
       return null;
     }
     SnapshotDiffInfo diffs = new SnapshotDiffInfo(snapshotRoot, fromSnapshot,
-        toSnapshot);
+        toSnapshot, indexParameters);
     computeDiffRecursively(snapshotRoot, snapshotRoot, new ArrayList<byte[]>(),
         diffs);
     return diffs;
   }
 
+  /**
+   * Compute a page of the difference between two snapshots (or a snapshot and
+   * the current directory) of the directory.
+   *
+   * The children of the directories are listed as of the earlier snapshot,
+   * depth first, so a listing is continued from the path of a directory and
+   * the index of a child of the directory in the earlier snapshot.
+   *
+   * @param from The name of the start point of the comparison. Null indicating
+   *          the current tree.
+   * @param to The name of the end point. Null indicating the current tree.
+   * @param startPath The relative path of the directory to continue the
+   *          listing from.
+   * @param index The index of the child of the directory to continue the
+   *          listing from, or -1 to start the listing.
+   * @param limit The number of entries after which the listing stops.
+   * @param indexParameters The parameters of the indexes of the diff lists.
+   * @return A page of the difference between the start/end points.
+   * @throws SnapshotException If there is no snapshot matching the starting
+   *           point, or if endSnapshotName is not null but cannot be identified
+   *           as a previous snapshot, or if the listing cannot be continued
+   *           from the given path.
+   */
+  SnapshotDiffListingInfo computeDiff(final INodeDirectory snapshotRoot,
+      final String from, final String to, byte[] startPath, int index,
+      int limit, DirectoryDiffListIndex.Parameters indexParameters)
+      throws SnapshotException {
+    Snapshot fromSnapshot = getSnapshotByName(snapshotRoot, from);
+    Snapshot toSnapshot = getSnapshotByName(snapshotRoot, to);
+    if (from.equals(to)) {
+      return null;
+    }
+    SnapshotDiffListingInfo diffs = new SnapshotDiffListingInfo(snapshotRoot,
+        fromSnapshot, toSnapshot, limit, indexParameters);
+    if (index == -1 && startPath.length == 0) {
+      computeDiffRecursively(snapshotRoot, snapshotRoot,
+          new ArrayList<byte[]>(), diffs);
+      return diffs;
+    }
+    if (index < 0) {
+      throw new SnapshotException("Invalid snapshot diff listing index "
+          + index);
+    }
+    final byte[][] resumePath = startPath.length == 0 ? new byte[0][]
+        : DFSUtil.bytes2byteArray(startPath, (byte) Path.SEPARATOR_CHAR);
+    final int earlierId = (diffs.isFromEarlier() ? fromSnapshot : toSnapshot)
+        .getId();
+    // the directories from the snapshot root to the directory of the cursor
+    final INodeDirectory[] dirs = new INodeDirectory[resumePath.length + 1];
+    dirs[0] = snapshotRoot;
+    for (int i = 0; i < resumePath.length; i++) {
+      final INode child = dirs[i].getChild(resumePath[i], earlierId);
+      if (child == null || !child.isDirectory()) {
+        throw new SnapshotException("Cannot continue the snapshot diff listing"
+            + " of " + snapshotRoot.getFullPathName() + " from "
+            + DFSUtil.bytes2String(startPath));
+      }
+      dirs[i + 1] = child.asDirectory();
+    }
+    final List<byte[]> parentPath = new ArrayList<>(Arrays.asList(resumePath));
+    for (int i = resumePath.length; i >= 0; i--) {
+      int start = index;
+      if (i < resumePath.length) {
+        // continue after the subtree of the child just listed
+        parentPath.remove(parentPath.size() - 1);
+        final int pos = ReadOnlyList.Util.binarySearch(
+            dirs[i].getChildrenList(earlierId), resumePath[i]);
+        start = pos >= 0 ? pos + 1 : -pos - 1;
+      }
+      if (!computeChildrenDiff(snapshotRoot, dirs[i], parentPath, diffs,
+          start)) {
+        break;
+      }
+    }
+    return diffs;
+  }
+
   /**
    * Find the snapshot matching the given name.
    *
@@ -300,7 +382,7 @@ private void computeDiffRecursively(final INodeDirectory snapshotRoot,
       DirectoryWithSnapshotFeature sf = dir.getDirectoryWithSnapshotFeature();
       if (sf != null) {
         boolean change = sf.computeDiffBetweenSnapshots(earlierSnapshot,
-            laterSnapshot, diff, dir);
+            laterSnapshot, diff, dir, diffReport.getIndexParameters());
         if (change) {
           diffReport.addDirDiff(dir, relativePath, diff);
         }
@@ -336,12 +418,110 @@ private void computeDiffRecursively(final INodeDirectory snapshotRoot,
     }
   }
 
+  /**
+   * Recursively compute a page of the difference between snapshots under a
+   * given directory/file.
+   * @param snapshotRoot The directory where snapshots were taken.
+   * @param node The directory/file under which the diff is computed.
+   * @param path Relative path (corresponding to the snapshot root) of
+   *             the node.
+   * @param diffReport data structure used to store the diff.
+   * @return false if the listing stopped because the page is full.
+   */
+  private boolean computeDiffRecursively(final INodeDirectory snapshotRoot,
+      INode node, List<byte[]> path, SnapshotDiffListingInfo diffReport) {
+    final Snapshot earlierSnapshot = diffReport.isFromEarlier() ?
+        diffReport.getFrom() : diffReport.getTo();
+    final Snapshot laterSnapshot = diffReport.isFromEarlier() ?
+        diffReport.getTo() : diffReport.getFrom();
+    byte[][] relativePath = path.toArray(new byte[path.size()][]);
+    if (node.isDirectory()) {
+      INodeDirectory dir = node.asDirectory();
+      final ChildrenDiff diff = new ChildrenDiff();
+      DirectoryWithSnapshotFeature sf = dir.getDirectoryWithSnapshotFeature();
+      if (sf != null) {
+        boolean change = sf.computeDiffBetweenSnapshots(earlierSnapshot,
+            laterSnapshot, diff, dir, diffReport.getIndexParameters());
+        if (change) {
+          diffReport.addDirDiff(dir, relativePath, diff,
+              Snapshot.getSnapshotId(laterSnapshot));
+        }
+      }
+      return computeChildrenDiff(snapshotRoot, dir, diff, path, diffReport,
+          0);
+    } else if (node.isFile() && node.asFile().isWithSnapshot()) {
+      INodeFile file = node.asFile();
+      boolean change = file.getFileWithSnapshotFeature()
+          .changedBetweenSnapshots(file, earlierSnapshot, laterSnapshot);
+      if (change) {
+        diffReport.addFileDiff(file, relativePath);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Compute a page of the difference between snapshots under the children of
+   * a directory whose own difference is already listed.
+   * @return false if the listing stopped because the page is full.
+   */
+  private boolean computeChildrenDiff(final INodeDirectory snapshotRoot,
+      INodeDirectory dir, List<byte[]> path,
+      SnapshotDiffListingInfo diffReport, int start) {
+    final Snapshot earlierSnapshot = diffReport.isFromEarlier() ?
+        diffReport.getFrom() : diffReport.getTo();
+    final Snapshot laterSnapshot = diffReport.isFromEarlier() ?
+        diffReport.getTo() : diffReport.getFrom();
+    final ChildrenDiff diff = new ChildrenDiff();
+    DirectoryWithSnapshotFeature sf = dir.getDirectoryWithSnapshotFeature();
+    if (sf != null) {
+      sf.computeDiffBetweenSnapshots(earlierSnapshot, laterSnapshot, diff,
+          dir, diffReport.getIndexParameters());
+    }
+    return computeChildrenDiff(snapshotRoot, dir, diff, path, diffReport,
+        start);
+  }
+
+  private boolean computeChildrenDiff(final INodeDirectory snapshotRoot,
+      INodeDirectory dir, ChildrenDiff diff, List<byte[]> path,
+      SnapshotDiffListingInfo diffReport, int start) {
+    final Snapshot earlierSnapshot = diffReport.isFromEarlier() ?
+        diffReport.getFrom() : diffReport.getTo();
+    final Snapshot laterSnapshot = diffReport.isFromEarlier() ?
+        diffReport.getTo() : diffReport.getFrom();
+    ReadOnlyList<INode> children = dir.getChildrenList(earlierSnapshot
+        .getId());
+    for (int i = start; i < children.size(); i++) {
+      if (diffReport.isFull()) {
+        diffReport.setCursor(path.toArray(new byte[path.size()][]), i);
+        return false;
+      }
+      final INode child = children.get(i);
+      final byte[] name = child.getLocalNameBytes();
+      boolean toProcess = diff.searchIndex(ListType.DELETED, name) < 0;
+      if (!toProcess && child instanceof INodeReference.WithName) {
+        toProcess = findRenameTargetPath(snapshotRoot, (WithName) child,
+            Snapshot.getSnapshotId(laterSnapshot)) != null;
+      }
+      if (toProcess) {
+        path.add(name);
+        final boolean done = computeDiffRecursively(snapshotRoot, child, path,
+            diffReport);
+        path.remove(path.size() - 1);
+        if (!done) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   /**
    * We just found a deleted WithName node as the source of a rename operation.
    * However, we should include it in our snapshot diff report as rename only
    * if the rename target is also under the same snapshottable directory.
    */
-  private byte[][] findRenameTargetPath(final INodeDirectory snapshotRoot,
+  static byte[][] findRenameTargetPath(final INodeDirectory snapshotRoot,
       INodeReference.WithName wn, final int snapshotId) {
     INode inode = wn.getReferredINode();
     final LinkedList<byte[]> ancestors = Lists.newLinkedList();
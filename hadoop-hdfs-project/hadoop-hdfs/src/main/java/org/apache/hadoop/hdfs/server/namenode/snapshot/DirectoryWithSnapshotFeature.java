@@ -20,6 +20,7 @@
 import java.io.DataOutput;
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -45,6 +46,7 @@
 import org.apache.hadoop.hdfs.util.Diff.UndoInfo;
 import org.apache.hadoop.hdfs.util.ReadOnlyList;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 
 import static org.apache.hadoop.hdfs.server.namenode.snapshot.Snapshot.NO_SNAPSHOT_ID;
@@ -216,17 +218,18 @@ public void process(INode inode) {
      *         Since the snapshot is read-only, the logical view of the list is
      *         never changed although the internal data structure may mutate.
      */
-    private ReadOnlyList<INode> getChildrenList(final INodeDirectory currentDir) {
+    private ReadOnlyList<INode> getChildrenList(final INodeDirectory currentDir,
+        final DirectoryDiffList diffList) {
       return new ReadOnlyList<INode>() {
         private List<INode> children = null;
 
         private List<INode> initChildren() {
           if (children == null) {
             final ChildrenDiff combined = new ChildrenDiff();
-            for (DirectoryDiff d = DirectoryDiff.this; d != null; 
-                d = d.getPosterior()) {
-              combined.combinePosterior(d.diff, null);
-            }
+            final List<DirectoryDiff> list = diffList.asList();
+            diffList.combineChildrenDiffs(
+                Collections.binarySearch(list, getSnapshotId()), list.size(),
+                combined);
             children = combined.apply2Current(ReadOnlyList.Util.asList(
                 currentDir.getChildrenList(Snapshot.CURRENT_STATE_ID)));
           }
@@ -316,6 +319,59 @@ void destroyDiffAndCollectBlocks(
   /** A list of directory diffs. */
   public static class DirectoryDiffList
       extends AbstractINodeDiffList<INodeDirectory, INodeDirectoryAttributes, DirectoryDiff> {
+    /**
+     * The index for combining the diffs, null if disabled or not created
+     * yet. It is created by the first snapshot diff computed over the list,
+     * with the parameters of the {@link SnapshotManager}.
+     */
+    private volatile DirectoryDiffListIndex index;
+
+    @VisibleForTesting
+    DirectoryDiffListIndex getIndex() {
+      return index;
+    }
+
+    @Override
+    void diffsChanged() {
+      final DirectoryDiffListIndex index = this.index;
+      if (index != null) {
+        index.clear();
+      }
+    }
+
+    /**
+     * Combine the children diffs of the diffs from index {@code from}
+     * (inclusive) to {@code to} (exclusive) into the given diff, creating
+     * the index of the list with the given parameters if necessary.
+     */
+    void combineChildrenDiffs(int from, int to, ChildrenDiff combined,
+        DirectoryDiffListIndex.Parameters indexParameters) {
+      if (index == null) {
+        synchronized (this) {
+          if (index == null) {
+            index = indexParameters.newIndex();
+          }
+        }
+      }
+      combineChildrenDiffs(from, to, combined);
+    }
+
+    /**
+     * Combine the children diffs of the diffs from index {@code from}
+     * (inclusive) to {@code to} (exclusive) into the given diff, using the
+     * index of the list if there is one.
+     */
+    void combineChildrenDiffs(int from, int to, ChildrenDiff combined) {
+      final List<DirectoryDiff> diffList = asList();
+      final DirectoryDiffListIndex index = this.index;
+      if (index != null) {
+        index.combine(diffList, from, to, combined);
+      } else {
+        for (int i = from; i < to; i++) {
+          combined.combinePosterior(diffList.get(i).diff, null);
+        }
+      }
+    }
 
     @Override
     DirectoryDiff createDiff(int snapshot, INodeDirectory currentDir) {
@@ -336,6 +392,7 @@ public boolean replaceChild(final ListType type, final INode oldChild,
       for(int i = diffList.size() - 1; i >= 0; i--) {
         final ChildrenDiff diff = diffList.get(i).diff;
         if (diff.replace(type, oldChild, newChild)) {
+          diffsChanged();
           return true;
         }
       }
@@ -348,6 +405,7 @@ public boolean removeChild(final ListType type, final INode child) {
       for(int i = diffList.size() - 1; i >= 0; i--) {
         final ChildrenDiff diff = diffList.get(i).diff;
         if (diff.removeChild(type, child)) {
+          diffsChanged();
           return true;
         }
       }
@@ -423,6 +481,7 @@ public static void destroyDstSubtree(INode.ReclaimContext reclaimContext,
         priorDiff = diffList.getDiffById(prior);
         if (priorDiff != null && priorDiff.getSnapshotId() == prior) {
           priorDiff.diff.destroyCreatedList(reclaimContext, dir);
+          diffList.diffsChanged();
         }
       }
       for (INode child : inode.asDirectory().getChildrenList(prior)) {
@@ -478,6 +537,7 @@ private static void cleanDeletedINode(INode.ReclaimContext reclaimContext,
           if (priorDiff != null && priorDiff.getSnapshotId() == prior) {
             priorChildrenDiff = priorDiff.getChildrenDiff();
             priorChildrenDiff.destroyCreatedList(reclaimContext, dir);
+            sf.getDiffs().diffsChanged();
           }
         }
 
@@ -576,8 +636,8 @@ public boolean removeChild(INodeDirectory parent, INode child,
   public ReadOnlyList<INode> getChildrenList(INodeDirectory currentINode,
       final int snapshotId) {
     final DirectoryDiff diff = diffs.getDiffById(snapshotId);
-    return diff != null ? diff.getChildrenList(currentINode) : currentINode
-        .getChildrenList(Snapshot.CURRENT_STATE_ID);
+    return diff != null ? diff.getChildrenList(currentINode, diffs)
+        : currentINode.getChildrenList(Snapshot.CURRENT_STATE_ID);
   }
   
   public INode getChild(INodeDirectory currentINode, byte[] name,
@@ -648,10 +708,12 @@ public void computeContentSummary4Snapshot(
    *          that the diff still represents (later_snapshot - earlier_snapshot)
    *          although toSnapshot can be before fromSnapshot.
    * @param currentINode The {@link INodeDirectory} this feature belongs to.
+   * @param indexParameters The parameters of the index of the diff list.
    * @return Whether changes happened between the startSnapshot and endSnaphsot.
    */
   boolean computeDiffBetweenSnapshots(Snapshot fromSnapshot,
-      Snapshot toSnapshot, ChildrenDiff diff, INodeDirectory currentINode) {
+      Snapshot toSnapshot, ChildrenDiff diff, INodeDirectory currentINode,
+      DirectoryDiffListIndex.Parameters indexParameters) {
     int[] diffIndexPair = diffs.changedBetweenSnapshots(fromSnapshot,
         toSnapshot);
     if (diffIndexPair == null) {
@@ -660,13 +722,15 @@ boolean computeDiffBetweenSnapshots(Snapshot fromSnapshot,
     int earlierDiffIndex = diffIndexPair[0];
     int laterDiffIndex = diffIndexPair[1];
 
+    diffs.combineChildrenDiffs(earlierDiffIndex, laterDiffIndex, diff,
+        indexParameters);
     boolean dirMetadataChanged = false;
     INodeDirectoryAttributes dirCopy = null;
     List<DirectoryDiff> difflist = diffs.asList();
-    for (int i = earlierDiffIndex; i < laterDiffIndex; i++) {
+    for (int i = earlierDiffIndex;
+         i < laterDiffIndex && !dirMetadataChanged; i++) {
       DirectoryDiff sdiff = difflist.get(i);
-      diff.combinePosterior(sdiff.diff, null);
-      if (!dirMetadataChanged && sdiff.snapshotINode != null) {
+      if (sdiff.snapshotINode != null) {
         if (dirCopy == null) {
           dirCopy = sdiff.snapshotINode;
         } else if (!dirCopy.metadataEquals(sdiff.snapshotINode)) {
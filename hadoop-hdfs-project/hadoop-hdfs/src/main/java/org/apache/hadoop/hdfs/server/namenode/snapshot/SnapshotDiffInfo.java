@@ -104,6 +104,8 @@ byte[][] getTargetPath() {
   private final Snapshot from;
   /** The end point of the difference */
   private final Snapshot to;
+  /** The parameters of the indexes of the diff lists */
+  private final DirectoryDiffListIndex.Parameters indexParameters;
   /**
    * A map recording modified INodeFile and INodeDirectory and their relative
    * path corresponding to the snapshot root. Sorted based on their names.
@@ -122,11 +124,13 @@ byte[][] getTargetPath() {
   private final Map<Long, RenameEntry> renameMap =
       new HashMap<Long, RenameEntry>();
 
-  SnapshotDiffInfo(INodeDirectory snapshotRoot, Snapshot start, Snapshot end) {
+  SnapshotDiffInfo(INodeDirectory snapshotRoot, Snapshot start, Snapshot end,
+      DirectoryDiffListIndex.Parameters indexParameters) {
     Preconditions.checkArgument(snapshotRoot.isSnapshottable());
     this.snapshotRoot = snapshotRoot;
     this.from = start;
     this.to = end;
+    this.indexParameters = indexParameters;
   }
 
   /** Add a dir-diff pair */
@@ -158,6 +162,10 @@ Snapshot getTo() {
     return to;
   }
 
+  DirectoryDiffListIndex.Parameters getIndexParameters() {
+    return indexParameters;
+  }
+
   private RenameEntry getEntry(long inodeId) {
     RenameEntry entry = renameMap.get(inodeId);
     if (entry == null) {
@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.snapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hdfs.DFSUtilClient;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReportListing;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReportListing.DiffReportListingEntry;
+import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.apache.hadoop.hdfs.server.namenode.INodeDirectory;
+import org.apache.hadoop.hdfs.server.namenode.INodeFile;
+import org.apache.hadoop.hdfs.server.namenode.INodeReference;
+import org.apache.hadoop.hdfs.server.namenode.snapshot.DirectoryWithSnapshotFeature.ChildrenDiff;
+import org.apache.hadoop.hdfs.util.Diff.ListType;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A page of the difference between snapshots of a snapshottable directory,
+ * and the cursor to continue the listing from.
+ */
+class SnapshotDiffListingInfo {
+  /** The root directory of the snapshots */
+  private final INodeDirectory snapshotRoot;
+  /** The starting point of the difference */
+  private final Snapshot from;
+  /** The end point of the difference */
+  private final Snapshot to;
+  /** The number of entries after which the listing stops */
+  private final int limit;
+  /** The parameters of the indexes of the diff lists */
+  private final DirectoryDiffListIndex.Parameters indexParameters;
+
+  private final List<DiffReportListingEntry> modifiedList = new ArrayList<>();
+  private final List<DiffReportListingEntry> createdList = new ArrayList<>();
+  private final List<DiffReportListingEntry> deletedList = new ArrayList<>();
+
+  /** The relative path of the directory of the cursor, null if none */
+  private byte[][] lastPath;
+  /** The index of the child of the directory of the cursor */
+  private int lastIndex = -1;
+
+  SnapshotDiffListingInfo(INodeDirectory snapshotRoot, Snapshot start,
+      Snapshot end, int limit,
+      DirectoryDiffListIndex.Parameters indexParameters) {
+    Preconditions.checkArgument(snapshotRoot.isSnapshottable());
+    this.snapshotRoot = snapshotRoot;
+    this.from = start;
+    this.to = end;
+    this.limit = limit;
+    this.indexParameters = indexParameters;
+  }
+
+  Snapshot getFrom() {
+    return from;
+  }
+
+  Snapshot getTo() {
+    return to;
+  }
+
+  DirectoryDiffListIndex.Parameters getIndexParameters() {
+    return indexParameters;
+  }
+
+  /** @return True if {@link #from} is earlier than {@link #to} */
+  boolean isFromEarlier() {
+    return Snapshot.ID_COMPARATOR.compare(from, to) < 0;
+  }
+
+  /** @return True if the page holds enough entries to stop the listing */
+  boolean isFull() {
+    return modifiedList.size() + createdList.size() + deletedList.size()
+        >= limit;
+  }
+
+  /** Stop the listing before the given child of a directory. */
+  void setCursor(byte[][] path, int index) {
+    this.lastPath = path;
+    this.lastIndex = index;
+  }
+
+  /**
+   * Add a modified directory, and the children created in and deleted from
+   * it. The target of the rename of a deleted child is looked up in the
+   * later snapshot, if the target is under the snapshot root.
+   */
+  void addDirDiff(INodeDirectory dir, byte[][] relativePath,
+      ChildrenDiff diff, int laterSnapshotId) {
+    final long dirId = dir.getId();
+    modifiedList.add(new DiffReportListingEntry(dirId, dirId, relativePath,
+        false, null));
+    final byte[][] fullPath = new byte[relativePath.length + 1][];
+    System.arraycopy(relativePath, 0, fullPath, 0, relativePath.length);
+    for (INode created : diff.getList(ListType.CREATED)) {
+      fullPath[fullPath.length - 1] = created.getLocalNameBytes();
+      createdList.add(new DiffReportListingEntry(dirId, created.getId(),
+          fullPath, created.isReference(), null));
+    }
+    for (INode deleted : diff.getList(ListType.DELETED)) {
+      fullPath[fullPath.length - 1] = deleted.getLocalNameBytes();
+      final boolean isWithName = deleted instanceof INodeReference.WithName;
+      final byte[][] targetPath = isWithName ?
+          DirectorySnapshottableFeature.findRenameTargetPath(snapshotRoot,
+              (INodeReference.WithName) deleted, laterSnapshotId) : null;
+      deletedList.add(new DiffReportListingEntry(dirId, deleted.getId(),
+          fullPath, isWithName, targetPath));
+    }
+  }
+
+  /** Add a modified file */
+  void addFileDiff(INodeFile file, byte[][] relativePath) {
+    modifiedList.add(new DiffReportListingEntry(file.getId(), file.getId(),
+        relativePath, false, null));
+  }
+
+  /**
+   * Generate a {@link SnapshotDiffReportListing} for the page.
+   */
+  SnapshotDiffReportListing generateReport() {
+    final byte[] path = lastPath == null ? DFSUtilClient.EMPTY_BYTES
+        : DFSUtilClient.byteArray2bytes(lastPath);
+    return new SnapshotDiffReportListing(modifiedList, createdList,
+        deletedList, path, lastIndex, isFromEarlier());
+  }
+}
@@ -29,9 +29,12 @@
 
 import javax.management.ObjectName;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.DFSUtil;
 import org.apache.hadoop.hdfs.DFSUtilClient;
 import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReportListing;
 import org.apache.hadoop.hdfs.protocol.SnapshotException;
 import org.apache.hadoop.hdfs.protocol.SnapshotInfo;
 import org.apache.hadoop.hdfs.protocol.SnapshottableDirectoryStatus;
@@ -62,6 +65,10 @@
 public class SnapshotManager implements SnapshotStatsMXBean {
   private boolean allowNestedSnapshots = false;
   private final FSDirectory fsdir;
+  /** The maximum number of entries in a page of a snapshot diff report. */
+  private final int diffListingLimit;
+  /** The parameters of the indexes of the directory diff lists. */
+  private final DirectoryDiffListIndex.Parameters diffListIndexParameters;
   private static final int SNAPSHOT_ID_BIT_WIDTH = 24;
 
   private final AtomicInteger numSnapshots = new AtomicInteger();
@@ -72,8 +79,20 @@ public class SnapshotManager implements SnapshotStatsMXBean {
   private final Map<Long, INodeDirectory> snapshottables =
       new HashMap<Long, INodeDirectory>();
 
-  public SnapshotManager(final FSDirectory fsdir) {
+  public SnapshotManager(final Configuration conf, final FSDirectory fsdir) {
     this.fsdir = fsdir;
+    this.diffListingLimit = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_DIFF_LISTING_LIMIT,
+        DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_DIFF_LISTING_LIMIT_DEFAULT);
+    Preconditions.checkArgument(diffListingLimit > 0,
+        "%s must be positive: %s",
+        DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_DIFF_LISTING_LIMIT,
+        diffListingLimit);
+    this.diffListIndexParameters = new DirectoryDiffListIndex.Parameters(
+        conf.getInt(DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_SKIPLIST_INTERVAL,
+            DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_SKIPLIST_INTERVAL_DEFAULT),
+        conf.getInt(DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_SKIPLIST_MAX_LEVELS,
+            DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_SKIPLIST_MAX_LEVELS_DEFAULT));
   }
 
   /** Used in tests only */
@@ -221,6 +240,7 @@ public String createSnapshot(final INodesInPath iip, String snapshotRoot,
     //create success, update id
     snapshotCounter++;
     numSnapshots.getAndIncrement();
+    fsdir.invalidateAllContentSummaries();
     return Snapshot.getSnapshotPath(snapshotRoot, snapshotName);
   }
   
@@ -235,6 +255,7 @@ public void deleteSnapshot(final INodesInPath iip, final String snapshotName,
     INodeDirectory srcRoot = getSnapshottableRoot(iip);
     srcRoot.removeSnapshot(reclaimContext, snapshotName);
     numSnapshots.getAndDecrement();
+    fsdir.invalidateAllContentSummaries();
   }
 
   /**
@@ -254,6 +275,7 @@ public void renameSnapshot(final INodesInPath iip, final String snapshotRoot,
       throws IOException {
     final INodeDirectory srcRoot = getSnapshottableRoot(iip);
     srcRoot.renameSnapshot(snapshotRoot, oldSnapshotName, newSnapshotName);
+    fsdir.invalidateAllContentSummaries();
   }
   
   public int getNumSnapshottableDirs() {
@@ -368,10 +390,39 @@ public SnapshotDiffReport diff(final INodesInPath iip,
           Collections.<DiffReportEntry> emptyList());
     }
     final SnapshotDiffInfo diffs = snapshotRoot
-        .getDirectorySnapshottableFeature().computeDiff(snapshotRoot, from, to);
+        .getDirectorySnapshottableFeature().computeDiff(snapshotRoot, from, to,
+            diffListIndexParameters);
     return diffs != null ? diffs.generateReport() : new SnapshotDiffReport(
         snapshotRootPath, from, to, Collections.<DiffReportEntry> emptyList());
   }
+
+  /**
+   * Compute a page of the difference between two snapshots of a directory,
+   * or between a snapshot of the directory and its current tree. The page
+   * ends once it holds at least
+   * {@link DFSConfigKeys#DFS_NAMENODE_SNAPSHOT_DIFF_LISTING_LIMIT} entries,
+   * but the changes of a directory are never split across pages.
+   *
+   * @param startPath the relative path of the directory to continue from.
+   * @param index the index of the child of the directory to continue from,
+   *              or -1 to start from the snapshot root.
+   */
+  public SnapshotDiffReportListing diff(final INodesInPath iip,
+      final String from, final String to, byte[] startPath, int index)
+      throws IOException {
+    final INodeDirectory snapshotRoot = getSnapshottableRoot(iip);
+
+    if ((from == null || from.isEmpty())
+        && (to == null || to.isEmpty())) {
+      // both fromSnapshot and toSnapshot indicate the current tree
+      return new SnapshotDiffReportListing();
+    }
+    final SnapshotDiffListingInfo diffs = snapshotRoot
+        .getDirectorySnapshottableFeature().computeDiff(snapshotRoot, from,
+            to, startPath, index, diffListingLimit, diffListIndexParameters);
+    return diffs != null ? diffs.generateReport()
+        : new SnapshotDiffReportListing();
+  }
   
   public void clearSnapshottableDirs() {
     snapshottables.clear();
@@ -0,0 +1,307 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.util;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+
+/**
+ * A low memory hash map from primitive long keys, such as block ids, to
+ * objects. Keys and values are kept in two parallel arrays using open
+ * addressing with linear probing, so an entry costs a long and a reference
+ * instead of a boxed key and a map entry object. Deletions shift the following
+ * entries of the probe sequence back, so no tombstones are left behind.
+ *
+ * This class does not support null values and is not thread safe.
+ */
+@InterfaceAudience.Private
+public class LongObjectHashMap<V> implements Iterable<V> {
+  static final int MINIMUM_CAPACITY = 16;
+  static final int MAXIMUM_CAPACITY = 1 << 30;
+
+  private long[] keys;
+  private Object[] values;
+  private int mask;
+  private int size = 0;
+  /** Capacity at initialization time, the table never shrinks below it. */
+  private final int initialCapacity;
+
+  /**
+   * Modification version for fail-fast.
+   *
+   * @see ConcurrentModificationException
+   */
+  private int modification = 0;
+
+  public LongObjectHashMap() {
+    this(MINIMUM_CAPACITY);
+  }
+
+  /**
+   * @param initCapacity
+   *          Recommended size of the internal arrays.
+   */
+  public LongObjectHashMap(int initCapacity) {
+    if (initCapacity < 0) {
+      throw new IllegalArgumentException("Illegal initial capacity: "
+          + initCapacity);
+    }
+    this.initialCapacity = computeCapacity(initCapacity);
+    allocate(initialCapacity);
+  }
+
+  private static int computeCapacity(int initial) {
+    if (initial < MINIMUM_CAPACITY) {
+      return MINIMUM_CAPACITY;
+    }
+    if (initial > MAXIMUM_CAPACITY) {
+      return MAXIMUM_CAPACITY;
+    }
+    int capacity = Integer.highestOneBit(initial);
+    return capacity < initial ? capacity << 1 : capacity;
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new Object[capacity];
+    mask = capacity - 1;
+  }
+
+  private int slot(long key) {
+    // spread sequentially allocated block ids across the table
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+
+  /** @return the slot of the key, or -1 if the key is not present. */
+  private int find(long key) {
+    for (int i = slot(key); values[i] != null; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean containsKey(long key) {
+    return find(key) >= 0;
+  }
+
+  /** @return the value mapped to the key, or null if there is none. */
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    final int i = find(key);
+    return i < 0 ? null : (V) values[i];
+  }
+
+  /**
+   * Map the key to the value, replacing any existing mapping.
+   * @return the previous value mapped to the key, or null if there was none.
+   */
+  public V put(long key, V value) {
+    return put(key, value, true);
+  }
+
+  /**
+   * Map the key to the value unless the key is already present.
+   * @return the existing value mapped to the key, or null if the value was
+   *         added.
+   */
+  public V putIfAbsent(long key, V value) {
+    return put(key, value, false);
+  }
+
+  @SuppressWarnings("unchecked")
+  private V put(long key, V value, boolean replace) {
+    if (value == null) {
+      throw new NullPointerException("Null value is not supported");
+    }
+    int i = slot(key);
+    for (; values[i] != null; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        final V previous = (V) values[i];
+        if (replace) {
+          values[i] = value;
+        }
+        return previous;
+      }
+    }
+    keys[i] = key;
+    values[i] = value;
+    size++;
+    modification++;
+    if (size > (values.length >> 2) * 3 && values.length < MAXIMUM_CAPACITY) {
+      resize(values.length << 1);
+    }
+    return null;
+  }
+
+  /**
+   * Remove the mapping of the key.
+   * @return the removed value, or null if the key was not present.
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(long key) {
+    final int i = find(key);
+    if (i < 0) {
+      return null;
+    }
+    final V removed = (V) values[i];
+    removeAt(i);
+    shrinkIfNeeded();
+    return removed;
+  }
+
+  private void removeAt(int hole) {
+    size--;
+    modification++;
+    for (int j = (hole + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+      // move the entry into the hole unless its home slot lies between the
+      // hole and its current slot
+      if (((j - slot(keys[j])) & mask) >= ((j - hole) & mask)) {
+        keys[hole] = keys[j];
+        values[hole] = values[j];
+        hole = j;
+      }
+    }
+    keys[hole] = 0;
+    values[hole] = null;
+  }
+
+  private void shrinkIfNeeded() {
+    if (values.length > initialCapacity && size < values.length >> 3) {
+      resize(Math.max(initialCapacity, values.length >> 1));
+    }
+  }
+
+  private void resize(int capacity) {
+    final long[] oldKeys = keys;
+    final Object[] oldValues = values;
+    allocate(capacity);
+    for (int i = 0; i < oldValues.length; i++) {
+      if (oldValues[i] != null) {
+        int j = slot(oldKeys[i]);
+        while (values[j] != null) {
+          j = (j + 1) & mask;
+        }
+        keys[j] = oldKeys[i];
+        values[j] = oldValues[i];
+      }
+    }
+  }
+
+  /**
+   * Remove and return at most n values from the map.
+   * @param n the maximum number of values to remove
+   * @return the removed values
+   */
+  @SuppressWarnings("unchecked")
+  public List<V> pollN(int n) {
+    final List<V> polled = new ArrayList<V>(Math.min(n, size));
+    // every slot below i is empty, so entries shifted back by removeAt
+    // always land in slot i and are not missed
+    for (int i = 0; i < values.length && polled.size() < n;) {
+      if (values[i] != null) {
+        polled.add((V) values[i]);
+        removeAt(i);
+      } else {
+        i++;
+      }
+    }
+    shrinkIfNeeded();
+    return polled;
+  }
+
+  /** Remove all the mappings, shrinking the table to its initial size. */
+  public void clear() {
+    modification++;
+    if (size == 0 && values.length == initialCapacity) {
+      return;
+    }
+    allocate(initialCapacity);
+    size = 0;
+  }
+
+  /**
+   * @return a fail-fast iterator over the values, which does not support
+   *         removal.
+   */
+  @Override
+  public Iterator<V> iterator() {
+    return new ValueIterator();
+  }
+
+  private class ValueIterator implements Iterator<V> {
+    private final int expectedModification = modification;
+    private int next = advance(0);
+
+    private int advance(int i) {
+      while (i < values.length && values[i] == null) {
+        i++;
+      }
+      return i;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next < values.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V next() {
+      if (modification != expectedModification) {
+        throw new ConcurrentModificationException("modification="
+            + modification + " != expectedModification = "
+            + expectedModification);
+      }
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final V value = (V) values[next];
+      next = advance(next + 1);
+      return value;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("Remove is not supported.");
+    }
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder b = new StringBuilder(getClass().getSimpleName());
+    b.append("(size=").append(size).append(", capacity=")
+        .append(values.length).append(")");
+    return b.toString();
+  }
+}
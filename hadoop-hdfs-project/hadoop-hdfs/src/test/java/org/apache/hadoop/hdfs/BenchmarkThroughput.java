@@ -23,6 +23,8 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -49,16 +51,37 @@ public class BenchmarkThroughput extends Configured implements Tool {
   // the property in the config that specifies a working directory
   private LocalDirAllocator dir;
   private long startTime;
+  private long startAllocatedBytes;
   // the size of the buffer to use
   private int BUFFER_SIZE;
 
   private void resetMeasurements() {
     startTime = Time.now();
+    startAllocatedBytes = getAllocatedBytes();
   }
 
   private void printMeasurements() {
-    System.out.println(" time: " +
+    System.out.print(" time: " +
                        ((Time.now() - startTime)/1000));
+    if (startAllocatedBytes >= 0) {
+      System.out.print(" allocated MB: " +
+          ((getAllocatedBytes() - startAllocatedBytes) >> 20));
+    }
+    System.out.println();
+  }
+
+  /**
+   * @return the number of bytes allocated by the current thread, which
+   *         includes the packet buffers of the files it writes, or -1 if
+   *         the JVM does not count them.
+   */
+  private static long getAllocatedBytes() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      return -1;
+    }
+    return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+        Thread.currentThread().getId());
   }
 
   private Path writeLocalFile(String name, Configuration conf,
@@ -166,7 +189,8 @@ private static void printUsage() {
     System.err.println("Usage: dfsthroughput [#reps]");
     System.err.println("Config properties:\n" +
       "  dfsthroughput.file.size:\tsize of each write/read (10GB)\n" +
-      "  dfsthroughput.buffer.size:\tbuffer size for write/read (4k)\n");
+      "  dfsthroughput.buffer.size:\tbuffer size for write/read (4k)\n" +
+      "  dfs.client.write.packet-pool.max-bytes:\tpacket buffer pool (0)\n");
   }
 
   @Override
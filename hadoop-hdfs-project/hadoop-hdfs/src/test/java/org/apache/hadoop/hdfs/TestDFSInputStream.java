@@ -17,18 +17,31 @@
  */
 package org.apache.hadoop.hdfs;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.hamcrest.CoreMatchers.equalTo;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileRange;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.VectoredReadable;
 import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.net.unix.DomainSocket;
@@ -135,4 +148,75 @@ public void testSeekToNewSource() throws IOException {
       cluster.shutdown();
     }
   }
+
+  private void testReadVectoredInner(Configuration conf) throws Exception {
+    final int blockSize = 1024 * 1024;
+    final int fileLength = 3 * blockSize + 100;
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(2).build();
+    try {
+      DistributedFileSystem fs = cluster.getFileSystem();
+      Path path = new Path("/testfile");
+      DFSTestUtil.createFile(fs, path, 4096, fileLength, blockSize, (short) 2,
+          0);
+      byte[] expected = DFSTestUtil.readFileBuffer(fs, path);
+      IntFunction<ByteBuffer> allocate = new IntFunction<ByteBuffer>() {
+        @Override
+        public ByteBuffer apply(int size) {
+          return ByteBuffer.allocate(size);
+        }
+      };
+      // ranges in no particular order, some close to each other, some
+      // crossing block boundaries
+      List<FileRange> ranges = Arrays.asList(
+          new FileRange(2 * blockSize - 1000, 5000),
+          new FileRange(0, 100), new FileRange(1000, 200),
+          new FileRange(blockSize - 10, 20), new FileRange(500000, 300000),
+          new FileRange(fileLength - 100, 100));
+      try (FSDataInputStream in = fs.open(path)) {
+        assertTrue(in.getWrappedStream() instanceof VectoredReadable);
+        in.readVectored(ranges, allocate);
+        for (FileRange range : ranges) {
+          ByteBuffer data = range.getData().get(30, TimeUnit.SECONDS);
+          assertEquals(range.getLength(), data.remaining());
+          byte[] actual = new byte[range.getLength()];
+          data.get(actual);
+          assertArrayEquals("data of " + range, Arrays.copyOfRange(expected,
+              (int) range.getOffset(), (int) range.getEnd()), actual);
+        }
+        assertEquals(0, in.getPos());
+
+        // a range past the end of the file fails on its own, even when it
+        // is merged with the adjacent ranges before it
+        List<FileRange> pastEOF = Arrays.asList(new FileRange(0, 10),
+            new FileRange(fileLength - 30, 10),
+            new FileRange(fileLength - 20, 10),
+            new FileRange(fileLength - 10, 20));
+        in.readVectored(pastEOF, allocate);
+        for (int i = 0; i < 3; i++) {
+          assertEquals(10, pastEOF.get(i).getData().get().remaining());
+        }
+        try {
+          pastEOF.get(3).getData().get();
+          fail("reading past the end of the file should fail");
+        } catch (ExecutionException e) {
+          assertTrue(e.getCause() instanceof EOFException);
+        }
+      }
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  @Test(timeout=60000)
+  public void testReadVectored() throws Exception {
+    testReadVectoredInner(new Configuration());
+  }
+
+  @Test(timeout=60000)
+  public void testReadVectoredWithoutThreadPool() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setInt(HdfsClientConfigKeys.VectoredRead.THREADPOOL_SIZE_KEY, 0);
+    testReadVectoredInner(conf);
+  }
 }
@@ -34,6 +34,7 @@
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.DataStreamer.LastExceptionInStreamer;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.client.impl.DfsClientConf;
 import org.apache.hadoop.hdfs.protocol.BlockListAsLongs;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
@@ -44,7 +45,9 @@
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockManager;
 import org.apache.hadoop.hdfs.server.blockmanagement.DatanodeDescriptor;
 import org.apache.hadoop.hdfs.server.blockmanagement.DatanodeManager;
+import org.apache.hadoop.hdfs.server.datanode.DataNode;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeStorage;
+import org.apache.hadoop.test.GenericTestUtils;
 import org.apache.htrace.core.SpanId;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -57,7 +60,10 @@
 import static org.mockito.Mockito.verify;
 import org.mockito.internal.util.reflection.Whitebox;
 
+import com.google.common.base.Supplier;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.doThrow;
@@ -221,6 +227,44 @@ public void testEndLeaseCall() throws Exception {
     verify(spyClient, times(1)).endFileLease(anyLong());
   }
 
+  @Test(timeout = 60000)
+  public void testPacketBufferPool() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setLong(DFSConfigKeys.DFS_DATANODE_PACKET_POOL_MAX_BYTES_KEY,
+        1024 * 1024);
+    conf.setLong(HdfsClientConfigKeys.Write.PACKET_POOL_MAX_BYTES_KEY,
+        1024 * 1024);
+    conf.set(HdfsClientConfigKeys.DFS_CLIENT_CONTEXT, "testPacketBufferPool");
+    MiniDFSCluster poolCluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(3).build();
+    try {
+      poolCluster.waitActive();
+      final DistributedFileSystem fs = poolCluster.getFileSystem();
+      final int len = 1024 * 1024 + 123;
+      for (int i = 0; i < 4; i++) {
+        final Path p = new Path("/pooled" + i);
+        DFSTestUtil.createFile(fs, p, len, len, fs.getDefaultBlockSize(p),
+            (short) 3, i);
+        Assert.assertArrayEquals(DFSTestUtil.calculateFileContentsFromSeed(i,
+            len), DFSTestUtil.readFileBuffer(fs, p));
+        // the DataNodes return their buffers once the block is closed
+        for (final DataNode dn : poolCluster.getDataNodes()) {
+          GenericTestUtils.waitFor(new Supplier<Boolean>() {
+            @Override
+            public Boolean get() {
+              return dn.getPacketBufferPool().getFreeBytes() > 0;
+            }
+          }, 10, 10000);
+        }
+      }
+      for (DataNode dn : poolCluster.getDataNodes()) {
+        assertTrue(dn.getPacketBufferPool().getNumReused() >= 3);
+      }
+    } finally {
+      poolCluster.shutdown();
+    }
+  }
+
   @AfterClass
   public static void tearDown() {
     if (cluster != null) {
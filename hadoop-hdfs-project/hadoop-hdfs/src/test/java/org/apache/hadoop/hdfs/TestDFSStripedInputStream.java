@@ -21,6 +21,7 @@
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
@@ -490,4 +491,78 @@ public void testStatefulReadWithDNFailure() throws Exception {
     assertEquals(readSize, done);
     assertArrayEquals(expected, readBuffer);
   }
+
+  @Test
+  public void testStatefulReadAhead() throws Exception {
+    // read the stripes of a block group at a time
+    conf.setInt(HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_KEY,
+        stripesPerBlock);
+    tearDown();
+    setup();
+    testStatefulRead(false, false);
+    testStatefulRead(true, false);
+    testStatefulReadWithDNFailure();
+  }
+
+  @Test
+  public void testPreadWithDecodedStripeCache() throws Exception {
+    conf.setInt(HdfsClientConfigKeys.StripedRead.DECODED_STRIPE_CACHE_SIZE_KEY,
+        stripesPerBlock);
+    tearDown();
+    setup();
+    testPreadWithDNFailure();
+  }
+
+  /**
+   * Once a block group needed decoding, its decoded stripes are kept, and
+   * preads of them do not read the internal blocks again.
+   */
+  @Test
+  public void testPreadFromDecodedStripeCache() throws Exception {
+    conf.setInt(HdfsClientConfigKeys.StripedRead.DECODED_STRIPE_CACHE_SIZE_KEY,
+        stripesPerBlock);
+    tearDown();
+    setup();
+    DFSTestUtil.createStripedFile(cluster, filePath, null, 1,
+        stripesPerBlock, false, ecPolicy);
+    LocatedStripedBlock bg = (LocatedStripedBlock) fs.getClient().namenode
+        .getBlockLocations(filePath.toString(), 0, blockGroupSize).get(0);
+    for (int i = 0; i < dataBlocks + parityBlocks; i++) {
+      Block blk = new Block(bg.getBlock().getBlockId() + i,
+          stripesPerBlock * cellSize, bg.getBlock().getGenerationStamp());
+      cluster.injectBlocks(i, Arrays.asList(blk),
+          bg.getBlock().getBlockPoolId());
+    }
+    DFSStripedInputStream in =
+        new DFSStripedInputStream(fs.getClient(), filePath.toString(), false,
+            ecPolicy, null);
+    cluster.stopDataNode(0);
+
+    // a range of the missing cell of the first stripe and the next cell
+    final int offset = cellSize / 2;
+    final int length = cellSize;
+    byte[] first = new byte[length];
+    assertEquals(length, in.read(offset, first, 0, length));
+    // the second pread decodes and keeps the whole stripe
+    byte[] second = new byte[length];
+    assertEquals(length, in.read(offset, second, 0, length));
+    assertArrayEquals(first, second);
+    // the second half is read from the next internal block
+    for (int i = cellSize - offset; i < length; i++) {
+      assertEquals(SimulatedFSDataset.simulatedByte(
+          new Block(bg.getBlock().getBlockId() + 1), offset + i - cellSize),
+          second[i]);
+    }
+
+    // too many blocks are missing to decode the stripe again
+    for (int i = 0; i < parityBlocks; i++) {
+      cluster.stopDataNode(0);
+    }
+    byte[] third = new byte[length / 2];
+    assertEquals(length / 2, in.read(offset + length / 4, third, 0,
+        length / 2));
+    assertArrayEquals(Arrays.copyOfRange(second, length / 4,
+        length / 4 + length / 2), third);
+    in.close();
+  }
 }
@@ -17,14 +17,29 @@
  */
 package org.apache.hadoop.hdfs;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CompositeCrcFileChecksum;
+import org.apache.hadoop.fs.CreateFlag;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Options.ChecksumCombineMode;
+import org.apache.hadoop.fs.Options.ChecksumOpt;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.util.DataChecksum;
+import org.apache.hadoop.util.PureJavaCrc32C;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -92,4 +107,95 @@ public void testGetFileChecksum() throws Exception {
     testGetFileChecksum(new Path("/foo"), BLOCKSIZE / 4);
     testGetFileChecksum(new Path("/bar"), BLOCKSIZE / 4 - 1);
   }
+
+  /** @return a new client with the given combine mode and threads. */
+  private DistributedFileSystem newClient(ChecksumCombineMode mode,
+      int threads) throws IOException {
+    Configuration clientConf = new Configuration(conf);
+    clientConf.set(HdfsClientConfigKeys.DFS_CHECKSUM_COMBINE_MODE_KEY,
+        mode.name());
+    clientConf.setInt(
+        HdfsClientConfigKeys.GetFileChecksum.THREADPOOL_SIZE_KEY, threads);
+    return (DistributedFileSystem) FileSystem.newInstance(cluster.getURI(),
+        clientConf);
+  }
+
+  private void createFile(Path p, byte[] data, long blockSize,
+      ChecksumOpt checksumOpt) throws IOException {
+    try (FSDataOutputStream out = dfs.create(p, FsPermission.getFileDefault(),
+        EnumSet.of(CreateFlag.CREATE), 4096, REPLICATION, blockSize, null,
+        checksumOpt)) {
+      out.write(data);
+    }
+  }
+
+  private static FileChecksum expectedCrc(Checksum sum,
+      DataChecksum.Type type, byte[] data, int length) {
+    sum.update(data, 0, length);
+    return new CompositeCrcFileChecksum((int) sum.getValue(), type, 0);
+  }
+
+  @Test
+  public void testCompositeCrcIndependentOfBlockLayout() throws Exception {
+    final byte[] data = new byte[5 * BLOCKSIZE + 123];
+    new Random(0xc4c).nextBytes(data);
+    final Path p1 = new Path("/p1");
+    final Path p2 = new Path("/p2");
+    final Path p3 = new Path("/p3");
+    createFile(p1, data, BLOCKSIZE,
+        new ChecksumOpt(DataChecksum.Type.CRC32C, 512));
+    createFile(p2, data, 3 * 512,
+        new ChecksumOpt(DataChecksum.Type.CRC32C, 128));
+    createFile(p3, data, 2 * BLOCKSIZE,
+        new ChecksumOpt(DataChecksum.Type.CRC32, 256));
+
+    try (DistributedFileSystem md5 = newClient(
+            ChecksumCombineMode.MD5MD5CRC, 0);
+         DistributedFileSystem composite = newClient(
+            ChecksumCombineMode.COMPOSITE_CRC, 4)) {
+      // block size dependent
+      assertNotEquals(md5.getFileChecksum(p1), md5.getFileChecksum(p2));
+
+      final FileChecksum crc32c = expectedCrc(new PureJavaCrc32C(),
+          DataChecksum.Type.CRC32C, data, data.length);
+      assertEquals(crc32c, composite.getFileChecksum(p1));
+      assertEquals(crc32c, composite.getFileChecksum(p2));
+      assertEquals(expectedCrc(new CRC32(), DataChecksum.Type.CRC32, data,
+          data.length), composite.getFileChecksum(p3));
+
+      // ranges ending within a block, and within a chunk
+      for (int length : new int[] {BLOCKSIZE, 1500, 2 * BLOCKSIZE + 7, 1}) {
+        final FileChecksum expected = expectedCrc(new PureJavaCrc32C(),
+            DataChecksum.Type.CRC32C, data, length);
+        assertEquals("length=" + length, expected,
+            composite.getFileChecksum(p1, length));
+        assertEquals("length=" + length, expected,
+            composite.getFileChecksum(p2, length));
+      }
+    }
+  }
+
+  @Test
+  public void testCompositeCrcOfEmptyFile() throws Exception {
+    final Path p = new Path("/empty");
+    DFSTestUtil.createFile(dfs, p, 0, REPLICATION, 0L);
+    try (DistributedFileSystem composite = newClient(
+        ChecksumCombineMode.COMPOSITE_CRC, 0)) {
+      assertEquals(new CompositeCrcFileChecksum(0,
+          DataChecksum.Type.CRC32C, 0), composite.getFileChecksum(p));
+    }
+  }
+
+  @Test
+  public void testParallelFileChecksum() throws Exception {
+    final Path p = new Path("/parallel");
+    DFSTestUtil.createFile(dfs, p, 10 * BLOCKSIZE + 100, REPLICATION, 0L);
+    final FileChecksum serial = dfs.getFileChecksum(p);
+    try (DistributedFileSystem parallel = newClient(
+        ChecksumCombineMode.MD5MD5CRC, 4)) {
+      assertEquals(serial, parallel.getFileChecksum(p));
+      assertEquals(dfs.getFileChecksum(p, 3 * BLOCKSIZE + 5),
+          parallel.getFileChecksum(p, 3 * BLOCKSIZE + 5));
+    }
+  }
 }
@@ -28,6 +28,8 @@
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.ChecksumException;
@@ -36,6 +38,7 @@
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.protocol.datatransfer.DataTransferProtocol;
 import org.apache.hadoop.hdfs.server.datanode.SimulatedFSDataset;
@@ -48,6 +51,8 @@
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import com.google.common.base.Supplier;
+
 /**
  * This class tests the DFS positional read functionality in a single node
  * mini-cluster.
@@ -441,6 +446,104 @@ public Void answer(InvocationOnMock invocation) throws Throwable {
     }
   }
 
+  /**
+   * Tests that the hedged read threshold follows the observed read latencies,
+   * and that much slower datanodes are avoided.
+   */
+  @Test(timeout = 120000)
+  public void testAdaptiveHedgedRead() throws Exception {
+    isHedgedRead = true;
+    Configuration conf = new Configuration();
+    final int staticThresholdMillis = 50000;
+    final int slowReadMillis = 2000;
+    conf.setInt(HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_KEY, 5);
+    conf.setLong(HdfsClientConfigKeys.HedgedRead.THRESHOLD_MILLIS_KEY,
+        staticThresholdMillis);
+    conf.setBoolean(HdfsClientConfigKeys.HedgedRead.ADAPTIVE_ENABLED_KEY, true);
+    conf.setLong(
+        HdfsClientConfigKeys.HedgedRead.ADAPTIVE_MIN_THRESHOLD_MILLIS_KEY, 500);
+    // the latencies are shared by all clients of the same context
+    conf.set(HdfsClientConfigKeys.DFS_CLIENT_CONTEXT, "testAdaptiveHedgedRead");
+
+    DFSClientFaultInjector.set(Mockito.mock(DFSClientFaultInjector.class));
+    DFSClientFaultInjector injector = DFSClientFaultInjector.get();
+    final AtomicBoolean delayNextRead = new AtomicBoolean(false);
+    Mockito.doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        if (delayNextRead.getAndSet(false)) {
+          Thread.sleep(slowReadMillis);
+        }
+        return null;
+      }
+    }).when(injector).readFromDatanodeDelay();
+
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf).numDataNodes(3)
+        .format(true).build();
+    DistributedFileSystem fileSys = cluster.getFileSystem();
+    DFSClient dfsClient = fileSys.getClient();
+    DataNodeLatencyTracker tracker =
+        dfsClient.getClientContext().getDataNodeLatencyTracker();
+    try {
+      Path file1 = new Path("adaptiveHedgedRead.dat");
+      writeFile(fileSys, file1);
+      pReadFile(fileSys, file1);
+      long threshold = tracker.getHedgeThresholdMillis(staticThresholdMillis);
+      assertTrue("threshold " + threshold, threshold < slowReadMillis);
+
+      // a slow read is hedged long before the static threshold
+      DFSHedgedReadMetrics metrics = dfsClient.getHedgedReadMetrics();
+      metrics.hedgedReadOps.set(0);
+      metrics.hedgedReadOpsWin.set(0);
+      metrics.hedgedReadOpsInCurThread.set(0);
+      delayNextRead.set(true);
+      byte[] buf = new byte[1024];
+      try (FSDataInputStream in = fileSys.open(file1)) {
+        in.readFully(0, buf);
+      }
+      assertEquals(1, metrics.getHedgedReadOps());
+      assertEquals(1, metrics.getHedgedReadWins());
+      // let the losing read finish, so that it does not change the samples
+      final ThreadPoolExecutor hedgedPool = dfsClient.getHedgedReadsThreadPool();
+      GenericTestUtils.waitFor(new Supplier<Boolean>() {
+        @Override
+        public Boolean get() {
+          return hedgedPool.getActiveCount() == 0;
+        }
+      }, 100, 10000);
+
+      // make one of the datanodes much slower than the others
+      DatanodeInfo[] locations =
+          DFSTestUtil.getAllBlocks(fileSys, file1).get(0).getLocations();
+      DatanodeInfo slowNode = locations[0];
+      long numSlowSamples = tracker.getNumSamples(slowNode)
+          + DataNodeLatencyTracker.MIN_SAMPLES;
+      for (int i = 0; i < numSlowSamples; i++) {
+        tracker.addLatency(slowNode, 10000000);
+      }
+      for (int i = 1; i < locations.length; i++) {
+        for (int j = 0; j < 2 * numSlowSamples; j++) {
+          tracker.addLatency(locations[i], 1000);
+        }
+      }
+      assertTrue(tracker.isSlow(slowNode));
+      numSlowSamples = tracker.getNumSamples(slowNode);
+
+      // neither preads nor stateful reads go to the slow datanode
+      pReadFile(fileSys, file1);
+      assertEquals(numSlowSamples, tracker.getNumSamples(slowNode));
+      try (FSDataInputStream in = fileSys.open(file1)) {
+        in.read();
+        assertTrue(!slowNode.equals(
+            ((DFSInputStream) in.getWrappedStream()).getCurrentDatanode()));
+      }
+    } finally {
+      Mockito.reset(injector);
+      fileSys.close();
+      cluster.shutdown();
+    }
+  }
+
   private void dfsPreadTest(Configuration conf, boolean disableTransferTo, boolean verifyChecksum)
       throws IOException {
     conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, 4096);
@@ -24,6 +24,7 @@
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
@@ -98,6 +99,7 @@
 import org.apache.hadoop.net.NetworkTopology;
 import org.apache.hadoop.test.GenericTestUtils;
 import org.apache.hadoop.test.MetricsAsserts;
+import org.apache.hadoop.util.LightWeightGSet;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.junit.Assert;
@@ -178,6 +180,34 @@ private void removeNode(DatanodeDescriptor deadNode) {
   }
 
 
+  @Test
+  public void testBlocksMapCapacityPercentage() throws IOException {
+    assertEquals(LightWeightGSet.computeCapacity(
+        DFSConfigKeys.DFS_NAMENODE_BLOCKS_MAP_CAPACITY_PERCENTAGE_DEFAULT,
+        "BlocksMap"), bm.blocksMap.getCapacity());
+
+    Configuration conf = new HdfsConfiguration();
+    conf.setDouble(
+        DFSConfigKeys.DFS_NAMENODE_BLOCKS_MAP_CAPACITY_PERCENTAGE_KEY, 0.25);
+    BlockManager smaller = new BlockManager(fsn, false, conf);
+    assertEquals(LightWeightGSet.computeCapacity(0.25, "BlocksMap"),
+        smaller.blocksMap.getCapacity());
+    assertTrue(smaller.blocksMap.getCapacity() < bm.blocksMap.getCapacity());
+
+    for (double invalid : new double[] {0.0, -1.0, 100.5}) {
+      conf.setDouble(
+          DFSConfigKeys.DFS_NAMENODE_BLOCKS_MAP_CAPACITY_PERCENTAGE_KEY,
+          invalid);
+      try {
+        new BlockManager(fsn, false, conf);
+        fail("Percentage " + invalid + " should be rejected");
+      } catch (IllegalArgumentException e) {
+        GenericTestUtils.assertExceptionContains(
+            DFSConfigKeys.DFS_NAMENODE_BLOCKS_MAP_CAPACITY_PERCENTAGE_KEY, e);
+      }
+    }
+  }
+
   /**
    * Test that replication of under-replicated blocks is detected
    * and basically works
@@ -1233,6 +1263,40 @@ public void testBlockManagerMachinesArray() throws Exception {
     ns.readUnlock();
   }
 
+  @Test(timeout = 60000)
+  public void testParallelInitialBlockReportResolution() throws Exception {
+    final Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_RESOLVE_THREADS_KEY, 3);
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_RESOLVE_SHARD_SIZE_KEY,
+        1);
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, 1024);
+    final MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    try {
+      cluster.waitActive();
+      FileSystem fs = cluster.getFileSystem();
+      final Path file = new Path("/testParallelResolution");
+      DFSTestUtil.createFile(fs, file, 20 * 1024, (short) 1, 0L);
+      final long blocks = cluster.getNamesystem().getBlocksTotal();
+      assertEquals(20, blocks);
+
+      // the initial reports after the restart are resolved in parallel
+      cluster.restartNameNode(true);
+      final FSNamesystem ns = cluster.getNamesystem();
+      assertFalse(ns.isInSafeMode());
+      assertEquals(blocks, ns.getBlocksTotal());
+      LocatedBlocks located = cluster.getNameNodeRpc().getBlockLocations(
+          file.toString(), 0, 20 * 1024);
+      assertEquals(20, located.locatedBlockCount());
+      for (LocatedBlock lb : located.getLocatedBlocks()) {
+        assertEquals(1, lb.getLocations().length);
+      }
+      DFSTestUtil.readFile(fs, file);
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
   @Test
   public void testMetaSaveCorruptBlocks() throws Exception {
     List<DatanodeStorageInfo> origStorages = getStorages(0, 1);
@@ -55,6 +55,7 @@
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeReference;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.LengthInputStream;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.MappedReplica;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.ReplicaInputStreams;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.ReplicaOutputStreams;
 import org.apache.hadoop.hdfs.server.datanode.metrics.DataNodeMetricHelper;
@@ -1071,6 +1072,11 @@ public ReplicaInputStreams getTmpInputStreams(ExtendedBlock b, long blkoff,
     throw new IOException("Not supported");
   }
 
+  @Override // FsDatasetSpi
+  public MappedReplica getMappedReplica(ExtendedBlock b) {
+    return null;
+  }
+
   @Override // FsDatasetSpi
   public synchronized LengthInputStream getMetaDataInputStream(ExtendedBlock b
       ) throws IOException {
@@ -38,6 +38,7 @@
 import org.apache.hadoop.metrics2.MetricsRecordBuilder;
 import static org.apache.hadoop.test.MetricsAsserts.getLongCounter;
 import static org.apache.hadoop.test.MetricsAsserts.getLongCounterWithoutCheck;
+import static org.apache.hadoop.test.MetricsAsserts.getLongGauge;
 import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -73,6 +74,10 @@ public void setup() throws IOException {
     conf = new Configuration();
     conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, blockSize);
     conf.setInt(DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_INTERVAL_SECONDS_KEY, 1);
+    startCluster();
+  }
+
+  private void startCluster() throws IOException {
     cluster = new MiniDFSCluster.Builder(conf).numDataNodes(numDNs).build();
     cluster.waitActive();
     cluster.getFileSystem().getClient().setErasureCodingPolicy("/", null);
@@ -148,6 +153,29 @@ public void testReconstructionBytesPartialGroup3() throws Exception {
         0, getLongMetricWithoutCheck("EcReconstructionRemoteBytesRead"));
   }
 
+  @Test(timeout = 120000)
+  public void testReconstructionThroughputWithBandwidthBudget()
+      throws Exception {
+    cluster.shutdown();
+    // reading the group and writing the block take a few seconds
+    conf.setLong(DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_BANDWIDTHPERSEC_KEY,
+        blockSize * 2);
+    startCluster();
+    doTest("/testEcThrottled", blockGroupSize, 0);
+
+    Assert.assertEquals("EcReconstructionTimeNumOps should be ",
+        1, getLongMetric("EcReconstructionTimeNumOps"));
+    Assert.assertTrue(getLongMetric("EcReconstructionThrottledTimeMillis")
+        > 1000);
+    long bytesPerSec = 0;
+    for (DataNode dn : cluster.getDataNodes()) {
+      MetricsRecordBuilder rb = getMetrics(dn.getMetrics().name());
+      bytesPerSec += getLongGauge("EcReconstructionBytesWrittenPerSec", rb);
+    }
+    Assert.assertTrue("EcReconstructionBytesWrittenPerSec is " + bytesPerSec,
+        bytesPerSec > 0 && bytesPerSec < blockSize);
+  }
+
   private long getLongMetric(String metricName) {
     long metricValue = 0;
     // Add all reconstruction metric value from all data nodes
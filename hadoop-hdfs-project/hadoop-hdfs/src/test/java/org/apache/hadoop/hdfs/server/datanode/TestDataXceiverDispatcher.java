@@ -0,0 +1,221 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import static org.apache.hadoop.test.MetricsAsserts.assertGauge;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Supplier;
+
+/**
+ * Tests serving data transfer connections on a pool of worker threads.
+ */
+public class TestDataXceiverDispatcher {
+  private static final int NUM_WORKERS = 2;
+  private static final int KEEPALIVE_TIMEOUT = 2000;
+
+  private MiniDFSCluster cluster;
+  private FileSystem fs;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_TRANSFER_WORKER_THREADS_KEY,
+        NUM_WORKERS);
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_SOCKET_REUSE_KEEPALIVE_KEY,
+        KEEPALIVE_TIMEOUT);
+    conf.setLong(HdfsClientConfigKeys.DFS_CLIENT_SOCKET_CACHE_EXPIRY_MSEC_KEY,
+        60000L);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(3).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  /**
+   * Many clients writing and reading through pipelines at the same time,
+   * with fewer workers than connections.
+   */
+  @Test(timeout = 120000)
+  public void testConcurrentWritesAndReads() throws Exception {
+    final int numFiles = 16;
+    final int fileLen = 3 * 1024 * 1024 + 17;
+    ExecutorService executor = Executors.newFixedThreadPool(numFiles);
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int i = 0; i < numFiles; i++) {
+        final Path p = new Path("/file" + i);
+        final long seed = i;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            DFSTestUtil.createFile(fs, p, 64 * 1024, fileLen, 1024 * 1024,
+                (short) 3, seed);
+            byte[] expected = DFSTestUtil.readFileBuffer(fs, p);
+            assertEquals(fileLen, expected.length);
+            // positional reads reuse the connections kept alive
+            try (FSDataInputStream in = fs.open(p)) {
+              for (int off = 0; off < fileLen; off += 512 * 1024 + 1) {
+                byte[] buf = new byte[4096];
+                int n = in.read(off, buf, 0, buf.length);
+                for (int j = 0; j < n; j++) {
+                  assertEquals(expected[off + j], buf[j]);
+                }
+              }
+            }
+            assertArrayEquals(expected, DFSTestUtil.readFileBuffer(fs, p));
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> f : futures) {
+        f.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    for (DataNode dn : cluster.getDataNodes()) {
+      DataXceiverDispatcher dispatcher = dn.getXferServer().getDispatcher();
+      assertNotNull(dispatcher);
+      assertEquals(NUM_WORKERS + 1, dispatcher.getNumThreads());
+    }
+  }
+
+  /**
+   * A connection kept alive after a read waits without a thread, and is
+   * closed after the keepalive timeout.
+   */
+  @Test(timeout = 60000)
+  public void testKeepaliveConnectionIsParked() throws Exception {
+    final Path p = new Path("/parked");
+    DFSTestUtil.createFile(fs, p, 4096, (short) 1, 0L);
+    DFSTestUtil.readFile(fs, p);
+    final DataNode reader = findParkedDataNode();
+    assertNotNull("No connection was parked", reader);
+    final DataXceiverDispatcher dispatcher =
+        reader.getXferServer().getDispatcher();
+    // the parked connection still counts as an xceiver
+    assertTrue(reader.getXceiverCount() >= 1);
+    assertGauge("DataNodeParkedXceiversCount", 1,
+        getMetrics(reader.getMetrics().name()));
+
+    GenericTestUtils.waitFor(new Supplier<Boolean>() {
+      @Override
+      public Boolean get() {
+        return dispatcher.getNumParked() == 0;
+      }
+    }, 100, 3 * KEEPALIVE_TIMEOUT);
+    assertEquals(0, reader.getXferServer().getNumPeers());
+    assertGauge("DataNodeParkedXceiversCount", 0,
+        getMetrics(reader.getMetrics().name()));
+
+    // reading again opens a new connection
+    DFSTestUtil.readFile(fs, p);
+  }
+
+  /**
+   * New connections wait in the selector until the client sends something,
+   * so idle clients cannot hold all the workers.
+   */
+  @Test(timeout = 60000)
+  public void testNewConnectionIsParkedUntilReadable() throws Exception {
+    final Path p = new Path("/idle");
+    DFSTestUtil.createFile(fs, p, 4096, (short) 3, 0L);
+    final int numIdle = NUM_WORKERS + 1;
+    final List<Socket> idle = new ArrayList<>();
+    try {
+      for (DataNode dn : cluster.getDataNodes()) {
+        final InetSocketAddress addr = dn.getXferAddress();
+        for (int i = 0; i < numIdle; i++) {
+          idle.add(new Socket(addr.getAddress(), addr.getPort()));
+        }
+      }
+      for (DataNode dn : cluster.getDataNodes()) {
+        final DataXceiverDispatcher dispatcher =
+            dn.getXferServer().getDispatcher();
+        GenericTestUtils.waitFor(new Supplier<Boolean>() {
+          @Override
+          public Boolean get() {
+            return dispatcher.getNumParked() >= numIdle;
+          }
+        }, 10, 10000);
+        assertEquals(0, dispatcher.getNumQueued());
+        assertTrue(dn.getXceiverCount() >= numIdle);
+      }
+      // the workers are free to serve other clients
+      DFSTestUtil.readFile(fs, p);
+    } finally {
+      for (Socket s : idle) {
+        IOUtils.closeSocket(s);
+      }
+    }
+  }
+
+  private DataNode findParkedDataNode() throws Exception {
+    final DataNode[] parked = new DataNode[1];
+    GenericTestUtils.waitFor(new Supplier<Boolean>() {
+      @Override
+      public Boolean get() {
+        for (DataNode dn : cluster.getDataNodes()) {
+          if (dn.getXferServer().getDispatcher().getNumParked() > 0) {
+            parked[0] = dn;
+            return true;
+          }
+        }
+        return false;
+      }
+    }, 10, 10000);
+    return parked[0];
+  }
+}
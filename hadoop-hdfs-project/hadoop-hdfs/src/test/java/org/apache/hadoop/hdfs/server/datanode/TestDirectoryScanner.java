@@ -70,6 +70,7 @@
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.impl.LazyPersistTestCase;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.test.MetricsAsserts;
 import org.apache.hadoop.util.Time;
 import org.junit.Before;
 import org.junit.Test;
@@ -558,6 +559,85 @@ public void runTest(int parallelism) throws Exception {
     }
   }
 
+  /** Set the modification time of the finalized directories back. */
+  private void ageFinalizedDirs() throws IOException {
+    final long time = Time.now() - 10 * 1000;
+    try (FsDatasetSpi.FsVolumeReferences volumes =
+        fds.getFsVolumeReferences()) {
+      for (FsVolumeSpi vol : volumes) {
+        ageDirs(((FsVolumeImpl) vol).getFinalizedDir(bpid), time);
+      }
+    }
+  }
+
+  private static void ageDirs(File dir, long time) throws IOException {
+    for (File f : dir.listFiles()) {
+      if (f.isDirectory()) {
+        ageDirs(f, time);
+      }
+    }
+    if (!dir.setLastModified(time)) {
+      throw new IOException("Failed to set the modification time of " + dir);
+    }
+  }
+
+  @Test (timeout=300000)
+  public void testIncrementalScan() throws Exception {
+    Configuration conf = new HdfsConfiguration(CONF);
+    conf.setBoolean(DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_INDEX_ENABLED_KEY,
+        true);
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_FULL_SCAN_PERIOD_KEY,
+        6);
+    cluster = new MiniDFSCluster.Builder(conf).build();
+    try {
+      cluster.waitActive();
+      bpid = cluster.getNamesystem().getBlockPoolId();
+      fds = DataNodeTestUtils.getFSDataset(cluster.getDataNodes().get(0));
+      client = cluster.getFileSystem().getClient();
+      DataNode dataNode = cluster.getDataNodes().get(0);
+      scanner = new DirectoryScanner(dataNode, fds, conf);
+      scanner.setRetainDiffs(true);
+
+      createFile(GenericTestUtils.getMethodName(), BLOCK_LENGTH * 100, false);
+      long totalBlocks = 100;
+
+      // The first scan lists all directories and indexes them
+      ageFinalizedDirs();
+      scan(totalBlocks, 0, 0, 0, 0, 0);
+      final long listed = scanner.dirsListed.get();
+      assertTrue(listed > 0);
+      assertEquals(0, scanner.dirsReused.get());
+
+      // The next one lists none
+      scan(totalBlocks, 0, 0, 0, 0, 0);
+      assertEquals(listed, scanner.dirsListed.get());
+      assertEquals(listed, scanner.dirsReused.get());
+      assertEquals(listed, MetricsAsserts.getLongCounter(
+          "DirectoryScanDirsReused",
+          MetricsAsserts.getMetrics(dataNode.getMetrics().name())));
+
+      // Deleting a block file changes its directory, which is listed again
+      deleteBlockFile();
+      scan(totalBlocks, 1, 0, 1, 0, 0);
+      assertTrue(scanner.dirsListed.get() > listed);
+      totalBlocks--;
+      ageFinalizedDirs();
+      scan(totalBlocks, 0, 0, 0, 0, 0);
+
+      // Truncating a block file in place is only found by a full scan
+      truncateBlockFile();
+      scan(totalBlocks, 0, 0, 0, 0, 0);
+      scan(totalBlocks, 1, 0, 0, 0, 1);
+      scan(totalBlocks, 0, 0, 0, 0, 0);
+    } finally {
+      if (scanner != null) {
+        scanner.shutdown();
+        scanner = null;
+      }
+      cluster.shutdown();
+    }
+  }
+
   /**
    * Test that the timeslice throttle limits the report compiler thread's
    * execution time correctly.  We test by scanning a large block pool and
@@ -33,6 +33,7 @@
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsDatasetSpi;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.LengthInputStream;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.MappedReplica;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.ReplicaInputStreams;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.ReplicaOutputStreams;
 import org.apache.hadoop.hdfs.server.datanode.metrics.DataNodeMetricHelper;
@@ -137,6 +138,11 @@ public ReplicaInputStreams getTmpInputStreams(ExtendedBlock b, long blkoff,
     return new ReplicaInputStreams(null, null, null, null);
   }
 
+  @Override
+  public MappedReplica getMappedReplica(ExtendedBlock b) {
+    return null;
+  }
+
   @Override
   public ReplicaHandler createTemporary(StorageType t, ExtendedBlock b)
       throws IOException {
@@ -0,0 +1,229 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+import static org.apache.hadoop.test.MetricsAsserts.assertCounter;
+import static org.apache.hadoop.test.MetricsAsserts.assertGauge;
+import static org.apache.hadoop.test.MetricsAsserts.getLongCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.server.datanode.DataNode;
+import org.apache.hadoop.hdfs.server.datanode.DataNodeTestUtils;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Supplier;
+
+/**
+ * Tests the read cache of {@link FsDatasetImpl}.
+ */
+public class TestBlockReadCache {
+  private static final int FILE_LEN = 512 * 1024 + 17;
+  /** Room for two of the files and their checksums. */
+  private static final long CACHE_SIZE = 2 * FILE_LEN + 64 * 1024;
+
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem fs;
+  private DataNode dn;
+  private BlockReadCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setLong(DFSConfigKeys.DFS_DATANODE_READ_CACHE_SIZE_KEY, CACHE_SIZE);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+    dn = cluster.getDataNodes().get(0);
+    cache = ((FsDatasetImpl) DataNodeTestUtils.getFSDataset(dn)).readCache;
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  @Test
+  public void testFrequencySketch() {
+    FrequencySketch sketch = new FrequencySketch(64);
+    for (int i = 0; i < 5; i++) {
+      sketch.increment(42L);
+    }
+    sketch.increment(43L);
+    assertEquals(5, sketch.frequency(42L));
+    assertEquals(1, sketch.frequency(43L));
+    for (int i = 0; i < 100; i++) {
+      sketch.increment(7L);
+    }
+    assertEquals(FrequencySketch.MAX_FREQUENCY, sketch.frequency(7L));
+
+    // enough increments halve the counters
+    for (int i = 0; i < 10 * 64; i++) {
+      sketch.increment(1000L + i);
+    }
+    assertTrue(sketch.frequency(42L) < 5);
+    assertTrue(sketch.frequency(7L) < FrequencySketch.MAX_FREQUENCY);
+  }
+
+  private Path createFile(String name, long seed) throws Exception {
+    Path p = new Path(name);
+    DFSTestUtil.createFile(fs, p, FILE_LEN, (short) 1, seed);
+    return p;
+  }
+
+  private ExtendedBlock getBlock(Path p) throws Exception {
+    // without reading the block
+    return DFSTestUtil.getAllBlocks(fs, p).get(0).getBlock();
+  }
+
+  private boolean isCached(Path p) throws Exception {
+    ExtendedBlock b = getBlock(p);
+    return cache.isCached(b.getBlockPoolId(), b.getBlockId());
+  }
+
+  private void read(Path p, int times) throws Exception {
+    for (int i = 0; i < times; i++) {
+      assertEquals(FILE_LEN, DFSTestUtil.readFileBuffer(fs, p).length);
+    }
+  }
+
+  private void waitForLoads() throws Exception {
+    GenericTestUtils.waitFor(new Supplier<Boolean>() {
+      @Override
+      public Boolean get() {
+        return cache.getNumLoading() == 0;
+      }
+    }, 10, 10000);
+  }
+
+  @Test(timeout = 60000)
+  public void testReadFromCache() throws Exception {
+    Path p = createFile("/hot", 1);
+    byte[] expected = DFSTestUtil.readFileBuffer(fs, p);
+    // the first read is not enough to load the block
+    waitForLoads();
+    assertFalse(isCached(p));
+    read(p, BlockReadCache.MIN_ACCESSES - 1);
+    waitForLoads();
+    assertTrue(isCached(p));
+
+    assertArrayEquals(expected, DFSTestUtil.readFileBuffer(fs, p));
+    // a read of part of the block
+    byte[] buf = new byte[1000];
+    try (FSDataInputStream in = fs.open(p)) {
+      in.readFully(300000, buf);
+    }
+    for (int i = 0; i < buf.length; i++) {
+      assertEquals(expected[300000 + i], buf[i]);
+    }
+
+    MetricsRecordBuilder rb = getMetrics(dn.getMetrics().name());
+    assertCounter("ReadCacheMisses", (long) BlockReadCache.MIN_ACCESSES, rb);
+    assertCounter("ReadCacheHits", 2L, rb);
+    assertCounter("ReadCacheBlocksLoaded", 1L, rb);
+    assertGauge("ReadCacheUsed", cache.getUsed(), rb);
+    assertGauge("ReadCacheHitRatio",
+        2f / (2 + BlockReadCache.MIN_ACCESSES), rb);
+    assertTrue(getLongCounter("ReadCacheBytesRead", rb) > FILE_LEN);
+  }
+
+  @Test(timeout = 60000)
+  public void testAdmission() throws Exception {
+    Path a = createFile("/a", 1);
+    Path b = createFile("/b", 2);
+    Path c = createFile("/c", 3);
+    read(a, BlockReadCache.MIN_ACCESSES);
+    waitForLoads();
+    read(b, BlockReadCache.MIN_ACCESSES);
+    waitForLoads();
+    assertTrue(isCached(a));
+    assertTrue(isCached(b));
+    // a becomes the most recently read block, b the next to evict
+    read(a, 3);
+
+    // the cache is full, and c was not read more often than b
+    read(c, BlockReadCache.MIN_ACCESSES);
+    waitForLoads();
+    assertFalse(isCached(c));
+    assertTrue(isCached(b));
+
+    // once c was read more often, it replaces b
+    read(c, 3);
+    waitForLoads();
+    assertTrue(isCached(c));
+    assertFalse(isCached(b));
+    assertTrue(isCached(a));
+    assertCounter("ReadCacheBlocksEvicted", 1L,
+        getMetrics(dn.getMetrics().name()));
+    assertTrue(cache.getUsed() <= CACHE_SIZE);
+  }
+
+  @Test(timeout = 60000)
+  public void testInvalidation() throws Exception {
+    final Path a = createFile("/a", 1);
+    final Path b = createFile("/b", 2);
+    read(a, BlockReadCache.MIN_ACCESSES);
+    read(b, BlockReadCache.MIN_ACCESSES);
+    waitForLoads();
+    assertTrue(isCached(a));
+    assertTrue(isCached(b));
+
+    // appending drops the old replica
+    byte[] appended = new byte[4096];
+    try (FSDataOutputStream out = fs.append(b)) {
+      out.write(appended);
+    }
+    assertFalse(isCached(b));
+    // the new replica was read often enough to be loaded again
+    assertEquals(FILE_LEN + appended.length,
+        DFSTestUtil.readFileBuffer(fs, b).length);
+    waitForLoads();
+    assertTrue(isCached(b));
+
+    // deleting the file drops its replica
+    final ExtendedBlock block = getBlock(a);
+    fs.delete(a, false);
+    GenericTestUtils.waitFor(new Supplier<Boolean>() {
+      @Override
+      public Boolean get() {
+        return !cache.isCached(block.getBlockPoolId(), block.getBlockId());
+      }
+    }, 100, 30000);
+    assertTrue(isCached(b));
+  }
+}
@@ -0,0 +1,202 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+import static org.apache.hadoop.test.MetricsAsserts.assertCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.server.datanode.DataNodeTestUtils;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.util.AutoCloseableLock;
+import org.junit.Test;
+
+/**
+ * Tests the striped locks of {@link FsDatasetImpl}.
+ */
+public class TestDatasetLockManager {
+  private static final Log LOG =
+      LogFactory.getLog(TestDatasetLockManager.class);
+  private static final String BPID = "BP-TEST";
+
+  private static DatasetLockManager newLockManager(int stripes) {
+    Configuration conf = new Configuration();
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_FSDATASET_LOCK_STRIPES_KEY,
+        stripes);
+    return new DatasetLockManager(conf, LOG);
+  }
+
+  /** Find a volume whose lock is a different stripe than the given one. */
+  private static String otherStripeVolume(DatasetLockManager locks,
+      String storageId) {
+    final int stripe = locks.getStripeIndex(BPID, storageId);
+    for (int i = 0;; i++) {
+      final String other = "DS-" + i;
+      if (locks.getStripeIndex(BPID, other) != stripe) {
+        return other;
+      }
+    }
+  }
+
+  @Test
+  public void testDisabled() {
+    DatasetLockManager locks = newLockManager(0);
+    assertFalse(locks.isStriped());
+    assertEquals(0, locks.getNumStripes());
+    try (AutoCloseableLock l = locks.acquireVolumeLock(BPID, "DS-0")) {
+      assertSame(locks.getDatasetLock(), l);
+    }
+    try (AutoCloseableLock l = locks.acquireSharedLock()) {
+      assertSame(locks.getDatasetLock(), l);
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testStripesDoNotBlockEachOther() throws Exception {
+    final DatasetLockManager locks = newLockManager(16);
+    assertTrue(locks.isStriped());
+    final String vol0 = "DS-volume0";
+    final String vol1 = otherStripeVolume(locks, vol0);
+    assertNotEquals(locks.getStripeIndex(BPID, vol0),
+        locks.getStripeIndex(BPID, vol1));
+
+    final CountDownLatch acquired = new CountDownLatch(1);
+    try (AutoCloseableLock l = locks.acquireVolumeLock(BPID, vol0)) {
+      Thread t = new Thread() {
+        @Override
+        public void run() {
+          try (AutoCloseableLock l1 = locks.acquireVolumeLock(BPID, vol1)) {
+            try (AutoCloseableLock s = locks.acquireSharedLock()) {
+              acquired.countDown();
+            }
+          }
+        }
+      };
+      t.start();
+      // another volume and the shared lock are available while the stripe
+      // of the first volume is held
+      assertTrue(acquired.await(10, TimeUnit.SECONDS));
+      t.join();
+    }
+    assertEquals(1, locks.getStripeAcquisitions(
+        locks.getStripeIndex(BPID, vol0)));
+    assertEquals(1, locks.getStripeAcquisitions(
+        locks.getStripeIndex(BPID, vol1)));
+  }
+
+  @Test(timeout = 30000)
+  public void testExclusiveLockWaitsForStripes() throws Exception {
+    final DatasetLockManager locks = newLockManager(4);
+    final String vol = "DS-volume0";
+    final int stripe = locks.getStripeIndex(BPID, vol);
+    final AtomicBoolean exclusiveHeld = new AtomicBoolean();
+    final CountDownLatch started = new CountDownLatch(1);
+    Thread exclusive = new Thread() {
+      @Override
+      public void run() {
+        started.countDown();
+        try (AutoCloseableLock l = locks.acquireDatasetLock()) {
+          exclusiveHeld.set(true);
+        }
+      }
+    };
+    Thread sameStripe = new Thread() {
+      @Override
+      public void run() {
+        try (AutoCloseableLock l = locks.acquireVolumeLock(BPID, vol)) {
+          LOG.info("Acquired stripe " + stripe);
+        }
+      }
+    };
+
+    try (AutoCloseableLock l = locks.acquireVolumeLock(BPID, vol)) {
+      exclusive.start();
+      started.await();
+      Thread.sleep(200);
+      // adding or removing a volume must wait for the volume operations
+      assertFalse(exclusiveHeld.get());
+      sameStripe.start();
+      Thread.sleep(200);
+    }
+    exclusive.join();
+    sameStripe.join();
+    assertTrue(exclusiveHeld.get());
+    assertEquals(2, locks.getStripeAcquisitions(stripe));
+    // the second holder of the stripe waited for the first one
+    assertTrue(locks.getStripeWaitNanos(stripe) > 0);
+
+    MetricsRecordBuilder rb = getMetrics(new MetricsSource() {
+      @Override
+      public void getMetrics(MetricsCollector collector, boolean all) {
+        locks.getMetrics(collector);
+      }
+    });
+    assertCounter("DatasetLockAcquisitions", 1L, rb);
+    assertCounter("Stripe" + stripe + "LockAcquisitions", 2L, rb);
+    assertCounter("Stripe" + ((stripe + 1) % 4) + "LockAcquisitions", 0L, rb);
+  }
+
+  /**
+   * Write and read files on a DataNode with striped dataset locks.
+   */
+  @Test(timeout = 120000)
+  public void testWriteWithStripedLocks() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_FSDATASET_LOCK_STRIPES_KEY, 8);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(1).storagesPerDatanode(2).build();
+    try {
+      cluster.waitActive();
+      FileSystem fs = cluster.getFileSystem();
+      for (int i = 0; i < 10; i++) {
+        Path p = new Path("/file" + i);
+        DFSTestUtil.createFile(fs, p, 4096 + i, (short) 1, i);
+        assertEquals(4096 + i, DFSTestUtil.readFileBuffer(fs, p).length);
+      }
+      FsDatasetImpl dataset = (FsDatasetImpl) DataNodeTestUtils.getFSDataset(
+          cluster.getDataNodes().get(0));
+      DatasetLockManager locks = dataset.lockManager;
+      long acquisitions = 0;
+      for (int i = 0; i < locks.getNumStripes(); i++) {
+        acquisitions += locks.getStripeAcquisitions(i);
+      }
+      // each block was created and finalized under a stripe
+      assertTrue("acquisitions=" + acquisitions, acquisitions >= 20);
+    } finally {
+      cluster.shutdown();
+    }
+  }
+}
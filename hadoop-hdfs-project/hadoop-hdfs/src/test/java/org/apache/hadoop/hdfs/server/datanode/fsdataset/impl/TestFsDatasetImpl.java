@@ -46,6 +46,7 @@
 import org.apache.hadoop.hdfs.server.datanode.DataNodeTestUtils;
 import org.apache.hadoop.hdfs.server.datanode.DataStorage;
 import org.apache.hadoop.hdfs.server.datanode.FinalizedReplica;
+import org.apache.hadoop.hdfs.server.datanode.ReplicaAlreadyExistsException;
 import org.apache.hadoop.hdfs.server.datanode.ReplicaHandler;
 import org.apache.hadoop.hdfs.server.datanode.ReplicaInfo;
 import org.apache.hadoop.hdfs.server.datanode.ShortCircuitRegistry;
@@ -72,6 +73,8 @@
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -251,6 +254,57 @@ public void testAddVolumeWithSameStorageUuid() throws IOException {
     }
   }
 
+  @Test(timeout = 60000)
+  public void testConcurrentCreateRbw() throws Exception {
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_FSDATASET_LOCK_STRIPES_KEY, 4);
+    createStorageDirs(storage, conf, NUM_INIT_VOLUMES);
+    dataset = new FsDatasetImpl(datanode, storage, conf);
+    final String bpid = BLOCK_POOL_IDS[0];
+    dataset.addBlockPool(bpid, conf);
+
+    // two writers race to create each block, on different volumes as the
+    // volumes are chosen round-robin
+    final int numBlocks = 200;
+    final AtomicInteger created = new AtomicInteger();
+    for (int i = 0; i < numBlocks; i++) {
+      final ExtendedBlock eb = new ExtendedBlock(bpid, i, 0, 1000);
+      final CyclicBarrier barrier = new CyclicBarrier(2);
+      Thread[] writers = new Thread[2];
+      for (int j = 0; j < writers.length; j++) {
+        writers[j] = new Thread() {
+          @Override
+          public void run() {
+            try {
+              barrier.await();
+              try (ReplicaHandler replica =
+                  dataset.createRbw(StorageType.DEFAULT, eb, false)) {
+                created.incrementAndGet();
+              }
+            } catch (ReplicaAlreadyExistsException e) {
+              // lost the race
+            } catch (Exception e) {
+              LOG.error("Unexpected exception creating " + eb, e);
+            }
+          }
+        };
+        writers[j].start();
+      }
+      for (Thread writer : writers) {
+        writer.join();
+      }
+    }
+    assertEquals(numBlocks, created.get());
+
+    // the writers that lost must not leave their block counted
+    long counted = 0;
+    try (FsVolumeReferences volumes = dataset.getFsVolumeReferences()) {
+      for (FsVolumeSpi vol : volumes) {
+        counted += ((FsVolumeImpl) vol).getNumBlocks();
+      }
+    }
+    assertEquals(numBlocks, counted);
+  }
+
   @Test(timeout = 30000)
   public void testRemoveVolumes() throws IOException {
     // Feed FsDataset with block metadata.
@@ -19,10 +19,12 @@
 
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.server.datanode.FinalizedReplica;
+import org.apache.hadoop.hdfs.server.datanode.ReplicaInfo;
 import org.apache.hadoop.util.AutoCloseableLock;
 import org.junit.Before;
 import org.junit.Test;
@@ -80,6 +82,23 @@ public void testAdd() {
     } catch (IllegalArgumentException expected) { }
   }
   
+  @Test
+  public void testAddIfAbsent() {
+    // Test 1: an existing replica is returned and not replaced
+    ReplicaInfo existing = map.get(bpid, block.getBlockId());
+    assertSame(existing,
+        map.addIfAbsent(bpid, new FinalizedReplica(block, null, null)));
+    assertSame(existing, map.get(bpid, block.getBlockId()));
+
+    // Test 2: a new replica is added, also to a new block pool
+    Block b = new Block(block.getBlockId() + 1, 1234, 1234);
+    ReplicaInfo added = new FinalizedReplica(b, null, null);
+    assertNull(map.addIfAbsent(bpid, added));
+    assertSame(added, map.get(bpid, b));
+    assertNull(map.addIfAbsent("BP-OTHER", added));
+    assertSame(added, map.get("BP-OTHER", b));
+  }
+
   @Test
   public void testRemove() {
     // Test 1: null argument throws invalid argument exception
@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.MiniDFSCluster.DataNodeProperties;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.protocol.BlockListAsLongs;
+import org.apache.hadoop.hdfs.server.datanode.DataNodeTestUtils;
+import org.apache.hadoop.hdfs.server.datanode.DatanodeUtil;
+import org.apache.hadoop.hdfs.server.datanode.ReplicaInfo;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsDatasetSpi;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.test.GenericTestUtils.LogCapturer;
+import org.apache.hadoop.util.AutoCloseableLock;
+import org.apache.hadoop.util.Time;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests loading the replica map of a DataNode from a replica snapshot.
+ */
+public class TestReplicaMapSnapshot {
+  private static final Log LOG =
+      LogFactory.getLog(TestReplicaMapSnapshot.class);
+  private static final int BLOCK_SIZE = 1024;
+  /**
+   * The number of blocks in the first leaf directory of the finalized dir,
+   * since the block IDs start after 2^30.
+   */
+  private static final int FIRST_DIR_BLOCKS = 255;
+
+  private MiniDFSCluster cluster;
+  private FileSystem fs;
+  private String bpid;
+
+  @Before
+  public void setUp() throws IOException {
+    Configuration conf = new HdfsConfiguration();
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, BLOCK_SIZE);
+    conf.setBoolean(DFSConfigKeys.DFS_DATANODE_REPLICA_SNAPSHOT_ENABLED_KEY,
+        true);
+    conf.setLong(DFSConfigKeys.DFS_DATANODE_REPLICA_SNAPSHOT_INTERVAL_KEY, 0);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1)
+        .storagesPerDatanode(1).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+    bpid = cluster.getNamesystem().getBlockPoolId();
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  private FsDatasetImpl getDataset() {
+    return (FsDatasetImpl) DataNodeTestUtils.getFSDataset(
+        cluster.getDataNodes().get(0));
+  }
+
+  private FsVolumeImpl getVolume() throws IOException {
+    try (FsDatasetSpi.FsVolumeReferences volumes =
+        getDataset().getFsVolumeReferences()) {
+      return (FsVolumeImpl) volumes.get(0);
+    }
+  }
+
+  private File getCurrentDir() throws IOException {
+    return getVolume().getFinalizedDir(bpid).getParentFile();
+  }
+
+  /** Set the modification time of the finalized directories back. */
+  private static void ageDirs(File dir) throws IOException {
+    final long time = Time.now() - 10 * 1000;
+    for (File f : dir.listFiles()) {
+      if (f.isDirectory()) {
+        ageDirs(f);
+      }
+    }
+    if (!dir.setLastModified(time)) {
+      throw new IOException("Failed to set the modification time of " + dir);
+    }
+  }
+
+  /**
+   * Stop the DataNode, replace the snapshot it wrote on shutdown, and
+   * restart it without the replica cache.
+   */
+  private void restartWithSnapshot(File snapshot) throws IOException {
+    final File currentDir = getCurrentDir();
+    DataNodeProperties dnProps = cluster.stopDataNode(0);
+    FileUtils.deleteQuietly(new File(currentDir, "replicas"));
+    FileUtils.copyFile(snapshot, new File(currentDir, "replicas.snapshot"));
+    cluster.restartDataNode(dnProps, true);
+    cluster.waitActive();
+  }
+
+  @Test(timeout = 120000)
+  public void testRestartFromStaleSnapshot() throws Exception {
+    // the blocks of the first file fill a directory and start the next
+    final Path p1 = new Path("/p1");
+    DFSTestUtil.createFile(fs, p1, BLOCK_SIZE * (FIRST_DIR_BLOCKS + 10),
+        (short) 1, 0L);
+    ageDirs(getVolume().getFinalizedDir(bpid));
+    getDataset().saveReplicaSnapshots();
+    final File saved = new File(GenericTestUtils.getTestDir(),
+        "testRestartFromStaleSnapshot.snapshot");
+    FileUtils.copyFile(new File(getCurrentDir(), "replicas.snapshot"), saved);
+
+    // blocks written after the snapshot go to the second directory
+    final Path p2 = new Path("/p2");
+    DFSTestUtil.createFile(fs, p2, BLOCK_SIZE * 5, (short) 1, 0L);
+
+    LogCapturer logs = LogCapturer.captureLogs(BlockPoolSlice.LOG);
+    try {
+      restartWithSnapshot(saved);
+    } finally {
+      logs.stopCapturing();
+    }
+    assertTrue(logs.getOutput(), logs.getOutput().contains(
+        "Loaded " + FIRST_DIR_BLOCKS + " replicas from"));
+    assertTrue(logs.getOutput(),
+        logs.getOutput().contains("listed 1 changed directories"));
+    assertEquals(FIRST_DIR_BLOCKS + 15,
+        getDataset().getFinalizedBlocks(bpid).size());
+    DFSTestUtil.readFile(fs, p1);
+    DFSTestUtil.readFile(fs, p2);
+  }
+
+  @Test(timeout = 120000)
+  public void testCorruptSnapshot() throws Exception {
+    final Path p = new Path("/p");
+    DFSTestUtil.createFile(fs, p, BLOCK_SIZE * 3, (short) 1, 0L);
+    getDataset().saveReplicaSnapshots();
+    final File saved = new File(GenericTestUtils.getTestDir(),
+        "testCorruptSnapshot.snapshot");
+    FileUtils.copyFile(new File(getCurrentDir(), "replicas.snapshot"), saved);
+    try (RandomAccessFile raf = new RandomAccessFile(saved, "rw")) {
+      // flip a byte of the first record
+      raf.seek(20);
+      final int b = raf.read();
+      raf.seek(20);
+      raf.write(b ^ 0xFF);
+    }
+
+    LogCapturer logs = LogCapturer.captureLogs(BlockPoolSlice.LOG);
+    try {
+      restartWithSnapshot(saved);
+    } finally {
+      logs.stopCapturing();
+    }
+    assertTrue(logs.getOutput(),
+        logs.getOutput().contains("checksum mismatch"));
+    assertEquals(3, getDataset().getFinalizedBlocks(bpid).size());
+    DFSTestUtil.readFile(fs, p);
+  }
+
+  /**
+   * Compare the time to load the replicas of a volume by listing the
+   * finalized directories with the time to load them from a snapshot.
+   */
+  @Test(timeout = 300000)
+  public void testStartupTime() throws Exception {
+    final int numReplicas = 20000;
+    final FsVolumeImpl volume = getVolume();
+    final File finalizedDir = volume.getFinalizedDir(bpid);
+    final long genStamp = 1001;
+    for (int i = 0; i < numReplicas; i++) {
+      // spread over all directories, away from the IDs of real blocks
+      final long blockId = (1L << 40) + i * 64L;
+      final File dir = DatanodeUtil.idToBlockDir(finalizedDir, blockId);
+      if (!dir.isDirectory() && !dir.mkdirs()) {
+        throw new IOException("Failed to create " + dir);
+      }
+      final Block b = new Block(blockId, 0, genStamp);
+      FileUtils.touch(new File(dir, b.getBlockName()));
+      FileUtils.touch(new File(dir, DatanodeUtil.getMetaName(
+          b.getBlockName(), genStamp)));
+    }
+    ageDirs(finalizedDir);
+
+    final FsDatasetImpl dataset = getDataset();
+    long start = Time.monotonicNow();
+    final ReplicaMap scanned = new ReplicaMap(new AutoCloseableLock());
+    scanned.initBlockPool(bpid);
+    volume.getVolumeMap(bpid, scanned, dataset.ramDiskReplicaTracker);
+    final long scanMs = Time.monotonicNow() - start;
+
+    final BlockListAsLongs.Builder builder = BlockListAsLongs.builder();
+    for (ReplicaInfo r : scanned.replicas(bpid)) {
+      builder.add(r);
+    }
+    volume.saveReplicaSnapshot(bpid, Time.now(), builder.build());
+
+    start = Time.monotonicNow();
+    final ReplicaMap loaded = new ReplicaMap(new AutoCloseableLock());
+    loaded.initBlockPool(bpid);
+    volume.getVolumeMap(bpid, loaded, dataset.ramDiskReplicaTracker);
+    final long loadMs = Time.monotonicNow() - start;
+
+    LOG.info("Loaded " + scanned.size(bpid) + " replicas in " + scanMs
+        + " ms by listing the directories, and in " + loadMs
+        + " ms from the snapshot");
+    assertEquals(numReplicas, scanned.size(bpid));
+    assertEquals(numReplicas, loaded.size(bpid));
+    for (ReplicaInfo r : scanned.replicas(bpid)) {
+      final ReplicaInfo l = loaded.get(bpid, r.getBlockId());
+      assertEquals(r.getGenerationStamp(), l.getGenerationStamp());
+      assertEquals(r.getNumBytes(), l.getNumBytes());
+      assertEquals(r.getBlockURI(), l.getBlockURI());
+    }
+  }
+}
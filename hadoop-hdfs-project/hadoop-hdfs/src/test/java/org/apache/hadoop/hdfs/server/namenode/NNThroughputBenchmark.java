@@ -1056,10 +1056,13 @@ class BlockReportStats extends OperationStatsBase {
     static final String OP_BLOCK_REPORT_NAME = "blockReport";
     static final String OP_BLOCK_REPORT_USAGE = 
       "-op blockReport [-datanodes T] [-reports N] " +
-      "[-blocksPerReport B] [-blocksPerFile F]";
+      "[-blocksPerReport B] [-blocksPerFile F] [-initialReports]";
 
     private int blocksPerReport;
     private int blocksPerFile;
+    // send every report for a new storage, so that the name-node processes
+    // it as the initial report of that storage, as after a restart
+    private boolean initialReports;
     private TinyDatanode[] datanodes; // array of data-nodes sorted by name
 
     BlockReportStats(List<String> args) {
@@ -1103,6 +1106,8 @@ void parseArguments(List<String> args) {
         } else if(args.get(i).equals("-blocksPerFile")) {
           if(i+1 == args.size())  printUsage();
           blocksPerFile = Integer.parseInt(args.get(++i));
+        } else if(args.get(i).equals("-initialReports")) {
+          initialReports = true;
         } else if(!ignoreUnrelatedOptions)
           printUsage();
       }
@@ -1209,6 +1214,9 @@ String getExecutionArgument(int daemonId) {
     long executeOp(int daemonId, int inputIdx, String ignore) throws IOException {
       assert daemonId < numThreads : "Wrong daemonId.";
       TinyDatanode dn = datanodes[daemonId];
+      if (initialReports) {
+        dn.storage = new DatanodeStorage(DatanodeStorage.generateUuid());
+      }
       long start = Time.now();
       StorageBlockReport[] report = { new StorageBlockReport(
           dn.storage, dn.getBlockReportList()) };
@@ -1232,6 +1240,7 @@ void printResults() {
       LOG.info("datanodes = " + numThreads + " " + blockDistribution);
       LOG.info("blocksPerReport = " + blocksPerReport);
       LOG.info("blocksPerFile = " + blocksPerFile);
+      LOG.info("initialReports = " + initialReports);
       printStats();
     }
   }   // end BlockReportStats
@@ -0,0 +1,261 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumSet;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.MiniDFSNNTopology;
+import org.apache.hadoop.hdfs.client.HdfsDataOutputStream;
+import org.apache.hadoop.hdfs.client.HdfsDataOutputStream.SyncFlag;
+import org.apache.hadoop.hdfs.server.namenode.ha.HATestUtil;
+import org.apache.hadoop.util.FakeTimer;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ContentSummaryCache}.
+ */
+public class TestContentSummaryCache {
+
+  private static ContentSummary summary(long length) {
+    return new ContentSummary.Builder().length(length).fileCount(1)
+        .directoryCount(1).spaceConsumed(length).build();
+  }
+
+  @Test
+  public void testInvalidation() {
+    ContentSummaryCache cache =
+        new ContentSummaryCache(2, 0, 0, new FakeTimer());
+    assertNull(cache.get(1));
+    ContentSummaryCache.Entry token = cache.begin(1);
+    assertTrue(cache.put(1, summary(10), token));
+    assertEquals(summary(10), cache.get(1));
+
+    cache.invalidate(1);
+    assertNull(cache.get(1));
+
+    // an invalidation while computing discards the result
+    token = cache.begin(1);
+    cache.invalidate(1);
+    assertFalse(cache.put(1, summary(10), token));
+    assertNull(cache.get(1));
+
+    assertEquals(1, cache.getHits());
+    assertEquals(3, cache.getMisses());
+  }
+
+  @Test
+  public void testInvalidateAll() {
+    FakeTimer timer = new FakeTimer();
+    ContentSummaryCache cache = new ContentSummaryCache(4, 1000, 0, timer);
+    cache.put(1, summary(10), cache.begin(1));
+    cache.put(2, summary(20), cache.begin(2));
+    ContentSummaryCache.Entry token = cache.begin(3);
+    cache.invalidateAll();
+    // pending computations are discarded, summaries are stale
+    assertFalse(cache.put(3, summary(30), token));
+    assertEquals(summary(10), cache.get(1));
+    timer.advance(1001);
+    assertNull(cache.get(1));
+    assertNull(cache.get(2));
+  }
+
+  @Test
+  public void testEviction() {
+    ContentSummaryCache cache =
+        new ContentSummaryCache(2, 0, 0, new FakeTimer());
+    for (long id = 1; id <= 3; id++) {
+      cache.put(id, summary(id), cache.begin(id));
+    }
+    assertEquals(2, cache.size());
+    assertNull(cache.get(1));
+    assertEquals(summary(3), cache.get(3));
+  }
+
+  @Test
+  public void testMaxStaleness() {
+    FakeTimer timer = new FakeTimer();
+    ContentSummaryCache cache = new ContentSummaryCache(2, 1000, 0, timer);
+    cache.put(1, summary(10), cache.begin(1));
+    cache.invalidate(1);
+    timer.advance(1000);
+    assertEquals(summary(10), cache.get(1));
+    timer.advance(1);
+    assertNull(cache.get(1));
+  }
+
+  @Test
+  public void testVerify() {
+    ContentSummaryCache cache =
+        new ContentSummaryCache(2, 0, 2, new FakeTimer());
+    cache.put(1, summary(10), cache.begin(1));
+    ContentSummary cached = cache.get(1);
+    assertFalse(cache.shouldVerify(1));
+    cached = cache.get(1);
+    assertTrue(cache.shouldVerify(1));
+
+    assertTrue(cache.verify(1, "/a", cached, summary(10), cache.begin(1)));
+    assertFalse(cache.verify(1, "/a", cached, summary(20), cache.begin(1)));
+    assertEquals(1, cache.getMismatches());
+    assertEquals(summary(20), cache.get(1));
+  }
+
+  @Test(timeout = 60000)
+  public void testNamespaceChangesInvalidate() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_SIZE_KEY, 16);
+    conf.setInt(DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_VERIFY_INTERVAL_KEY,
+        1);
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    try {
+      cluster.waitActive();
+      FSNamesystem fsn = cluster.getNamesystem();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      Path dir = new Path("/a/b");
+      fs.mkdirs(dir);
+      DFSTestUtil.createFile(fs, new Path(dir, "f1"), 1024, (short) 1, 0);
+
+      ContentSummary cs = fs.getContentSummary(new Path("/a"));
+      assertEquals(1024, cs.getLength());
+      long hits = fsn.getContentSummaryCacheHits();
+      assertEquals(cs, fs.getContentSummary(new Path("/a")));
+      assertEquals(hits + 1, fsn.getContentSummaryCacheHits());
+
+      // each change below /a must be reflected
+      DFSTestUtil.createFile(fs, new Path(dir, "f2"), 512, (short) 1, 0);
+      assertEquals(1536, fs.getContentSummary(new Path("/a")).getLength());
+      try (FSDataOutputStream out = fs.append(new Path(dir, "f2"))) {
+        out.write(new byte[100]);
+        ((HdfsDataOutputStream) out).hsync(
+            EnumSet.of(SyncFlag.UPDATE_LENGTH));
+        assertEquals(1636, fs.getContentSummary(new Path("/a")).getLength());
+      }
+      assertEquals(1636, fs.getContentSummary(new Path("/a")).getLength());
+      fs.setReplication(new Path(dir, "f1"), (short) 2);
+      assertEquals(1636 + 1024,
+          fs.getContentSummary(new Path("/a")).getSpaceConsumed());
+      fs.setQuota(dir, 100, Long.MAX_VALUE);
+      assertEquals(100, fs.getContentSummary(dir).getQuota());
+      fs.mkdirs(new Path("/c"));
+      fs.rename(new Path(dir, "f1"), new Path("/c/f1"));
+      assertEquals(612, fs.getContentSummary(new Path("/a")).getLength());
+      fs.delete(new Path(dir, "f2"), false);
+      assertEquals(0, fs.getContentSummary(new Path("/a")).getLength());
+      assertEquals(1024, fs.getContentSummary(new Path("/")).getLength());
+
+      assertEquals(0, fsn.getContentSummaryCacheMismatches());
+      assertTrue(fsn.getContentSummaryCacheMisses() > 0);
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testSnapshotChangesInvalidate() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_SIZE_KEY, 16);
+    conf.setInt(DFSConfigKeys.DFS_HA_TAILEDITS_PERIOD_KEY, 1);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .nnTopology(MiniDFSNNTopology.simpleHATopology())
+        .numDataNodes(1).build();
+    try {
+      cluster.waitActive();
+      cluster.transitionToActive(0);
+      NameNode active = cluster.getNameNode(0);
+      NameNode standby = cluster.getNameNode(1);
+      FSDirectory activeDir = active.getNamesystem().getFSDirectory();
+      FSDirectory standbyDir = standby.getNamesystem().getFSDirectory();
+      DistributedFileSystem fs = HATestUtil.configureFailoverFs(cluster, conf);
+      Path root = new Path("/snap");
+      Path dir = new Path(root, "dir");
+      fs.mkdirs(dir);
+      DFSTestUtil.createFile(fs, new Path(dir, "f1"), 1024, (short) 1, 0);
+      fs.allowSnapshot(root);
+      HATestUtil.waitForStandbyToCatchUp(active, standby);
+      checkCachedSummaries(activeDir, root, dir);
+      checkCachedSummaries(standbyDir, root, dir);
+
+      fs.createSnapshot(root, "s1");
+      // f1 is now only kept by the snapshot
+      fs.delete(new Path(dir, "f1"), false);
+      HATestUtil.waitForStandbyToCatchUp(active, standby);
+      checkCachedSummaries(activeDir, root, dir);
+      checkCachedSummaries(standbyDir, root, dir);
+
+      fs.renameSnapshot(root, "s1", "s2");
+      HATestUtil.waitForStandbyToCatchUp(active, standby);
+      checkCachedSummaries(activeDir, root, dir);
+      checkCachedSummaries(standbyDir, root, dir);
+
+      // reclaims f1, which changes the summary of dir below the root
+      fs.deleteSnapshot(root, "s2");
+      HATestUtil.waitForStandbyToCatchUp(active, standby);
+      checkCachedSummaries(activeDir, root, dir);
+      checkCachedSummaries(standbyDir, root, dir);
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  /**
+   * Check that the cached summaries of the directories are the summaries
+   * computed without the cache, leaving the summaries cached.
+   */
+  private static void checkCachedSummaries(FSDirectory fsd, Path... dirs)
+      throws Exception {
+    ContentSummary[] cached = new ContentSummary[dirs.length];
+    for (int i = 0; i < dirs.length; i++) {
+      cached[i] = FSDirStatAndListingOp.getContentSummary(fsd,
+          dirs[i].toString());
+    }
+    fsd.getContentSummaryCache().clear();
+    for (int i = 0; i < dirs.length; i++) {
+      assertEquals(dirs[i].toString(), FSDirStatAndListingOp
+          .getContentSummary(fsd, dirs[i].toString()), cached[i]);
+    }
+  }
+
+  @Test
+  public void testDisabledByDefault() throws Exception {
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(
+        new HdfsConfiguration()).numDataNodes(0).build();
+    try {
+      cluster.waitActive();
+      FSNamesystem fsn = cluster.getNamesystem();
+      assertNull(fsn.getFSDirectory().getContentSummaryCache());
+      cluster.getFileSystem().getContentSummary(new Path("/"));
+      assertEquals(0, fsn.getContentSummaryCacheMisses());
+    } finally {
+      cluster.shutdown();
+    }
+  }
+}
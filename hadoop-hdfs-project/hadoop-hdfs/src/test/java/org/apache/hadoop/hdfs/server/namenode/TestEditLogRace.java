@@ -21,6 +21,8 @@
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doAnswer;
+import static org.apache.hadoop.test.MetricsAsserts.getLongCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
 import static org.mockito.Mockito.spy;
 
 import java.io.File;
@@ -50,9 +52,11 @@
 import org.apache.hadoop.hdfs.server.namenode.NNStorage.NameNodeDirType;
 import org.apache.hadoop.hdfs.server.protocol.NamenodeProtocols;
 import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
 import org.apache.hadoop.test.GenericTestUtils;
 import org.apache.hadoop.util.Time;
 import org.apache.log4j.Level;
+import org.junit.Assume;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -60,6 +64,8 @@
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import com.google.common.base.Supplier;
+
 /**
  * This class tests various synchronization bugs in FSEditLog rolling
  * and namespace saving.
@@ -357,6 +363,94 @@ public void testSaveNamespace() throws Exception {
     }
   }
  
+  /**
+   * Tests that the async edit log bounds the number of edits per sync.
+   */
+  @Test
+  public void testAsyncEditLogMaxBatchEdits() throws Exception {
+    Assume.assumeTrue(useAsyncEditLog);
+    Configuration conf = getConf();
+    conf.setInt(
+        DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_LOGGING_PENDING_QUEUE_SIZE, 16);
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_LOGGING_MAX_BATCH_EDITS,
+        2);
+    MiniDFSCluster cluster = null;
+    try {
+      cluster = new MiniDFSCluster.Builder(conf)
+          .numDataNodes(NUM_DATA_NODES).build();
+      cluster.waitActive();
+      runTransactionWorkers(cluster, 100);
+
+      MetricsRecordBuilder rb = getMetrics("NameNodeActivity");
+      long syncs = getLongCounter("SyncsNumOps", rb);
+      long batched = getLongCounter("TransactionsBatchedInSync", rb);
+      // at most one other edit joins the edit that triggered each sync.
+      assertTrue("Batched " + batched + " edits in " + syncs + " syncs",
+          batched <= syncs);
+
+      cluster.restartNameNode();
+      assertTrue(cluster.getFileSystem().exists(new Path("/")));
+    } finally {
+      stopTransactionWorkers();
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Tests that the async edit log stays consistent when batches are cut
+   * short by the batch wait bound.
+   */
+  @Test
+  public void testAsyncEditLogMaxBatchWait() throws Exception {
+    Assume.assumeTrue(useAsyncEditLog);
+    Configuration conf = getConf();
+    conf.setTimeDuration(
+        DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_LOGGING_MAX_BATCH_WAIT_MS, 1,
+        TimeUnit.MILLISECONDS);
+    MiniDFSCluster cluster = null;
+    try {
+      cluster = new MiniDFSCluster.Builder(conf)
+          .numDataNodes(NUM_DATA_NODES).build();
+      cluster.waitActive();
+      runTransactionWorkers(cluster, 100);
+
+      cluster.restartNameNode();
+      assertTrue(cluster.getFileSystem().exists(new Path("/")));
+    } finally {
+      stopTransactionWorkers();
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Run the transaction workers until the NameNode has performed the given
+   * number of additional syncs.
+   */
+  private void runTransactionWorkers(MiniDFSCluster cluster, int syncs)
+      throws Exception {
+    final long target = getLongCounter("SyncsNumOps",
+        getMetrics("NameNodeActivity")) + syncs;
+    final AtomicReference<Throwable> caughtErr =
+        new AtomicReference<Throwable>();
+    startTransactionWorkers(cluster, caughtErr);
+    try {
+      GenericTestUtils.waitFor(new Supplier<Boolean>() {
+        @Override
+        public Boolean get() {
+          return caughtErr.get() != null || getLongCounter("SyncsNumOps",
+              getMetrics("NameNodeActivity")) >= target;
+        }
+      }, 100, 60000);
+    } finally {
+      stopTransactionWorkers();
+    }
+    assertNull(caughtErr.get());
+  }
+
   private Configuration getConf() {
     Configuration conf = new HdfsConfiguration();
     conf.setBoolean(DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_LOGGING,
@@ -35,6 +35,8 @@
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.XAttr;
 import org.apache.hadoop.fs.XAttrSetFlag;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.permission.PermissionStatus;
 import org.apache.hadoop.hdfs.protocol.NSQuotaExceededException;
 import org.apache.hadoop.hdfs.server.namenode.FSDirectory.DirOp;
 import org.apache.hadoop.security.AccessControlException;
@@ -43,6 +45,7 @@
 import org.apache.hadoop.hdfs.DistributedFileSystem;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
 import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.util.LightWeightGSet;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -116,6 +119,30 @@ public void tearDown() throws Exception {
     }
   }
 
+  @Test
+  public void testINodeMapCapacityPercentage() {
+    assertEquals(LightWeightGSet.computeCapacity(
+        DFSConfigKeys.DFS_NAMENODE_INODE_MAP_CAPACITY_PERCENTAGE_DEFAULT,
+        "INodeMap"), fsdir.getINodeMap().getCapacity());
+
+    // a root of its own, since a map links the inodes it holds
+    final INodeDirectory root = new INodeDirectory(INodeId.ROOT_INODE_ID,
+        INodeDirectory.ROOT_NAME, new PermissionStatus("user", "group",
+        FsPermission.getDefault()), 0L);
+    assertEquals(LightWeightGSet.computeCapacity(0.25, "INodeMap"),
+        INodeMap.newInstance(root, 0.25).getCapacity());
+
+    for (double invalid : new double[] {0.0, -1.0, 100.5}) {
+      try {
+        INodeMap.newInstance(root, invalid);
+        fail("Percentage " + invalid + " should be rejected");
+      } catch (IllegalArgumentException e) {
+        GenericTestUtils.assertExceptionContains(
+            DFSConfigKeys.DFS_NAMENODE_INODE_MAP_CAPACITY_PERCENTAGE_KEY, e);
+      }
+    }
+  }
+
   /** Dump the tree, make some changes, and then dump the tree again. */
   @Test
   public void testDumpTree() throws Exception {
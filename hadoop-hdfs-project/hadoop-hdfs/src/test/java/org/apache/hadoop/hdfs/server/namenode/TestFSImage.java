@@ -29,7 +29,10 @@
 import java.io.ByteArrayOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
@@ -46,6 +49,9 @@
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.AclEntryScope;
+import org.apache.hadoop.fs.permission.AclEntryType;
+import org.apache.hadoop.fs.permission.FsAction;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.DFSOutputStream;
 import org.apache.hadoop.hdfs.DFSTestUtil;
@@ -64,6 +70,8 @@
 import org.apache.hadoop.util.Time;
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
+
 import static org.junit.Assert.assertArrayEquals;
 
 public class TestFSImage {
@@ -646,4 +654,152 @@ public void testHasNonEcBlockUsingStripedIDForLoadSnapshot()
       }
     }
   }
+
+  @Test(timeout=60000)
+  public void testParallelLoad() throws Exception {
+    checkLoadOfSubSectionedImage(true);
+  }
+
+  /**
+   * An image written with sub-sections must still load serially when
+   * sub-section handling is disabled, as happens after the feature is
+   * turned off again.
+   */
+  @Test(timeout=60000)
+  public void testSerialLoadOfSubSectionedImage() throws Exception {
+    checkLoadOfSubSectionedImage(false);
+  }
+
+  private void checkLoadOfSubSectionedImage(boolean parallelLoad)
+      throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_KEY, true);
+    conf.setInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_INODE_THRESHOLD_KEY, 1);
+    conf.setInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_TARGET_SECTIONS_KEY, 4);
+    conf.setInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_KEY, 3);
+    MiniDFSCluster cluster = null;
+    try {
+      cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      for (int i = 0; i < 10; i++) {
+        Path dir = new Path("/dir" + i);
+        for (int j = 0; j < 5; j++) {
+          DFSTestUtil.createFile(fs, new Path(dir, "file" + j), 1024,
+              (short) 1, 0);
+        }
+      }
+      fs.setSafeMode(SafeModeAction.SAFEMODE_ENTER);
+      fs.saveNamespace();
+      fs.setSafeMode(SafeModeAction.SAFEMODE_LEAVE);
+
+      File image = FSImageTestUtil.findLatestImageFile(FSImageTestUtil
+          .getFSImage(cluster.getNameNode()).getStorage().getStorageDir(0));
+      RandomAccessFile raFile = new RandomAccessFile(image, "r");
+      FsImageProto.FileSummary summary;
+      try {
+        summary = FSImageUtil.loadSummary(raFile);
+      } finally {
+        raFile.close();
+      }
+      int inodeSubSections = 0;
+      int dirSubSections = 0;
+      for (FsImageProto.FileSummary.Section s : summary.getSectionsList()) {
+        FSImageFormatProtobuf.SectionName name =
+            FSImageFormatProtobuf.SectionName.fromString(s.getName());
+        if (name == FSImageFormatProtobuf.SectionName.INODE_SUB) {
+          inodeSubSections++;
+        } else if (name == FSImageFormatProtobuf.SectionName.INODE_DIR_SUB) {
+          dirSubSections++;
+        }
+      }
+      assertTrue(inodeSubSections > 1);
+      assertTrue(dirSubSections > 1);
+
+      long inodes = cluster.getNamesystem().getFSDirectory().getINodeMap()
+          .size();
+      long blocks = cluster.getNamesystem().getBlocksTotal();
+      cluster.getConfiguration(0).setBoolean(
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_KEY, parallelLoad);
+      cluster.restartNameNode();
+      cluster.waitActive();
+      fs = cluster.getFileSystem();
+      assertEquals(inodes, cluster.getNamesystem().getFSDirectory()
+          .getINodeMap().size());
+      assertEquals(blocks, cluster.getNamesystem().getBlocksTotal());
+      for (int i = 0; i < 10; i++) {
+        assertEquals(5, fs.listStatus(new Path("/dir" + i)).length);
+        assertEquals(1024,
+            fs.getFileStatus(new Path("/dir" + i + "/file4")).getLen());
+      }
+    } finally {
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
+
+  private static Map<AclFeature, Integer> getAclFeatureRefCounts() {
+    Map<AclFeature, Integer> refCounts = new HashMap<>();
+    for (AclFeature f : AclStorage.getUniqueAclFeatures().getEntries()) {
+      refCounts.put(f, f.getRefCount());
+    }
+    return refCounts;
+  }
+
+  /**
+   * Load an image whose inodes share a few ACLs in parallel, and check that
+   * the de-duplicated ACLs are referenced as after a serial load.
+   */
+  @Test(timeout=120000)
+  public void testParallelLoadWithAcls() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_NAMENODE_ACLS_ENABLED_KEY, true);
+    conf.setBoolean(DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_KEY, true);
+    conf.setInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_INODE_THRESHOLD_KEY, 1);
+    conf.setInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_TARGET_SECTIONS_KEY, 16);
+    conf.setInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_KEY, 8);
+    MiniDFSCluster cluster = null;
+    try {
+      cluster = new MiniDFSCluster.Builder(conf).numDataNodes(0).build();
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      for (int i = 0; i < 20; i++) {
+        Path dir = new Path("/dir" + i);
+        fs.mkdirs(dir);
+        fs.modifyAclEntries(dir, Lists.newArrayList(AclTestHelpers.aclEntry(
+            AclEntryScope.ACCESS, AclEntryType.USER, "user" + (i % 2),
+            FsAction.ALL)));
+        for (int j = 0; j < 100; j++) {
+          Path file = new Path(dir, "file" + j);
+          fs.create(file, (short) 1).close();
+          fs.modifyAclEntries(file, Lists.newArrayList(
+              AclTestHelpers.aclEntry(AclEntryScope.ACCESS,
+                  AclEntryType.USER, "user" + (j % 3), FsAction.READ)));
+        }
+      }
+      fs.setSafeMode(SafeModeAction.SAFEMODE_ENTER);
+      fs.saveNamespace();
+      fs.setSafeMode(SafeModeAction.SAFEMODE_LEAVE);
+
+      // the map is static, so only count the references of each load
+      cluster.getConfiguration(0).setBoolean(
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_KEY, false);
+      AclStorage.getUniqueAclFeatures().clear();
+      cluster.restartNameNode();
+      Map<AclFeature, Integer> serial = getAclFeatureRefCounts();
+      assertEquals(5, serial.size());
+
+      cluster.getConfiguration(0).setBoolean(
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_KEY, true);
+      AclStorage.getUniqueAclFeatures().clear();
+      cluster.restartNameNode();
+      assertEquals(serial, getAclFeatureRefCounts());
+    } finally {
+      AclStorage.getUniqueAclFeatures().clear();
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
 }
@@ -0,0 +1,198 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.DirectoryListing;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.protocolPB.SerializedDirectoryListing;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ListingCache}.
+ */
+public class TestListingCache {
+  private static final byte[] EMPTY = HdfsFileStatus.EMPTY_NAME;
+  private static final ListingCache.Inherited NONE =
+      new ListingCache.Inherited(
+          HdfsConstants.BLOCK_STORAGE_POLICY_ID_UNSPECIFIED, null, false);
+
+  private static DirectoryListing listing(String... names) {
+    HdfsFileStatus[] statuses = new HdfsFileStatus[names.length];
+    for (int i = 0; i < names.length; i++) {
+      statuses[i] = new HdfsFileStatus(0, false, 1, 1024, 0, 0,
+          FsPermission.getFileDefault(), "user", "group", null,
+          names[i].getBytes(), 1000 + i, 0, null,
+          HdfsConstants.BLOCK_STORAGE_POLICY_ID_UNSPECIFIED, null);
+    }
+    return new DirectoryListing(statuses, 0);
+  }
+
+  @Test
+  public void testPagesAndInvalidation() {
+    ListingCache cache = new ListingCache(1 << 20);
+    assertNull(cache.get(1, EMPTY, false, NONE));
+    SerializedDirectoryListing first =
+        cache.put(1, EMPTY, false, NONE, listing("a", "b"));
+    SerializedDirectoryListing second =
+        cache.put(1, "b".getBytes(), false, NONE, listing("c"));
+    assertEquals(2, first.getProto().getPartialListingCount());
+    assertSame(first, cache.get(1, EMPTY, false, NONE));
+    assertSame(second, cache.get(1, "b".getBytes(), false, NONE));
+    assertNull(cache.get(1, EMPTY, true, NONE));
+    assertEquals(first.getSerializedSize() + second.getSerializedSize(),
+        cache.getBytes());
+
+    // a directory which inherits a different state is not served
+    ListingCache.Inherited encrypted = new ListingCache.Inherited(
+        HdfsConstants.BLOCK_STORAGE_POLICY_ID_UNSPECIFIED, null, true);
+    assertNull(cache.get(1, EMPTY, false, encrypted));
+    assertEquals(0, cache.size());
+
+    cache.put(1, EMPTY, false, NONE, listing("a", "b"));
+    cache.invalidate(1);
+    assertNull(cache.get(1, EMPTY, false, NONE));
+    assertEquals(0, cache.getBytes());
+    assertEquals(2, cache.getHits());
+    assertEquals(4, cache.getMisses());
+  }
+
+  @Test
+  public void testEviction() {
+    final int size = new SerializedDirectoryListing(listing("a", "b"))
+        .getSerializedSize();
+    ListingCache cache = new ListingCache(2 * size);
+    cache.put(1, EMPTY, false, NONE, listing("a", "b"));
+    cache.put(2, EMPTY, false, NONE, listing("a", "b"));
+    // directory 1 is now the most recently used
+    assertNotNull(cache.get(1, EMPTY, false, NONE));
+    cache.put(3, EMPTY, false, NONE, listing("a", "b"));
+    assertEquals(2, cache.size());
+    assertEquals(2 * size, cache.getBytes());
+    assertNull(cache.get(2, EMPTY, false, NONE));
+    assertNotNull(cache.get(1, EMPTY, false, NONE));
+
+    // a listing larger than the cache is not cached
+    cache = new ListingCache(size - 1);
+    cache.put(1, EMPTY, false, NONE, listing("a", "b"));
+    assertEquals(0, cache.size());
+  }
+
+  /**
+   * Check the cached listing of a directory against the status of each of
+   * its children, which is never cached.
+   */
+  private static void verifyListing(DFSClient client, String dir)
+      throws Exception {
+    DirectoryListing dl = client.listPaths(dir, EMPTY);
+    for (HdfsFileStatus s : dl.getPartialListing()) {
+      HdfsFileStatus expected =
+          client.getFileInfo(s.getFullPath(new Path(dir)).toString());
+      assertEquals(expected.getLen(), s.getLen());
+      assertEquals(expected.getModificationTime(), s.getModificationTime());
+      assertEquals(expected.getAccessTime(), s.getAccessTime());
+      assertEquals(expected.getPermission(), s.getPermission());
+      assertEquals(expected.getOwner(), s.getOwner());
+      assertEquals(expected.getGroup(), s.getGroup());
+      assertEquals(expected.getReplication(), s.getReplication());
+      assertEquals(expected.getChildrenNum(), s.getChildrenNum());
+      assertEquals(expected.getStoragePolicy(), s.getStoragePolicy());
+    }
+    assertEquals(client.getFileInfo(dir).getChildrenNum(),
+        dl.getPartialListing().length);
+  }
+
+  @Test(timeout = 60000)
+  public void testNamespaceChangesInvalidate() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setLong(DFSConfigKeys.DFS_NAMENODE_LISTING_CACHE_MAX_BYTES_KEY,
+        1 << 20);
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    try {
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      DFSClient client = fs.getClient();
+      FSNamesystem fsn = cluster.getNamesystem();
+      Path dir = new Path("/dir");
+      Path sub = new Path(dir, "sub");
+      Path file = new Path(dir, "file");
+      fs.mkdirs(sub);
+      DFSTestUtil.createFile(fs, file, 1024, (short) 1, 0L);
+
+      verifyListing(client, "/dir");
+      long hits = fsn.getListingCacheHits();
+      verifyListing(client, "/dir");
+      assertEquals(hits + 1, fsn.getListingCacheHits());
+      assertTrue(fsn.getListingCacheBytes() > 0);
+
+      // children added below a child change its number of children
+      fs.mkdirs(new Path(sub, "a"));
+      verifyListing(client, "/dir");
+
+      fs.setPermission(file, new FsPermission((short) 0600));
+      verifyListing(client, "/dir");
+      fs.setOwner(file, "other", "others");
+      verifyListing(client, "/dir");
+      fs.setReplication(file, (short) 2);
+      verifyListing(client, "/dir");
+      fs.setTimes(file, 1000L, 2000L);
+      verifyListing(client, "/dir");
+
+      try (FSDataOutputStream out = fs.append(file)) {
+        out.write(new byte[512]);
+        out.hflush();
+        verifyListing(client, "/dir");
+      }
+      verifyListing(client, "/dir");
+      fs.truncate(file, 100);
+      verifyListing(client, "/dir");
+
+      // the policy inherited from the parent changes the listing of sub
+      fs.mkdirs(new Path("/cold"));
+      fs.setStoragePolicy(new Path("/cold"), "COLD");
+      verifyListing(client, "/dir/sub");
+      fs.rename(sub, new Path("/cold/sub"));
+      verifyListing(client, "/dir");
+      verifyListing(client, "/cold/sub");
+
+      fs.delete(file, false);
+      verifyListing(client, "/dir");
+      assertEquals(0, client.listPaths("/dir", EMPTY)
+          .getPartialListing().length);
+    } finally {
+      cluster.shutdown();
+    }
+  }
+}
@@ -114,4 +114,23 @@ public void testNNThroughputRemoteAgainstNNWithFsOption() throws Exception {
       }
     }
   }
+
+  /**
+   * This test runs the blockReport benchmark with initial block reports,
+   * resolved by several threads.
+   */
+  @Test(timeout = 120000)
+  public void testNNThroughputInitialBlockReports() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    File nameDir = new File(MiniDFSCluster.getBaseDirectory(), "name");
+    conf.set(DFSConfigKeys.DFS_NAMENODE_NAME_DIR_KEY,
+        nameDir.getAbsolutePath());
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_RESOLVE_THREADS_KEY, 2);
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_RESOLVE_SHARD_SIZE_KEY,
+        10);
+    DFSTestUtil.formatNameNode(conf);
+    NNThroughputBenchmark.runBenchmark(conf,
+        new String[] {"-op", "blockReport", "-datanodes", "3",
+            "-reports", "6", "-initialReports"});
+  }
 }
@@ -26,11 +26,26 @@
 
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_RPC_BIND_HOST_KEY;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 
 import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
 import org.apache.hadoop.hdfs.HdfsConfiguration;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.ipc.metrics.RpcMetrics;
+import org.apache.hadoop.test.GenericTestUtils;
+
+import com.google.common.base.Supplier;
 
 import org.junit.Test;
 
@@ -59,5 +74,61 @@ public void testNamenodeRpcBindAny() throws IOException {
       conf.unset(DFS_NAMENODE_RPC_BIND_HOST_KEY);
     }
   }
-}
 
+  @Test(timeout = 60000)
+  public void testParkContendedReads() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(
+        DFSConfigKeys.DFS_NAMENODE_RPC_PARK_CONTENDED_READS_KEY, true);
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_HANDLER_COUNT_KEY, 1);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(0).build();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      cluster.waitActive();
+      final DistributedFileSystem fs = cluster.getFileSystem();
+      fs.mkdirs(new Path("/a"));
+      fs.create(new Path("/a/f"), (short) 1).close();
+      FSNamesystem fsn = cluster.getNamesystem();
+      final RpcMetrics rpcMetrics = ((NameNodeRpcServer) cluster
+          .getNameNodeRpc()).getClientRpcServer().getRpcMetrics();
+      final long parked = rpcMetrics.getRpcParkedCalls();
+
+      Future<FileStatus> fileInfo;
+      Future<FileStatus[]> listing;
+      fsn.writeLock();
+      try {
+        fileInfo = executor.submit(new Callable<FileStatus>() {
+          @Override
+          public FileStatus call() throws Exception {
+            return fs.getFileStatus(new Path("/a/f"));
+          }
+        });
+        listing = executor.submit(new Callable<FileStatus[]>() {
+          @Override
+          public FileStatus[] call() throws Exception {
+            return fs.listStatus(new Path("/a"));
+          }
+        });
+        // both reads are parked by the single handler
+        GenericTestUtils.waitFor(new Supplier<Boolean>() {
+          @Override
+          public Boolean get() {
+            return rpcMetrics.getRpcParkedCalls() >= parked + 2;
+          }
+        }, 50, 10000);
+        // which remains free to serve calls not needing the lock
+        assertNotNull(fs.getServerDefaults(new Path("/")));
+        assertFalse(fileInfo.isDone());
+        assertFalse(listing.isDone());
+      } finally {
+        fsn.writeUnlock();
+      }
+      assertEquals(0, fileInfo.get().getLen());
+      assertEquals(1, listing.get().length);
+    } finally {
+      executor.shutdownNow();
+      cluster.shutdown();
+    }
+  }
+}
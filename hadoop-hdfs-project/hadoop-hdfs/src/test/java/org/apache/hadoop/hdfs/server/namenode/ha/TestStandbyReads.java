@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.ha;
+
+import static org.apache.hadoop.test.MetricsAsserts.assertCounter;
+import static org.apache.hadoop.test.MetricsAsserts.assertCounterGt;
+import static org.apache.hadoop.test.MetricsAsserts.getLongCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.HAUtil;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.MiniDFSNNTopology;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.server.namenode.NameNode;
+import org.apache.hadoop.ipc.protobuf.RpcHeaderProtos.RpcResponseHeaderProto;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the reads served by the standby NameNode through
+ * {@link StandbyReadProxyProvider}.
+ */
+public class TestStandbyReads {
+  private Configuration conf;
+  private MiniDFSCluster cluster;
+  private NameNode active;
+  private NameNode standby;
+  private FileSystem fs;
+
+  @Before
+  public void setUp() throws Exception {
+    conf = new Configuration();
+    HAUtil.setAllowStandbyReads(conf, true);
+    // the test controls when the standby applies the edits
+    conf.setInt(DFSConfigKeys.DFS_HA_TAILEDITS_PERIOD_KEY, 60 * 60);
+    cluster = new MiniDFSCluster.Builder(conf)
+        .nnTopology(MiniDFSNNTopology.simpleHATopology())
+        .numDataNodes(1)
+        .build();
+    cluster.waitActive();
+    cluster.transitionToActive(0);
+    active = cluster.getNameNode(0);
+    standby = cluster.getNameNode(1);
+
+    final Configuration clientConf = new Configuration(conf);
+    final String logicalName = HATestUtil.getLogicalHostname(cluster);
+    HATestUtil.setFailoverConfigurations(cluster, clientConf, logicalName);
+    clientConf.set(HdfsClientConfigKeys.Failover.PROXY_PROVIDER_KEY_PREFIX
+        + "." + logicalName, StandbyReadProxyProvider.class.getName());
+    fs = FileSystem.get(new URI("hdfs://" + logicalName), clientConf);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (fs != null) {
+      fs.close();
+    }
+    if (cluster != null) {
+      cluster.shutdown();
+    }
+  }
+
+  private static MetricsRecordBuilder getRpcMetrics(NameNode nn) {
+    return getMetrics("RpcDetailedActivityForPort"
+        + nn.getNameNodeAddress().getPort());
+  }
+
+  private void catchUpStandby() throws Exception {
+    active.getRpcServer().rollEditLog();
+    standby.getNamesystem().getEditLogTailer().doTailEdits();
+  }
+
+  @Test(timeout = 120000)
+  public void testReadYourWrites() throws Exception {
+    final Path file = new Path("/test/file");
+    DFSTestUtil.createFile(fs, file, 1024, (short) 1, 0L);
+
+    // the standby has not applied the create yet, the active serves the read
+    assertEquals(1024, fs.getFileStatus(file).getLen());
+    assertCounterGt("StandbyExceptionNumOps", 0L, getRpcMetrics(standby));
+    final long activeOps =
+        getLongCounter("GetFileInfoNumOps", getRpcMetrics(active));
+    assertEquals(1L, activeOps);
+
+    // once it has caught up, the standby serves the read
+    catchUpStandby();
+    assertEquals(1024, fs.getFileStatus(file).getLen());
+    assertCounter("GetFileInfoNumOps", 1L, getRpcMetrics(standby));
+    assertCounter("GetFileInfoNumOps", activeOps, getRpcMetrics(active));
+    assertEquals(1, fs.listStatus(file.getParent()).length);
+    assertCounter("GetListingNumOps", 1L, getRpcMetrics(standby));
+
+    // a new write makes the standby stale again
+    final Path file2 = new Path("/test/file2");
+    DFSTestUtil.createFile(fs, file2, 512, (short) 1, 0L);
+    assertEquals(2, fs.listStatus(file.getParent()).length);
+    assertCounter("GetListingNumOps", 1L, getRpcMetrics(standby));
+
+    // whichever NameNode serves the block locations, the data is readable
+    catchUpStandby();
+    assertEquals(512, DFSTestUtil.readFile(fs, file2).length());
+  }
+
+  @Test
+  public void testClientStateIdIsMonotonic() {
+    final ClientGSIContext context = new ClientGSIContext();
+    assertEquals(Long.MIN_VALUE, context.getLastSeenStateId());
+    context.receiveResponseState(RpcResponseHeaderProto.newBuilder()
+        .setCallId(0).setStatus(RpcResponseHeaderProto.RpcStatusProto.SUCCESS)
+        .setStateId(10).build());
+    assertEquals(10L, context.getLastSeenStateId());
+    context.receiveResponseState(RpcResponseHeaderProto.newBuilder()
+        .setCallId(1).setStatus(RpcResponseHeaderProto.RpcStatusProto.SUCCESS)
+        .setStateId(5).build());
+    assertEquals(10L, context.getLastSeenStateId());
+    context.receiveResponseState(RpcResponseHeaderProto.newBuilder()
+        .setCallId(2).setStatus(RpcResponseHeaderProto.RpcStatusProto.SUCCESS)
+        .build());
+    assertEquals(10L, context.getLastSeenStateId());
+  }
+}
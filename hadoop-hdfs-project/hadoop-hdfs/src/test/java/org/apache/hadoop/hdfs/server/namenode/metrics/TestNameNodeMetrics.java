@@ -37,6 +37,7 @@
 import java.security.NoSuchAlgorithmException;
 import java.util.EnumSet;
 import java.util.Random;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 
 import org.apache.commons.logging.Log;
@@ -558,6 +559,18 @@ public void testSyncAndBlockReportMetric() throws Exception {
     // Check that the percentiles were updated
     assertQuantileGauges("Syncs1s", rb);
     assertQuantileGauges("BlockReport1s", rb);
+
+    // Sync some edits, then wait for a window counting them to roll over
+    for (int i = 0; i < 10; i++) {
+      fs.mkdirs(new Path(TEST_ROOT_DIR_PATH, "syncBatch" + i));
+    }
+    GenericTestUtils.waitFor(new Supplier<Boolean>() {
+      @Override
+      public Boolean get() {
+        return MetricsAsserts.getLongGauge("SyncBatchSize1sNumSyncs",
+            getMetrics(NN_METRICS)) > 0;
+      }
+    }, 100, (PERCENTILES_INTERVAL + 1) * 3000);
   }
 
   /**
@@ -18,23 +18,43 @@
 package org.apache.hadoop.hdfs.server.namenode.snapshot;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
 
 import java.io.IOException;
 import java.util.HashMap;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Options.Rename;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.DFSClientAdapter;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.DFSTestUtil;
 import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.DFSUtilClient;
 import org.apache.hadoop.hdfs.DistributedFileSystem;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
 import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport;
 import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport.DiffReportEntry;
 import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport.DiffType;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReportListing;
+import org.apache.hadoop.hdfs.protocol.SnapshotException;
+import org.apache.hadoop.hdfs.server.namenode.FSDirectory;
+import org.apache.hadoop.hdfs.server.namenode.snapshot.DirectoryWithSnapshotFeature.DirectoryDiffList;
+import org.apache.hadoop.ipc.RpcNoSuchMethodException;
 import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.util.Time;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -43,6 +63,8 @@
  * Tests snapshot deletion.
  */
 public class TestSnapshotDiffReport {
+  private static final Log LOG =
+      LogFactory.getLog(TestSnapshotDiffReport.class);
   protected static final long seed = 0;
   protected static final short REPLICATION = 3;
   protected static final short REPLICATION_1 = 2;
@@ -61,6 +83,10 @@ public class TestSnapshotDiffReport {
   @Before
   public void setUp() throws Exception {
     conf = new Configuration();
+    // list the diffs a few entries at a time, using the skip list index
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_DIFF_LISTING_LIMIT, 2);
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_SKIPLIST_INTERVAL, 2);
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_SKIPLIST_MAX_LEVELS, 3);
     cluster = new MiniDFSCluster.Builder(conf).numDataNodes(REPLICATION)
         .format(true).build();
     cluster.waitActive();
@@ -160,6 +186,11 @@ private void verifyDiffReport(Path dir, String from, String to,
     
     assertEquals(entries.length, report.getDiffList().size());
     assertEquals(entries.length, inverseReport.getDiffList().size());
+    // the report listed a page at a time is the one computed at once
+    assertSameEntries(report, hdfs.getClient().getSnapshotDiffReport(
+        dir.toString(), from, to));
+    assertSameEntries(inverseReport, hdfs.getClient().getSnapshotDiffReport(
+        dir.toString(), to, from));
     
     for (DiffReportEntry entry : entries) {
       if (entry.getType() == DiffType.MODIFY) {
@@ -177,6 +208,14 @@ private void verifyDiffReport(Path dir, String from, String to,
     }
   }
   
+  private static void assertSameEntries(SnapshotDiffReport expected,
+      SnapshotDiffReport actual) {
+    assertEquals(actual.toString(), expected.getDiffList().size(),
+        actual.getDiffList().size());
+    assertTrue(actual.toString(),
+        actual.getDiffList().containsAll(expected.getDiffList()));
+  }
+
   /** Test the computation and representation of diff between snapshots */
   @Test (timeout=60000)
   public void testDiffReport() throws Exception {
@@ -529,4 +568,184 @@ public void testDiffReportWithRenameAndSnapshotDeletion() throws Exception {
         new DiffReportEntry(DiffType.RENAME, DFSUtil.string2Bytes("foo2/bar"),
             DFSUtil.string2Bytes("foo2/bar-new")));
   }
-}
\ No newline at end of file
+
+  /**
+   * Rename files between directories listed in different pages, and check
+   * the pages and the cursors of the listing.
+   */
+  @Test
+  public void testDiffReportListingPages() throws Exception {
+    final Path root = new Path("/");
+    final Path[] dirs = new Path[4];
+    for (int i = 0; i < dirs.length; i++) {
+      dirs[i] = new Path(root, "dir" + i);
+      DFSTestUtil.createFile(hdfs, new Path(dirs[i], "file"), BLOCKSIZE,
+          REPLICATION, seed);
+    }
+    SnapshotTestHelper.createSnapshot(hdfs, root, "s0");
+    // rename the file of each directory to the next directory
+    for (int i = 0; i < dirs.length; i++) {
+      hdfs.rename(new Path(dirs[i], "file"),
+          new Path(dirs[(i + 1) % dirs.length], "file" + i));
+    }
+    hdfs.delete(dirs[3], true);
+    SnapshotTestHelper.createSnapshot(hdfs, root, "s1");
+
+    int pages = 0;
+    byte[] startPath = DFSUtilClient.EMPTY_BYTES;
+    int index = -1;
+    SnapshotDiffReportListing listing;
+    do {
+      listing = hdfs.getClient().getSnapshotDiffReportListing("/", "s0", "s1",
+          startPath, index);
+      pages++;
+      startPath = listing.getLastPath();
+      index = listing.getLastIndex();
+    } while (!listing.isLast());
+    assertTrue("pages = " + pages, pages > 1);
+
+    verifyDiffReport(root, "s0", "s1",
+        new DiffReportEntry(DiffType.MODIFY, DFSUtil.string2Bytes("")),
+        new DiffReportEntry(DiffType.MODIFY, DFSUtil.string2Bytes("dir0")),
+        new DiffReportEntry(DiffType.MODIFY, DFSUtil.string2Bytes("dir1")),
+        new DiffReportEntry(DiffType.MODIFY, DFSUtil.string2Bytes("dir2")),
+        new DiffReportEntry(DiffType.DELETE, DFSUtil.string2Bytes("dir3")),
+        new DiffReportEntry(DiffType.RENAME, DFSUtil.string2Bytes("dir0/file"),
+            DFSUtil.string2Bytes("dir1/file0")),
+        new DiffReportEntry(DiffType.RENAME, DFSUtil.string2Bytes("dir1/file"),
+            DFSUtil.string2Bytes("dir2/file1")),
+        new DiffReportEntry(DiffType.CREATE,
+            DFSUtil.string2Bytes("dir0/file3")),
+        new DiffReportEntry(DiffType.DELETE,
+            DFSUtil.string2Bytes("dir2/file")));
+
+    // a cursor that does not match the snapshot is rejected
+    try {
+      hdfs.getClient().getSnapshotDiffReportListing("/", "s0", "s1",
+          DFSUtil.string2Bytes("nonexistent"), 0);
+      fail("Expected a SnapshotException");
+    } catch (SnapshotException e) {
+      GenericTestUtils.assertExceptionContains(
+          "Cannot continue the snapshot diff listing", e);
+    }
+  }
+
+  private SnapshotDiffReport[] getDiffReports(Path dir, int numSnapshots,
+      int step) throws IOException {
+    final SnapshotDiffReport[] reports =
+        new SnapshotDiffReport[numSnapshots / step];
+    for (int i = 0; i < reports.length; i++) {
+      reports[i] = hdfs.getSnapshotDiffReport(dir, "s" + (i * step),
+          "s" + numSnapshots);
+    }
+    return reports;
+  }
+
+  /**
+   * Compare the time to compute the diff reports of a directory with
+   * thousands of snapshots, with and without the skip list index of its
+   * directory diffs.
+   */
+  @Test(timeout = 300000)
+  public void testDiffReportWithManySnapshots() throws Exception {
+    final int numSnapshots = 2000;
+    final int step = 20;
+    hdfs.mkdirs(sub1);
+    hdfs.allowSnapshot(sub1);
+    for (int i = 0; i < numSnapshots; i++) {
+      hdfs.createSnapshot(sub1, "s" + i);
+      // most of the directories live across a few snapshots only
+      hdfs.mkdirs(new Path(sub1, "d" + i));
+      if (i % 10 != 0) {
+        hdfs.delete(new Path(sub1, "d" + (i - 1)), true);
+      }
+    }
+    hdfs.createSnapshot(sub1, "s" + numSnapshots);
+
+    // a large limit, to time the diffs rather than the pages
+    final Configuration nnConf = cluster.getConfiguration(0);
+    nnConf.setInt(DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_DIFF_LISTING_LIMIT,
+        1000);
+    nnConf.setInt(DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_SKIPLIST_INTERVAL, 10);
+    cluster.restartNameNode(0);
+    hdfs = cluster.getFileSystem();
+    long start = Time.monotonicNow();
+    final SnapshotDiffReport[] indexed =
+        getDiffReports(sub1, numSnapshots, step);
+    final long indexedMs = Time.monotonicNow() - start;
+
+    nnConf.setInt(DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_SKIPLIST_MAX_LEVELS, 0);
+    cluster.restartNameNode(0);
+    hdfs = cluster.getFileSystem();
+    start = Time.monotonicNow();
+    final SnapshotDiffReport[] unindexed =
+        getDiffReports(sub1, numSnapshots, step);
+    final long unindexedMs = Time.monotonicNow() - start;
+
+    LOG.info("Computed " + indexed.length + " diff reports over "
+        + numSnapshots + " snapshots in " + indexedMs
+        + " ms with the skip list index, and in " + unindexedMs
+        + " ms without");
+    for (int i = 0; i < indexed.length; i++) {
+      assertSameEntries(unindexed[i], indexed[i]);
+    }
+    // the snapshot root, and the directories left behind
+    assertEquals(1 + numSnapshots / 10,
+        indexed[0].getDiffList().size());
+  }
+
+  /**
+   * The index parameters of a NameNode must not be changed by another
+   * NameNode of the same process.
+   */
+  @Test
+  public void testIndexParametersPerNameNode() throws Exception {
+    // another NameNode, with the index disabled
+    new SnapshotManager(new Configuration(), mock(FSDirectory.class));
+
+    hdfs.mkdirs(sub1);
+    hdfs.allowSnapshot(sub1);
+    for (int i = 0; i < 5; i++) {
+      hdfs.createSnapshot(sub1, "s" + i);
+      hdfs.mkdirs(new Path(sub1, "d" + i));
+    }
+    verifyDiffReport(sub1, "s0", "s4",
+        new DiffReportEntry(DiffType.MODIFY, DFSUtil.string2Bytes("")),
+        new DiffReportEntry(DiffType.CREATE, DFSUtil.string2Bytes("d0")),
+        new DiffReportEntry(DiffType.CREATE, DFSUtil.string2Bytes("d1")),
+        new DiffReportEntry(DiffType.CREATE, DFSUtil.string2Bytes("d2")),
+        new DiffReportEntry(DiffType.CREATE, DFSUtil.string2Bytes("d3")));
+    final DirectoryDiffList diffs = cluster.getNamesystem().getFSDirectory()
+        .getINode(sub1.toString()).asDirectory().getDiffs();
+    assertNotNull(diffs.getIndex());
+  }
+
+  /**
+   * A NameNode which cannot list the diff a page at a time computes it with
+   * a single RPC.
+   */
+  @Test
+  public void testDiffReportFallback() throws Exception {
+    hdfs.mkdirs(sub1);
+    hdfs.allowSnapshot(sub1);
+    hdfs.createSnapshot(sub1, "s0");
+    hdfs.mkdirs(new Path(sub1, "d0"));
+    hdfs.createSnapshot(sub1, "s1");
+
+    final DFSClient client = hdfs.getClient();
+    final DFSClient spyClient = spy(client);
+    doThrow(new RpcNoSuchMethodException("Unknown method"))
+        .when(spyClient).getSnapshotDiffReportListing(anyString(),
+            anyString(), anyString(), any(byte[].class), anyInt());
+    DFSClientAdapter.setDFSClient(hdfs, spyClient);
+    try {
+      final SnapshotDiffReport report =
+          hdfs.getSnapshotDiffReport(sub1, "s0", "s1");
+      assertSameEntries(client.getSnapshotDiffReport(sub1.toString(), "s0",
+          "s1"), report);
+      assertEquals(2, report.getDiffList().size());
+    } finally {
+      DFSClientAdapter.setDFSClient(hdfs, client);
+    }
+  }
+}
@@ -0,0 +1,226 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.util.Time;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests for {@link LongObjectHashMap}, including a micro-benchmark against
+ * the java.util and LightWeightHashSet collections it replaces.
+ */
+public class TestLongObjectHashMap {
+  private static final Logger LOG =
+      LoggerFactory.getLogger(TestLongObjectHashMap.class);
+
+  @Test
+  public void testBasic() {
+    LongObjectHashMap<String> map = new LongObjectHashMap<>();
+    assertTrue(map.isEmpty());
+    assertNull(map.get(0));
+    assertNull(map.put(0, "zero"));
+    assertNull(map.put(-1, "minus one"));
+    assertEquals("zero", map.put(0, "ZERO"));
+    assertEquals("ZERO", map.putIfAbsent(0, "zero"));
+    assertEquals("ZERO", map.get(0));
+    assertTrue(map.containsKey(-1));
+    assertEquals(2, map.size());
+
+    assertEquals("minus one", map.remove(-1));
+    assertNull(map.remove(-1));
+    assertFalse(map.containsKey(-1));
+    assertEquals(1, map.size());
+
+    map.clear();
+    assertTrue(map.isEmpty());
+    assertFalse(map.iterator().hasNext());
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testNullValue() {
+    new LongObjectHashMap<String>().put(1, null);
+  }
+
+  @Test
+  public void testRandomOperations() {
+    final long seed = Time.now();
+    LOG.info("seed = " + seed);
+    final Random r = new Random(seed);
+    final LongObjectHashMap<Long> map = new LongObjectHashMap<>();
+    final Map<Long, Long> expected = new HashMap<>();
+    for (int i = 0; i < 200000; i++) {
+      // a narrow key range forces long probe sequences and removals
+      final long key = r.nextInt(5000) - 2500;
+      switch (r.nextInt(3)) {
+      case 0:
+        assertEquals(expected.put(key, key), map.put(key, key));
+        break;
+      case 1:
+        assertEquals(expected.remove(key), map.remove(key));
+        break;
+      default:
+        assertEquals(expected.get(key), map.get(key));
+      }
+      assertEquals(expected.size(), map.size());
+    }
+    final Set<Long> values = new HashSet<>();
+    for (Long v : map) {
+      assertTrue(values.add(v));
+    }
+    assertEquals(new HashSet<>(expected.values()), values);
+  }
+
+  @Test
+  public void testPollN() {
+    final LongObjectHashMap<Long> map = new LongObjectHashMap<>();
+    for (long i = 0; i < 1000; i++) {
+      map.put(i << 32, i);
+    }
+    final Set<Long> polled = new HashSet<>();
+    while (!map.isEmpty()) {
+      final int before = map.size();
+      final List<Long> l = map.pollN(77);
+      assertEquals(Math.min(77, before), l.size());
+      for (Long v : l) {
+        assertTrue(polled.add(v));
+        assertNull(map.get(v << 32));
+      }
+      // the remaining entries must still be reachable
+      for (Long v : map) {
+        assertSame(v, map.get(v << 32));
+      }
+    }
+    assertEquals(1000, polled.size());
+    assertTrue(map.pollN(10).isEmpty());
+  }
+
+  @Test
+  public void testIteratorFailFast() {
+    final LongObjectHashMap<String> map = new LongObjectHashMap<>();
+    map.put(1, "a");
+    map.put(2, "b");
+    final Iterator<String> it = map.iterator();
+    it.next();
+    map.put(3, "c");
+    try {
+      it.next();
+      fail("Expected ConcurrentModificationException");
+    } catch (ConcurrentModificationException e) {
+      // expected
+    }
+  }
+
+  /**
+   * Compare the retained heap and the iteration cost of a per datanode
+   * invalidation set holding the same blocks.
+   */
+  @Test
+  public void testCompareWithJavaCollections() {
+    final int n = 200000;
+    final Block[] blocks = new Block[n];
+    for (int i = 0; i < n; i++) {
+      blocks[i] = new Block(1073741825L + i, 1024, 1001);
+    }
+
+    long mem = usedHeap();
+    long start = Time.monotonicNow();
+    final Map<Long, Block> hashMap = new HashMap<>();
+    for (Block b : blocks) {
+      hashMap.put(b.getBlockId(), b);
+    }
+    final long hashMapAdd = Time.monotonicNow() - start;
+    final long hashMapHeap = usedHeap() - mem;
+
+    mem = usedHeap();
+    start = Time.monotonicNow();
+    final LightWeightHashSet<Block> set = new LightWeightHashSet<>();
+    for (Block b : blocks) {
+      set.add(b);
+    }
+    final long setAdd = Time.monotonicNow() - start;
+    final long setHeap = usedHeap() - mem;
+
+    mem = usedHeap();
+    start = Time.monotonicNow();
+    final LongObjectHashMap<Block> map = new LongObjectHashMap<>();
+    for (Block b : blocks) {
+      map.put(b.getBlockId(), b);
+    }
+    final long mapAdd = Time.monotonicNow() - start;
+    final long mapHeap = usedHeap() - mem;
+
+    long sum = 0;
+    start = Time.monotonicNow();
+    for (Block b : hashMap.values()) {
+      sum += b.getNumBytes();
+    }
+    final long hashMapIter = Time.monotonicNow() - start;
+    start = Time.monotonicNow();
+    for (Block b : set) {
+      sum += b.getNumBytes();
+    }
+    final long setIter = Time.monotonicNow() - start;
+    start = Time.monotonicNow();
+    for (Block b : map) {
+      sum += b.getNumBytes();
+    }
+    final long mapIter = Time.monotonicNow() - start;
+    assertEquals(3L * n * 1024, sum);
+
+    LOG.info(String.format("%d blocks: %-18s heap=%,d add=%dms iterate=%dms",
+        n, "HashMap", hashMapHeap, hashMapAdd, hashMapIter));
+    LOG.info(String.format("%d blocks: %-18s heap=%,d add=%dms iterate=%dms",
+        n, "LightWeightHashSet", setHeap, setAdd, setIter));
+    LOG.info(String.format("%d blocks: %-18s heap=%,d add=%dms iterate=%dms",
+        n, "LongObjectHashMap", mapHeap, mapAdd, mapIter));
+
+    final List<Object> keepAlive = new ArrayList<>();
+    keepAlive.add(hashMap);
+    keepAlive.add(set);
+    keepAlive.add(map);
+    assertEquals(3, keepAlive.size());
+  }
+
+  private static long usedHeap() {
+    final Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return rt.totalMemory() - rt.freeMemory();
+  }
+}
@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hdfs.server.namenode.AclFeature;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ReferenceCountMap}.
+ */
+public class TestReferenceCountMap {
+  private static final AclFeature ACL1 = new AclFeature(new int[]{1});
+  private static final AclFeature ACL2 = new AclFeature(new int[]{2});
+
+  @Test
+  public void testReferenceCount() {
+    ReferenceCountMap<AclFeature> map = new ReferenceCountMap<>();
+    assertSame(ACL1, map.put(ACL1));
+    // an equal instance is replaced by the one in the map
+    assertSame(ACL1, map.put(new AclFeature(new int[]{1})));
+    map.put(ACL2);
+    assertEquals(2, map.getReferenceCount(ACL1));
+    assertEquals(1, map.getReferenceCount(ACL2));
+    assertEquals(2, map.getUniqueElementsSize());
+
+    map.remove(ACL1);
+    map.remove(ACL2);
+    assertEquals(1, map.getReferenceCount(ACL1));
+    assertEquals(0, map.getReferenceCount(ACL2));
+    assertEquals(1, map.getUniqueElementsSize());
+  }
+
+  /**
+   * Many threads add and remove references at once, as the INode loader
+   * threads do when an fsimage is loaded in parallel.
+   */
+  @Test(timeout = 60000)
+  public void testConcurrentPutAndRemove() throws Exception {
+    final ReferenceCountMap<AclFeature> map = new ReferenceCountMap<>();
+    final int numThreads = 8;
+    final int loop = 100000;
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < numThreads; i++) {
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < loop; j++) {
+            map.put(new AclFeature(new int[]{1}));
+            map.put(new AclFeature(new int[]{2}));
+            map.remove(ACL2);
+          }
+        }
+      });
+    }
+    for (Thread t : threads) {
+      t.start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    assertEquals(numThreads * loop, map.getReferenceCount(ACL1));
+    assertEquals(0, map.getReferenceCount(ACL2));
+    assertEquals(1, map.getUniqueElementsSize());
+  }
+}
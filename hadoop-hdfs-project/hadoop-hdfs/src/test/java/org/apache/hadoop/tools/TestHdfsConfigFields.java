@@ -41,7 +41,11 @@ public class TestHdfsConfigFields extends TestConfigurationFieldsBase {
   public void initializeMemberVariables() {
     xmlFilename = new String("hdfs-default.xml");
     configurationClasses = new Class[] { HdfsClientConfigKeys.class,
+        HdfsClientConfigKeys.HedgedRead.class,
         HdfsClientConfigKeys.StripedRead.class,
+        HdfsClientConfigKeys.VectoredRead.class,
+        HdfsClientConfigKeys.GetFileChecksum.class,
+        HdfsClientConfigKeys.Write.class,
         DFSConfigKeys.class};
 
     // Set error modes
@@ -510,7 +510,7 @@ public FSDataInputStream open(Path f, int bufferSize)
 
     return new FSDataInputStream(new S3AInputStream(bucket, pathToKey(f),
       fileStatus.getLen(), s3, statistics, instrumentation, readAhead,
-        inputPolicy));
+        inputPolicy, threadPoolExecutor));
   }
 
   /**
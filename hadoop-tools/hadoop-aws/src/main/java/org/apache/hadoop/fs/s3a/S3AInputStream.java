@@ -29,12 +29,21 @@
 import org.apache.hadoop.fs.CanSetReadahead;
 import org.apache.hadoop.fs.FSExceptionMessages;
 import org.apache.hadoop.fs.FSInputStream;
+import org.apache.hadoop.fs.FileRange;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.VectoredReadUtils;
+import org.apache.hadoop.fs.VectoredReadUtils.CombinedFileRange;
+import org.apache.hadoop.fs.VectoredReadable;
+import org.apache.hadoop.io.IOUtils;
 
 import org.slf4j.Logger;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.function.IntFunction;
 
 import static org.apache.hadoop.fs.s3a.S3AUtils.*;
 
@@ -57,7 +66,8 @@
  */
 @InterfaceAudience.Private
 @InterfaceStability.Evolving
-public class S3AInputStream extends FSInputStream implements CanSetReadahead {
+public class S3AInputStream extends FSInputStream
+    implements CanSetReadahead, VectoredReadable {
   /**
    * This is the public position; the one set in {@link #seek(long)}
    * and returned in {@link #getPos()}.
@@ -80,6 +90,8 @@ public class S3AInputStream extends FSInputStream implements CanSetReadahead {
   private final S3AInstrumentation.InputStreamStatistics streamStatistics;
   private final S3AInputPolicy inputPolicy;
   private long readahead = Constants.DEFAULT_READAHEAD_RANGE;
+  /** Thread pool for the requests of vectored reads. */
+  private final ExecutorService vectoredReadPool;
 
   /**
    * This is the actual position within the object, used by
@@ -105,7 +117,8 @@ public S3AInputStream(String bucket,
       FileSystem.Statistics stats,
       S3AInstrumentation instrumentation,
       long readahead,
-      S3AInputPolicy inputPolicy) {
+      S3AInputPolicy inputPolicy,
+      ExecutorService vectoredReadPool) {
     Preconditions.checkArgument(StringUtils.isNotEmpty(bucket), "No Bucket");
     Preconditions.checkArgument(StringUtils.isNotEmpty(key), "No Key");
     Preconditions.checkArgument(contentLength >= 0 , "Negative content length");
@@ -117,6 +130,7 @@ public S3AInputStream(String bucket,
     this.uri = "s3a://" + this.bucket + "/" + this.key;
     this.streamStatistics = instrumentation.newInputStreamStatistics();
     this.inputPolicy = inputPolicy;
+    this.vectoredReadPool = vectoredReadPool;
     setReadahead(readahead);
   }
 
@@ -609,6 +623,82 @@ public void readFully(long position, byte[] buffer, int offset, int length)
     }
   }
 
+  /**
+   * Read the ranges with a ranged GET request for each merged range, on
+   * the thread pool of the filesystem. Ranges closer to each other than the
+   * readahead range are merged, as reading the gap is cheaper than another
+   * request. Each request is clamped to the end of the object, and only
+   * the ranges that extend past it fail.
+   *
+   * The requests are independent of the stream, which they do not seek.
+   * {@inheritDoc}
+   */
+  @Override
+  public void readVectored(List<? extends FileRange> ranges,
+      final IntFunction<ByteBuffer> allocate) throws IOException {
+    checkNotClosed();
+    final int minSeek = (int) Math.min(getReadahead(), Integer.MAX_VALUE);
+    for (final CombinedFileRange range : VectoredReadUtils.prepareRanges(
+        ranges, minSeek, VectoredReadUtils.DEFAULT_MAX_READ_SIZE)) {
+      vectoredReadPool.submit(new Runnable() {
+        @Override
+        public void run() {
+          readCombinedRange(range, allocate);
+        }
+      });
+    }
+  }
+
+  /**
+   * Read a merged range of a vectored read with a request of its own,
+   * up to the end of the object.
+   */
+  private void readCombinedRange(CombinedFileRange range,
+      IntFunction<ByteBuffer> allocate) {
+    final long start = range.getOffset();
+    final int length = (int) Math.max(0,
+        Math.min(range.getLength(), contentLength - start));
+    S3ObjectInputStream in = null;
+    try {
+      ByteBuffer buffer = allocate.apply(length).slice();
+      if (length > 0) {
+        GetObjectRequest request = new GetObjectRequest(bucket, key)
+            .withRange(start, start + length - 1);
+        in = client.getObject(request).getObjectContent();
+        byte[] tmp = buffer.hasArray() ? buffer.array()
+            : new byte[Math.min(length, 64 * 1024)];
+        int off = buffer.hasArray() ? buffer.arrayOffset() : 0;
+        int nread = 0;
+        while (nread < length) {
+          int n = in.read(tmp, off,
+              Math.min(length - nread, tmp.length - off));
+          if (n < 0) {
+            throw new EOFException(FSExceptionMessages.EOF_IN_READ_FULLY
+                + ": " + range + " of " + uri);
+          }
+          if (buffer.hasArray()) {
+            off += n;
+          } else {
+            buffer.put(tmp, 0, n);
+          }
+          nread += n;
+        }
+        if (stats != null) {
+          stats.incrementBytesRead(length);
+        }
+        buffer.position(nread);
+      }
+      buffer.flip();
+      range.complete(buffer);
+    } catch (AmazonClientException e) {
+      range.fail(translateException("readVectored " + range, uri, e));
+    } catch (Throwable t) {
+      range.fail(t);
+    } finally {
+      IOUtils.closeStream(in);
+    }
+  }
+
   /**
    * Access the input stream statistics.
    * This is for internal testing and may be removed without warning.
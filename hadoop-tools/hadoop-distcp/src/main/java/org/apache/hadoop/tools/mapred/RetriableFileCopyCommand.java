@@ -205,7 +205,9 @@ private void compareCheckSums(FileSystem sourceFS, Path source,
           targetFS.getFileStatus(target).getBlockSize()) {
         errorMessage.append(" Source and target differ in block-size.")
             .append(" Use -pb to preserve block-sizes during copy.")
-            .append(" Alternatively, skip checksum-checks altogether, using -skipCrc.")
+            .append(" Alternatively, compare block-size independent checksums,")
+            .append(" using -Ddfs.checksum.combine.mode=COMPOSITE_CRC,")
+            .append(" or skip checksum-checks altogether, using -skipCrc.")
             .append(" (NOTE: By skipping checksums, one runs the risk of " +
                 "masking data-corruption during file-transfer.)");
       }